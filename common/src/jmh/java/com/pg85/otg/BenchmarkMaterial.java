@@ -0,0 +1,142 @@
+package com.pg85.otg;
+
+import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
+
+/**
+ * Material for benchmarks, which can't use the materials of a platform.
+ * Only the block id is known, materials with the same id are the same
+ * instance.
+ */
+public final class BenchmarkMaterial implements LocalMaterialData
+{
+    private static final BenchmarkMaterial[] materials = new BenchmarkMaterial[256];
+
+    /**
+     * Gets the material with the given block id.
+     * @param blockId The block id, from 0 to 255.
+     * @return The material.
+     */
+    public static synchronized BenchmarkMaterial get(int blockId)
+    {
+        if (materials[blockId] == null)
+        {
+            materials[blockId] = new BenchmarkMaterial(blockId);
+        }
+        return materials[blockId];
+    }
+
+    private final int blockId;
+
+    private BenchmarkMaterial(int blockId)
+    {
+        this.blockId = blockId;
+    }
+
+    @Override
+    public boolean isSmoothAreaAnchor(boolean allowWood, boolean ignoreWater)
+    {
+        return false;
+    }
+
+    @Override
+    public String getName()
+    {
+        return toDefaultMaterial().name();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+
+    @Override
+    public int getBlockId()
+    {
+        return this.blockId;
+    }
+
+    @Override
+    public byte getBlockData()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isLiquid()
+    {
+        return toDefaultMaterial().isLiquid();
+    }
+
+    @Override
+    public boolean isSolid()
+    {
+        return toDefaultMaterial().isSolid();
+    }
+
+    @Override
+    public boolean isAir()
+    {
+        return this.blockId == 0;
+    }
+
+    @Override
+    public DefaultMaterial toDefaultMaterial()
+    {
+        return DefaultMaterial.getMaterial(this.blockId);
+    }
+
+    @Override
+    public boolean canSnowFallOn()
+    {
+        return isSolid();
+    }
+
+    @Override
+    public boolean isMaterial(DefaultMaterial material)
+    {
+        return material.id == this.blockId;
+    }
+
+    @Override
+    public LocalMaterialData withBlockData(int newData)
+    {
+        return this;
+    }
+
+    @Override
+    public LocalMaterialData withDefaultBlockData()
+    {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other == this;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.blockId;
+    }
+
+    @Override
+    public int hashCodeWithoutBlockData()
+    {
+        return this.blockId;
+    }
+
+    @Override
+    public LocalMaterialData rotate()
+    {
+        return this;
+    }
+
+    @Override
+    public boolean canFall()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,250 @@
+package com.pg85.otg.configuration;
+
+import static com.pg85.otg.BenchmarkMaterial.get;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pg85.otg.LocalMaterialData;
+import com.pg85.otg.configuration.ReplacedBlocksMatrix.ReplacedBlocksInstruction;
+
+/**
+ * Compares the old way of applying ReplacedBlocks to a chunk, which resolves
+ * every block of every section, with {@link ChunkReplacedBlocks}, which
+ * checks the palette of each section first. Chunk sections are simulated by
+ * a palette of block ids and an index into the palette per block, like the
+ * linear palettes of Minecraft.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacedBlocksBenchmark
+{
+    private static final int AIR = 0;
+    private static final int STONE = 1;
+    private static final int GRASS = 2;
+    private static final int DIRT = 3;
+    private static final int WATER = 9;
+    private static final int SAND = 12;
+    private static final int GRAVEL = 13;
+    private static final int SECTIONS = 16;
+    private static final int MAX_HEIGHT = 255;
+
+    /**
+     * none: the biome replaces blocks that aren't in the chunk. stone: all
+     * stone is replaced by one block. layered: a heavy preset, stone is
+     * replaced by a different block every 8 blocks, and dirt, grass, sand
+     * and gravel are replaced as well.
+     */
+    @Param({"none", "stone", "layered"})
+    public String preset;
+
+    private ReplacedBlocksMatrix matrix;
+    private int[][] palettes;
+    private byte[][] blocks;
+
+    @Setup
+    public void setup()
+    {
+        List<ReplacedBlocksInstruction> instructions = new ArrayList<ReplacedBlocksInstruction>();
+        if (this.preset.equals("none"))
+        {
+            instructions.add(new ReplacedBlocksInstruction(get(80), get(79), 0, MAX_HEIGHT));
+        } else if (this.preset.equals("stone"))
+        {
+            instructions.add(new ReplacedBlocksInstruction(get(STONE), get(98), 0, MAX_HEIGHT));
+        } else
+        {
+            for (int y = 0; y <= MAX_HEIGHT; y += 8)
+            {
+                instructions.add(new ReplacedBlocksInstruction(get(STONE), get(159 + (y / 8) % 2), y, y + 7));
+            }
+            instructions.add(new ReplacedBlocksInstruction(get(DIRT), get(82), 0, MAX_HEIGHT));
+            instructions.add(new ReplacedBlocksInstruction(get(GRASS), get(110), 0, MAX_HEIGHT));
+            instructions.add(new ReplacedBlocksInstruction(get(SAND), get(24), 0, MAX_HEIGHT));
+            instructions.add(new ReplacedBlocksInstruction(get(GRAVEL), get(4), 0, MAX_HEIGHT));
+        }
+        this.matrix = ReplacedBlocksMatrix.createEmptyMatrix(MAX_HEIGHT);
+        this.matrix.setInstructions(instructions);
+
+        // Stone up to y=63, a few layers of dirt and grass with some sand
+        // and gravel, water at sea level and air above
+        Random random = new Random(1234L);
+        this.palettes = new int[SECTIONS][];
+        this.blocks = new byte[SECTIONS][];
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            List<Integer> palette = new ArrayList<Integer>();
+            byte[] sectionBlocks = new byte[4096];
+            for (int index = 0; index < 4096; index++)
+            {
+                int y = section * 16 + (index >> 8);
+                int blockId;
+                if (y < 60)
+                {
+                    blockId = random.nextInt(20) == 0 ? GRAVEL : STONE;
+                } else if (y < 64)
+                {
+                    blockId = random.nextInt(10) == 0 ? SAND : DIRT;
+                } else if (y == 64)
+                {
+                    blockId = random.nextBoolean() ? GRASS : WATER;
+                } else
+                {
+                    blockId = AIR;
+                }
+                if (!palette.contains(blockId))
+                {
+                    palette.add(blockId);
+                }
+                sectionBlocks[index] = (byte) palette.indexOf(blockId);
+            }
+            this.palettes[section] = new int[palette.size()];
+            for (int i = 0; i < palette.size(); i++)
+            {
+                this.palettes[section][i] = palette.get(i);
+            }
+            this.blocks[section] = sectionBlocks;
+        }
+    }
+
+    /**
+     * Looks up the biome settings of every column once per section and
+     * resolves every block, like ReplacedBlocks used to work.
+     * @return The number of replaced blocks.
+     */
+    @Benchmark
+    public int perBlock()
+    {
+        int replaced = 0;
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            int[] palette = this.palettes[section];
+            byte[] sectionBlocks = this.blocks[section];
+            for (int x = 0; x < 16; x++)
+            {
+                for (int z = 0; z < 16; z++)
+                {
+                    LocalMaterialData[][] replaceArray = getBiomeSettings(x, z).compiledInstructions;
+                    for (int sectionY = 0; sectionY < 16; sectionY++)
+                    {
+                        int blockId = palette[sectionBlocks[sectionY << 8 | z << 4 | x]];
+                        if (replaceArray[blockId] == null)
+                        {
+                            continue;
+                        }
+                        int y = section * 16 + sectionY;
+                        if (y >= replaceArray[blockId].length)
+                        {
+                            break;
+                        }
+                        LocalMaterialData replaceTo = replaceArray[blockId][y];
+                        if (replaceTo != null && replaceTo.getBlockId() != blockId)
+                        {
+                            replaced++;
+                        }
+                    }
+                }
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Looks up the biome settings once per chunk and checks the palette of
+     * every section before resolving single blocks, like ForgeWorld does.
+     * @return The number of replaced blocks.
+     */
+    @Benchmark
+    public int palette()
+    {
+        ChunkReplacedBlocks replacedBlocks = new ChunkReplacedBlocks();
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                replacedBlocks.setColumn(x, z, getBiomeSettings(x, z));
+            }
+        }
+
+        int replaced = 0;
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            int minY = section * 16;
+            int maxY = minY + 15;
+            int[] palette = this.palettes[section];
+            byte[] sectionBlocks = this.blocks[section];
+
+            boolean[] candidates = new boolean[palette.length];
+            boolean anyCandidate = false;
+            for (int i = 0; i < palette.length; i++)
+            {
+                if (!replacedBlocks.isReplaced(palette[i], minY, maxY))
+                {
+                    continue;
+                }
+                if (replacedBlocks.getUniformReplacement(palette[i], minY, maxY) != null)
+                {
+                    // The palette entry would be changed, count its blocks
+                    for (int index = 0; index < 4096; index++)
+                    {
+                        if (sectionBlocks[index] == i)
+                        {
+                            replaced++;
+                        }
+                    }
+                    continue;
+                }
+                candidates[i] = true;
+                anyCandidate = true;
+            }
+            if (!anyCandidate)
+            {
+                continue;
+            }
+
+            for (int x = 0; x < 16; x++)
+            {
+                for (int z = 0; z < 16; z++)
+                {
+                    for (int sectionY = 0; sectionY < 16; sectionY++)
+                    {
+                        int paletteIndex = sectionBlocks[sectionY << 8 | z << 4 | x];
+                        if (!candidates[paletteIndex])
+                        {
+                            continue;
+                        }
+                        if (replacedBlocks.getReplacement(x, z, palette[paletteIndex], minY + sectionY) != null)
+                        {
+                            replaced++;
+                        }
+                    }
+                }
+            }
+        }
+        return replaced;
+    }
+
+    private ReplacedBlocksMatrix getBiomeSettings(int x, int z)
+    {
+        // A single biome, the lookup itself is the same for both approaches
+        return this.matrix;
+    }
+}
@@ -0,0 +1,153 @@
+package com.pg85.otg.generator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pg85.otg.BenchmarkMaterial;
+import com.pg85.otg.LocalMaterialData;
+import com.pg85.otg.LocalWorld;
+import com.pg85.otg.util.ChunkCoordinate;
+import com.pg85.otg.util.ChunkMap;
+
+/**
+ * Compares spawning ore veins through a {@link PopulationBuffer} with
+ * spawning them directly in the world. The world is a proxy that keeps the
+ * blocks of each chunk in an array, so a world access costs a chunk lookup
+ * and a reflective call, which is still cheaper than in a real world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopulationBufferBenchmark
+{
+    private static final LocalMaterialData STONE = BenchmarkMaterial.get(1);
+    private static final LocalMaterialData ORE = BenchmarkMaterial.get(16);
+
+    /**
+     * Number of ore veins per population, a world with many ore resources
+     * spawns a few hundred.
+     */
+    @Param({"20", "200"})
+    public int veins;
+
+    private ChunkMap<LocalMaterialData[]> chunks;
+    private LocalWorld world;
+    private PopulationBuffer buffer;
+    private ChunkCoordinate chunkCoord;
+    private Random random;
+
+    @Setup
+    public void setup()
+    {
+        this.chunks = new ChunkMap<LocalMaterialData[]>();
+        for (int chunkX = 0; chunkX < 2; chunkX++)
+        {
+            for (int chunkZ = 0; chunkZ < 2; chunkZ++)
+            {
+                LocalMaterialData[] blocks = new LocalMaterialData[16 * 256 * 16];
+                for (int i = 0; i < 16 * 64 * 16; i++)
+                {
+                    blocks[i] = STONE;
+                }
+                for (int i = 16 * 64 * 16; i < blocks.length; i++)
+                {
+                    blocks[i] = BenchmarkMaterial.get(0);
+                }
+                this.chunks.put(chunkX, chunkZ, blocks);
+            }
+        }
+        this.world = (LocalWorld) Proxy.newProxyInstance(LocalWorld.class.getClassLoader(), new Class<?>[] { LocalWorld.class }, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                int x = (Integer) args[0];
+                int y = (Integer) args[1];
+                int z = (Integer) args[2];
+                LocalMaterialData[] blocks = PopulationBufferBenchmark.this.chunks.get(x >> 4, z >> 4);
+                int index = y << 8 | (z & 0xF) << 4 | (x & 0xF);
+                if (method.getName().equals("getMaterial"))
+                {
+                    return blocks[index];
+                }
+                if (method.getName().equals("setBlock"))
+                {
+                    blocks[index] = (LocalMaterialData) args[3];
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        this.buffer = new PopulationBuffer();
+        this.chunkCoord = ChunkCoordinate.fromChunkCoords(0, 0);
+        this.random = new Random(1234L);
+    }
+
+    @Benchmark
+    public void direct()
+    {
+        for (int vein = 0; vein < this.veins; vein++)
+        {
+            int centerX = this.random.nextInt(16) + 8;
+            int centerY = this.random.nextInt(60) + 2;
+            int centerZ = this.random.nextInt(16) + 8;
+            for (int x = centerX - 1; x <= centerX + 1; x++)
+            {
+                for (int y = centerY - 1; y <= centerY + 1; y++)
+                {
+                    for (int z = centerZ - 1; z <= centerZ + 1; z++)
+                    {
+                        if (this.world.getMaterial(x, y, z, false) == STONE)
+                        {
+                            this.world.setBlock(x, y, z, ORE, null, false);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void buffered()
+    {
+        this.buffer.begin(this.world, this.chunkCoord);
+        for (int vein = 0; vein < this.veins; vein++)
+        {
+            int centerX = this.random.nextInt(16) + 8;
+            int centerY = this.random.nextInt(60) + 2;
+            int centerZ = this.random.nextInt(16) + 8;
+            for (int x = centerX - 1; x <= centerX + 1; x++)
+            {
+                for (int y = centerY - 1; y <= centerY + 1; y++)
+                {
+                    for (int z = centerZ - 1; z <= centerZ + 1; z++)
+                    {
+                        if (this.buffer.getMaterial(this.world, x, y, z) == STONE)
+                        {
+                            this.buffer.setBlock(this.world, x, y, z, ORE);
+                        }
+                    }
+                }
+            }
+        }
+        this.buffer.end();
+    }
+}
@@ -0,0 +1,86 @@
+package com.pg85.otg.generator.noise;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link NoiseGeneratorPerlinOctaves} with
+ * {@link NoiseGeneratorPerlinOctavesBatched}, using the sizes and scales of
+ * the terrain noise of one chunk in ChunkProviderOTG.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PerlinOctavesBenchmark
+{
+    private static final int NOISE_MAX_X = 5;
+    private static final int NOISE_MAX_Z = 5;
+    private static final int MAX_Y_SECTIONS = 256 / 8 + 1;
+    private static final double XZ_SCALE = 684.41200000000003D;
+    private static final double Y_SCALE = 684.41200000000003D;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    private NoiseGeneratorPerlinOctaves noise16;
+    private NoiseGeneratorPerlinOctaves noise8;
+    private double[] noise3D;
+    private double[] noise2D;
+    private int chunkX;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(1234L);
+        this.noise16 = create(random, 16);
+        this.noise8 = create(random, 8);
+    }
+
+    private NoiseGeneratorPerlinOctaves create(Random random, int numOctaves)
+    {
+        if (this.batched)
+        {
+            return new NoiseGeneratorPerlinOctavesBatched(random, numOctaves);
+        }
+        return new NoiseGeneratorPerlinOctaves(random, numOctaves);
+    }
+
+    @Benchmark
+    public double[] noise3D()
+    {
+        int xOffset = (this.chunkX++ & 0xFFF) * 4;
+        this.noise3D = this.noise16.Noise3D(this.noise3D, xOffset, 0, 0, NOISE_MAX_X, MAX_Y_SECTIONS, NOISE_MAX_Z, XZ_SCALE, Y_SCALE, XZ_SCALE);
+        return this.noise3D;
+    }
+
+    @Benchmark
+    public double[] noise3DLowOctaves()
+    {
+        int xOffset = (this.chunkX++ & 0xFFF) * 4;
+        this.noise3D = this.noise8.Noise3D(this.noise3D, xOffset, 0, 0, NOISE_MAX_X, MAX_Y_SECTIONS, NOISE_MAX_Z, XZ_SCALE / 80.0D, Y_SCALE / 160.0D, XZ_SCALE / 80.0D);
+        return this.noise3D;
+    }
+
+    @Benchmark
+    public double[] noise2D()
+    {
+        int xOffset = (this.chunkX++ & 0xFFF) * 4;
+        this.noise2D = this.noise16.Noise2D(this.noise2D, xOffset, 0, NOISE_MAX_X, NOISE_MAX_Z, 200.0D, 200.0D);
+        return this.noise2D;
+    }
+}
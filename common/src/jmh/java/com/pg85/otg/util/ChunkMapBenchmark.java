@@ -0,0 +1,153 @@
+package com.pg85.otg.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares lookups and inserts of a square area of chunks in a
+ * {@link ChunkMap}, in a {@code HashMap} keyed by {@link ChunkCoordinate}
+ * and in a {@code HashMap} keyed by a coordinate with the old
+ * {@code (chunkX >> 13) ^ chunkZ} hash code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkMapBenchmark
+{
+    @Param({"16", "64"})
+    public int radius;
+
+    private Map<ChunkCoordinate, Object> hashMap;
+    private Map<OldChunkCoordinate, Object> oldHashMap;
+    private ChunkMap<Object> chunkMap;
+
+    @Setup
+    public void setup()
+    {
+        this.hashMap = new HashMap<ChunkCoordinate, Object>();
+        this.oldHashMap = new HashMap<OldChunkCoordinate, Object>();
+        this.chunkMap = new ChunkMap<Object>();
+        for (int chunkX = -this.radius; chunkX < this.radius; chunkX++)
+        {
+            for (int chunkZ = -this.radius; chunkZ < this.radius; chunkZ++)
+            {
+                this.hashMap.put(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ), Boolean.TRUE);
+                this.oldHashMap.put(new OldChunkCoordinate(chunkX, chunkZ), Boolean.TRUE);
+                this.chunkMap.put(chunkX, chunkZ, Boolean.TRUE);
+            }
+        }
+    }
+
+    @Benchmark
+    public void getHashMap(Blackhole blackhole)
+    {
+        for (int chunkX = -this.radius; chunkX < this.radius; chunkX++)
+        {
+            for (int chunkZ = -this.radius; chunkZ < this.radius; chunkZ++)
+            {
+                blackhole.consume(this.hashMap.get(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getOldHashMap(Blackhole blackhole)
+    {
+        for (int chunkX = -this.radius; chunkX < this.radius; chunkX++)
+        {
+            for (int chunkZ = -this.radius; chunkZ < this.radius; chunkZ++)
+            {
+                blackhole.consume(this.oldHashMap.get(new OldChunkCoordinate(chunkX, chunkZ)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getChunkMap(Blackhole blackhole)
+    {
+        for (int chunkX = -this.radius; chunkX < this.radius; chunkX++)
+        {
+            for (int chunkZ = -this.radius; chunkZ < this.radius; chunkZ++)
+            {
+                blackhole.consume(this.chunkMap.get(chunkX, chunkZ));
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<ChunkCoordinate, Object> putHashMap()
+    {
+        Map<ChunkCoordinate, Object> map = new HashMap<ChunkCoordinate, Object>();
+        for (int chunkX = -this.radius; chunkX < this.radius; chunkX++)
+        {
+            for (int chunkZ = -this.radius; chunkZ < this.radius; chunkZ++)
+            {
+                map.put(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ), Boolean.TRUE);
+            }
+        }
+        return map;
+    }
+
+    @Benchmark
+    public ChunkMap<Object> putChunkMap()
+    {
+        ChunkMap<Object> map = new ChunkMap<Object>();
+        for (int chunkX = -this.radius; chunkX < this.radius; chunkX++)
+        {
+            for (int chunkZ = -this.radius; chunkZ < this.radius; chunkZ++)
+            {
+                map.put(chunkX, chunkZ, Boolean.TRUE);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Chunk coordinate with the hash code ChunkCoordinate used to have.
+     */
+    private static final class OldChunkCoordinate
+    {
+        private final int chunkX;
+        private final int chunkZ;
+
+        OldChunkCoordinate(int chunkX, int chunkZ)
+        {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (this.chunkX >> 13) ^ this.chunkZ;
+        }
+
+        @Override
+        public boolean equals(Object otherObject)
+        {
+            if (!(otherObject instanceof OldChunkCoordinate))
+            {
+                return false;
+            }
+            OldChunkCoordinate other = (OldChunkCoordinate) otherObject;
+            return other.chunkX == this.chunkX && other.chunkZ == this.chunkZ;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.pg85.otg;
 import com.pg85.otg.configuration.ConfigFunctionsManager;
 import com.pg85.otg.configuration.CustomObjectConfigFunctionsManager;
 import com.pg85.otg.configuration.PluginConfig;
+import com.pg85.otg.configuration.io.AsyncFileSettingsWriter;
 import com.pg85.otg.configuration.io.FileSettingsReader;
 import com.pg85.otg.configuration.io.FileSettingsWriter;
+import com.pg85.otg.configuration.io.ParsedSettingsCache;
 import com.pg85.otg.configuration.standard.PluginStandardValues;
 import com.pg85.otg.customobjects.CustomObject;
 import com.pg85.otg.customobjects.CustomObjectManager;
@@ -221,6 +223,9 @@ public abstract class OTGEngine
 
     public void onShutdown()
     {
+        // Configs are written in the background, make sure they are on disk
+        AsyncFileSettingsWriter.awaitWrites();
+
         // Shutdown all loaders
         customObjectManager.shutdown();
 
@@ -251,6 +256,9 @@ public abstract class OTGEngine
         FileSettingsWriter.writeToFile(pluginConfig.getSettingsAsMap(), pluginConfigFile, pluginConfig.SettingsMode);
         logger.setLevel(pluginConfig.getLogLevel().getLevel());
 
+        // Forget settings files that were removed since the last start
+        ParsedSettingsCache.removeStaleCacheFiles();
+
         File globalObjectsDir = new File(getTCDataFolder(), PluginStandardValues.BO_DirectoryName);
         if(!globalObjectsDir.exists())
         {
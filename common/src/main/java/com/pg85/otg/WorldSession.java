@@ -2,7 +2,6 @@ package com.pg85.otg;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map.Entry;
 
 import com.pg85.otg.customobjects.CustomObjectStructure;
 import com.pg85.otg.customobjects.bo3.BO3;
@@ -41,22 +40,16 @@ public abstract class WorldSession
     {
     	String structureInfo = "";
 		ChunkCoordinate playerChunk = ChunkCoordinate.fromBlockCoords((int)x, (int)z);
-    	for(Entry<ChunkCoordinate, CustomObjectStructure> entry : world.getStructureCache().worldInfoChunks.entrySet())
-    	{   		   		
-			// if the player is in range
-			if(playerChunk.equals(entry.getKey()))
+		CustomObjectStructure structure = world.getStructureCache().worldInfoChunks.get(playerChunk);
+		if(structure != null)
+		{
+			structureInfo += "-- BO3 Info -- \r\nName: " + ((BO3)structure.Start.getObject()).getSettings().getName().replace("Start", "") + "\r\nAuthor: " + ((BO3)structure.Start.getObject()).getSettings().author + "\r\nDescription: " + ((BO3)structure.Start.getObject()).getSettings().description;
+			String branchesInChunk = structure.ObjectsToSpawnInfo.get(playerChunk);
+			if(branchesInChunk != null && branchesInChunk.length() > 0)
 			{
-	    		if(entry.getValue() != null)
-	    		{
-	    			structureInfo += "-- BO3 Info -- \r\nName: " + ((BO3)entry.getValue().Start.getObject()).getSettings().getName().replace("Start", "") + "\r\nAuthor: " + ((BO3)entry.getValue().Start.getObject()).getSettings().author + "\r\nDescription: " + ((BO3)entry.getValue().Start.getObject()).getSettings().description;
-	    			String branchesInChunk = entry.getValue().ObjectsToSpawnInfo.get(entry.getKey());
-	    			if(branchesInChunk != null && branchesInChunk.length() > 0)
-	    			{
-	    				structureInfo += "\r\n" + branchesInChunk;
-	    			}
-	    		}
+				structureInfo += "\r\n" + branchesInChunk;
 			}
-    	}
+		}
     	return structureInfo;
     }
     
@@ -66,26 +59,18 @@ public abstract class WorldSession
     	boolean bFound = false;
     	if(world.IsInsideWorldBorder(chunkCoord, true))
     	{
-	    	for(Entry<ChunkCoordinate, CustomObjectStructure> entry : world.getStructureCache().worldInfoChunks.entrySet())
+	    	if(world.getStructureCache().worldInfoChunks.containsKey(chunkCoord))
 	    	{
-				if(chunkCoord.equals(entry.getKey()))
-				{
-		    		if(entry.getValue() != null)
-		    		{
-		    			for(ModDataFunction modData : entry.getValue().modData)
-		    			{
-		    				if(ChunkCoordinate.fromBlockCoords(modData.x, modData.z).equals(chunkCoord)) // modData for all branches of the structure is stored, make sure the modData is in this chunk
-		    				{
-			    				if(!result.containsKey(modData.modId))
-			    				{
-			    					result.put(modData.modId, new ArrayList<ModDataFunction>());
-			    				}
-		    					result.get(modData.modId).add(modData);
-		    				}
-		    			}   				
-		    		}
-		    		bFound = true;
-				}
+	    		// Indexed per chunk, so only modData inside this chunk is returned
+	    		for(ModDataFunction modData : world.getStructureCache().GetModDataInChunk(chunkCoord))
+	    		{
+	    			if(!result.containsKey(modData.modId))
+	    			{
+	    				result.put(modData.modId, new ArrayList<ModDataFunction>());
+	    			}
+	    			result.get(modData.modId).add(modData);
+	    		}
+	    		bFound = true;
 	    	}
 	    	if(!bFound)
 	    	{	    		
@@ -104,22 +89,11 @@ public abstract class WorldSession
     	boolean bFound = false;
     	if(world.IsInsideWorldBorder(chunkCoord, true))
     	{
-	    	for(Entry<ChunkCoordinate, CustomObjectStructure> entry : world.getStructureCache().worldInfoChunks.entrySet())
+	    	if(world.getStructureCache().worldInfoChunks.containsKey(chunkCoord))
 	    	{
-				if(chunkCoord.equals(entry.getKey()))
-				{
-		    		if(entry.getValue() != null)
-		    		{
-		    			for(SpawnerFunction spawnerData : entry.getValue().spawnerData)
-		    			{
-		    				if(ChunkCoordinate.fromBlockCoords(spawnerData.x, spawnerData.z).equals(chunkCoord)) // spawnerData for all branches of the structure is stored, make sure the modData is in this chunk
-		    				{
-		    					result.add(spawnerData);
-		    				}
-		    			}   				
-		    		}
-		    		bFound = true;
-				}
+	    		// Indexed per chunk, so only spawners inside this chunk are returned
+	    		result.addAll(world.getStructureCache().GetSpawnersInChunk(chunkCoord));
+	    		bFound = true;
 	    	}
 	    	if(!bFound)
 	    	{	    		
@@ -138,22 +112,11 @@ public abstract class WorldSession
     	boolean bFound = false;
     	if(world.IsInsideWorldBorder(chunkCoord, true))
     	{
-	    	for(Entry<ChunkCoordinate, CustomObjectStructure> entry : world.getStructureCache().worldInfoChunks.entrySet())
+	    	if(world.getStructureCache().worldInfoChunks.containsKey(chunkCoord))
 	    	{
-				if(chunkCoord.equals(entry.getKey()))
-				{
-		    		if(entry.getValue() != null)
-		    		{
-		    			for(ParticleFunction particleData : entry.getValue().particleData)
-		    			{
-		    				if(ChunkCoordinate.fromBlockCoords(particleData.x, particleData.z).equals(chunkCoord)) // paticleData for all branches of the structure is stored, make sure the modData is in this chunk
-		    				{
-		    					result.add(particleData);
-		    				}
-		    			}   				
-		    		}
-		    		bFound = true;
-				}
+	    		// Indexed per chunk, so only particles inside this chunk are returned
+	    		result.addAll(world.getStructureCache().GetParticlesInChunk(chunkCoord));
+	    		bFound = true;
 	    	}
 	    	if(!bFound)
 	    	{	    		
@@ -170,11 +133,7 @@ public abstract class WorldSession
     {
     	if(world.IsInsideWorldBorder(chunkCoord, true))
     	{
-    		CustomObjectStructure customObject = world.getStructureCache().worldInfoChunks.get(chunkCoord);    		
-    		if(customObject != null && customObject.particleData.contains(particle))
-    		{
-    			customObject.particleData.remove(particle);
-    		}
+    		world.getStructureCache().RemoveParticle(chunkCoord, particle);
     	}
     }
 }
\ No newline at end of file
@@ -14,6 +14,10 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * This class searches for the appropriate file for each biome.
@@ -225,15 +229,26 @@ public final class BiomeConfigFinder
         }
 
         // Search all directories
+        List<BiomeFile> biomeFiles = new ArrayList<BiomeFile>();
         for (File directory : directories)
         {
             // Account for the possibility that folder creation failed
             if (directory.exists())
             {
-                loadBiomesFromDirectory(biomeConfigsStore, directory, remainingBiomes);
+                findBiomesInDirectory(biomeFiles, directory, remainingBiomes);
             }
         }
 
+        // Read all found files in parallel
+        List<Future<SettingsMap>> readSettings = ForkJoinPool.commonPool().invokeAll(biomeFiles);
+        for (int i = 0; i < biomeFiles.size(); i++)
+        {
+            BiomeFile biomeFile = biomeFiles.get(i);
+            SettingsMap settings = getResult(readSettings.get(i));
+            BiomeConfigStub biomeConfigStub = new BiomeConfigStub(settings, biomeFile.file, biomeFile.biome);
+            biomeConfigsStore.put(biomeFile.biome.getBiomeName(), biomeConfigStub);
+        }
+
         // Create all biomes that weren't loaded
         File preferredDirectory = directories.iterator().next();
         for (BiomeLoadInstruction localBiome : remainingBiomes.values())
@@ -248,22 +263,39 @@ public final class BiomeConfigFinder
         return biomeConfigsStore;
     }
 
+    private static SettingsMap getResult(Future<SettingsMap> readSettings)
+    {
+        try
+        {
+            return readSettings.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     /**
-     * Loads the biomes from the given directory.
+     * Finds the files of the biomes in the given directory.
      * 
-     * @param biomeConfigsStore Map to store all the found biome configs in.
-     * @param directory         The directory to load from.
-     * @param remainingBiomes   The biomes that should still be loaded. When a
-     *                          biome is found, it is removed from this map.
+     * @param biomeFiles      List to add all the found biome files to.
+     * @param directory       The directory to search in.
+     * @param remainingBiomes The biomes that should still be loaded. When a
+     *                        biome is found, it is removed from this map.
      */
-    private void loadBiomesFromDirectory(Map<String, BiomeConfigStub> biomeConfigsStore, File directory, Map<String, BiomeLoadInstruction> remainingBiomes)
+    private void findBiomesInDirectory(List<BiomeFile> biomeFiles, File directory, Map<String, BiomeLoadInstruction> remainingBiomes)
     {
         for (File file : directory.listFiles())
         {
             // Search recursively
             if (file.isDirectory())
             {
-                loadBiomesFromDirectory(biomeConfigsStore, file, remainingBiomes);
+                findBiomesInDirectory(biomeFiles, file, remainingBiomes);
                 continue;
             }
 
@@ -285,15 +317,36 @@ public final class BiomeConfigFinder
                 continue;
             }
 
-            // Load biome and remove it from the todo list
+            // Remember biome and remove it from the todo list
             File renamedFile = renameBiomeFile(file, biome);
-            SettingsMap settings = FileSettingsReader.read(biomeName, renamedFile);
-            BiomeConfigStub biomeConfigStub = new BiomeConfigStub(settings, file, biome);
-            biomeConfigsStore.put(biomeName, biomeConfigStub);
+            biomeFiles.add(new BiomeFile(biome, file, renamedFile));
             remainingBiomes.remove(biome.getBiomeName());
         }
     }
 
+    /**
+     * A biome file that was found, reads the settings in it when called.
+     */
+    private static final class BiomeFile implements Callable<SettingsMap>
+    {
+        private final BiomeLoadInstruction biome;
+        private final File file;
+        private final File renamedFile;
+
+        private BiomeFile(BiomeLoadInstruction biome, File file, File renamedFile)
+        {
+            this.biome = biome;
+            this.file = file;
+            this.renamedFile = renamedFile;
+        }
+
+        @Override
+        public SettingsMap call()
+        {
+            return FileSettingsReader.read(this.biome.getBiomeName(), this.renamedFile);
+        }
+    }
+
     /**
      * Tries to rename the config file so that it has the correct extension.
      * Does nothing if the config file already has the correct extension. If
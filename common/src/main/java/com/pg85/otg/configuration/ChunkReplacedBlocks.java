@@ -0,0 +1,162 @@
+package com.pg85.otg.configuration;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.pg85.otg.LocalMaterialData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link ReplacedBlocksMatrix ReplacedBlocks} settings of every column of
+ * a chunk. The biome of every column only has to be looked up once, after
+ * which whole chunk sections can be checked at once, so that sections that
+ * don't contain any replaced block can be skipped.
+ */
+public final class ChunkReplacedBlocks
+{
+    // Compiled instructions of every column, or null if the biome of the
+    // column doesn't replace blocks
+    private final LocalMaterialData[][][] columns = new LocalMaterialData[CHUNK_X_SIZE * CHUNK_Z_SIZE][][];
+    // All different compiled instructions in the chunk, usually only a few
+    private final List<LocalMaterialData[][]> distinctInstructions = new ArrayList<LocalMaterialData[][]>();
+    private int columnsWithoutReplaceSettings = CHUNK_X_SIZE * CHUNK_Z_SIZE;
+
+    /**
+     * Sets the ReplacedBlocks settings of a column.
+     * @param x              Block x in the chunk, from 0 to 15.
+     * @param z              Block z in the chunk, from 0 to 15.
+     * @param replacedBlocks The settings of the biome of the column, or null
+     *                       if the biome is unknown.
+     */
+    public void setColumn(int x, int z, ReplacedBlocksMatrix replacedBlocks)
+    {
+        if (replacedBlocks == null || !replacedBlocks.hasReplaceSettings())
+        {
+            return;
+        }
+
+        LocalMaterialData[][] instructions = replacedBlocks.compiledInstructions;
+        int column = x + z * CHUNK_X_SIZE;
+        if (this.columns[column] == null)
+        {
+            this.columnsWithoutReplaceSettings--;
+        }
+        this.columns[column] = instructions;
+        if (!this.distinctInstructions.contains(instructions))
+        {
+            this.distinctInstructions.add(instructions);
+        }
+    }
+
+    /**
+     * Gets whether any column of the chunk replaces blocks.
+     * @return True if any column replaces blocks, false otherwise.
+     */
+    public boolean hasReplaceSettings()
+    {
+        return !this.distinctInstructions.isEmpty();
+    }
+
+    /**
+     * Gets whether the given block is replaced anywhere in the chunk between
+     * the given heights. Used to skip chunk sections of which none of the
+     * blocks are replaced.
+     * @param blockId The block id.
+     * @param minY    Minimum y, inclusive.
+     * @param maxY    Maximum y, inclusive.
+     * @return True if the block is replaced in at least one place.
+     */
+    public boolean isReplaced(int blockId, int minY, int maxY)
+    {
+        for (LocalMaterialData[][] instructions : this.distinctInstructions)
+        {
+            LocalMaterialData[] replaceTo = instructions[blockId];
+            if (replaceTo == null)
+            {
+                continue;
+            }
+            for (int y = minY; y <= maxY && y < replaceTo.length; y++)
+            {
+                if (replaceTo[y] != null && replaceTo[y].getBlockId() != blockId)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the block that the given block is replaced with in every column
+     * of the chunk between the given heights. If this returns a block, all
+     * blocks of the given kind in a chunk section can be replaced by changing
+     * the palette of the section.
+     * @param blockId The block id.
+     * @param minY    Minimum y, inclusive.
+     * @param maxY    Maximum y, inclusive.
+     * @return The block, or null if the block isn't replaced everywhere, or
+     * not everywhere by the same block.
+     */
+    public LocalMaterialData getUniformReplacement(int blockId, int minY, int maxY)
+    {
+        if (this.columnsWithoutReplaceSettings > 0)
+        {
+            return null;
+        }
+
+        LocalMaterialData uniformReplaceTo = null;
+        for (LocalMaterialData[][] instructions : this.distinctInstructions)
+        {
+            LocalMaterialData[] replaceTo = instructions[blockId];
+            if (replaceTo == null || maxY >= replaceTo.length)
+            {
+                return null;
+            }
+            for (int y = minY; y <= maxY; y++)
+            {
+                if (replaceTo[y] == null || replaceTo[y].getBlockId() == blockId)
+                {
+                    return null;
+                }
+                if (uniformReplaceTo == null)
+                {
+                    uniformReplaceTo = replaceTo[y];
+                } else if (!uniformReplaceTo.equals(replaceTo[y]))
+                {
+                    return null;
+                }
+            }
+        }
+        return uniformReplaceTo;
+    }
+
+    /**
+     * Gets the block that a single block is replaced with.
+     * @param x       Block x in the chunk, from 0 to 15.
+     * @param z       Block z in the chunk, from 0 to 15.
+     * @param blockId Id of the block.
+     * @param y       Block y.
+     * @return The block to replace with, or null if the block must not be
+     * replaced.
+     */
+    public LocalMaterialData getReplacement(int x, int z, int blockId, int y)
+    {
+        LocalMaterialData[][] instructions = this.columns[x + z * CHUNK_X_SIZE];
+        if (instructions == null)
+        {
+            return null;
+        }
+        LocalMaterialData[] replaceTo = instructions[blockId];
+        if (replaceTo == null || y >= replaceTo.length)
+        {
+            return null;
+        }
+        if (replaceTo[y] == null || replaceTo[y].getBlockId() == blockId)
+        {
+            return null;
+        }
+        return replaceTo[y];
+    }
+}
@@ -0,0 +1,126 @@
+package com.pg85.otg.configuration;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.logging.LogMarker;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache on the client of the contents of {@link ConfigSyncPayload}s, stored
+ * on disk with one file per hash, so that the contents don't have to be sent
+ * again the next time the client connects.
+ */
+public final class ConfigSyncCache
+{
+    private final File directory;
+    private final Map<String, byte[]> loaded = new HashMap<String, byte[]>();
+
+    /**
+     * Creates a new cache.
+     * @param directory The directory of the cache files.
+     */
+    public ConfigSyncCache(File directory)
+    {
+        this.directory = directory;
+    }
+
+    private File getFile(String hash)
+    {
+        return new File(this.directory, hash + ".bin");
+    }
+
+    /**
+     * Gets the contents with the given hash.
+     * @param hash The hash.
+     * @return The contents, or null if they aren't cached.
+     */
+    public synchronized byte[] get(String hash)
+    {
+        byte[] content = this.loaded.get(hash);
+        if (content != null)
+        {
+            return content;
+        }
+
+        File file = getFile(hash);
+        if (!file.exists())
+        {
+            return null;
+        }
+        try
+        {
+            content = new byte[(int) file.length()];
+            DataInputStream stream = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                stream.readFully(content);
+            } finally {
+                stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            OTG.log(LogMarker.WARN, "Could not read cached config " + file);
+            return null;
+        }
+        if (!hash.equals(ConfigSyncPayload.getHash(content)))
+        {
+            // Damaged file, will be replaced when the contents are received
+            return null;
+        }
+        this.loaded.put(hash, content);
+        return content;
+    }
+
+    /**
+     * Adds contents to the cache.
+     * @param hash    The hash of the contents.
+     * @param content The contents.
+     */
+    public synchronized void put(String hash, byte[] content)
+    {
+        this.loaded.put(hash, content);
+
+        File file = getFile(hash);
+        if (file.exists() && file.length() == content.length)
+        {
+            // Already cached, file names are hashes of the contents
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream writer = null;
+        try
+        {
+            this.directory.mkdirs();
+            writer = new FileOutputStream(tempFile);
+            writer.write(content);
+            writer.close();
+            writer = null;
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            OTG.log(LogMarker.WARN, "Could not write cached config " + file);
+        }
+        finally
+        {
+            try
+            {
+                if (writer != null)
+                {
+                    writer.close();
+                }
+            } catch (Exception e) { }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.pg85.otg.configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Content addressed form of the configs sent to the client. Large parts of
+ * the stream, like biome configs, are replaced by the hash of their contents
+ * in the manifest, so that the client only needs to receive the contents it
+ * hasn't cached yet. The client turns the manifest and the contents back into
+ * the stream written by
+ * {@link ConfigToNetworkSender#writeConfigsToStream(ConfigProvider, DataOutput, boolean)}.
+ */
+public final class ConfigSyncPayload
+{
+    private static final byte SEGMENT_END = 0;
+    private static final byte SEGMENT_BYTES = 1;
+    private static final byte SEGMENT_CONTENT = 2;
+    private static final int HASH_LENGTH = 20;
+
+    private final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+    private final DataOutputStream manifestStream = new DataOutputStream(this.manifest);
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream stream = new DataOutputStream(this.bytes);
+    private final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+    private int uncompressedSize;
+
+    /**
+     * Gets the stream to write the parts of the configs to that are always
+     * sent.
+     * @return The stream.
+     */
+    public DataOutput getStream()
+    {
+        return this.stream;
+    }
+
+    /**
+     * Adds contents that are sent as a hash, at the current position of the
+     * stream. Contents that aren't larger than a hash are written to the
+     * stream instead.
+     * @param content The contents.
+     * @throws IOException If an IO error occurs.
+     */
+    public void writeContent(byte[] content) throws IOException
+    {
+        if (content.length <= HASH_LENGTH)
+        {
+            this.stream.write(content);
+            return;
+        }
+        writeBytesSegment();
+        String hash = getHash(content);
+        this.manifestStream.writeByte(SEGMENT_CONTENT);
+        writeHash(this.manifestStream, hash);
+        this.contents.put(hash, content);
+        this.uncompressedSize += content.length;
+    }
+
+    private void writeBytesSegment() throws IOException
+    {
+        if (this.bytes.size() == 0)
+        {
+            return;
+        }
+        this.manifestStream.writeByte(SEGMENT_BYTES);
+        this.manifestStream.writeInt(this.bytes.size());
+        this.bytes.writeTo(this.manifestStream);
+        this.uncompressedSize += this.bytes.size();
+        this.bytes.reset();
+    }
+
+    /**
+     * Finishes the manifest. Nothing may be written after this.
+     * @return The manifest.
+     * @throws IOException If an IO error occurs.
+     */
+    public byte[] getManifest() throws IOException
+    {
+        writeBytesSegment();
+        this.manifestStream.writeByte(SEGMENT_END);
+        return this.manifest.toByteArray();
+    }
+
+    /**
+     * Gets the contents that are referenced by the manifest.
+     * @return Hash => contents.
+     */
+    public Map<String, byte[]> getContents()
+    {
+        return this.contents;
+    }
+
+    /**
+     * Gets the size of the stream the manifest and contents stand for.
+     * @return The size in bytes.
+     */
+    public int getUncompressedSize()
+    {
+        return this.uncompressedSize + this.bytes.size();
+    }
+
+    /**
+     * Gets the hashes of all contents referenced by a manifest.
+     * @param manifest The manifest.
+     * @return The hashes, in order.
+     * @throws IOException If the manifest is invalid.
+     */
+    public static Set<String> getReferences(byte[] manifest) throws IOException
+    {
+        Set<String> references = new LinkedHashSet<String>();
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(manifest));
+        for (byte type = stream.readByte(); type != SEGMENT_END; type = stream.readByte())
+        {
+            if (type == SEGMENT_BYTES)
+            {
+                stream.skipBytes(stream.readInt());
+            } else if (type == SEGMENT_CONTENT)
+            {
+                references.add(readHash(stream));
+            } else {
+                throw new IOException("Invalid segment type " + type);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Turns a manifest back into the stream it was created from.
+     * @param manifest The manifest.
+     * @param contents Hash => contents, must contain all contents referenced
+     *                 by the manifest.
+     * @return The stream.
+     * @throws IOException If the manifest is invalid or contents are missing.
+     */
+    public static byte[] resolve(byte[] manifest, Map<String, byte[]> contents) throws IOException
+    {
+        ByteArrayOutputStream resolved = new ByteArrayOutputStream(manifest.length);
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(manifest));
+        for (byte type = stream.readByte(); type != SEGMENT_END; type = stream.readByte())
+        {
+            if (type == SEGMENT_BYTES)
+            {
+                byte[] segment = new byte[stream.readInt()];
+                stream.readFully(segment);
+                resolved.write(segment);
+            } else if (type == SEGMENT_CONTENT)
+            {
+                String hash = readHash(stream);
+                byte[] content = contents.get(hash);
+                if (content == null)
+                {
+                    throw new IOException("Missing content " + hash);
+                }
+                resolved.write(content);
+            } else {
+                throw new IOException("Invalid segment type " + type);
+            }
+        }
+        return resolved.toByteArray();
+    }
+
+    /**
+     * Writes contents, so that they can be sent to a client that requested
+     * them.
+     * @param contents Hash => contents.
+     * @return The written contents.
+     * @throws IOException If an IO error occurs.
+     */
+    public static byte[] writeContents(Map<String, byte[]> contents) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        stream.writeInt(contents.size());
+        for (Map.Entry<String, byte[]> content : contents.entrySet())
+        {
+            stream.writeUTF(content.getKey());
+            stream.writeInt(content.getValue().length);
+            stream.write(content.getValue());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads contents written by {@link #writeContents(Map)}. Contents that
+     * don't match their hash are skipped.
+     * @param bytes The written contents.
+     * @return Hash => contents.
+     * @throws IOException If the contents are invalid.
+     */
+    public static Map<String, byte[]> readContents(byte[] bytes) throws IOException
+    {
+        Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = stream.readInt();
+        while (count-- > 0)
+        {
+            String hash = stream.readUTF();
+            byte[] content = new byte[stream.readInt()];
+            stream.readFully(content);
+            if (hash.equals(getHash(content)))
+            {
+                contents.put(hash, content);
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Gets the hash that identifies the given contents.
+     * @param content The contents.
+     * @return The SHA-1 hash as a hexadecimal string.
+     */
+    public static String getHash(byte[] content)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform must support SHA-1
+            throw new RuntimeException(e);
+        }
+        return toHex(digest.digest(content));
+    }
+
+    private static void writeHash(DataOutputStream stream, String hash) throws IOException
+    {
+        for (int i = 0; i < HASH_LENGTH; i++)
+        {
+            stream.writeByte(Integer.parseInt(hash.substring(i * 2, i * 2 + 2), 16));
+        }
+    }
+
+    private static String readHash(DataInputStream stream) throws IOException
+    {
+        byte[] hash = new byte[HASH_LENGTH];
+        stream.readFully(hash);
+        return toHex(hash);
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Compresses bytes using deflate.
+     * @param bytes The bytes.
+     * @return The compressed bytes.
+     */
+    public static byte[] compress(byte[] bytes)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try
+        {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished())
+            {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses bytes compressed by {@link #compress(byte[])}.
+     * @param bytes The compressed bytes.
+     * @return The bytes.
+     * @throws IOException If the bytes are not valid compressed data.
+     */
+    public static byte[] decompress(byte[] bytes) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished())
+            {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new IOException("Truncated compressed data");
+                }
+                decompressed.write(buffer, 0, length);
+            }
+            return decompressed.toByteArray();
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
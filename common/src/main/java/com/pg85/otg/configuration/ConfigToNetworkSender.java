@@ -2,7 +2,9 @@ package com.pg85.otg.configuration;
 
 import com.pg85.otg.LocalBiome;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,6 +28,24 @@ public final class ConfigToNetworkSender
      * @throws IOException If an IO error occurs.
      */
     public static void writeConfigsToStream(ConfigProvider configProvider, DataOutput stream, boolean isSinglePlayer) throws IOException
+    {
+        writeConfigs(configProvider, stream, null, isSinglePlayer);
+    }
+
+    /**
+     * Sends the relevant settings in the {@link ConfigProvider} to the given
+     * payload. Every biome config is added as separate contents, so that
+     * clients that already have it don't need to receive it again.
+     * @param configProvider All the settings of a world.
+     * @param payload        Payload to write to.
+     * @throws IOException If an IO error occurs.
+     */
+    public static void writeConfigsToPayload(ConfigProvider configProvider, ConfigSyncPayload payload, boolean isSinglePlayer) throws IOException
+    {
+        writeConfigs(configProvider, payload.getStream(), payload, isSinglePlayer);
+    }
+
+    private static void writeConfigs(ConfigProvider configProvider, DataOutput stream, ConfigSyncPayload payload, boolean isSinglePlayer) throws IOException
     {
         WorldConfig worldConfig = configProvider.getWorldConfig();
         LocalBiome[] biomes = configProvider.getBiomeArray();
@@ -140,7 +160,14 @@ public final class ConfigToNetworkSender
             	throw new RuntimeException("Whatever it is you're trying to do, we didn't write any code for it (sorry). Please contact Team OTG about this crash.");
             }
             stream.writeInt(biome.getIds().getSavedId());
-            biome.getBiomeConfig().writeToStream(stream, isSinglePlayer);
+            if (payload == null)
+            {
+                biome.getBiomeConfig().writeToStream(stream, isSinglePlayer);
+            } else {
+                ByteArrayOutputStream biomeBytes = new ByteArrayOutputStream();
+                biome.getBiomeConfig().writeToStream(new DataOutputStream(biomeBytes), isSinglePlayer);
+                payload.writeContent(biomeBytes.toByteArray());
+            }
         }
     }
 }
@@ -5,6 +5,7 @@ import com.pg85.otg.LocalBiome;
 import com.pg85.otg.LocalWorld;
 import com.pg85.otg.OTG;
 import com.pg85.otg.configuration.BiomeConfigFinder.BiomeConfigStub;
+import com.pg85.otg.configuration.io.AsyncFileSettingsWriter;
 import com.pg85.otg.configuration.io.FileSettingsReader;
 import com.pg85.otg.configuration.io.FileSettingsWriter;
 import com.pg85.otg.configuration.io.SettingsMap;
@@ -75,6 +76,9 @@ public final class ServerConfigProvider implements ConfigProvider
      */
     private void loadSettings()
     {
+        // Biome files of an earlier load may still be being written
+        AsyncFileSettingsWriter.awaitWrites();
+
         SettingsMap worldConfigSettings = loadWorldConfig();
         loadBiomes(worldConfigSettings);
 
@@ -125,16 +129,36 @@ public final class ServerConfigProvider implements ConfigProvider
         }
 
         // Load all files
+        long startTime = System.currentTimeMillis();
         BiomeConfigFinder biomeConfigFinder = new BiomeConfigFinder(worldConfig, OTG.getPluginConfig().biomeConfigExtension);
         Map<String, BiomeConfigStub> biomeConfigStubs = biomeConfigFinder.findBiomes(biomeDirs, biomesToLoad);
+        long parseTime = System.currentTimeMillis();
+
+        // Inheritance, parents are always processed before their children.
+        // Sorted so that warnings and vanilla mob merging happen in the same
+        // order every time.
+        Collection<BiomeConfigStub> sortedStubs = new TreeMap<String, BiomeConfigStub>(biomeConfigStubs).values();
+        for (BiomeConfigStub biomeConfigStub : sortedStubs)
+        {
+            processInheritance(biomeConfigStubs, biomeConfigStub, 0);
+        }
+        for (BiomeConfigStub biomeConfigStub : sortedStubs)
+        {
+            processMobInheritance(biomeConfigStubs, biomeConfigStub, 0);
+        }
+        long inheritanceTime = System.currentTimeMillis();
 
         // Read all settings
-        Map<String, BiomeConfig> loadedBiomes = readAndWriteSettings(worldConfigSettings, biomeConfigStubs);
+        Map<String, BiomeConfig> loadedBiomes = readAndWriteSettings(worldConfigSettings, sortedStubs);
+        long settingsTime = System.currentTimeMillis();
 
         // Index all necessary settings
         String loadedBiomeNames = indexSettings(loadedBiomes);
+        long indexTime = System.currentTimeMillis();
 
         OTG.log(LogMarker.INFO, "{} biomes Loaded", biomesCount);
+        OTG.log(LogMarker.INFO, "Loaded biome configs in {} ms (reading files {} ms, inheritance {} ms, settings {} ms, indexing {} ms)",
+                indexTime - startTime, parseTime - startTime, inheritanceTime - parseTime, settingsTime - inheritanceTime, indexTime - settingsTime);
         OTG.log(LogMarker.TRACE, "{}", loadedBiomeNames);
     }
 
@@ -165,19 +189,16 @@ public final class ServerConfigProvider implements ConfigProvider
         loadSettings();
     }
 
-    private Map<String, BiomeConfig> readAndWriteSettings(SettingsMap worldConfigSettings, Map<String, BiomeConfigStub> biomeConfigStubs)
+    private Map<String, BiomeConfig> readAndWriteSettings(SettingsMap worldConfigSettings, Collection<BiomeConfigStub> biomeConfigStubs)
     {
         Map<String, BiomeConfig> loadedBiomes = new HashMap<String, BiomeConfig>();
+        Map<File, SettingsMap> biomeFiles = new LinkedHashMap<File, SettingsMap>();
 
-        for (BiomeConfigStub biomeConfigStub : biomeConfigStubs.values())
+        for (BiomeConfigStub biomeConfigStub : biomeConfigStubs)
         {
             // Allow to let world settings influence biome settings
             //biomeConfigStub.getSettings().setFallback(worldConfigSettings); // TODO: Make sure this can be removed safely
 
-            // Inheritance
-            processInheritance(biomeConfigStubs, biomeConfigStub, 0);
-            processMobInheritance(biomeConfigStubs, biomeConfigStub, 0);
-
             // Settings reading
             BiomeConfig biomeConfig = new BiomeConfig(biomeConfigStub.getLoadInstructions(), biomeConfigStub, biomeConfigStub.getSettings(), worldConfig);
             loadedBiomes.put(biomeConfigStub.getBiomeName(), biomeConfig);
@@ -188,9 +209,12 @@ public final class ServerConfigProvider implements ConfigProvider
             {
                 writeFile = new File(writeFile.getAbsolutePath() + ".inherited");
             }
-            FileSettingsWriter.writeToFile(biomeConfig.getSettingsAsMap(), writeFile, worldConfig.SettingsMode);
+            biomeFiles.put(writeFile, biomeConfig.getSettingsAsMap());
         }
 
+        // Only files that changed are written, in the background
+        AsyncFileSettingsWriter.writeToFiles(biomeFiles, worldConfig.SettingsMode);
+
         return loadedBiomes;
     }
 
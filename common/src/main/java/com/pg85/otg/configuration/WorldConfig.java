@@ -189,6 +189,9 @@ public class WorldConfig extends ConfigFile
 
     public double fractureHorizontal;
     public double fractureVertical;
+    public boolean cacheTerrainNoise;
+    public boolean batchedTerrainNoise;
+    public boolean fastHeightQueries;
 
     public boolean disableBedrock;
     public boolean flatBedrock;
@@ -626,6 +629,9 @@ public class WorldConfig extends ConfigFile
         // Fracture
         this.fractureHorizontal = reader.getSetting(WorldStandardValues.FRACTURE_HORIZONTAL);
         this.fractureVertical = reader.getSetting(WorldStandardValues.FRACTURE_VERTICAL);
+        this.cacheTerrainNoise = reader.getSetting(WorldStandardValues.CACHE_TERRAIN_NOISE);
+        this.batchedTerrainNoise = reader.getSetting(WorldStandardValues.BATCHED_TERRAIN_NOISE);
+        this.fastHeightQueries = reader.getSetting(WorldStandardValues.FAST_HEIGHT_QUERIES);
 
         // Bedrock
         this.disableBedrock = reader.getSetting(WorldStandardValues.DISABLE_BEDROCK);
@@ -1012,6 +1018,23 @@ public class WorldConfig extends ConfigFile
                 "Can increase (values greater than 0) or decrease (values less than 0) how much the landscape is fractured vertically.",
                 "Positive values will lead to large cliffs/overhangs, floating islands, and/or a cavern world depending on other settings.");
 
+        writer.putSetting(WorldStandardValues.CACHE_TERRAIN_NOISE, this.cacheTerrainNoise,
+                "Set this to true to share terrain noise between neighbouring chunks, which makes",
+                "generating large areas (for example with the pregenerator) faster. The noise on the",
+                "edges of chunks is then calculated slightly differently, so existing worlds may get",
+                "small differences in terrain shape at chunk borders. Best used for new worlds.");
+
+        writer.putSetting(WorldStandardValues.BATCHED_TERRAIN_NOISE, this.batchedTerrainNoise,
+                "Set this to true to use an alternative implementation of the terrain noise that",
+                "calculates all noise octaves in batches. It produces exactly the same terrain,",
+                "but is faster on most machines.");
+
+        writer.putSetting(WorldStandardValues.FAST_HEIGHT_QUERIES, this.fastHeightQueries,
+                "Set this to true to look up heights and surface blocks in chunks that haven't been",
+                "generated yet (done when plotting structures) without generating caves and ravines",
+                "for those chunks. This is a lot faster, but structures may be placed slightly",
+                "differently where a cave or ravine reaches the surface. Best used for new worlds.");
+
         // Blocks
         writer.bigTitle("Blocks");
 
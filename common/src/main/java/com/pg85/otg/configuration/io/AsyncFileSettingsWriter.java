@@ -0,0 +1,153 @@
+package com.pg85.otg.configuration.io;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.configuration.WorldConfig.ConfigMode;
+import com.pg85.otg.logging.LogMarker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes settings maps to files on a background thread, like
+ * {@link FileSettingsWriter}. Files that already have the same contents are
+ * not written again, so that their modification time doesn't change.
+ * Writes are done one batch at a time, in the order they were submitted.
+ */
+public final class AsyncFileSettingsWriter
+{
+    private static ExecutorService executor;
+    private static Future<?> lastWrite;
+
+    private AsyncFileSettingsWriter()
+    {
+    }
+
+    /**
+     * Writes the given settings maps on the background thread. The settings
+     * maps must not be changed afterwards.
+     *
+     * @param configs    File => configuration to write to it.
+     * @param configMode The configuration mode. If this is set to
+     * WriteDisable, this method does nothing.
+     */
+    public static synchronized void writeToFiles(Map<File, SettingsMap> configs, ConfigMode configMode)
+    {
+        if (configMode == ConfigMode.WriteDisable || configs.isEmpty())
+        {
+            return;
+        }
+
+        final Map<File, SettingsMap> files = new LinkedHashMap<File, SettingsMap>(configs);
+        final boolean writeComments = configMode != ConfigMode.WriteWithoutComments;
+        lastWrite = getExecutor().submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long startTime = System.currentTimeMillis();
+                int written = 0;
+                for (Map.Entry<File, SettingsMap> file : files.entrySet())
+                {
+                    try
+                    {
+                        byte[] contents = FileSettingsWriter.writeToString(file.getValue(), writeComments).getBytes();
+                        if (!ParsedSettingsCache.isUnchanged(file.getKey(), contents))
+                        {
+                            writeFile(file.getKey(), contents);
+                            ParsedSettingsCache.onWritten(file.getKey(), contents);
+                            written++;
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        FileSettingsWriter.logIOError(e, file.getKey());
+                    }
+                }
+                OTG.log(LogMarker.DEBUG, "Wrote {} of {} config files in {} ms", written, files.size(), System.currentTimeMillis() - startTime);
+            }
+        });
+    }
+
+    /**
+     * Blocks until all submitted files have been written.
+     */
+    public static void awaitWrites()
+    {
+        Future<?> write;
+        synchronized (AsyncFileSettingsWriter.class)
+        {
+            write = lastWrite;
+        }
+        if (write == null)
+        {
+            return;
+        }
+        try
+        {
+            write.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            OTG.log(LogMarker.ERROR, "Could not write config files");
+            OTG.printStackTrace(LogMarker.ERROR, e.getCause());
+        }
+    }
+
+    private static ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "OTG config writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Writes a file by writing a temporary file first and moving it over the
+     * old file, so that the old file is kept if the game is stopped while
+     * writing.
+     */
+    private static void writeFile(File file, byte[] contents) throws IOException
+    {
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create directory '" + directory + "'");
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream writer = new FileOutputStream(tempFile);
+        try
+        {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
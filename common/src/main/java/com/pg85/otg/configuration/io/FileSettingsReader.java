@@ -6,8 +6,9 @@ import com.pg85.otg.logging.LogMarker;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A settings reader that reads from a file.
@@ -38,48 +39,20 @@ public class FileSettingsReader
      */
     public void readIntoMap(SettingsMap settings, BufferedReader fileContents) throws IOException
     {
-        int lineNumber = 0;
-        String thisLine;
-        while ((thisLine = fileContents.readLine()) != null)
-        {
-            lineNumber++;
-            if (thisLine.trim().isEmpty())
-            {
-                // Empty line, ignore
-            } else if (thisLine.startsWith("#") || thisLine.startsWith("<"))
-            {
-                // Comment, ignore
-            } else if (thisLine.contains(":") || thisLine.toLowerCase().contains("("))
-            {
-                // Setting or resource
-                if (thisLine.contains("(") && (!thisLine.contains(":") || thisLine.indexOf('(') < thisLine.indexOf(':')))
-                {
-                    // ( is first, so it's a resource
-                    String configFunction = thisLine.trim();
-                    settings.addRawSetting(RawSettingValue.create(ValueType.FUNCTION, configFunction).withLineNumber(lineNumber));
-                } else
-                {
-                    // : is first, so it's a setting
-                    settings.addRawSetting(RawSettingValue.create(ValueType.PLAIN_SETTING, thisLine.trim()).withLineNumber(lineNumber));
-                }
-            } else if (thisLine.contains("="))
-            {
-                // Setting (old style), split it and add it
-                String modifiedLine = thisLine.replaceFirst("=", ":").trim();
-                settings.addRawSetting(RawSettingValue.create(ValueType.PLAIN_SETTING, modifiedLine).withLineNumber(lineNumber));
-            }
-        }
+        List<ParsedSettingsCache.Line> lines = new ArrayList<ParsedSettingsCache.Line>();
+        LINE_PARSER.parse(fileContents, lines);
+        addLines(settings, lines);
     }
 
     /**
-     * Reads all settings in the file into the given settings map.
+     * Reads all settings in the file into the given settings map. Files that
+     * didn't change since they were last read are read from the
+     * {@link ParsedSettingsCache}.
      * @param settings The settings map.
      * @param file     The file.
      */
     public void readIntoMap(SettingsMap settings, File file)
     {
-        BufferedReader settingsReader = null;
-
         if (!file.exists())
         {
             return;
@@ -87,26 +60,60 @@ public class FileSettingsReader
 
         try
         {
-            settingsReader = new BufferedReader(new FileReader(file));
-            readIntoMap(settings, settingsReader);
+            addLines(settings, ParsedSettingsCache.getLines(file, "Settings", LINE_PARSER));
         } catch (IOException e)
         {
             OTG.printStackTrace(LogMarker.FATAL, e);
-        } finally
+        }
+    }
+
+    private void addLines(SettingsMap settings, List<ParsedSettingsCache.Line> lines)
+    {
+        for (ParsedSettingsCache.Line line : lines)
+        {
+            ValueType type = line.type == LINE_FUNCTION ? ValueType.FUNCTION : ValueType.PLAIN_SETTING;
+            settings.addRawSetting(RawSettingValue.create(type, line.value).withLineNumber(line.lineNumber));
+        }
+    }
+
+    private static final byte LINE_FUNCTION = 0;
+    private static final byte LINE_SETTING = 1;
+
+    private static final ParsedSettingsCache.LineParser LINE_PARSER = new ParsedSettingsCache.LineParser()
+    {
+        @Override
+        public void parse(BufferedReader fileContents, List<ParsedSettingsCache.Line> lines) throws IOException
         {
-            if (settingsReader != null)
+            int lineNumber = 0;
+            String thisLine;
+            while ((thisLine = fileContents.readLine()) != null)
             {
-                try
+                lineNumber++;
+                if (thisLine.trim().isEmpty())
+                {
+                    // Empty line, ignore
+                } else if (thisLine.startsWith("#") || thisLine.startsWith("<"))
                 {
-                    settingsReader.close();
-                } catch (IOException localIOException2)
+                    // Comment, ignore
+                } else if (thisLine.contains(":") || thisLine.toLowerCase().contains("("))
                 {
-                    OTG.printStackTrace(LogMarker.FATAL, localIOException2);
+                    // Setting or resource
+                    if (thisLine.contains("(") && (!thisLine.contains(":") || thisLine.indexOf('(') < thisLine.indexOf(':')))
+                    {
+                        // ( is first, so it's a resource
+                        lines.add(new ParsedSettingsCache.Line(LINE_FUNCTION, "", thisLine.trim(), lineNumber));
+                    } else
+                    {
+                        // : is first, so it's a setting
+                        lines.add(new ParsedSettingsCache.Line(LINE_SETTING, "", thisLine.trim(), lineNumber));
+                    }
+                } else if (thisLine.contains("="))
+                {
+                    // Setting (old style), split it and add it
+                    String modifiedLine = thisLine.replaceFirst("=", ":").trim();
+                    lines.add(new ParsedSettingsCache.Line(LINE_SETTING, "", modifiedLine, lineNumber));
                 }
             }
         }
-
-    }
-
-
+    };
 }
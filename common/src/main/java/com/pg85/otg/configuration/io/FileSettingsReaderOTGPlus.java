@@ -11,7 +11,6 @@ import com.pg85.otg.util.helpers.StringHelper;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
@@ -214,8 +213,6 @@ public class FileSettingsReaderOTGPlus implements SettingsReaderOTGPlus
 
     private void readSettings()
     {
-        BufferedReader settingsReader = null;
-
         if (!file.exists())
         {
             return;
@@ -223,7 +220,34 @@ public class FileSettingsReaderOTGPlus implements SettingsReaderOTGPlus
 
         try
         {
-            settingsReader = new BufferedReader(new FileReader(file));
+            for (ParsedSettingsCache.Line line : ParsedSettingsCache.getLines(file, "OTGPlus", LINE_PARSER))
+            {
+                if (line.type == LINE_FUNCTION)
+                {
+                    this.configFunctions.add(new StringOnLine(line.value, line.lineNumber));
+                } else
+                {
+                    this.settingsCache.put(line.key, new StringOnLine(line.value, line.lineNumber));
+                }
+            }
+        } catch (IOException e)
+        {
+            OTG.printStackTrace(LogMarker.FATAL, e);
+        }
+    }
+
+    private static final byte LINE_FUNCTION = 0;
+    private static final byte LINE_SETTING = 1;
+
+    /**
+     * Splits the lines of a file into settings, with their lower case name,
+     * and functions.
+     */
+    private static final ParsedSettingsCache.LineParser LINE_PARSER = new ParsedSettingsCache.LineParser()
+    {
+        @Override
+        public void parse(BufferedReader settingsReader, List<ParsedSettingsCache.Line> lines) throws IOException
+        {
             int lineNumber = 0;
             String thisLine;
             while ((thisLine = settingsReader.readLine()) != null)
@@ -241,50 +265,22 @@ public class FileSettingsReaderOTGPlus implements SettingsReaderOTGPlus
                     if (thisLine.contains("(") && (!thisLine.contains(":") || thisLine.indexOf('(') < thisLine.indexOf(':')))
                     {
                         // ( is first, so it's a resource
-                        this.configFunctions.add(new StringOnLine(thisLine.trim(), lineNumber));
+                        lines.add(new ParsedSettingsCache.Line(LINE_FUNCTION, "", thisLine.trim(), lineNumber));
                     } else
                     {
                         // : is first, so it's a setting
                         String[] splitSettings = thisLine.split(":", 2);
-                        this.settingsCache
-                                .put(splitSettings[0].trim().toLowerCase(), new StringOnLine(splitSettings[1].trim(), lineNumber));
+                        lines.add(new ParsedSettingsCache.Line(LINE_SETTING, splitSettings[0].trim().toLowerCase(), splitSettings[1].trim(), lineNumber));
                     }
                 } else if (thisLine.contains("="))
                 {
                     // Setting (old style), split it and add it
                     String[] splitSettings = thisLine.split("=", 2);
-                    this.settingsCache.put(splitSettings[0].trim().toLowerCase(), new StringOnLine(splitSettings[1].trim(), lineNumber));
-                }
-            }
-        } catch (IOException e)
-        {
-            OTG.printStackTrace(LogMarker.FATAL, e);
-
-            if (settingsReader != null)
-            {
-                try
-                {
-                    settingsReader.close();
-                } catch (IOException localIOException1)
-                {
-                    OTG.printStackTrace(LogMarker.FATAL, localIOException1);
-                }
-            }
-        } finally
-        {
-            if (settingsReader != null)
-            {
-                try
-                {
-                    settingsReader.close();
-                } catch (IOException localIOException2)
-                {
-                    OTG.printStackTrace(LogMarker.FATAL, localIOException2);
+                    lines.add(new ParsedSettingsCache.Line(LINE_SETTING, splitSettings[0].trim().toLowerCase(), splitSettings[1].trim(), lineNumber));
                 }
             }
         }
-
-    }
+    };
 
     @Override
     public void renameOldSetting(String oldValue, Setting<?> newValue)
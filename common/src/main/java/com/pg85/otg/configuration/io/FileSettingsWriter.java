@@ -8,6 +8,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Collection;
 
 /**
@@ -44,7 +45,29 @@ public final class FileSettingsWriter
         }
     }
 
-    private static void logIOError(IOException e, File file)
+    /**
+     * Writes the configuration settings to a string, in the same format as
+     * they are written to a file.
+     *
+     * @param config        The configuration to write.
+     * @param writeComments Whether comments should be written.
+     * @return The contents of the file.
+     * @throws IOException If an IO error occurs.
+     */
+    public static String writeToString(SettingsMap config, boolean writeComments) throws IOException
+    {
+        StringWriter contents = new StringWriter();
+        BufferedWriter writer = new BufferedWriter(contents);
+        FileSettingsWriter settingsWriter = new FileSettingsWriter(null, writeComments);
+        for (RawSettingValue entry : config.getRawSettings())
+        {
+            settingsWriter.writeEntry(writer, entry);
+        }
+        writer.close();
+        return contents.toString();
+    }
+
+    static void logIOError(IOException e, File file)
     {
         OTG.log(LogMarker.ERROR, "Failed to write to file {}", file);
         OTG.printStackTrace(LogMarker.ERROR, e);
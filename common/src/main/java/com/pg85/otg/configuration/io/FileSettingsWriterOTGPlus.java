@@ -10,8 +10,10 @@ import com.pg85.otg.logging.LogMarker;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 
 public class FileSettingsWriterOTGPlus implements SettingsWriterOTGPlus
 {
@@ -64,6 +66,7 @@ public class FileSettingsWriterOTGPlus implements SettingsWriterOTGPlus
     private final File file;
     private boolean writeComments;
     private BufferedWriter writer;
+    private StringWriter contents;
 
     public FileSettingsWriterOTGPlus(CustomObjectConfigFile configFile)
     {
@@ -126,12 +129,27 @@ public class FileSettingsWriterOTGPlus implements SettingsWriterOTGPlus
         {
             writer.flush();
             writer.close();
+
+            // Leave unchanged files alone, so that the settings cache stays valid
+            byte[] bytes = contents.toString().getBytes();
+            if (!ParsedSettingsCache.isUnchanged(file, bytes))
+            {
+                OutputStream stream = new FileOutputStream(file);
+                try
+                {
+                    stream.write(bytes);
+                } finally {
+                    stream.close();
+                }
+                ParsedSettingsCache.onWritten(file, bytes);
+            }
         } catch (IOException e)
         {
             OTG.log(LogMarker.WARN, "Failed to close file {} ({})",
                     file.getAbsolutePath(), e.getMessage());
         }
         writer = null;
+        contents = null;
     }
 
     @Override
@@ -163,7 +181,8 @@ public class FileSettingsWriterOTGPlus implements SettingsWriterOTGPlus
     public void open() throws IOException
     {
         file.getParentFile().mkdirs();
-        writer = new BufferedWriter(new FileWriter(file));
+        contents = new StringWriter();
+        writer = new BufferedWriter(contents);
     }
 
     @Override
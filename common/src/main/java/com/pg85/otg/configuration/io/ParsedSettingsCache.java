@@ -0,0 +1,441 @@
+package com.pg85.otg.configuration.io;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.logging.LogMarker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of the lines of settings files, so that files that didn't change
+ * don't have to be split into settings and functions again. The lines of
+ * every file are stored in a small binary file in the cache directory, which
+ * is only used if the size and modification time of the settings file are
+ * still the same.
+ *
+ * <p>Also remembers a checksum of the contents of every file that was read or
+ * written, so that writers can skip files that wouldn't change, see
+ * {@link #isUnchanged(File, byte[])}. Otherwise every write would invalidate
+ * the cache.
+ */
+public final class ParsedSettingsCache
+{
+    private static final int CACHE_VERSION = 1;
+    private static final String CACHE_DIRECTORY_NAME = "SettingsCache";
+
+    /**
+     * Parses the lines of a settings file.
+     */
+    public interface LineParser
+    {
+        /**
+         * Parses a settings file.
+         * @param fileContents The contents of the file.
+         * @param lines        List to add the parsed lines to.
+         * @throws IOException If an IO error occurs.
+         */
+        void parse(BufferedReader fileContents, List<Line> lines) throws IOException;
+    }
+
+    /**
+     * A parsed line of a settings file.
+     */
+    public static final class Line
+    {
+        /**
+         * Type of the line, only used by the parser.
+         */
+        public final byte type;
+        public final String key;
+        public final String value;
+        public final int lineNumber;
+
+        public Line(byte type, String key, String value, int lineNumber)
+        {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    /**
+     * Size, modification time and checksum of a file as it was last read or
+     * written.
+     */
+    private static final class FileStamp
+    {
+        final long size;
+        final long lastModified;
+        final long checksum;
+
+        FileStamp(long size, long lastModified, long checksum)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        boolean matches(File file)
+        {
+            return file.length() == this.size && file.lastModified() == this.lastModified;
+        }
+    }
+
+    private static final Map<File, FileStamp> stamps = new HashMap<File, FileStamp>();
+    private static ExecutorService executor;
+    private static File cacheDirectory;
+
+    private ParsedSettingsCache()
+    {
+    }
+
+    /**
+     * Gets the lines of a settings file. The lines are read from the cache
+     * if the file didn't change since it was cached, otherwise the file is
+     * parsed and the lines are cached.
+     * @param file   The settings file, must exist.
+     * @param format Name of the format of the file. Files read in different
+     *               formats are cached separately.
+     * @param parser The parser for the format.
+     * @return The lines.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<Line> getLines(File file, String format, LineParser parser) throws IOException
+    {
+        file = file.getAbsoluteFile();
+        String key = format + ":" + file.getPath();
+        File cacheFile = getCacheFile(key);
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        if (cacheFile != null && cacheFile.exists())
+        {
+            List<Line> lines = readCacheFile(cacheFile, key, file, size, lastModified);
+            if (lines != null)
+            {
+                return lines;
+            }
+        }
+
+        byte[] contents = readFile(file);
+        List<Line> lines = new ArrayList<Line>();
+        parser.parse(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents))), lines);
+        long checksum = getChecksum(contents);
+        synchronized (stamps)
+        {
+            stamps.put(file, new FileStamp(size, lastModified, checksum));
+        }
+        if (cacheFile != null)
+        {
+            writeCacheFile(cacheFile, key, size, lastModified, checksum, lines);
+        }
+        return lines;
+    }
+
+    /**
+     * Gets whether the file already has the given contents, so that writing
+     * it can be skipped.
+     * @param file     The file.
+     * @param contents The contents that would be written.
+     * @return True if the file has exactly these contents.
+     */
+    public static boolean isUnchanged(File file, byte[] contents)
+    {
+        file = file.getAbsoluteFile();
+        if (!file.exists() || file.length() != contents.length)
+        {
+            return false;
+        }
+        FileStamp stamp;
+        synchronized (stamps)
+        {
+            stamp = stamps.get(file);
+        }
+        if (stamp != null && stamp.matches(file))
+        {
+            return stamp.checksum == getChecksum(contents);
+        }
+        try
+        {
+            return Arrays.equals(contents, readFile(file));
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Remembers the contents of a file that was just written, so that
+     * writing the same contents again is skipped.
+     * @param file     The file.
+     * @param contents The contents.
+     */
+    static void onWritten(File file, byte[] contents)
+    {
+        file = file.getAbsoluteFile();
+        synchronized (stamps)
+        {
+            stamps.put(file, new FileStamp(file.length(), file.lastModified(), getChecksum(contents)));
+        }
+    }
+
+    private static synchronized File getCacheDirectory()
+    {
+        if (cacheDirectory == null && OTG.getEngine() != null)
+        {
+            cacheDirectory = new File(OTG.getEngine().getTCDataFolder(), CACHE_DIRECTORY_NAME);
+        }
+        return cacheDirectory;
+    }
+
+    private static File getCacheFile(String key)
+    {
+        File directory = getCacheDirectory();
+        if (directory == null)
+        {
+            return null;
+        }
+        // Spread the files over subdirectories, there may be tens of thousands
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes());
+        String name = String.format("%08x%08x", crc.getValue(), key.hashCode());
+        return new File(new File(directory, name.substring(0, 2)), name + ".bin");
+    }
+
+    private static List<Line> readCacheFile(File cacheFile, String key, File file, long size, long lastModified)
+    {
+        try
+        {
+            DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try
+            {
+                if (stream.readInt() != CACHE_VERSION || !stream.readUTF().equals(key)
+                        || stream.readLong() != size || stream.readLong() != lastModified)
+                {
+                    // Other version, other file with the same hash or changed file
+                    return null;
+                }
+                long checksum = stream.readLong();
+                int count = stream.readInt();
+                List<Line> lines = new ArrayList<Line>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    lines.add(new Line(stream.readByte(), stream.readUTF(), stream.readUTF(), stream.readInt()));
+                }
+                synchronized (stamps)
+                {
+                    stamps.put(file, new FileStamp(size, lastModified, checksum));
+                }
+                return lines;
+            } finally {
+                stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // Damaged cache file, will be written again
+            return null;
+        }
+    }
+
+    private static void writeCacheFile(final File cacheFile, String key, long size, long lastModified, long checksum, List<Line> lines)
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            DataOutputStream stream = new DataOutputStream(bytes);
+            stream.writeInt(CACHE_VERSION);
+            stream.writeUTF(key);
+            stream.writeLong(size);
+            stream.writeLong(lastModified);
+            stream.writeLong(checksum);
+            stream.writeInt(lines.size());
+            for (Line line : lines)
+            {
+                stream.writeByte(line.type);
+                stream.writeUTF(line.key);
+                stream.writeUTF(line.value);
+                stream.writeInt(line.lineNumber);
+            }
+        }
+        catch (UTFDataFormatException e)
+        {
+            // Line too long for the cache, always parse this file
+            return;
+        }
+        catch (IOException e)
+        {
+            // Cannot happen for a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+
+        getExecutor().submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                File tempFile = new File(cacheFile.getPath() + ".tmp");
+                try
+                {
+                    cacheFile.getParentFile().mkdirs();
+                    OutputStream writer = new FileOutputStream(tempFile);
+                    try
+                    {
+                        bytes.writeTo(writer);
+                    } finally {
+                        writer.close();
+                    }
+                    Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (IOException e)
+                {
+                    tempFile.delete();
+                    OTG.log(LogMarker.DEBUG, "Could not write settings cache file {}", cacheFile);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes cache files of settings files that no longer exist, of older
+     * cache versions and left over temporary files, on the background
+     * thread. Should be called when the engine starts.
+     */
+    public static void removeStaleCacheFiles()
+    {
+        final File directory = getCacheDirectory();
+        if (directory == null || !directory.isDirectory())
+        {
+            return;
+        }
+
+        getExecutor().submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int removed = 0;
+                File[] subdirectories = directory.listFiles();
+                if (subdirectories == null)
+                {
+                    return;
+                }
+                for (File subdirectory : subdirectories)
+                {
+                    File[] cacheFiles = subdirectory.listFiles();
+                    if (cacheFiles == null)
+                    {
+                        continue;
+                    }
+                    for (File cacheFile : cacheFiles)
+                    {
+                        if (isStale(cacheFile) && cacheFile.delete())
+                        {
+                            removed++;
+                        }
+                    }
+                    // Only succeeds if the directory is empty now
+                    subdirectory.delete();
+                }
+                if (removed > 0)
+                {
+                    OTG.log(LogMarker.DEBUG, "Removed {} stale settings cache files", removed);
+                }
+            }
+        });
+    }
+
+    private static boolean isStale(File cacheFile)
+    {
+        if (!cacheFile.getName().endsWith(".bin"))
+        {
+            return true;
+        }
+        String key;
+        try
+        {
+            DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try
+            {
+                if (stream.readInt() != CACHE_VERSION)
+                {
+                    return true;
+                }
+                key = stream.readUTF();
+            } finally {
+                stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // Damaged cache file
+            return true;
+        }
+        // Keys are format + ":" + path, formats don't contain a colon
+        int separator = key.indexOf(':');
+        return separator == -1 || !new File(key.substring(separator + 1)).exists();
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "OTG settings cache writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static byte[] readFile(File file) throws IOException
+    {
+        byte[] contents = new byte[(int) file.length()];
+        DataInputStream stream = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            stream.readFully(contents);
+        } finally {
+            stream.close();
+        }
+        return contents;
+    }
+
+    private static long getChecksum(byte[] contents)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        // Include the length, to make collisions even less likely
+        return (crc.getValue() << 32) | (contents.length & 0xFFFFFFFFL);
+    }
+}
@@ -131,6 +131,9 @@ public class WorldStandardValues extends Settings
             FLAT_BEDROCK = booleanSetting("FlatBedrock", false),
             REMOVE_SURFACE_STONE = booleanSetting("RemoveSurfaceStone", false),
             POPULATION_BOUNDS_CHECK = booleanSetting("PopulationBoundsCheck", true),
+            CACHE_TERRAIN_NOISE = booleanSetting("CacheTerrainNoise", false),
+            BATCHED_TERRAIN_NOISE = booleanSetting("BatchedTerrainNoise", false),
+            FAST_HEIGHT_QUERIES = booleanSetting("FastHeightQueries", false),
             NETHER_FORTRESSES_ENABLED = booleanSetting("NetherFortressesEnabled", false),
             STRONGHOLDS_ENABLED = booleanSetting("StrongholdsEnabled", true),
             VILLAGES_ENABLED = booleanSetting("VillagesEnabled", true),
@@ -20,6 +20,7 @@ import com.pg85.otg.generator.resource.CustomStructureGen;
 import com.pg85.otg.generator.surface.MesaSurfaceGenerator;
 import com.pg85.otg.logging.LogMarker;
 import com.pg85.otg.util.ChunkCoordinate;
+import com.pg85.otg.util.ChunkMap;
 import com.pg85.otg.util.NamedBinaryTag;
 import com.pg85.otg.util.Rotation;
 import com.pg85.otg.util.helpers.RandomHelper;
@@ -588,7 +589,7 @@ public class CustomObjectStructure
                 }
                 if(smoothRadius > 0)
                 {
-        			Map<ChunkCoordinate, BlockFunction> heightMap = bO3InChunk.getSettings().getHeightMap((BO3)Start.getObject());
+        			BlockFunction[] heightMap = bO3InChunk.getSettings().getHeightMap((BO3)Start.getObject());
 
                     // if !SmoothStartTop then for each BO3 that has a smoothradius > 0 get the lowest layer of blocks and determine smooth area starting points
                 	// if SmoothStartTop then for each BO3 that has a smoothradius > 0 get the highest blocks of the BO3 and determine smooth area starting points
@@ -597,7 +598,7 @@ public class CustomObjectStructure
                 	{
                 		for(int z = 0; z <= 15; z ++)
                 		{
-                			BlockFunction block = heightMap.get(ChunkCoordinate.fromChunkCoords(x, z));
+                			BlockFunction block = heightMap[x + z * 16];
 
                 			if(block != null)
                 			{
@@ -609,19 +610,19 @@ public class CustomObjectStructure
                                 bFoundNeighbour4 = false;
 
                                 //Check if any neighbouring blocks are air or non-existent within this BO3
-                                if(heightMap.get(ChunkCoordinate.fromChunkCoords(block.x - 1, block.z)) != null)
+                                if(BO3Config.getHeightMapBlock(heightMap, block.x - 1, block.z) != null)
                                 {
                                     bFoundNeighbour1 = true;
                                 }
-                                if(heightMap.get(ChunkCoordinate.fromChunkCoords(block.x + 1, block.z)) != null)
+                                if(BO3Config.getHeightMapBlock(heightMap, block.x + 1, block.z) != null)
                                 {
                                     bFoundNeighbour2 = true;
                                 }
-                                if(heightMap.get(ChunkCoordinate.fromChunkCoords(block.x, block.z - 1)) != null)
+                                if(BO3Config.getHeightMapBlock(heightMap, block.x, block.z - 1) != null)
                                 {
                                     bFoundNeighbour3 = true;
                                 }
-                                if(heightMap.get(ChunkCoordinate.fromChunkCoords(block.x, block.z + 1)) != null)
+                                if(BO3Config.getHeightMapBlock(heightMap, block.x, block.z + 1) != null)
                                 {
                                     bFoundNeighbour4 = true;
                                 }
@@ -662,11 +663,14 @@ public class CustomObjectStructure
                                                 if(bO3ToCheck != objectInChunk)
                                                 {
                                                     // Now find the actual block
-                                                	Map<ChunkCoordinate, BlockFunction> neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
+                                                	BlockFunction[] neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
 
-                                                	for(Entry<ChunkCoordinate, BlockFunction> blockToCheckEntry : neighbouringBO3HeightMap.entrySet())
+                                                	for(BlockFunction blockToCheck : neighbouringBO3HeightMap)
                                                     {
-                                                		BlockFunction blockToCheck = blockToCheckEntry.getValue();
+                                                        if(blockToCheck == null)
+                                                        {
+                                                            continue;
+                                                        }
 
                                                         blockToCheckCoords = CustomObjectCoordinate.getRotatedSmoothingCoords(blockToCheck.x, blockToCheck.y, blockToCheck.z, bO3ToCheck.getRotation());
                                                         normalizedBlockToCheckX = blockToCheckCoords.getX() + (bO3ToCheck.getX());
@@ -724,11 +728,14 @@ public class CustomObjectStructure
                                                 if(bO3ToCheck != objectInChunk)
                                                 {
                                                     // Now find the actual block
-                                                	Map<ChunkCoordinate, BlockFunction> neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
+                                                	BlockFunction[] neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
 
-                                                	for(Entry<ChunkCoordinate, BlockFunction> blockToCheckEntry : neighbouringBO3HeightMap.entrySet())
+                                                	for(BlockFunction blockToCheck : neighbouringBO3HeightMap)
                                                 	{
-                                                		BlockFunction blockToCheck = blockToCheckEntry.getValue();
+                                                        if(blockToCheck == null)
+                                                        {
+                                                            continue;
+                                                        }
 
                                                         blockToCheckCoords = CustomObjectCoordinate.getRotatedSmoothingCoords(blockToCheck.x, blockToCheck.y, blockToCheck.z, bO3ToCheck.getRotation());
                                                         normalizedBlockToCheckX = blockToCheckCoords.getX() + (bO3ToCheck.getX());
@@ -786,11 +793,14 @@ public class CustomObjectStructure
                                                 if(bO3ToCheck != objectInChunk)
                                                 {
                                                     // Now find the actual block
-                                                	Map<ChunkCoordinate, BlockFunction> neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
+                                                	BlockFunction[] neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
 
-                                                	for(Entry<ChunkCoordinate, BlockFunction> blockToCheckEntry : neighbouringBO3HeightMap.entrySet())
+                                                	for(BlockFunction blockToCheck : neighbouringBO3HeightMap)
                                                     {
-                                                		BlockFunction blockToCheck = blockToCheckEntry.getValue();
+                                                        if(blockToCheck == null)
+                                                        {
+                                                            continue;
+                                                        }
 
                                                         blockToCheckCoords = CustomObjectCoordinate.getRotatedSmoothingCoords(blockToCheck.x, blockToCheck.y, blockToCheck.z, bO3ToCheck.getRotation());
                                                         normalizedBlockToCheckX = blockToCheckCoords.getX() + (bO3ToCheck.getX());
@@ -848,11 +858,14 @@ public class CustomObjectStructure
                                                 if(bO3ToCheck != objectInChunk)
                                                 {
                                                     // Now find the actual block
-                                                	Map<ChunkCoordinate, BlockFunction> neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
+                                                	BlockFunction[] neighbouringBO3HeightMap = ((BO3)bO3ToCheck.getObject()).getSettings().getHeightMap((BO3)Start.getObject());
 
-                                                	for(Entry<ChunkCoordinate, BlockFunction> blockToCheckEntry : neighbouringBO3HeightMap.entrySet())
+                                                	for(BlockFunction blockToCheck : neighbouringBO3HeightMap)
                                                     {
-                                                		BlockFunction blockToCheck = blockToCheckEntry.getValue();
+                                                        if(blockToCheck == null)
+                                                        {
+                                                            continue;
+                                                        }
 
                                                         blockToCheckCoords = CustomObjectCoordinate.getRotatedSmoothingCoords(blockToCheck.x, blockToCheck.y, blockToCheck.z, bO3ToCheck.getRotation());
                                                         normalizedBlockToCheckX = blockToCheckCoords.getX() + (bO3ToCheck.getX());
@@ -2074,7 +2087,7 @@ public class CustomObjectStructure
     }
 
     public Stack<BranchDataItem> AllBranchesBranchData = new Stack<BranchDataItem>();
-    public HashMap<ChunkCoordinate, Stack<BranchDataItem>> AllBranchesBranchDataByChunk = new HashMap<ChunkCoordinate, Stack<BranchDataItem>>();
+    public ChunkMap<Stack<BranchDataItem>> AllBranchesBranchDataByChunk = new ChunkMap<Stack<BranchDataItem>>();
     public HashSet<Integer> AllBranchesBranchDataHash = new HashSet<Integer>();
     private boolean ProcessingDone = false;
     private boolean SpawningCanOverrideBranches = false;
@@ -4390,6 +4403,8 @@ public class CustomObjectStructure
                     coordObject.isSpawned = true;
                 }
             }
+            // Index the ModData/Spawners/Particles added above
+            World.getStructureCache().UpdateFunctionsInChunk(chunkCoordinate);
             BO3.originalTopBlocks.clear(); // TODO: Lol ugly hack fix!
         } else {
             // Spawn smooth areas in this chunk if any exist
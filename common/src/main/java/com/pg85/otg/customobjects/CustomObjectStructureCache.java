@@ -10,26 +10,35 @@ import com.pg85.otg.customobjects.bo3.ModDataFunction;
 import com.pg85.otg.customobjects.bo3.ParticleFunction;
 import com.pg85.otg.customobjects.bo3.SpawnerFunction;
 import com.pg85.otg.exception.InvalidConfigException;
+import com.pg85.otg.generator.ObjectSpawner;
 import com.pg85.otg.generator.resource.CustomStructureGen;
 import com.pg85.otg.logging.LogMarker;
 import com.pg85.otg.util.ChunkCoordinate;
+import com.pg85.otg.util.ChunkMap;
 import com.pg85.otg.util.Rotation;
 import com.pg85.otg.util.helpers.RandomHelper;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Random;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Each world has a cache of unfinished structures. This class is the cache.
@@ -47,22 +56,38 @@ public class CustomObjectStructureCache
 	// have been removed (cleans up cache and makes sure nothing is ever spawned twice, although a second spawn call should never be made in the first place ofc ><).
 
 	public Map<ChunkCoordinate, CustomObjectStructure> worldInfoChunks; // Used for the /WorldInfo command, stores information about every BO3 that has been spawned so that author and description information can be requested by chunk.
-	public Map<String, Stack<ChunkCoordinate>> spawnedStructures; // Used to find distance between structures and structure groups, only stores 1 chunk per structure in the calculated center of the structure. Does not clean itself when used with the pre-generator and will become slower as it fills up, use as little as possible! (can't clean itself because max radius for BO3 groups cannot be known)
-	public HashMap<ChunkCoordinate, ArrayList<String>> structuresPerChunk; // Used as a cache by the plotting code
+	public Map<String, Stack<ChunkCoordinate>> spawnedStructures; // Used to find distance between structures and structure groups, only stores 1 chunk per structure in the calculated center of the structure. Does not clean itself when used with the pre-generator (can't clean itself because max radius for BO3 groups cannot be known). Add structures through spawnedStructureIndex, which is used for the distance checks.
+	private SpawnedStructureIndex spawnedStructureIndex;
+	public ChunkMap<ArrayList<String>> structuresPerChunk; // Used as a cache by the plotting code
 
 	//
 
     public Map<ChunkCoordinate, CustomObjectStructure> structureCache;
     private LocalWorld world;
+    private final StructureDataWriter structureDataWriter;
+
+    // The worldInfoChunks and (for OTG+) the structureCache are split into regions that are loaded when used
+    private static final int REGION_UNLOAD_SAVES = 3;
+    private final Map<Long, StructureRegion> structureRegions;
+    private StructureRegion lastRegion;
+    private int saveCount = 0;
 
     public CustomObjectStructureCache(LocalWorld world)
     {
         this.world = world;
-        this.structureCache = new HashMap<ChunkCoordinate, CustomObjectStructure>();
+        this.structureDataWriter = new StructureDataWriter(world.getName());
+        this.structureRegions = new HashMap<Long, StructureRegion>();
+        if(world.getConfigs().getWorldConfig().IsOTGPlus)
+        {
+        	this.structureCache = new StructureRegionMap(this, false);
+        } else {
+        	this.structureCache = new HashMap<ChunkCoordinate, CustomObjectStructure>();
+        }
 
         this.spawnedStructures = new HashMap<String, Stack<ChunkCoordinate>>();
-        this.worldInfoChunks = new HashMap<ChunkCoordinate, CustomObjectStructure>();
-        this.structuresPerChunk = new HashMap<ChunkCoordinate, ArrayList<String>>();
+        this.spawnedStructureIndex = new SpawnedStructureIndex(this.spawnedStructures);
+        this.worldInfoChunks = new StructureRegionMap(this, true);
+        this.structuresPerChunk = new ChunkMap<ArrayList<String>>();
 
         LoadStructureCache();
     }
@@ -326,7 +351,7 @@ public class CustomObjectStructureCache
 						        	                canSpawnHere = false;
 					            					if(!world.IsInsidePregeneratedRegion(ChunkCoordinate.fromChunkCoords(chunkCoord.getChunkX() + j, chunkCoord.getChunkZ() + i), true) && world.IsInsideWorldBorder(ChunkCoordinate.fromChunkCoords(chunkCoord.getChunkX() + j, chunkCoord.getChunkZ() + i), true))
 			            							{
-							        	                biomeStructures = structuresPerChunk.get(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + j), (chunkCoord.getChunkZ() + i)));
+							        	                biomeStructures = GetStructuresPerChunk(chunkCoord.getChunkX() + j, chunkCoord.getChunkZ() + i);
 
 							        	                // StructureCache.put's also add an empty list to biomestructures so don't need to check structurecache here
 
@@ -355,7 +380,7 @@ public class CustomObjectStructureCache
 								        	            		canSpawnHere = true;
 								        	            		biomeStructures = structuresToSpawn1;
 								        	            	}
-							            					structuresPerChunk.put(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + j), (chunkCoord.getChunkZ() + i)),biomeStructures);
+							            					structuresPerChunk.put(chunkCoord.getChunkX() + j, chunkCoord.getChunkZ() + i, biomeStructures);
 						            					}
 							        	                for(String structureToSpawn : biomeStructures)
 							        	                {
@@ -366,7 +391,7 @@ public class CustomObjectStructureCache
 							        	                	}
 							        	                }
 						        	            	} else {
-						        	            		structuresPerChunk.remove(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + j), (chunkCoord.getChunkZ() + i)));
+						        	            		structuresPerChunk.remove(chunkCoord.getChunkX() + j, chunkCoord.getChunkZ() + i);
 						        	            	}
 						        	                if(!canSpawnHere)
 						            				{
@@ -394,7 +419,7 @@ public class CustomObjectStructureCache
 							        	                // StructureCache.put's also add an empty list to biomestructures so don't need to check structurecache here
 
 							        	                // When we get biomestructures here we can check, size() == 0 means the chunk is in structurecache, null means it hasnt yet been cached at all
-							        	                biomeStructures = structuresPerChunk.get(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() - j), (chunkCoord.getChunkZ() + i)));
+							        	                biomeStructures = GetStructuresPerChunk(chunkCoord.getChunkX() - j, chunkCoord.getChunkZ() + i);
 							            				if(biomeStructures == null)
 							        	            	{
 							            					biome3 = world.getBiome((chunkCoord.getChunkX() - j) * 16 + 8, (chunkCoord.getChunkZ() + i) * 16 + 8);
@@ -419,7 +444,7 @@ public class CustomObjectStructureCache
 								        	            		canSpawnHere = true;
 								        	            		biomeStructures = structuresToSpawn1;
 								        	            	}
-							            					structuresPerChunk.put(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() - j), (chunkCoord.getChunkZ() + i)),biomeStructures);
+							            					structuresPerChunk.put(chunkCoord.getChunkX() - j, chunkCoord.getChunkZ() + i, biomeStructures);
 						            					}
 							        	                for(String structureToSpawn : biomeStructures)
 							        	                {
@@ -430,7 +455,7 @@ public class CustomObjectStructureCache
 							        	                	}
 							        	                }
 						        	            	} else {
-						        	            		structuresPerChunk.remove(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() - j), (chunkCoord.getChunkZ() + i)));
+						        	            		structuresPerChunk.remove(chunkCoord.getChunkX() - j, chunkCoord.getChunkZ() + i);
 						        	            	}
 						        	                if(!canSpawnHere)
 						            				{
@@ -458,7 +483,7 @@ public class CustomObjectStructureCache
 							        	                // StructureCache.put's also add an empty list to biomestructures so don't need to check structurecache here
 
 							        	                // When we get biomestructures here we can check, size() == 0 means the chunk is in structurecache, null means it hasnt yet been cached at all
-							        	                biomeStructures = structuresPerChunk.get(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + i), (chunkCoord.getChunkZ() + j)));
+							        	                biomeStructures = GetStructuresPerChunk(chunkCoord.getChunkX() + i, chunkCoord.getChunkZ() + j);
 							            				if(biomeStructures == null)
 							        	            	{
 							            					biome3 = world.getBiome((chunkCoord.getChunkX() + i) * 16 + 8, (chunkCoord.getChunkZ() + j) * 16 + 8);
@@ -483,7 +508,7 @@ public class CustomObjectStructureCache
 								        	            		canSpawnHere = true;
 								        	            		biomeStructures = structuresToSpawn1;
 								        	            	}
-							            					structuresPerChunk.put(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + i), (chunkCoord.getChunkZ() + j)),biomeStructures);
+							            					structuresPerChunk.put(chunkCoord.getChunkX() + i, chunkCoord.getChunkZ() + j, biomeStructures);
 						            					}
 							        	                for(String structureToSpawn : biomeStructures)
 							        	                {
@@ -494,7 +519,7 @@ public class CustomObjectStructureCache
 							        	                	}
 							        	                }
 						        	            	} else {
-						        	            		structuresPerChunk.remove(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + i), (chunkCoord.getChunkZ() + j)));
+						        	            		structuresPerChunk.remove(chunkCoord.getChunkX() + i, chunkCoord.getChunkZ() + j);
 						        	            	}
 						        	                if(!canSpawnHere)
 						            				{
@@ -522,7 +547,7 @@ public class CustomObjectStructureCache
 							        	                // StructureCache.put's also add an empty list to biomestructures so don't need to check structurecache here
 
 							        	                // When we get biomestructures here we can check, size() == 0 means the chunk is in structurecache, null means it hasnt yet been cached at all
-							        	                biomeStructures = structuresPerChunk.get(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + i), (chunkCoord.getChunkZ() - j)));
+							        	                biomeStructures = GetStructuresPerChunk(chunkCoord.getChunkX() + i, chunkCoord.getChunkZ() - j);
 							            				if(biomeStructures == null)
 							        	            	{
 							            					biome3 = world.getBiome((chunkCoord.getChunkX() + i) * 16 + 8, (chunkCoord.getChunkZ() - j) * 16 + 8);
@@ -547,7 +572,7 @@ public class CustomObjectStructureCache
 								        	            		canSpawnHere = true;
 								        	            		biomeStructures = structuresToSpawn1;
 								        	            	}
-							            					structuresPerChunk.put(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + i), (chunkCoord.getChunkZ() - j)),biomeStructures);
+							            					structuresPerChunk.put(chunkCoord.getChunkX() + i, chunkCoord.getChunkZ() - j, biomeStructures);
 						            					}
 							        	                for(String structureToSpawn : biomeStructures)
 							        	                {
@@ -558,7 +583,7 @@ public class CustomObjectStructureCache
 							        	                	}
 							        	                }
 						        	            	} else {
-						        	            		structuresPerChunk.remove(ChunkCoordinate.fromChunkCoords((chunkCoord.getChunkX() + i), (chunkCoord.getChunkZ() - j)));
+						        	            		structuresPerChunk.remove(chunkCoord.getChunkX() + i, chunkCoord.getChunkZ() - j);
 						        	            	}
 						        	                if(!canSpawnHere)
 						            				{
@@ -706,16 +731,15 @@ public class CustomObjectStructureCache
 						                			String bO3NameAndGroupString = ((BO3)currentStructureSpawning[0]).getName() + ";" + ((BO3)currentStructureSpawning[0]).getSettings().bo3Group;
 							                		if(spawnedStructures.containsKey(bO3NameAndGroupString))
 							                		{
-							                			spawnedStructures.get(bO3NameAndGroupString).add(ChunkCoordinate.fromChunkCoords(spawnCoordX, spawnCoordZ));
+							                			spawnedStructureIndex.add(bO3NameAndGroupString, ChunkCoordinate.fromChunkCoords(spawnCoordX, spawnCoordZ));
 							                		} else {
-							                			Stack<ChunkCoordinate> chunks = new Stack<ChunkCoordinate>();
-							                			chunks.add(
+							                			spawnedStructureIndex.add(
+							                				bO3NameAndGroupString,
 						                					ChunkCoordinate.fromChunkCoords(
 					                							(int)Math.round(spawnCoordX - ((Integer)topLeftAndLowerRightChunkCoordinates[3] / 2d) + ((Integer)topLeftAndLowerRightChunkCoordinates[1] / 2d)),
 					                							(int)Math.round(spawnCoordZ - ((Integer)topLeftAndLowerRightChunkCoordinates[0] / 2d) + ((Integer)topLeftAndLowerRightChunkCoordinates[2] / 2d))
 				                							)
 					                					);
-							                			spawnedStructures.put(bO3NameAndGroupString, chunks);
 							                		}
 						                		}
 
@@ -820,101 +844,16 @@ public class CustomObjectStructureCache
     	}
     }
 
-    private boolean IsBO3AllowedToSpawnAt(ChunkCoordinate chunkCoord, BO3 BO3ToSpawn)
+    private ArrayList<String> GetStructuresPerChunk(int chunkX, int chunkZ)
     {
-		int radius = BO3ToSpawn.getSettings().frequency;
-
-        // Check if no other structure of the same type (filename) is within the minimum radius (BO3 frequency)
-		// Check if no other structures that are a member of the same group as this BO3 are within the minimum radius (BO3Group frequency)
-        String bO3NameAndGroupString = BO3ToSpawn.getName() + ";" + BO3ToSpawn.getSettings().bo3Group;
-        String[] groupStrings = BO3ToSpawn.getSettings().bo3Group.trim().length() > 0 ? BO3ToSpawn.getSettings().bo3Group.split(",") : null;
-        ArrayList<String> groupNames = new ArrayList<String>();
-        ArrayList<Integer> groupFrequencies = new ArrayList<Integer>();
-        if(groupStrings != null && groupStrings.length > 0)
-        {
-        	for(int i = 0; i < groupStrings.length; i++)
-        	{
-            	String[] groupString = groupStrings[i].trim().length() > 0 ? groupStrings[i].split(":") : null;
-            	if(groupString != null && groupString.length == 2)
-            	{
-            		groupNames.add(groupString[0].trim());
-            		groupFrequencies.add(Integer.parseInt(groupString[1].trim()));
-            	}
-        	}
-        }
-		if(radius > 0 || groupNames.size() > 0)
-		{
-			float distanceBetweenStructures = 0;
-            for(String key : spawnedStructures.keySet())
-            {
-            	// Check BO3 frequency
-				if(radius > 0 && key.equals(bO3NameAndGroupString))
-				{
-            		ArrayList<ChunkCoordinate> spawnedCoords = new ArrayList<ChunkCoordinate>();
-        			spawnedCoords.addAll(spawnedStructures.get(key));
-        			for(ChunkCoordinate cachedChunk : spawnedCoords)
-        			{
-        				radius = BO3ToSpawn.getSettings().frequency;
-                        // Find distance between two points
-                        distanceBetweenStructures = (int)Math.floor(Math.sqrt(Math.pow(chunkCoord.getChunkX() - cachedChunk.getChunkX(), 2) + Math.pow(chunkCoord.getChunkZ() - cachedChunk.getChunkZ(), 2)));
-                        if (distanceBetweenStructures <= radius)
-                        {
-                        	// Other BO3 of the same type is too nearby, cannot spawn here!
-                            return false;
-                        }
-        			}
-				}
+    	// Loading the region adds its chunks in the structure cache to structuresPerChunk
+    	GetRegion(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+    	return structuresPerChunk.get(chunkX, chunkZ);
+    }
 
-				if(groupNames.size() > 0)
-				{
-    				// Check groups
-                    ArrayList<String> spawnedStructureGroupNames = new ArrayList<String>();
-                    ArrayList<Integer> spawnedStructureGroupFrequencies = new ArrayList<Integer>();
-        			String[] spawnedStructureNameAndGroupString = key.split(";");
-        			if(spawnedStructureNameAndGroupString.length > 1)
-        			{
-                        String[] spawnedStructureGroupStrings = spawnedStructureNameAndGroupString[1].split(",");
-                        if(spawnedStructureGroupStrings.length > 0)
-                        {
-                        	for(int i = 0; i < spawnedStructureGroupStrings.length; i++)
-                        	{
-	                        	String[] spawnedStructureGroupString = spawnedStructureGroupStrings[i].trim().length() > 0 ? spawnedStructureGroupStrings[i].split(":") : null;
-	                        	if(spawnedStructureGroupString != null && spawnedStructureGroupString.length == 2)
-	                        	{
-	                        		spawnedStructureGroupNames.add(spawnedStructureGroupString[0].trim());
-	                        		spawnedStructureGroupFrequencies.add(Integer.parseInt(spawnedStructureGroupString[1].trim()));
-	                        	}
-                        	}
-                        }
-        			}
-
-        			if(spawnedStructureGroupNames.size() > 0)
-        			{
-        				for(int i = 0; i < groupNames.size(); i++)
-        				{
-        					for(int j = 0; j < spawnedStructureGroupNames.size(); j++)
-        					{
-        						if(groupNames.get(i).equals(spawnedStructureGroupNames.get(j)))
-        						{
-                        			for(ChunkCoordinate cachedChunk : spawnedStructures.get(key))
-                        			{
-                        				radius = groupFrequencies.get(i) >= spawnedStructureGroupFrequencies.get(j) ? groupFrequencies.get(i) : spawnedStructureGroupFrequencies.get(j);
-		                                // Find distance between two points
-		                                distanceBetweenStructures = (int)Math.floor(Math.sqrt(Math.pow(chunkCoord.getChunkX() - cachedChunk.getChunkX(), 2) + Math.pow(chunkCoord.getChunkZ() - cachedChunk.getChunkZ(), 2)));
-		                                if (distanceBetweenStructures <= radius)
-		                                {
-		                                	// Other BO3 using a shared BO3Group is too nearby, cannot spawn here!
-		                                	return false;
-		                                }
-                        			}
-        						}
-        					}
-        				}
-        			}
-				}
-            }
-		}
-		return true;
+    private boolean IsBO3AllowedToSpawnAt(ChunkCoordinate chunkCoord, BO3 BO3ToSpawn)
+    {
+        return spawnedStructureIndex.isAllowedToSpawnAt(chunkCoord, BO3ToSpawn.getName(), BO3ToSpawn.getSettings().frequency, BO3ToSpawn.getSettings().bo3Group);
     }
 
     // persistence stuff
@@ -928,16 +867,14 @@ public class CustomObjectStructureCache
 
     	int structuresRemoved = 0;
 
-    	// Fill a new structureCache based on the  existing one, remove all the chunks inside the pregenerated region that we know will no longer be used
-    	HashMap<ChunkCoordinate, CustomObjectStructure> newStructureCache = new HashMap<ChunkCoordinate,CustomObjectStructure>();
-    	for (Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : structureCache.entrySet())
+    	// Remove all the chunks inside the pregenerated region that we know will no longer be used
+    	Iterator<Map.Entry<ChunkCoordinate, CustomObjectStructure>> cachedChunks = structureCache.entrySet().iterator();
+    	while (cachedChunks.hasNext())
     	{
-			// If this structure is not done spawning or on/outside the border of the pre-generated area then keep it
-			if(!world.IsInsidePregeneratedRegion(cachedChunk.getKey(), true))
+    		Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk = cachedChunks.next();
+			// Chunks on/outside the border of the pre-generated area are kept
+			if(world.IsInsidePregeneratedRegion(cachedChunk.getKey(), true))
 			{
-				newStructureCache.put(cachedChunk.getKey(), cachedChunk.getValue());
-			} else {
-
 				structuresRemoved += 1;
 
 				// Null means fully populated, plotted and spawned
@@ -948,296 +885,323 @@ public class CustomObjectStructureCache
 
 					throw new RuntimeException();
 				}
+				cachedChunks.remove();
 			}
     	}
 
-    	structureCache = newStructureCache;
-
     	OTG.log(LogMarker.INFO, "Removed " + structuresRemoved + " cached chunks");
     }
 
+    /**
+     * Saves the structure cache. Waits for population to finish, takes a
+     * snapshot of the cache and then writes the snapshot on a background
+     * thread, so that population can continue while the files are written.
+     */
     public void SaveToDisk()
     {
     	OTG.log(LogMarker.INFO, "Saving structure data");
-    	int i = 0;
-    	long starTime = System.currentTimeMillis();
-		while(true)
-		{
-			synchronized(world.getObjectSpawner().lockingObject)
-			{
-				if(!world.getObjectSpawner().populating)
-				{
-					world.getObjectSpawner().saving = true;
-					break;
-				}
-			}
-			if(i == 0 || i == 100)
-			{
-				OTG.log(LogMarker.INFO, "SaveToDisk waiting on Populate. Although other mods could be causing this and there may not be any problem, this can potentially cause an endless loop!");
-				i = 0;
-			}
-			i += 1;
-			if(System.currentTimeMillis() - starTime > (300 * 1000))
+    	ObjectSpawner objectSpawner = world.getObjectSpawner();
+    	try
+    	{
+    		if(!objectSpawner.populationLock.tryLock())
+    		{
+    			OTG.log(LogMarker.INFO, "SaveToDisk waiting on Populate.");
+    			if(!objectSpawner.populationLock.tryLock(300, TimeUnit.SECONDS))
+    			{
+    				OTG.log(LogMarker.INFO, "SaveToDisk waited on populate longer than 300 seconds, something went wrong!");
+    				throw new RuntimeException();
+    			}
+    		}
+    	}
+    	catch (InterruptedException e)
+    	{
+    		Thread.currentThread().interrupt();
+    		throw new RuntimeException("Interrupted while waiting on populate", e);
+    	}
+
+    	long startTime = System.currentTimeMillis();
+    	Map<File, byte[]> snapshot;
+    	try
+    	{
+			if(world.getConfigs().getWorldConfig().IsOTGPlus)
 			{
-				OTG.log(LogMarker.INFO, "SaveToDisk waited on populate longer than 300 seconds, something went wrong!");
-				throw new RuntimeException();
+				CompressCache();
 			}
-		}
+			snapshot = SaveStructureCache();
+			UnloadUnusedRegions();
+	    	objectSpawner.saveRequired = false;
+    	} finally {
+    		objectSpawner.populationLock.unlock();
+    	}
 
-		if(world.getConfigs().getWorldConfig().IsOTGPlus)
-		{
-			CompressCache();
-		}
-		SaveStructureCache();
+    	this.structureDataWriter.submit(snapshot, System.currentTimeMillis() - startTime);
+    }
 
-		synchronized(world.getObjectSpawner().lockingObject)
-		{
-	    	world.getObjectSpawner().saveRequired = false;
-	    	world.getObjectSpawner().saving = false;
-		}
+    /**
+     * Blocks until all saves started by {@link #SaveToDisk()} have been
+     * written to disk. Must be called before the world is unloaded.
+     */
+    public void AwaitSaves()
+    {
+    	this.structureDataWriter.awaitWrites();
     }
 
-    private void SaveStructureCache()
+    /**
+     * Gets statistics of the last save: the time taken to snapshot the
+     * cache, the size of the snapshot and the time taken to write it, and
+     * the amount of regions loaded.
+     * @return The statistics.
+     */
+    public String getSaveStats()
+    {
+    	return "loadedRegions=" + this.structureRegions.size() + ", " + this.structureDataWriter.getStats();
+    }
+
+    private File GetStructureDataFile(String fileName)
+    {
+		int dimensionId = world.getDimensionId();
+		return new File(world.getWorldSaveDir().getAbsolutePath() + "/OpenTerrainGenerator/" + (dimensionId != 0 ? "DIM-" + dimensionId + "/" : "") + fileName);
+    }
+
+    private File GetStructureDataDirectory()
+    {
+    	return GetStructureDataFile("StructureData");
+    }
+
+    /**
+     * Takes a snapshot of the loaded regions of the structure cache.
+     * @return The contents of all structure data files that may have
+     * changed, null for files that must be deleted.
+     */
+    private Map<File, byte[]> SaveStructureCache()
     {
     	OTG.log(LogMarker.INFO, "Saving structures and pre-generator data");
 
-	    Map<ChunkCoordinate, CustomObjectStructure> worldInfoChunksToSave = new HashMap<ChunkCoordinate, CustomObjectStructure>();
+    	UpdateRegionDependencies();
 
-	    for (Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : worldInfoChunks.entrySet()) // WorldInfo holds info on all BO3's ever spawned for this world, structurecache only holds those outside the pregenerated area and sets spawned chunks to null!
+	    File structureDataDirectory = GetStructureDataDirectory();
+	    Map<File, byte[]> snapshot = new LinkedHashMap<File, byte[]>();
+	    for (StructureRegion region : structureRegions.values())
 	    {
-	    	if(cachedChunk.getValue() != null)
-	    	{
-	    		worldInfoChunksToSave.put(cachedChunk.getKey(), cachedChunk.getValue());
-	    	} else {
-	    		throw new RuntimeException();
-	    	}
-	    }
+		    for (Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : region.worldInfoChunks.entrySet()) // WorldInfo holds info on all BO3's ever spawned for this world, structurecache only holds those outside the pregenerated area and sets spawned chunks to null!
+		    {
+		    	if(cachedChunk.getValue() != null)
+		    	{
+		    		cachedChunk.getValue().saveRequired = false;
+		    	} else {
+		    		throw new RuntimeException();
+		    	}
+		    }
 
-	    SaveStructuresFile(worldInfoChunksToSave);
+		    ArrayList<ChunkCoordinate> nullChunks = new ArrayList<ChunkCoordinate>();
+		    if(world.getConfigs().getWorldConfig().IsOTGPlus)
+		    {
+		    	for (Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : region.structureCache.entrySet()) // Save null chunks from structurecache so that when loading we can reconstitute it based on worldInfoChunks, null chunks and the pregenerator border
+		    	{
+		    		if(cachedChunk.getValue() == null)
+		    		{
+		    			if(!world.IsInsidePregeneratedRegion(cachedChunk.getKey(),true))
+		    			{
+		    				nullChunks.add(cachedChunk.getKey());
+						}
+		    		}
+		    	}
+		    }
 
-	    for (Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : worldInfoChunks.entrySet())
-	    {
-	    	if(cachedChunk.getValue() != null)
-	    	{
-	    		cachedChunk.getValue().saveRequired = false;
-	    	}
+		    File regionFile = new File(structureDataDirectory, StructureDataFormat.getRegionFileName(region.regionKey));
+		    if(region.worldInfoChunks.isEmpty() && nullChunks.isEmpty())
+		    {
+		    	snapshot.put(regionFile, null);
+		    } else {
+		    	snapshot.put(regionFile, StructureDataFormat.writeRegion(region.worldInfoChunks, nullChunks, region.dependencies));
+		    }
 	    }
 
 	    if(world.getConfigs().getWorldConfig().IsOTGPlus)
 	    {
-		    ArrayList<ChunkCoordinate> nullChunks = new ArrayList<ChunkCoordinate>();
-	    	for (Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : structureCache.entrySet()) // Save null chunks from structurecache so that when loading we can reconstitute it based on worldInfoChunks, null chunks and the pregenerator border
-	    	{
-	    		if(cachedChunk.getValue() == null)
-	    		{
-	    			if(!world.IsInsidePregeneratedRegion(cachedChunk.getKey(),true))
-	    			{
-	    				nullChunks.add(cachedChunk.getKey());
-					}
-	    		}
-	    	}
-
-	    	SaveChunksFile(nullChunks, "NullChunks.txt");
-
-	    	SaveChunksMapFile(spawnedStructures, "SpawnedStructures.txt");
+	    	snapshot.put(new File(structureDataDirectory, StructureDataFormat.SPAWNED_STRUCTURES_FILE_NAME), StructureDataFormat.writeSpawnedStructures(spawnedStructures));
 	    }
 
-		OTG.log(LogMarker.INFO, "Saving done");
+		return snapshot;
     }
 
-	private void SaveStructuresFile(Map<ChunkCoordinate, CustomObjectStructure> structures)
+	private void LoadStructureCache()
 	{
-		// When loading files we first load all the structure files and put them in worldInfoChunks and structurecache (if they are outside the pregenerated region),
-		// then from any structures that have ObjectsToSpawn or SmoothingAreas to spawn we create structures in the structure cache for each of those (overriding some of the structures we added earlier)
-		// Then we load all the null chunks and add them to the structurecache (if they are outside the pregenerated region), potentially overriding some of the structures we added earlier.
-
-		// So don't worry about saving structure files for structures that have already been spawned, they won't be added to the structure cache when loading
-
-		int dimensionId = world.getDimensionId();
-		File occupiedChunksFile = new File(world.getWorldSaveDir().getAbsolutePath() + "/OpenTerrainGenerator/" + (dimensionId != 0 ? "DIM-" + dimensionId + "/" : "") + "StructureData.txt");
-    	if(occupiedChunksFile.exists())
-    	{
-    		occupiedChunksFile.delete();
-    	}
+		OTG.log(LogMarker.INFO, "Loading structures and pre-generator data");
 
-    	StringBuilder stringbuilder = new StringBuilder();
-    	if(structures.size() > 0)
-    	{
-	    	stringbuilder.append("[");
+		// Worlds saved before the binary format was introduced are converted once,
+		// the text files are renamed once the conversion has succeeded.
+		if(GetStructureDataFile("StructureData.txt").exists())
+		{
+			ConvertTextFiles();
+		}
 
-			for(Entry<ChunkCoordinate, CustomObjectStructure> entry : structures.entrySet())
+		// Structures and null chunks are only loaded when their region is first used, see GetRegion
+		boolean regionsSaved = false;
+		File[] files = GetStructureDataDirectory().listFiles();
+		if(files != null)
+		{
+			for(File file : files)
 			{
-				ChunkCoordinate chunkCoord = entry.getKey();
-				CustomObjectStructure structure = entry.getValue();
-
-				if(stringbuilder.length() > 1)
+				if(file.getName().endsWith(StructureDataFormat.REGION_FILE_EXTENSION) && !file.getName().equals(StructureDataFormat.SPAWNED_STRUCTURES_FILE_NAME))
 				{
-					stringbuilder.append(" ");
+					regionsSaved = true;
+					break;
 				}
+			}
+		}
 
-		    	if(structure.Start != null)
-		    	{
-		    		//stringbuilder.append("[" + entry.getKey().getChunkX() + "," + entry.getKey().getChunkZ() + "][" + structure.MinY + "," + structure.Start.isSpawned + "," + structure.Start.isBranch + "," + structure.Start.branchDepth + "," + structure.Start.isRequiredBranch + "," + structure.Start.BO3Name + "," + structure.Start.rotation.toString() + "," + structure.Start.getX() + "," + structure.Start.getY() + "," + structure.Start.getZ() + "," + structure.startChunkBlockChecksDone + "]");
-		    		stringbuilder.append("[" + entry.getKey().getChunkX() + "," + entry.getKey().getChunkZ() + "][" + structure.Start.BO3Name + "," + structure.Start.rotation.toString() + "," + structure.Start.getX() + "," + structure.Start.getY() + "," + structure.Start.getZ() + "]");
-		    	} else {
-		    		stringbuilder.append("[" + entry.getKey().getChunkX() + "," + entry.getKey().getChunkZ() + "][Null structure]");
-		    	}
-
-				ChunkCoordinate key;
-				Stack<CustomObjectCoordinate> coords;
-
-				// If this is the origin of this structure then save its ObjectsToSpawn and SmoothingAreasToSpawn
-				// All the chunks belonging to this structure will be reconstituted when this file is loaded
-
-				stringbuilder.append("[");
-				if(structure.ObjectsToSpawn.entrySet().size() > 0 && chunkCoord.getChunkX() == structure.Start.getChunkX() && chunkCoord.getChunkZ() == structure.Start.getChunkZ())
-				{
-					boolean added = false;
-					for(Entry<ChunkCoordinate, Stack<CustomObjectCoordinate>> objectToSpawn : structure.ObjectsToSpawn.entrySet())
-					{
-						if(added)
-						{
-							stringbuilder.append(";");
-						}
-						key = objectToSpawn.getKey();
-						stringbuilder.append(key.getChunkX() + "," + key.getChunkZ());
-						added = true;
+		if(world.getConfigs().getWorldConfig().IsOTGPlus)
+		{
+			spawnedStructures = LoadSpawnedStructuresFile();
+			spawnedStructureIndex = new SpawnedStructureIndex(spawnedStructures);
 
-						coords = objectToSpawn.getValue();
-						for(CustomObjectCoordinate coord : coords)
-						{
-							//stringbuilder.append("," + coord.isSpawned + "," + coord.isBranch + "," + coord.branchDepth + "," + coord.isRequiredBranch + "," + coord.BO3Name + "," + coord.rotation.toString() + "," + coord.getX() + "," + coord.getY() + "," + coord.getZ());
-							stringbuilder.append("," + coord.BO3Name + "," + coord.rotation.toString() + "," + coord.getX() + "," + coord.getY() + "," + coord.getZ());
-						}
-					}
-				}
+			if(regionsSaved || spawnedStructures.size() > 0)
+			{
+				world.getObjectSpawner().StructurePlottedAtSpawn = true;
+			}
+		}
 
-				stringbuilder.append("][");
+		OTG.log(LogMarker.INFO, "Loading done");
+	}
 
-				if(structure.SmoothingAreasToSpawn.entrySet().size() > 0 && chunkCoord.getChunkX() == structure.Start.getChunkX() && chunkCoord.getChunkZ() == structure.Start.getChunkZ())
-				{
-					boolean added = false;
-					ArrayList<Object[]> coords2;
-					String append;
-					for(Entry<ChunkCoordinate, ArrayList<Object[]>> smoothingAreaToSpawn : structure.SmoothingAreasToSpawn.entrySet())
-					{
-						if(added)
-						{
-							stringbuilder.append(";");
-						}
-						key = smoothingAreaToSpawn.getKey();
-						stringbuilder.append(key.getChunkX() + "," + key.getChunkZ());
-						added = true;
+	/**
+	 * Gets the region containing the given chunk, loading it if needed.
+	 * @param chunkCoord The chunk.
+	 * @return The region.
+	 */
+	StructureRegion GetRegion(ChunkCoordinate chunkCoord)
+	{
+		// Most lookups are for the same region as the previous lookup
+		StructureRegion region = this.lastRegion;
+		if(region != null && region.contains(chunkCoord))
+		{
+			return region;
+		}
+		return GetRegion(StructureDataFormat.getRegionKey(chunkCoord));
+	}
 
-						coords2 = smoothingAreaToSpawn.getValue();
-						for(Object[] coord : coords2)
-						{
-							append = ":";
-							for(int i = 0; i < coord.length; i++)
-							{
-								if(append.length() == 1)
-								{
-									append += coord[i];
-								} else {
-									append += "," + coord[i];
-								}
-							}
-							stringbuilder.append(append);
-						}
-					}
-				}
+	private StructureRegion GetRegion(long regionKey)
+	{
+		StructureRegion region = this.structureRegions.get(regionKey);
+		if(region == null)
+		{
+			region = LoadRegion(regionKey);
+		}
+		region.lastUsed = this.saveCount;
+		this.lastRegion = region;
+		return region;
+	}
 
-				stringbuilder.append("][");
+	Collection<StructureRegion> GetLoadedRegions()
+	{
+		return this.structureRegions.values();
+	}
 
-				if(structure.modData.size() > 0 && chunkCoord.getChunkX() == structure.Start.getChunkX() && chunkCoord.getChunkZ() == structure.Start.getChunkZ())
-				{
-					boolean added = false;
-					for(ModDataFunction modData : structure.modData)
-					{
-						if(added)
-						{
-							stringbuilder.append(":");
-						}
-						stringbuilder.append(modData.x + "," + modData.y + "," + modData.z + "," + modData.modId.replace(":", "&#58;").replace(" ", "&nbsp;") + "," + modData.modData.replace(":", "&#58;").replace(" ", "&nbsp;"));
-						added = true;
-					}
-				}
+	/**
+	 * Gets the ModData of the structure in worldInfoChunks for the given chunk that is inside that chunk.
+	 * @param chunkCoord The chunk.
+	 * @return The ModData, empty if there is none. Must not be modified.
+	 */
+	public List<ModDataFunction> GetModDataInChunk(ChunkCoordinate chunkCoord)
+	{
+		StructureRegion.ChunkFunctions functions = GetRegion(chunkCoord).functionsPerChunk.get(chunkCoord);
+		return functions == null ? Collections.<ModDataFunction>emptyList() : functions.modData;
+	}
 
-				stringbuilder.append("][");
+	/**
+	 * Gets the Spawners of the structure in worldInfoChunks for the given chunk that are inside that chunk.
+	 * @param chunkCoord The chunk.
+	 * @return The Spawners, empty if there are none. Must not be modified.
+	 */
+	public List<SpawnerFunction> GetSpawnersInChunk(ChunkCoordinate chunkCoord)
+	{
+		StructureRegion.ChunkFunctions functions = GetRegion(chunkCoord).functionsPerChunk.get(chunkCoord);
+		return functions == null ? Collections.<SpawnerFunction>emptyList() : functions.spawners;
+	}
 
-				if(structure.spawnerData.size() > 0 && chunkCoord.getChunkX() == structure.Start.getChunkX() && chunkCoord.getChunkZ() == structure.Start.getChunkZ())
-				{
-					boolean added = false;
-					for(SpawnerFunction spawnerData : structure.spawnerData)
-					{
-						if(added)
-						{
-							stringbuilder.append(":");
-						}
-						stringbuilder.append(spawnerData.x + "," + spawnerData.y + "," + spawnerData.z + "," + spawnerData.mobName.replace(":", "&#58;").replace(" ", "&nbsp;") + "," + spawnerData.originalnbtFileName.replace(":", "&#58;").replace(" ", "&nbsp;") + "," + spawnerData.nbtFileName.replace(":", "&#58;").replace(" ", "&nbsp;") + "," + spawnerData.groupSize + "," + spawnerData.interval + "," + spawnerData.spawnChance + "," + spawnerData.maxCount + "," + spawnerData.despawnTime + "," + spawnerData.velocityX + "," + spawnerData.velocityY + "," + spawnerData.velocityZ + "," + spawnerData.velocityXSet + "," + spawnerData.velocityYSet + "," + spawnerData.velocityZSet + "," + spawnerData.yaw + "," + spawnerData.pitch);
-						added = true;
-					}
-				}
+	/**
+	 * Gets the Particles of the structure in worldInfoChunks for the given chunk that are inside that chunk.
+	 * @param chunkCoord The chunk.
+	 * @return The Particles, empty if there are none. Must not be modified.
+	 */
+	public List<ParticleFunction> GetParticlesInChunk(ChunkCoordinate chunkCoord)
+	{
+		StructureRegion.ChunkFunctions functions = GetRegion(chunkCoord).functionsPerChunk.get(chunkCoord);
+		return functions == null ? Collections.<ParticleFunction>emptyList() : functions.particles;
+	}
 
-				stringbuilder.append("][");
+	/**
+	 * Must be called after ModData, Spawners or Particles inside the given chunk were added to the
+	 * structure in worldInfoChunks for that chunk without putting the structure again.
+	 * @param chunkCoord The chunk.
+	 */
+	public void UpdateFunctionsInChunk(ChunkCoordinate chunkCoord)
+	{
+		StructureRegion region = GetRegion(chunkCoord);
+		region.indexFunctions(chunkCoord, region.worldInfoChunks.get(chunkCoord));
+	}
 
-				if(structure.particleData.size() > 0 && chunkCoord.getChunkX() == structure.Start.getChunkX() && chunkCoord.getChunkZ() == structure.Start.getChunkZ())
+	/**
+	 * Removes a Particle from the structure in worldInfoChunks for the given chunk.
+	 * @param chunkCoord The chunk.
+	 * @param particle   The Particle.
+	 */
+	public void RemoveParticle(ChunkCoordinate chunkCoord, ParticleFunction particle)
+	{
+		StructureRegion region = GetRegion(chunkCoord);
+		CustomObjectStructure structure = region.worldInfoChunks.get(chunkCoord);
+		if(structure != null && structure.particleData.remove(particle))
+		{
+			StructureRegion.ChunkFunctions functions = region.functionsPerChunk.get(chunkCoord);
+			if(functions != null)
+			{
+				functions.particles.remove(particle);
+				if(functions.isEmpty())
 				{
-					boolean added = false;
-					for(ParticleFunction particleData : structure.particleData)
-					{
-						if(added)
-						{
-							stringbuilder.append(":");
-						}
-						stringbuilder.append(particleData.x + "," + particleData.y + "," + particleData.z + "," + particleData.particleName.replace(":", "&#58;").replace(" ", "&nbsp;")+ "," + particleData.interval + "," + particleData.velocityX + "," + particleData.velocityY + "," + particleData.velocityZ + "," + particleData.velocityXSet + "," + particleData.velocityYSet + "," + particleData.velocityZSet);
-						added = true;
-					}
+					region.functionsPerChunk.remove(chunkCoord);
 				}
-
-				stringbuilder.append("]");
 			}
+		}
+	}
 
-			stringbuilder.append("]");
-
-			BufferedWriter writer = null;
-	        try
-	        {
-	        	if(occupiedChunksFile.exists())
-	        	{
-	        		occupiedChunksFile.delete();
-	        	}
-	        	occupiedChunksFile.getParentFile().mkdirs();
-	        	writer = new BufferedWriter(new FileWriter(occupiedChunksFile));
-	            writer.write(stringbuilder.toString());
-	        }
-	        catch (IOException e)
-	        {
-	            e.printStackTrace();
-	        }
-	        finally
-	        {
-	            try
-	            {
-	                // Close the writer regardless of what happens...
-	                writer.close();
-	            } catch (Exception e) { }
-	        }
-    	}
-    }
-
-	private void LoadStructureCache()
+	private StructureRegion LoadRegion(long regionKey)
 	{
-		OTG.log(LogMarker.INFO, "Loading structures and pre-generator data");
-
-    	int structuresLoaded = 0;
-
-		Map<ChunkCoordinate, CustomObjectStructure> loadedStructures = LoadStructuresFile();
+		StructureRegion region = new StructureRegion(regionKey);
+		// Add the region before loading it, loading may add chunks to it
+		this.structureRegions.put(regionKey, region);
+
+		// The region may have been unloaded recently and still be waiting to be written,
+		// the writer then returns the contents from the snapshot
+		File regionFile = new File(GetStructureDataDirectory(), StructureDataFormat.getRegionFileName(regionKey));
+		if(this.structureDataWriter.exists(regionFile))
+		{
+			Map<ChunkCoordinate, CustomObjectStructure> loadedStructures = new HashMap<ChunkCoordinate, CustomObjectStructure>();
+			ArrayList<ChunkCoordinate> nullChunks = new ArrayList<ChunkCoordinate>();
+			try
+			{
+				StructureDataFormat.readRegion(this.structureDataWriter.read(regionFile), world, loadedStructures, nullChunks, region.dependencies);
+			}
+			catch (IOException e)
+			{
+				OTG.log(LogMarker.ERROR, "Could not read structure data file " + regionFile);
+				OTG.printStackTrace(LogMarker.ERROR, e);
+			}
+			AddLoadedStructures(loadedStructures, nullChunks, region.dependencies);
+		}
+		return region;
+	}
 
+	/**
+	 * Adds loaded structures and null chunks to the cache.
+	 * @param loadedStructures The structures, by chunk.
+	 * @param nullChunks       Chunks that have been populated and spawned.
+	 * @param dependencies     Regions to load before adding the null chunks.
+	 */
+	private void AddLoadedStructures(Map<ChunkCoordinate, CustomObjectStructure> loadedStructures, List<ChunkCoordinate> nullChunks, Collection<Long> dependencies)
+	{
 		for(Map.Entry<ChunkCoordinate, CustomObjectStructure> loadedStructure : loadedStructures.entrySet())
 		{
-			structuresLoaded += 1;
-
 			if(loadedStructure == null)
 			{
 				throw new RuntimeException();
@@ -1252,18 +1216,22 @@ public class CustomObjectStructureCache
 					// This chunk is either
 					// A. outside the border and has no objects to spawn (empty chunk) but has not yet been populated
 					// B. Part of but not the starting point of a branching structure, therefore the structure's ObjectsToSpawn and SmoothingAreasToSpawn were not saved with this file.
-					structureCache.put(loadedStructure.getKey(), loadedStructure.getValue());
+					AddLoadedChunk(loadedStructure.getKey(), loadedStructure.getValue());
 				}
 
 				// The starting structure in a branching structure is saved with the ObjectsToSpawn, SmoothingAreasToSpawn & modData of all its branches.
 				// All branches are saved as individual structures but without any ObjectsToSpawn/SmoothingAreasToSpawn/modData (only essential data for structure placement remains).
 				// The starting structure overrides any empty branches that were added as structures here if it has any ObjectsToSpawn/SmoothingAreasToSpawn/modData in their chunks.
+				// Chunks that have already been spawned are not overridden, they may be in a region that was loaded earlier.
 
 				for(ChunkCoordinate chunkCoord : loadedStructure.getValue().ObjectsToSpawn.keySet())
 				{
 					if(!world.IsInsidePregeneratedRegion(chunkCoord, true))
 					{
-						structureCache.put(chunkCoord, loadedStructure.getValue()); // This structure has BO3 blocks that need to be spawned
+						if(!IsSpawned(chunkCoord))
+						{
+							AddLoadedChunk(chunkCoord, loadedStructure.getValue()); // This structure has BO3 blocks that need to be spawned
+						}
 					} else {
 						throw new RuntimeException();
 					}
@@ -1272,40 +1240,86 @@ public class CustomObjectStructureCache
 				{
 					if(!world.IsInsidePregeneratedRegion(chunkCoord, true))
 					{
-						structureCache.put(chunkCoord, loadedStructure.getValue()); // This structure has smoothing area blocks that need to be spawned
+						if(!IsSpawned(chunkCoord))
+						{
+							AddLoadedChunk(chunkCoord, loadedStructure.getValue()); // This structure has smoothing area blocks that need to be spawned
+						}
 					} else {
 						throw new RuntimeException();
 					}
 				}
 			}
 
+			// Each put indexes all ModData/Spawners/Particles of the structure in that chunk, so put every chunk only once
+			HashSet<ChunkCoordinate> functionChunks = new HashSet<ChunkCoordinate>();
 			for(ModDataFunction modDataFunc : loadedStructure.getValue().modData)
 			{
-				worldInfoChunks.put(ChunkCoordinate.fromBlockCoords(modDataFunc.x, modDataFunc.z), loadedStructure.getValue());
+				functionChunks.add(ChunkCoordinate.fromBlockCoords(modDataFunc.x, modDataFunc.z));
 			}
 
 			for(SpawnerFunction spawnerFunc : loadedStructure.getValue().spawnerData)
 			{
-				worldInfoChunks.put(ChunkCoordinate.fromBlockCoords(spawnerFunc.x, spawnerFunc.z), loadedStructure.getValue());
+				functionChunks.add(ChunkCoordinate.fromBlockCoords(spawnerFunc.x, spawnerFunc.z));
 			}
 
 			for(ParticleFunction particleFunc : loadedStructure.getValue().particleData)
 			{
-				worldInfoChunks.put(ChunkCoordinate.fromBlockCoords(particleFunc.x, particleFunc.z), loadedStructure.getValue());
+				functionChunks.add(ChunkCoordinate.fromBlockCoords(particleFunc.x, particleFunc.z));
+			}
+
+			for(ChunkCoordinate chunkCoord : functionChunks)
+			{
+				worldInfoChunks.put(chunkCoord, loadedStructure.getValue());
+			}
+		}
+
+		// Load the regions with the starts of the structures in this region,
+		// so that they can override the empty branches added above
+		HashSet<Long> loadedDependencies = new HashSet<Long>();
+		for(long regionKey : dependencies)
+		{
+			if(structureRegions.containsKey(regionKey))
+			{
+				loadedDependencies.add(regionKey);
 			}
+			GetRegion(regionKey);
 		}
 
-		OTG.log(LogMarker.INFO, "Loaded " + structuresLoaded + " structure chunks");
+		// Regions that were already loaded don't add their structures again,
+		// so override the empty branches with the structures from those regions
+		if(!loadedDependencies.isEmpty())
+		{
+			for(Map.Entry<ChunkCoordinate, CustomObjectStructure> loadedStructure : loadedStructures.entrySet())
+			{
+				CustomObjectCoordinate start = loadedStructure.getValue().Start;
+				if(start == null)
+				{
+					continue;
+				}
+				ChunkCoordinate startChunk = ChunkCoordinate.fromChunkCoords(start.getChunkX(), start.getChunkZ());
+				if(loadedDependencies.contains(StructureDataFormat.getRegionKey(startChunk)))
+				{
+					CustomObjectStructure structure = worldInfoChunks.get(startChunk);
+					if(
+						structure != null && structure != loadedStructure.getValue() && structure.Start != null &&
+						structure.Start.getChunkX() == start.getChunkX() && structure.Start.getChunkZ() == start.getChunkZ() &&
+						worldInfoChunks.get(loadedStructure.getKey()) == loadedStructure.getValue()
+					)
+					{
+						worldInfoChunks.put(loadedStructure.getKey(), structure);
+					}
+				}
+			}
+		}
 
 		if(world.getConfigs().getWorldConfig().IsOTGPlus)
 		{
-			ArrayList<ChunkCoordinate> nullChunks = LoadChunksFile("NullChunks.txt");
 			for(ChunkCoordinate chunkCoord : nullChunks)
 			{
 				structureCache.remove(chunkCoord);
 				if(!world.IsInsidePregeneratedRegion(chunkCoord, true))
 				{
-					structureCache.put(chunkCoord, null); // This chunk has been completely populated and spawned
+					AddLoadedChunk(chunkCoord, null); // This chunk has been completely populated and spawned
 				} else {
 
 					// This should only happen when a world is loaded that was generated with a PregenerationRadius of 0 and then had its PregenerationRadius increased
@@ -1315,21 +1329,206 @@ public class CustomObjectStructureCache
 					throw new RuntimeException();
 				}
 			}
+		}
+	}
 
-			spawnedStructures = LoadChunksMapFile("SpawnedStructures.txt");
+	private void AddLoadedChunk(ChunkCoordinate chunkCoord, CustomObjectStructure structure)
+	{
+		structureCache.put(chunkCoord, structure);
+		structuresPerChunk.put(chunkCoord, new ArrayList<String>()); // This is an optimisation so that PlotStructures knows not to plot anything in this chunk
+	}
+
+	private boolean IsSpawned(ChunkCoordinate chunkCoord)
+	{
+		return structureCache.get(chunkCoord) == null && structureCache.containsKey(chunkCoord);
+	}
+
+	/**
+	 * Updates the dependencies of the loaded regions with the structures
+	 * that start in another region.
+	 */
+	private void UpdateRegionDependencies()
+	{
+		for(StructureRegion region : structureRegions.values())
+		{
+			for(Map.Entry<ChunkCoordinate, CustomObjectStructure> cachedChunk : region.worldInfoChunks.entrySet())
+			{
+				CustomObjectStructure structure = cachedChunk.getValue();
+				if(structure == null || structure.Start == null || cachedChunk.getKey().getChunkX() != structure.Start.getChunkX() || cachedChunk.getKey().getChunkZ() != structure.Start.getChunkZ())
+				{
+					continue;
+				}
+				for(ChunkCoordinate chunkCoord : structure.ObjectsToSpawn.keySet())
+				{
+					AddRegionDependency(chunkCoord, region);
+				}
+				for(ChunkCoordinate chunkCoord : structure.SmoothingAreasToSpawn.keySet())
+				{
+					AddRegionDependency(chunkCoord, region);
+				}
+				for(ModDataFunction modDataFunc : structure.modData)
+				{
+					AddRegionDependency(ChunkCoordinate.fromBlockCoords(modDataFunc.x, modDataFunc.z), region);
+				}
+				for(SpawnerFunction spawnerFunc : structure.spawnerData)
+				{
+					AddRegionDependency(ChunkCoordinate.fromBlockCoords(spawnerFunc.x, spawnerFunc.z), region);
+				}
+				for(ParticleFunction particleFunc : structure.particleData)
+				{
+					AddRegionDependency(ChunkCoordinate.fromBlockCoords(particleFunc.x, particleFunc.z), region);
+				}
+			}
+		}
+	}
+
+	private void AddRegionDependency(ChunkCoordinate chunkCoord, StructureRegion startRegion)
+	{
+		if(!startRegion.contains(chunkCoord))
+		{
+			StructureRegion region = structureRegions.get(StructureDataFormat.getRegionKey(chunkCoord));
+			if(region != null)
+			{
+				region.dependencies.add(startRegion.regionKey);
+			}
+		}
+	}
 
-			for(ChunkCoordinate chunkCoord : structureCache.keySet())
+	/**
+	 * Unloads the regions that haven't been used for a while and have no
+	 * structures left to spawn. Must be called right after the regions were
+	 * saved.
+	 */
+	private void UnloadUnusedRegions()
+	{
+		int regionsUnloaded = 0;
+		Iterator<StructureRegion> regions = structureRegions.values().iterator();
+		while(regions.hasNext())
+		{
+			StructureRegion region = regions.next();
+			if(this.saveCount - region.lastUsed >= REGION_UNLOAD_SAVES && !region.hasUnfinishedStructures())
 			{
-				structuresPerChunk.put(chunkCoord, new ArrayList<String>()); // This is an optimisation so that PlotStructures knows not to plot anything in this chunk
+				regions.remove();
+				int startX = ChunkCoordinate.getChunkX(region.regionKey) << StructureDataFormat.REGION_SHIFT;
+				int startZ = ChunkCoordinate.getChunkZ(region.regionKey) << StructureDataFormat.REGION_SHIFT;
+				int regionSize = 1 << StructureDataFormat.REGION_SHIFT;
+				for(int chunkX = startX; chunkX < startX + regionSize; chunkX++)
+				{
+					for(int chunkZ = startZ; chunkZ < startZ + regionSize; chunkZ++)
+					{
+						structuresPerChunk.remove(chunkX, chunkZ);
+					}
+				}
+				regionsUnloaded++;
 			}
+		}
+		this.lastRegion = null;
+		this.saveCount++;
+
+		if(regionsUnloaded > 0)
+		{
+			OTG.log(LogMarker.INFO, "Unloaded " + regionsUnloaded + " structure regions, " + structureRegions.size() + " still loaded");
+		}
+	}
 
-			if(loadedStructures.size() > 0 || nullChunks.size() > 0 || spawnedStructures.size() > 0)
+	private Map<String, Stack<ChunkCoordinate>> LoadSpawnedStructuresFile()
+	{
+		File file = new File(GetStructureDataDirectory(), StructureDataFormat.SPAWNED_STRUCTURES_FILE_NAME);
+		if(file.exists())
+		{
+			try
 			{
-				world.getObjectSpawner().StructurePlottedAtSpawn = true;
+				return StructureDataFormat.readSpawnedStructures(this.structureDataWriter.read(file));
+			}
+			catch (IOException e)
+			{
+				OTG.log(LogMarker.ERROR, "Could not read structure data file " + file);
+				OTG.printStackTrace(LogMarker.ERROR, e);
 			}
 		}
+		return new HashMap<String, Stack<ChunkCoordinate>>();
+	}
 
-		OTG.log(LogMarker.INFO, "Loading done");
+	/**
+	 * Loads the structure data from the text files used before the binary
+	 * format, writes it in the binary format and renames the text files so
+	 * that they aren't loaded again.
+	 */
+	private void ConvertTextFiles()
+	{
+		OTG.log(LogMarker.INFO, "Converting structure data to binary format");
+
+		ArrayList<ChunkCoordinate> nullChunks = new ArrayList<ChunkCoordinate>();
+		if(world.getConfigs().getWorldConfig().IsOTGPlus)
+		{
+			nullChunks = LoadChunksFile("NullChunks.txt");
+			spawnedStructures = LoadChunksMapFile("SpawnedStructures.txt");
+			spawnedStructureIndex = new SpawnedStructureIndex(spawnedStructures);
+		}
+		AddLoadedStructures(LoadStructuresFile(), nullChunks, Collections.<Long>emptyList());
+
+		// Only hide the text files once the binary files can be read back
+		Map<File, byte[]> snapshot = SaveStructureCache();
+		if(!WriteAndVerify(snapshot))
+		{
+			OTG.log(LogMarker.ERROR, "Could not convert structure data to binary format, keeping the text files. Conversion will be retried on the next load.");
+			return;
+		}
+
+		for(String fileName : new String[] { "StructureData.txt", "NullChunks.txt", "SpawnedStructures.txt" })
+		{
+			File textFile = GetStructureDataFile(fileName);
+			if(textFile.exists() && !textFile.renameTo(GetStructureDataFile(fileName + ".old")))
+			{
+				OTG.log(LogMarker.WARN, "Could not rename " + textFile + " after converting it");
+			}
+		}
+		OTG.log(LogMarker.INFO, "Converted structure data to binary format");
+	}
+
+	private boolean WriteAndVerify(Map<File, byte[]> snapshot)
+	{
+		Set<File> failed;
+		try
+		{
+			failed = this.structureDataWriter.submit(snapshot, 0).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException e)
+		{
+			OTG.printStackTrace(LogMarker.ERROR, e.getCause());
+			return false;
+		}
+		if(!failed.isEmpty())
+		{
+			return false;
+		}
+
+		for(Map.Entry<File, byte[]> file : snapshot.entrySet())
+		{
+			if(file.getValue() == null)
+			{
+				continue;
+			}
+			try
+			{
+				if(!Arrays.equals(file.getValue(), Files.readAllBytes(file.getKey().toPath())))
+				{
+					OTG.log(LogMarker.ERROR, "Structure data file " + file.getKey() + " does not have the contents that were written");
+					return false;
+				}
+			}
+			catch (IOException e)
+			{
+				OTG.log(LogMarker.ERROR, "Could not read back structure data file " + file.getKey());
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private Map<ChunkCoordinate, CustomObjectStructure> LoadStructuresFile()
@@ -1574,51 +1773,6 @@ public class CustomObjectStructureCache
 	    return structuresFile;
 	}
 
-	public void SaveChunksFile(ArrayList<ChunkCoordinate> chunks, String fileName)
-	{
-		int dimensionId = world.getDimensionId();
-		File occupiedChunksFile = new File(world.getWorldSaveDir().getAbsolutePath() + "/OpenTerrainGenerator/" + (dimensionId != 0 ? "DIM-" + dimensionId + "/" : "") + fileName);
-		if(occupiedChunksFile.exists())
-		{
-			occupiedChunksFile.delete();
-		}
-
-		if(chunks.size() > 0)
-		{
-			StringBuilder stringbuilder = new StringBuilder();
-			for(ChunkCoordinate chunkCoord : chunks)
-			{
-				if(stringbuilder.length() > 0)
-				{
-					stringbuilder.append("," + chunkCoord.getChunkX() + "," + chunkCoord.getChunkZ());
-				} else {
-					stringbuilder.append(chunkCoord.getChunkX() + "," + chunkCoord.getChunkZ());
-				}
-			}
-
-			BufferedWriter writer = null;
-	        try
-	        {
-	        	occupiedChunksFile.getParentFile().mkdirs();
-	        	writer = new BufferedWriter(new FileWriter(occupiedChunksFile));
-	            writer.write(stringbuilder.toString());
-	        }
-	        catch (IOException e)
-	        {
-	            e.printStackTrace();
-	        }
-	        finally
-	        {
-	            try
-	            {
-	                // Close the writer regardless of what happens...
-	                writer.close();
-	            }
-	            catch (Exception e) { }
-	        }
-		}
-	}
-
 	public ArrayList<ChunkCoordinate> LoadChunksFile(String fileName)
 	{
 		int dimensionId = world.getDimensionId();
@@ -1667,55 +1821,6 @@ public class CustomObjectStructureCache
 		return chunks;
 	}
 
-	private void SaveChunksMapFile(Map<String, Stack<ChunkCoordinate>> chunksMap, String fileName)
-	{
-		int dimensionId = world.getDimensionId();
-		File occupiedChunksFile = new File(world.getWorldSaveDir().getAbsolutePath() + "/OpenTerrainGenerator/" + (dimensionId != 0 ? "DIM-" + dimensionId + "/" : "") + fileName);
-
-		if(occupiedChunksFile.exists())
-		{
-			occupiedChunksFile.delete();
-		}
-
-		if(chunksMap.size() > 0)
-		{
-			StringBuilder stringbuilder = new StringBuilder();
-			for(Map.Entry<String, Stack<ChunkCoordinate>> entry : chunksMap.entrySet())
-			{
-				if(stringbuilder.length() == 0)
-				{
-					stringbuilder.append(entry.getKey().replace(",", "\\"));
-				} else {
-					stringbuilder.append("/" + entry.getKey().replace(",", "\\"));
-				}
-				for(ChunkCoordinate chunkCoord : entry.getValue())
-				{
-					stringbuilder.append("," + chunkCoord.getChunkX() + "," + chunkCoord.getChunkZ());
-				}
-			}
-
-			BufferedWriter writer = null;
-	        try
-	        {
-	        	occupiedChunksFile.getParentFile().mkdirs();
-	        	writer = new BufferedWriter(new FileWriter(occupiedChunksFile));
-	            writer.write(stringbuilder.toString());
-	        }
-	        catch (IOException e)
-	        {
-	            e.printStackTrace();
-	        }
-	        finally
-	        {
-	            try
-	            {
-	                // Close the writer regardless of what happens...
-	                writer.close();
-	            } catch (Exception e) { }
-	        }
-		}
-	}
-
 	public Map<String, Stack<ChunkCoordinate>> LoadChunksMapFile(String fileName)
 	{
 		int dimensionId = world.getDimensionId();
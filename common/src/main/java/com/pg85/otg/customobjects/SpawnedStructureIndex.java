@@ -0,0 +1,289 @@
+package com.pg85.otg.customobjects;
+
+import com.pg85.otg.util.ChunkCoordinate;
+import com.pg85.otg.util.ChunkMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Spatial index over the spawned structures of a world, used to check the
+ * BO3 frequency and BO3Group frequency settings.
+ *
+ * <p>Structures are stored under their "name;group:frequency,..." key, the
+ * same keys that are saved to SpawnedStructures.txt. For every key and for
+ * every group name a grid of 32x32 chunk cells is kept, so that the checks
+ * only have to look at the structures near the chunk being plotted instead
+ * of at every structure ever spawned.
+ */
+class SpawnedStructureIndex
+{
+    private static final int CELL_SIZE_BITS = 5;
+
+    /**
+     * A member of a BO3Group, parsed from a "group:frequency" string.
+     */
+    private static class GroupMember
+    {
+        final String name;
+        final int frequency;
+
+        GroupMember(String name, int frequency)
+        {
+            this.name = name;
+            this.frequency = frequency;
+        }
+    }
+
+    /**
+     * Chunks in a single grid cell, stored as (chunkX, chunkZ, frequency)
+     * triples.
+     */
+    private static class Cell
+    {
+        int[] points = new int[3 * 4];
+        int size = 0;
+
+        void add(int chunkX, int chunkZ, int frequency)
+        {
+            if (size * 3 == points.length)
+            {
+                int[] newPoints = new int[points.length * 2];
+                System.arraycopy(points, 0, newPoints, 0, points.length);
+                points = newPoints;
+            }
+            points[size * 3] = chunkX;
+            points[size * 3 + 1] = chunkZ;
+            points[size * 3 + 2] = frequency;
+            size++;
+        }
+
+        /**
+         * Gets whether any chunk in this cell is within range of the given
+         * chunk. The range is the highest of the given radius and the
+         * frequency of the chunk in the cell.
+         */
+        boolean isAnyInRange(int chunkX, int chunkZ, int radius)
+        {
+            for (int i = 0; i < size * 3; i += 3)
+            {
+                if (isInRange(chunkX - points[i], chunkZ - points[i + 1], Math.max(radius, points[i + 2])))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * All chunks stored under a single structure key or group name.
+     */
+    private static class Grid
+    {
+        final ChunkMap<Cell> cells = new ChunkMap<Cell>();
+        // All chunks, used instead of the cells when the range covers more
+        // cells than there are chunks
+        final Cell all = new Cell();
+        int maxFrequency = Integer.MIN_VALUE;
+
+        void add(int chunkX, int chunkZ, int frequency)
+        {
+            int cellX = chunkX >> CELL_SIZE_BITS;
+            int cellZ = chunkZ >> CELL_SIZE_BITS;
+            Cell cell = cells.get(cellX, cellZ);
+            if (cell == null)
+            {
+                cell = new Cell();
+                cells.put(cellX, cellZ, cell);
+            }
+            cell.add(chunkX, chunkZ, frequency);
+            all.add(chunkX, chunkZ, frequency);
+            maxFrequency = Math.max(maxFrequency, frequency);
+        }
+
+        boolean isAnyInRange(int chunkX, int chunkZ, int radius)
+        {
+            int maxRadius = Math.max(radius, maxFrequency);
+            if (maxRadius < 0)
+            {
+                return false;
+            }
+
+            int minCellX = (int) ((chunkX - (long) maxRadius) >> CELL_SIZE_BITS);
+            int maxCellX = (int) ((chunkX + (long) maxRadius) >> CELL_SIZE_BITS);
+            int minCellZ = (int) ((chunkZ - (long) maxRadius) >> CELL_SIZE_BITS);
+            int maxCellZ = (int) ((chunkZ + (long) maxRadius) >> CELL_SIZE_BITS);
+            long cellCount = (maxCellX - (long) minCellX + 1) * (maxCellZ - (long) minCellZ + 1);
+            if (cellCount >= all.size)
+            {
+                return all.isAnyInRange(chunkX, chunkZ, radius);
+            }
+
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+            {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+                {
+                    Cell cell = cells.get(cellX, cellZ);
+                    if (cell != null && cell.isAnyInRange(chunkX, chunkZ, radius))
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Map<String, Stack<ChunkCoordinate>> spawnedStructures;
+    private final Map<String, Grid> gridsByKey = new HashMap<String, Grid>();
+    private final Map<String, Grid> gridsByGroup = new HashMap<String, Grid>();
+    private final Map<String, GroupMember[]> parsedGroups = new HashMap<String, GroupMember[]>();
+
+    /**
+     * Creates an index over the given spawned structures. Structures added
+     * through {@link #add(String, ChunkCoordinate)} are added to this map
+     * as well.
+     * @param spawnedStructures Map of "name;groups" key -> spawned chunks.
+     */
+    SpawnedStructureIndex(Map<String, Stack<ChunkCoordinate>> spawnedStructures)
+    {
+        this.spawnedStructures = spawnedStructures;
+        for (Map.Entry<String, Stack<ChunkCoordinate>> entry : spawnedStructures.entrySet())
+        {
+            for (ChunkCoordinate chunkCoord : entry.getValue())
+            {
+                addToGrids(entry.getKey(), chunkCoord);
+            }
+        }
+    }
+
+    /**
+     * Distance check used by BO3 frequency and BO3Group frequency: the
+     * floored distance between the chunks must be at most the radius.
+     */
+    private static boolean isInRange(long distanceX, long distanceZ, int radius)
+    {
+        if (radius < 0)
+        {
+            return false;
+        }
+        long maxDistance = radius + 1L;
+        return distanceX * distanceX + distanceZ * distanceZ < maxDistance * maxDistance;
+    }
+
+    /**
+     * Parses a BO3Group setting ("group:frequency,group:frequency"). Results
+     * are cached, as there are only as many distinct group settings as there
+     * are BO3s.
+     */
+    private GroupMember[] parseGroups(String bo3Group)
+    {
+        GroupMember[] groups = parsedGroups.get(bo3Group);
+        if (groups == null)
+        {
+            List<GroupMember> groupList = new ArrayList<GroupMember>();
+            String[] groupStrings = bo3Group.trim().length() > 0 ? bo3Group.split(",") : null;
+            if (groupStrings != null)
+            {
+                for (String groupString : groupStrings)
+                {
+                    String[] nameAndFrequency = groupString.trim().length() > 0 ? groupString.split(":") : null;
+                    if (nameAndFrequency != null && nameAndFrequency.length == 2)
+                    {
+                        groupList.add(new GroupMember(nameAndFrequency[0].trim(), Integer.parseInt(nameAndFrequency[1].trim())));
+                    }
+                }
+            }
+            groups = groupList.toArray(new GroupMember[groupList.size()]);
+            parsedGroups.put(bo3Group, groups);
+        }
+        return groups;
+    }
+
+    private GroupMember[] parseGroupsOfKey(String key)
+    {
+        String[] nameAndGroup = key.split(";");
+        return nameAndGroup.length > 1 ? parseGroups(nameAndGroup[1]) : new GroupMember[0];
+    }
+
+    private void addToGrids(String key, ChunkCoordinate chunkCoord)
+    {
+        Grid grid = gridsByKey.get(key);
+        if (grid == null)
+        {
+            grid = new Grid();
+            gridsByKey.put(key, grid);
+        }
+        grid.add(chunkCoord.getChunkX(), chunkCoord.getChunkZ(), 0);
+
+        for (GroupMember group : parseGroupsOfKey(key))
+        {
+            Grid groupGrid = gridsByGroup.get(group.name);
+            if (groupGrid == null)
+            {
+                groupGrid = new Grid();
+                gridsByGroup.put(group.name, groupGrid);
+            }
+            groupGrid.add(chunkCoord.getChunkX(), chunkCoord.getChunkZ(), group.frequency);
+        }
+    }
+
+    /**
+     * Registers a spawned structure.
+     * @param key        The "name;groups" key of the structure.
+     * @param chunkCoord The chunk to register the structure at.
+     */
+    void add(String key, ChunkCoordinate chunkCoord)
+    {
+        Stack<ChunkCoordinate> chunks = spawnedStructures.get(key);
+        if (chunks == null)
+        {
+            chunks = new Stack<ChunkCoordinate>();
+            spawnedStructures.put(key, chunks);
+        }
+        chunks.add(chunkCoord);
+        addToGrids(key, chunkCoord);
+    }
+
+    /**
+     * Checks the BO3 frequency and BO3Group frequency settings of a BO3.
+     * @param chunkCoord The chunk the BO3 would spawn at.
+     * @param name       Name of the BO3.
+     * @param frequency  The BO3 frequency setting.
+     * @param bo3Group   The BO3Group setting.
+     * @return False if a structure of the same BO3, or a structure that
+     * shares a group with the BO3, is too close.
+     */
+    boolean isAllowedToSpawnAt(ChunkCoordinate chunkCoord, String name, int frequency, String bo3Group)
+    {
+        int chunkX = chunkCoord.getChunkX();
+        int chunkZ = chunkCoord.getChunkZ();
+
+        // Check if no other structure of the same type (filename) is within the minimum radius (BO3 frequency)
+        if (frequency > 0)
+        {
+            Grid grid = gridsByKey.get(name + ";" + bo3Group);
+            if (grid != null && grid.isAnyInRange(chunkX, chunkZ, frequency))
+            {
+                return false;
+            }
+        }
+
+        // Check if no other structures that are a member of the same group as this BO3 are within the minimum radius (BO3Group frequency)
+        // The radius is the highest of the frequencies of both structures for that group
+        for (GroupMember group : parseGroups(bo3Group))
+        {
+            Grid grid = gridsByGroup.get(group.name);
+            if (grid != null && grid.isAnyInRange(chunkX, chunkZ, group.frequency))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,601 @@
+package com.pg85.otg.customobjects;
+
+import com.pg85.otg.LocalWorld;
+import com.pg85.otg.customobjects.bo3.ModDataFunction;
+import com.pg85.otg.customobjects.bo3.ParticleFunction;
+import com.pg85.otg.customobjects.bo3.SpawnerFunction;
+import com.pg85.otg.util.ChunkCoordinate;
+import com.pg85.otg.util.Rotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary format of the structure data files. The structures and null chunks
+ * of a world are split into regions of 32x32 chunks, each stored in its own
+ * file, so that only the regions that changed have to be written again.
+ *
+ * <p>Every file starts with a magic number and a version, followed by a
+ * table of all strings in the file (BO3 names, mob names etc.), so that each
+ * string is only stored once. Numbers are stored as variable length ints,
+ * coordinates zigzag encoded so that negative coordinates stay small. The
+ * whole file is gzipped.
+ *
+ * <p>Version 2 added a list of the regions each region depends on, see
+ * {@link StructureRegion#dependencies}.
+ */
+final class StructureDataFormat
+{
+    static final int REGION_SHIFT = 5;
+
+    static final String REGION_FILE_EXTENSION = ".otgs";
+    static final String SPAWNED_STRUCTURES_FILE_NAME = "SpawnedStructures" + REGION_FILE_EXTENSION;
+
+    private static final int MAGIC = 0x4F544753; // "OTGS"
+    private static final int VERSION = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private StructureDataFormat()
+    {
+        // No instances
+    }
+
+    /**
+     * Gets the name of the file of the region containing the given chunk.
+     * @param chunkCoord The chunk.
+     * @return The file name.
+     */
+    static String getRegionFileName(ChunkCoordinate chunkCoord)
+    {
+        return getRegionFileName(getRegionKey(chunkCoord));
+    }
+
+    /**
+     * Gets the name of the file of a region.
+     * @param regionKey The region, see {@link #getRegionKey(ChunkCoordinate)}.
+     * @return The file name.
+     */
+    static String getRegionFileName(long regionKey)
+    {
+        return "r." + ChunkCoordinate.getChunkX(regionKey) + "." + ChunkCoordinate.getChunkZ(regionKey) + REGION_FILE_EXTENSION;
+    }
+
+    /**
+     * Gets the region containing the given chunk, packed like
+     * {@link ChunkCoordinate#toLong(int, int)}.
+     * @param chunkCoord The chunk.
+     * @return The region.
+     */
+    static long getRegionKey(ChunkCoordinate chunkCoord)
+    {
+        return ChunkCoordinate.toLong(chunkCoord.getChunkX() >> REGION_SHIFT, chunkCoord.getChunkZ() >> REGION_SHIFT);
+    }
+
+    /**
+     * Writes a region file.
+     * @param structures Structures in the region, by chunk.
+     * @param nullChunks Chunks in the region that have been populated and
+     *                   spawned.
+     * @param dependencies Regions this region depends on.
+     * @return The contents of the file.
+     */
+    static byte[] writeRegion(Map<ChunkCoordinate, CustomObjectStructure> structures, List<ChunkCoordinate> nullChunks, Collection<Long> dependencies)
+    {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        try
+        {
+            writeVarInt(out, structures.size());
+            for (Map.Entry<ChunkCoordinate, CustomObjectStructure> entry : structures.entrySet())
+            {
+                writeStructure(out, strings, entry.getKey(), entry.getValue());
+            }
+            writeVarInt(out, nullChunks.size());
+            for (ChunkCoordinate chunkCoord : nullChunks)
+            {
+                writeChunkCoord(out, chunkCoord);
+            }
+            writeVarInt(out, dependencies.size());
+            for (long regionKey : dependencies)
+            {
+                writeSignedVarInt(out, ChunkCoordinate.getChunkX(regionKey));
+                writeSignedVarInt(out, ChunkCoordinate.getChunkZ(regionKey));
+            }
+            out.flush();
+            return finish(strings, body);
+        } catch (IOException e)
+        {
+            // Cannot happen, only writing to memory
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads a region file.
+     * @param data          The contents of the file.
+     * @param world         The world the structures are in.
+     * @param structuresOut Map to add the structures to.
+     * @param nullChunksOut List to add the null chunks to.
+     * @param dependenciesOut Set to add the regions this region depends on
+     *                        to.
+     * @throws IOException If the file is corrupt.
+     */
+    static void readRegion(byte[] data, LocalWorld world, Map<ChunkCoordinate, CustomObjectStructure> structuresOut, List<ChunkCoordinate> nullChunksOut, Set<Long> dependenciesOut) throws IOException
+    {
+        DataInputStream in = start(data);
+        int version = readVersion(in);
+        String[] strings = readStringTable(in);
+
+        int structureCount = readVarInt(in);
+        for (int i = 0; i < structureCount; i++)
+        {
+            ChunkCoordinate chunkCoord = readChunkCoord(in);
+            structuresOut.put(chunkCoord, readStructure(in, strings, world));
+        }
+        int nullChunkCount = readVarInt(in);
+        for (int i = 0; i < nullChunkCount; i++)
+        {
+            nullChunksOut.add(readChunkCoord(in));
+        }
+        if (version >= 2)
+        {
+            int dependencyCount = readVarInt(in);
+            for (int i = 0; i < dependencyCount; i++)
+            {
+                int regionX = readSignedVarInt(in);
+                int regionZ = readSignedVarInt(in);
+                dependenciesOut.add(ChunkCoordinate.toLong(regionX, regionZ));
+            }
+        }
+    }
+
+    /**
+     * Writes the spawned structures file, used for the distance checks
+     * between structures.
+     * @param spawnedStructures Chunks of every spawned structure, by name.
+     * @return The contents of the file.
+     */
+    static byte[] writeSpawnedStructures(Map<String, Stack<ChunkCoordinate>> spawnedStructures)
+    {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        try
+        {
+            writeVarInt(out, spawnedStructures.size());
+            for (Map.Entry<String, Stack<ChunkCoordinate>> entry : spawnedStructures.entrySet())
+            {
+                writeVarInt(out, strings.indexOf(entry.getKey()));
+                writeVarInt(out, entry.getValue().size());
+                for (ChunkCoordinate chunkCoord : entry.getValue())
+                {
+                    writeChunkCoord(out, chunkCoord);
+                }
+            }
+            out.flush();
+            return finish(strings, body);
+        } catch (IOException e)
+        {
+            // Cannot happen, only writing to memory
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads the spawned structures file.
+     * @param data The contents of the file.
+     * @return Chunks of every spawned structure, by name.
+     * @throws IOException If the file is corrupt.
+     */
+    static Map<String, Stack<ChunkCoordinate>> readSpawnedStructures(byte[] data) throws IOException
+    {
+        DataInputStream in = start(data);
+        readVersion(in);
+        String[] strings = readStringTable(in);
+
+        Map<String, Stack<ChunkCoordinate>> spawnedStructures = new HashMap<String, Stack<ChunkCoordinate>>();
+        int count = readVarInt(in);
+        for (int i = 0; i < count; i++)
+        {
+            String name = readString(in, strings);
+            Stack<ChunkCoordinate> chunks = new Stack<ChunkCoordinate>();
+            int chunkCount = readVarInt(in);
+            for (int j = 0; j < chunkCount; j++)
+            {
+                chunks.add(readChunkCoord(in));
+            }
+            spawnedStructures.put(name, chunks);
+        }
+        return spawnedStructures;
+    }
+
+    private static void writeStructure(DataOutputStream out, StringTable strings, ChunkCoordinate chunkCoord, CustomObjectStructure structure) throws IOException
+    {
+        writeChunkCoord(out, chunkCoord);
+
+        CustomObjectCoordinate start = structure.Start;
+        out.writeBoolean(start != null);
+        if (start == null)
+        {
+            return;
+        }
+        writeObject(out, strings, start);
+
+        // Only the origin of a structure is saved with the ObjectsToSpawn,
+        // SmoothingAreasToSpawn etc. of the whole structure, all other
+        // chunks of the structure are reconstituted from it when loading
+        if (chunkCoord.getChunkX() != start.getChunkX() || chunkCoord.getChunkZ() != start.getChunkZ())
+        {
+            for (int i = 0; i < 5; i++)
+            {
+                writeVarInt(out, 0);
+            }
+            return;
+        }
+
+        writeVarInt(out, structure.ObjectsToSpawn.size());
+        for (Map.Entry<ChunkCoordinate, Stack<CustomObjectCoordinate>> objectsInChunk : structure.ObjectsToSpawn.entrySet())
+        {
+            writeChunkCoord(out, objectsInChunk.getKey());
+            writeVarInt(out, objectsInChunk.getValue().size());
+            for (CustomObjectCoordinate coord : objectsInChunk.getValue())
+            {
+                writeObject(out, strings, coord);
+            }
+        }
+
+        writeVarInt(out, structure.SmoothingAreasToSpawn.size());
+        for (Map.Entry<ChunkCoordinate, ArrayList<Object[]>> smoothingAreasInChunk : structure.SmoothingAreasToSpawn.entrySet())
+        {
+            writeChunkCoord(out, smoothingAreasInChunk.getKey());
+            writeVarInt(out, smoothingAreasInChunk.getValue().size());
+            for (Object[] smoothingArea : smoothingAreasInChunk.getValue())
+            {
+                writeVarInt(out, smoothingArea.length);
+                for (Object value : smoothingArea)
+                {
+                    writeSignedVarInt(out, (Integer) value);
+                }
+            }
+        }
+
+        writeVarInt(out, structure.modData.size());
+        for (ModDataFunction modData : structure.modData)
+        {
+            writeBlockCoords(out, modData.x, modData.y, modData.z);
+            writeVarInt(out, strings.indexOf(modData.modId));
+            writeVarInt(out, strings.indexOf(modData.modData));
+        }
+
+        writeVarInt(out, structure.spawnerData.size());
+        for (SpawnerFunction spawnerData : structure.spawnerData)
+        {
+            writeBlockCoords(out, spawnerData.x, spawnerData.y, spawnerData.z);
+            writeVarInt(out, strings.indexOf(spawnerData.mobName));
+            writeVarInt(out, strings.indexOf(spawnerData.originalnbtFileName));
+            writeVarInt(out, strings.indexOf(spawnerData.nbtFileName));
+            writeSignedVarInt(out, spawnerData.groupSize);
+            writeSignedVarInt(out, spawnerData.interval);
+            writeSignedVarInt(out, spawnerData.spawnChance);
+            writeSignedVarInt(out, spawnerData.maxCount);
+            writeSignedVarInt(out, spawnerData.despawnTime);
+            out.writeDouble(spawnerData.velocityX);
+            out.writeDouble(spawnerData.velocityY);
+            out.writeDouble(spawnerData.velocityZ);
+            out.writeBoolean(spawnerData.velocityXSet);
+            out.writeBoolean(spawnerData.velocityYSet);
+            out.writeBoolean(spawnerData.velocityZSet);
+            out.writeFloat(spawnerData.yaw);
+            out.writeFloat(spawnerData.pitch);
+        }
+
+        writeVarInt(out, structure.particleData.size());
+        for (ParticleFunction particleData : structure.particleData)
+        {
+            writeBlockCoords(out, particleData.x, particleData.y, particleData.z);
+            writeVarInt(out, strings.indexOf(particleData.particleName));
+            out.writeDouble(particleData.interval);
+            out.writeDouble(particleData.velocityX);
+            out.writeDouble(particleData.velocityY);
+            out.writeDouble(particleData.velocityZ);
+            out.writeBoolean(particleData.velocityXSet);
+            out.writeBoolean(particleData.velocityYSet);
+            out.writeBoolean(particleData.velocityZSet);
+        }
+    }
+
+    private static CustomObjectStructure readStructure(DataInputStream in, String[] strings, LocalWorld world) throws IOException
+    {
+        CustomObjectCoordinate structureStart = null;
+        Map<ChunkCoordinate, Stack<CustomObjectCoordinate>> objectsToSpawn = new HashMap<ChunkCoordinate, Stack<CustomObjectCoordinate>>();
+        Map<ChunkCoordinate, ArrayList<Object[]>> smoothingAreasToSpawn = new HashMap<ChunkCoordinate, ArrayList<Object[]>>();
+        HashSet<ModDataFunction> modDataSet = new HashSet<ModDataFunction>();
+        HashSet<SpawnerFunction> spawnerDataSet = new HashSet<SpawnerFunction>();
+        HashSet<ParticleFunction> particleDataSet = new HashSet<ParticleFunction>();
+
+        if (in.readBoolean())
+        {
+            structureStart = readObject(in, strings, world);
+
+            int chunkCount = readVarInt(in);
+            for (int i = 0; i < chunkCount; i++)
+            {
+                ChunkCoordinate chunkCoord = readChunkCoord(in);
+                int count = readVarInt(in);
+                Stack<CustomObjectCoordinate> coords = new Stack<CustomObjectCoordinate>();
+                for (int j = 0; j < count; j++)
+                {
+                    coords.add(readObject(in, strings, world));
+                }
+                objectsToSpawn.put(chunkCoord, coords);
+            }
+
+            chunkCount = readVarInt(in);
+            for (int i = 0; i < chunkCount; i++)
+            {
+                ChunkCoordinate chunkCoord = readChunkCoord(in);
+                int count = readVarInt(in);
+                ArrayList<Object[]> smoothingAreas = new ArrayList<Object[]>(count);
+                for (int j = 0; j < count; j++)
+                {
+                    Object[] smoothingArea = new Object[readVarInt(in)];
+                    for (int k = 0; k < smoothingArea.length; k++)
+                    {
+                        smoothingArea[k] = readSignedVarInt(in);
+                    }
+                    smoothingAreas.add(smoothingArea);
+                }
+                smoothingAreasToSpawn.put(chunkCoord, smoothingAreas);
+            }
+
+            int count = readVarInt(in);
+            for (int i = 0; i < count; i++)
+            {
+                ModDataFunction modData = new ModDataFunction();
+                modData.x = readSignedVarInt(in);
+                modData.y = readSignedVarInt(in);
+                modData.z = readSignedVarInt(in);
+                modData.modId = readString(in, strings);
+                modData.modData = readString(in, strings);
+                modDataSet.add(modData);
+            }
+
+            count = readVarInt(in);
+            for (int i = 0; i < count; i++)
+            {
+                SpawnerFunction spawnerData = new SpawnerFunction();
+                spawnerData.x = readSignedVarInt(in);
+                spawnerData.y = readSignedVarInt(in);
+                spawnerData.z = readSignedVarInt(in);
+                spawnerData.mobName = readString(in, strings);
+                spawnerData.originalnbtFileName = readString(in, strings);
+                spawnerData.nbtFileName = readString(in, strings);
+                spawnerData.groupSize = readSignedVarInt(in);
+                spawnerData.interval = readSignedVarInt(in);
+                spawnerData.spawnChance = readSignedVarInt(in);
+                spawnerData.maxCount = readSignedVarInt(in);
+                spawnerData.despawnTime = readSignedVarInt(in);
+                spawnerData.velocityX = in.readDouble();
+                spawnerData.velocityY = in.readDouble();
+                spawnerData.velocityZ = in.readDouble();
+                spawnerData.velocityXSet = in.readBoolean();
+                spawnerData.velocityYSet = in.readBoolean();
+                spawnerData.velocityZSet = in.readBoolean();
+                spawnerData.yaw = in.readFloat();
+                spawnerData.pitch = in.readFloat();
+                spawnerDataSet.add(spawnerData);
+            }
+
+            count = readVarInt(in);
+            for (int i = 0; i < count; i++)
+            {
+                ParticleFunction particleData = new ParticleFunction();
+                particleData.x = readSignedVarInt(in);
+                particleData.y = readSignedVarInt(in);
+                particleData.z = readSignedVarInt(in);
+                particleData.particleName = readString(in, strings);
+                particleData.interval = in.readDouble();
+                particleData.velocityX = in.readDouble();
+                particleData.velocityY = in.readDouble();
+                particleData.velocityZ = in.readDouble();
+                particleData.velocityXSet = in.readBoolean();
+                particleData.velocityYSet = in.readBoolean();
+                particleData.velocityZSet = in.readBoolean();
+                particleDataSet.add(particleData);
+            }
+        }
+
+        CustomObjectStructure structure;
+        if (world.getConfigs().getWorldConfig().IsOTGPlus)
+        {
+            structure = new CustomObjectStructure(world, structureStart, objectsToSpawn, smoothingAreasToSpawn, 0);
+        } else {
+            structure = new CustomObjectStructure(structureStart);
+        }
+        structure.startChunkBlockChecksDone = true;
+        structure.saveRequired = false;
+        structure.modData = modDataSet;
+        structure.spawnerData = spawnerDataSet;
+        structure.particleData = particleDataSet;
+        return structure;
+    }
+
+    private static void writeObject(DataOutputStream out, StringTable strings, CustomObjectCoordinate coord) throws IOException
+    {
+        writeVarInt(out, strings.indexOf(coord.BO3Name));
+        out.writeByte(coord.rotation == null ? -1 : coord.rotation.getRotationId());
+        writeBlockCoords(out, coord.getX(), coord.getY(), coord.getZ());
+    }
+
+    private static CustomObjectCoordinate readObject(DataInputStream in, String[] strings, LocalWorld world) throws IOException
+    {
+        CustomObjectCoordinate coord = new CustomObjectCoordinate(world, null, null, null, 0, 0, 0, false, 0, false, false, null);
+        coord.BO3Name = readString(in, strings);
+        coord.rotation = Rotation.getRotation(in.readByte());
+        coord.x = readSignedVarInt(in);
+        coord.y = readSignedVarInt(in);
+        coord.z = readSignedVarInt(in);
+        return coord;
+    }
+
+    private static void writeChunkCoord(DataOutputStream out, ChunkCoordinate chunkCoord) throws IOException
+    {
+        writeSignedVarInt(out, chunkCoord.getChunkX());
+        writeSignedVarInt(out, chunkCoord.getChunkZ());
+    }
+
+    private static ChunkCoordinate readChunkCoord(DataInputStream in) throws IOException
+    {
+        int chunkX = readSignedVarInt(in);
+        int chunkZ = readSignedVarInt(in);
+        return ChunkCoordinate.fromChunkCoords(chunkX, chunkZ);
+    }
+
+    private static void writeBlockCoords(DataOutputStream out, int x, int y, int z) throws IOException
+    {
+        writeSignedVarInt(out, x);
+        writeSignedVarInt(out, y);
+        writeSignedVarInt(out, z);
+    }
+
+    private static byte[] finish(StringTable strings, ByteArrayOutputStream body) throws IOException
+    {
+        ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() / 4 + 64);
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(file));
+        out.writeInt(MAGIC);
+        writeVarInt(out, VERSION);
+        writeVarInt(out, strings.strings.size());
+        for (String string : strings.strings)
+        {
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        body.writeTo(out);
+        out.close();
+        return file.toByteArray();
+    }
+
+    private static DataInputStream start(byte[] data) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
+        if (in.readInt() != MAGIC)
+        {
+            throw new IOException("Not a structure data file");
+        }
+        return in;
+    }
+
+    private static int readVersion(DataInputStream in) throws IOException
+    {
+        int version = readVarInt(in);
+        if (version < 1 || version > VERSION)
+        {
+            throw new IOException("Unsupported structure data version " + version);
+        }
+        return version;
+    }
+
+    private static String[] readStringTable(DataInputStream in) throws IOException
+    {
+        String[] strings = new String[readVarInt(in)];
+        for (int i = 0; i < strings.length; i++)
+        {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, UTF_8);
+        }
+        return strings;
+    }
+
+    private static String readString(DataInputStream in, String[] strings) throws IOException
+    {
+        int index = readVarInt(in);
+        if (index == 0)
+        {
+            return null;
+        }
+        if (index > strings.length)
+        {
+            throw new IOException("String " + index + " not in string table");
+        }
+        return strings[index - 1];
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static void writeSignedVarInt(DataOutputStream out, int value) throws IOException
+    {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readSignedVarInt(DataInputStream in) throws IOException
+    {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * All different strings in a file. Index 0 is reserved for null.
+     */
+    private static final class StringTable
+    {
+        private final List<String> strings = new ArrayList<String>();
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+        int indexOf(String string)
+        {
+            if (string == null)
+            {
+                return 0;
+            }
+            Integer index = this.indices.get(string);
+            if (index == null)
+            {
+                this.strings.add(string);
+                index = this.strings.size();
+                this.indices.put(string, index);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.pg85.otg.customobjects;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.logging.LogMarker;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Writes snapshots of the structure cache to disk on a background thread, so
+ * that population can continue while the files are written. Snapshots are
+ * written one at a time, in the order they were submitted. All worlds share
+ * the same thread.
+ *
+ * <p>Remembers a checksum of every file it has read or written, so that files
+ * that didn't change since the last save aren't written again. Files that are
+ * waiting to be written are read from the snapshot instead of from disk.
+ */
+final class StructureDataWriter
+{
+    // Checksum of a file with unknown contents, no byte array can have it
+    private static final Long UNKNOWN_CHECKSUM = -1L;
+
+    private static ExecutorService executor;
+
+    private final String worldName;
+    private Future<Set<File>> lastWrite;
+    // Checksums of the files on disk
+    private final Map<File, Long> checksums = new HashMap<File, Long>();
+    // Files that have been submitted but not written yet
+    private final Map<File, PendingFile> pendingFiles = new HashMap<File, PendingFile>();
+
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotBytes;
+    private volatile int lastFilesWritten;
+    private volatile int lastFilesSkipped;
+    private volatile int lastFilesFailed;
+    private volatile long lastWriteMillis;
+    private volatile int pendingWrites;
+
+    StructureDataWriter(String worldName)
+    {
+        this.worldName = worldName;
+    }
+
+    /**
+     * Gets whether the given file exists, or will exist once all submitted
+     * snapshots have been written.
+     * @param file The file.
+     * @return True if the file exists.
+     */
+    synchronized boolean exists(File file)
+    {
+        PendingFile pending = this.pendingFiles.get(file);
+        if (pending != null)
+        {
+            return pending.contents != null;
+        }
+        return file.exists();
+    }
+
+    /**
+     * Reads a file written by this writer, and remembers its contents so
+     * that it isn't written again if it didn't change. If the file is
+     * waiting to be written, the contents that will be written are returned.
+     * @param file The file.
+     * @return The contents of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    synchronized byte[] read(File file) throws IOException
+    {
+        PendingFile pending = this.pendingFiles.get(file);
+        if (pending != null)
+        {
+            if (pending.contents == null)
+            {
+                throw new FileNotFoundException(file + " is being deleted");
+            }
+            return pending.contents;
+        }
+
+        byte[] contents = new byte[(int) file.length()];
+        DataInputStream stream = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            stream.readFully(contents);
+        } finally {
+            stream.close();
+        }
+        this.checksums.put(file, getChecksum(contents));
+        return contents;
+    }
+
+    /**
+     * Writes the given files on the background thread. Files that are the
+     * same as when they were last written are skipped. Files with null
+     * contents are deleted.
+     * @param snapshot       The files and their contents.
+     * @param snapshotMillis Time it took to take the snapshot, for the
+     *                       statistics.
+     * @return The files that could not be written, once writing is done.
+     */
+    synchronized Future<Set<File>> submit(Map<File, byte[]> snapshot, long snapshotMillis)
+    {
+        final Map<File, PendingFile> files = new LinkedHashMap<File, PendingFile>();
+        long bytes = 0;
+        int skipped = 0;
+        for (Map.Entry<File, byte[]> file : snapshot.entrySet())
+        {
+            byte[] contents = file.getValue();
+            PendingFile pending = this.pendingFiles.get(file.getKey());
+            Long lastChecksum = pending != null ? pending.checksum : this.checksums.get(file.getKey());
+            if (contents == null)
+            {
+                // Only files that were read or written can exist
+                if (lastChecksum != null)
+                {
+                    files.put(file.getKey(), new PendingFile(null, null));
+                } else {
+                    skipped++;
+                }
+                continue;
+            }
+            bytes += contents.length;
+            Long checksum = getChecksum(contents);
+            if (checksum.equals(lastChecksum))
+            {
+                skipped++;
+            } else {
+                files.put(file.getKey(), new PendingFile(contents, checksum));
+            }
+        }
+        this.pendingFiles.putAll(files);
+        this.lastSnapshotMillis = snapshotMillis;
+        this.lastSnapshotBytes = bytes;
+        this.lastFilesWritten = files.size();
+        this.lastFilesSkipped = skipped;
+
+        this.pendingWrites++;
+        this.lastWrite = getExecutor().submit(new Callable<Set<File>>()
+        {
+            @Override
+            public Set<File> call()
+            {
+                long startTime = System.currentTimeMillis();
+                Set<File> failed = new HashSet<File>();
+                try
+                {
+                    for (Map.Entry<File, PendingFile> file : files.entrySet())
+                    {
+                        if (!writeFile(file.getKey(), file.getValue()))
+                        {
+                            failed.add(file.getKey());
+                        }
+                    }
+                    lastWriteMillis = System.currentTimeMillis() - startTime;
+                    lastFilesFailed = failed.size();
+                    if (failed.isEmpty())
+                    {
+                        OTG.log(LogMarker.INFO, "Saving done");
+                    } else {
+                        OTG.log(LogMarker.ERROR, "Could not save " + failed.size() + " structure data file(s) for world " + worldName);
+                    }
+                    return failed;
+                } finally {
+                    synchronized (StructureDataWriter.this)
+                    {
+                        pendingWrites--;
+                    }
+                }
+            }
+        });
+        return this.lastWrite;
+    }
+
+    /**
+     * Blocks until all submitted snapshots have been written.
+     */
+    void awaitWrites()
+    {
+        Future<Set<File>> write;
+        synchronized (this)
+        {
+            write = this.lastWrite;
+        }
+        if (write == null)
+        {
+            return;
+        }
+        try
+        {
+            write.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            OTG.log(LogMarker.ERROR, "Could not save structure data");
+            OTG.printStackTrace(LogMarker.ERROR, e.getCause());
+        }
+    }
+
+    /**
+     * Gets statistics of the last save.
+     * @return The statistics.
+     */
+    String getStats()
+    {
+        return "StructureDataWriter[lastSnapshotMillis=" + this.lastSnapshotMillis + ", lastSnapshotBytes=" + this.lastSnapshotBytes
+                + ", lastFilesWritten=" + this.lastFilesWritten + ", lastFilesSkipped=" + this.lastFilesSkipped
+                + ", lastFilesFailed=" + this.lastFilesFailed + ", lastWriteMillis=" + this.lastWriteMillis
+                + ", pendingWrites=" + this.pendingWrites + "]";
+    }
+
+    private static Long getChecksum(byte[] contents)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        // Include the length, to make collisions even less likely
+        return (crc.getValue() << 32) | (contents.length & 0xFFFFFFFFL);
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "OTG structure data writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Writes or deletes a file, and updates the checksums. Files are written
+     * to a temporary file first, which then replaces the old file, so that
+     * the old file is kept if the game is stopped while writing.
+     * @return True if the file was written.
+     */
+    private boolean writeFile(File file, PendingFile pending)
+    {
+        boolean written = false;
+        File tempFile = new File(file.getPath() + ".tmp");
+        try
+        {
+            if (pending.contents == null)
+            {
+                Files.deleteIfExists(file.toPath());
+            } else {
+                file.getParentFile().mkdirs();
+                OutputStream writer = new FileOutputStream(tempFile);
+                try
+                {
+                    writer.write(pending.contents);
+                } finally {
+                    writer.close();
+                }
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            written = true;
+        }
+        catch (IOException e)
+        {
+            OTG.log(LogMarker.ERROR, "Could not write " + file);
+            OTG.printStackTrace(LogMarker.ERROR, e);
+            tempFile.delete();
+        }
+
+        synchronized (this)
+        {
+            if (this.pendingFiles.get(file) == pending)
+            {
+                this.pendingFiles.remove(file);
+            }
+            if (!written)
+            {
+                // The file may still have its old contents, so write or delete it again next time
+                this.checksums.put(file, UNKNOWN_CHECKSUM);
+            } else if (pending.checksum != null)
+            {
+                this.checksums.put(file, pending.checksum);
+            } else {
+                this.checksums.remove(file);
+            }
+        }
+        return written;
+    }
+
+    private static final class PendingFile
+    {
+        // Null if the file is deleted
+        final byte[] contents;
+        final Long checksum;
+
+        PendingFile(byte[] contents, Long checksum)
+        {
+            this.contents = contents;
+            this.checksum = checksum;
+        }
+    }
+}
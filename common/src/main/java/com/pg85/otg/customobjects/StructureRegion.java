@@ -0,0 +1,136 @@
+package com.pg85.otg.customobjects;
+
+import com.pg85.otg.customobjects.bo3.ModDataFunction;
+import com.pg85.otg.customobjects.bo3.ParticleFunction;
+import com.pg85.otg.customobjects.bo3.SpawnerFunction;
+import com.pg85.otg.util.ChunkCoordinate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The part of the structure cache for a region of 32x32 chunks, stored in a
+ * single file, see {@link StructureDataFormat}. Regions are loaded when a
+ * chunk in them is first used and unloaded when they haven't been used for a
+ * while.
+ */
+final class StructureRegion
+{
+    final long regionKey;
+
+    final Map<ChunkCoordinate, CustomObjectStructure> worldInfoChunks = new HashMap<ChunkCoordinate, CustomObjectStructure>();
+    final Map<ChunkCoordinate, CustomObjectStructure> structureCache = new HashMap<ChunkCoordinate, CustomObjectStructure>();
+
+    /**
+     * The mod data, spawners and particles of the structure in
+     * worldInfoChunks that are inside each chunk. Only chunks that have any
+     * are present.
+     */
+    final Map<ChunkCoordinate, ChunkFunctions> functionsPerChunk = new HashMap<ChunkCoordinate, ChunkFunctions>();
+
+    /**
+     * Regions containing the start of a structure that has chunks in this
+     * region. Only the start of a structure is saved with the ObjectsToSpawn,
+     * SmoothingAreasToSpawn etc. of the whole structure, so these regions
+     * must be loaded together with this region.
+     */
+    final Set<Long> dependencies = new HashSet<Long>();
+
+    /**
+     * The save in which this region was last used, see
+     * {@link CustomObjectStructureCache#SaveToDisk()}.
+     */
+    int lastUsed;
+
+    StructureRegion(long regionKey)
+    {
+        this.regionKey = regionKey;
+    }
+
+    boolean contains(ChunkCoordinate chunkCoord)
+    {
+        return StructureDataFormat.getRegionKey(chunkCoord) == this.regionKey;
+    }
+
+    /**
+     * Updates the mod data, spawners and particles in the given chunk.
+     * @param chunkCoord The chunk.
+     * @param structure  The structure in worldInfoChunks for the chunk, may
+     *                   be null.
+     */
+    void indexFunctions(ChunkCoordinate chunkCoord, CustomObjectStructure structure)
+    {
+        this.functionsPerChunk.remove(chunkCoord);
+        if (structure == null)
+        {
+            return;
+        }
+
+        ChunkFunctions functions = new ChunkFunctions();
+        for (ModDataFunction modData : structure.modData)
+        {
+            if (isInChunk(modData.x, modData.z, chunkCoord))
+            {
+                functions.modData.add(modData);
+            }
+        }
+        for (SpawnerFunction spawner : structure.spawnerData)
+        {
+            if (isInChunk(spawner.x, spawner.z, chunkCoord))
+            {
+                functions.spawners.add(spawner);
+            }
+        }
+        for (ParticleFunction particle : structure.particleData)
+        {
+            if (isInChunk(particle.x, particle.z, chunkCoord))
+            {
+                functions.particles.add(particle);
+            }
+        }
+        if (!functions.isEmpty())
+        {
+            this.functionsPerChunk.put(chunkCoord, functions);
+        }
+    }
+
+    private static boolean isInChunk(int blockX, int blockZ, ChunkCoordinate chunkCoord)
+    {
+        return (blockX >> 4) == chunkCoord.getChunkX() && (blockZ >> 4) == chunkCoord.getChunkZ();
+    }
+
+    /**
+     * Gets whether this region has chunks in the structure cache that still
+     * have to be spawned.
+     * @return True if so.
+     */
+    boolean hasUnfinishedStructures()
+    {
+        for (CustomObjectStructure structure : this.structureCache.values())
+        {
+            if (structure != null)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The mod data, spawners and particles inside a chunk.
+     */
+    static final class ChunkFunctions
+    {
+        final ArrayList<ModDataFunction> modData = new ArrayList<ModDataFunction>();
+        final ArrayList<SpawnerFunction> spawners = new ArrayList<SpawnerFunction>();
+        final ArrayList<ParticleFunction> particles = new ArrayList<ParticleFunction>();
+
+        boolean isEmpty()
+        {
+            return this.modData.isEmpty() && this.spawners.isEmpty() && this.particles.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.pg85.otg.customobjects;
+
+import com.pg85.otg.util.ChunkCoordinate;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * View of either the world info chunks or the structure cache of all
+ * regions of a {@link CustomObjectStructureCache}. Looking up a chunk loads
+ * its region if it isn't loaded yet. Iterating only visits the loaded
+ * regions.
+ *
+ * <p>Putting or removing a world info chunk also updates the index of mod
+ * data, spawners and particles of its region.
+ */
+final class StructureRegionMap extends AbstractMap<ChunkCoordinate, CustomObjectStructure>
+{
+    private final CustomObjectStructureCache cache;
+    private final boolean worldInfoChunks;
+
+    /**
+     * Creates a new view.
+     * @param cache           The cache to get the regions from.
+     * @param worldInfoChunks True for a view of the world info chunks,
+     *                        false for a view of the structure cache.
+     */
+    StructureRegionMap(CustomObjectStructureCache cache, boolean worldInfoChunks)
+    {
+        this.cache = cache;
+        this.worldInfoChunks = worldInfoChunks;
+    }
+
+    private Map<ChunkCoordinate, CustomObjectStructure> getMap(StructureRegion region)
+    {
+        return this.worldInfoChunks ? region.worldInfoChunks : region.structureCache;
+    }
+
+    @Override
+    public CustomObjectStructure get(Object key)
+    {
+        if (!(key instanceof ChunkCoordinate))
+        {
+            return null;
+        }
+        return getMap(this.cache.GetRegion((ChunkCoordinate) key)).get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        if (!(key instanceof ChunkCoordinate))
+        {
+            return false;
+        }
+        return getMap(this.cache.GetRegion((ChunkCoordinate) key)).containsKey(key);
+    }
+
+    @Override
+    public CustomObjectStructure put(ChunkCoordinate key, CustomObjectStructure value)
+    {
+        StructureRegion region = this.cache.GetRegion(key);
+        if (this.worldInfoChunks)
+        {
+            region.indexFunctions(key, value);
+        }
+        return getMap(region).put(key, value);
+    }
+
+    @Override
+    public CustomObjectStructure remove(Object key)
+    {
+        if (!(key instanceof ChunkCoordinate))
+        {
+            return null;
+        }
+        StructureRegion region = this.cache.GetRegion((ChunkCoordinate) key);
+        if (this.worldInfoChunks)
+        {
+            region.functionsPerChunk.remove(key);
+        }
+        return getMap(region).remove(key);
+    }
+
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (StructureRegion region : this.cache.GetLoadedRegions())
+        {
+            size += getMap(region).size();
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<ChunkCoordinate, CustomObjectStructure>> entrySet()
+    {
+        return new AbstractSet<Entry<ChunkCoordinate, CustomObjectStructure>>()
+        {
+            @Override
+            public Iterator<Entry<ChunkCoordinate, CustomObjectStructure>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return StructureRegionMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the entries of all loaded regions.
+     */
+    private final class EntryIterator implements Iterator<Entry<ChunkCoordinate, CustomObjectStructure>>
+    {
+        private final Iterator<StructureRegion> regions = cache.GetLoadedRegions().iterator();
+        private StructureRegion region;
+        private Iterator<Entry<ChunkCoordinate, CustomObjectStructure>> entries;
+        private StructureRegion lastRegion;
+        private Iterator<Entry<ChunkCoordinate, CustomObjectStructure>> lastEntries;
+        private ChunkCoordinate lastKey;
+
+        @Override
+        public boolean hasNext()
+        {
+            while (this.entries == null || !this.entries.hasNext())
+            {
+                if (!this.regions.hasNext())
+                {
+                    return false;
+                }
+                this.region = this.regions.next();
+                this.entries = getMap(this.region).entrySet().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<ChunkCoordinate, CustomObjectStructure> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            Entry<ChunkCoordinate, CustomObjectStructure> entry = this.entries.next();
+            this.lastRegion = this.region;
+            this.lastEntries = this.entries;
+            this.lastKey = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (this.lastEntries == null)
+            {
+                throw new IllegalStateException();
+            }
+            this.lastEntries.remove();
+            if (worldInfoChunks)
+            {
+                this.lastRegion.functionsPerChunk.remove(this.lastKey);
+            }
+        }
+    }
+}
@@ -317,6 +317,7 @@ public class BO3 implements StructuredCustomObject
 					existingObject.modData.addAll(placeHolderStructure.modData);
 					existingObject.particleData.addAll(placeHolderStructure.particleData);
 					existingObject.spawnerData.addAll(placeHolderStructure.spawnerData);
+					world.getStructureCache().UpdateFunctionsInChunk(structureCoord);
 				} else {
 					world.getStructureCache().worldInfoChunks.put(structureCoord, placeHolderStructure);
 				}
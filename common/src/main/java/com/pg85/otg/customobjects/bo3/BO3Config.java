@@ -25,7 +25,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -58,7 +57,10 @@ public class BO3Config extends CustomObjectConfigFile
 
     public int timesSpawned = 0;
 
-    private Map<ChunkCoordinate, BlockFunction> HeightMap = null;
+    // Smooth area anchors per column, see getHeightMap. One array per
+    // combination of the smoothStartWood, smoothStartTop and SpawnUnderWater
+    // settings used.
+    private final BlockFunction[][] heightMaps = new BlockFunction[8][];
 
     private boolean inheritedBO3Loaded = false;
 
@@ -173,68 +175,86 @@ public class BO3Config extends CustomObjectConfigFile
 		return inheritedBO3s;
     }
 
-    public Map<ChunkCoordinate, BlockFunction> getHeightMap(BO3 start)
+    /**
+     * Gets the block to start smoothing from for each column of this BO3:
+     * the highest smooth area anchor if smoothStartTop is set, otherwise the
+     * smooth area anchor on the lowest layer of the BO3.
+     * @param start The start of the structure this BO3 is part of, which can
+     *              override the smoothing settings of this BO3.
+     * @return Array of 256 blocks, indexed by x + z * 16, see
+     * {@link #getHeightMapBlock(BlockFunction[], int, int)}. Columns without
+     * a smooth area anchor are null.
+     */
+    public BlockFunction[] getHeightMap(BO3 start)
     {
-    	if(HeightMap == null)
-    	{
-	        HeightMap = new HashMap<ChunkCoordinate, BlockFunction>();
-	        BlockFunction[] blocks = getBlocks();
+        boolean useStartSettings = start.getSettings().overrideChildSettings && overrideChildSettings;
+        boolean smoothStartWood = useStartSettings ? start.getSettings().smoothStartWood : this.smoothStartWood;
+        boolean smoothStartTop = useStartSettings ? start.getSettings().smoothStartTop : this.smoothStartTop;
+        boolean spawnUnderWater = start.getSettings().SpawnUnderWater;
+
+        int index = (smoothStartWood ? 1 : 0) | (smoothStartTop ? 2 : 0) | (spawnUnderWater ? 4 : 0);
+        BlockFunction[] heightMap = heightMaps[index];
+        if (heightMap == null)
+        {
+            heightMap = createHeightMap(smoothStartWood, smoothStartTop, spawnUnderWater);
+            heightMaps[index] = heightMap;
+        }
+        return heightMap;
+    }
 
-	        // make heightmap containing the highest or lowest blocks in this chunk
-	    	for(int x = 0; x <= 15; x ++)
-	    	{
-	    		for(int z = 0; z <= 15; z ++)
-	    		{
-	            	// Check if this is the highest block in the BO3 at these x-z coordinates
-	            	for(BlockFunction block2 : blocks)
-	            	{
-	            		if(block2.x < 0 || block2.x > 15 || block2.z < 0 || block2.z > 15)
-	            		{
-	            			throw new RuntimeException();
-	            		}
+    private BlockFunction[] createHeightMap(boolean smoothStartWood, boolean smoothStartTop, boolean spawnUnderWater)
+    {
+        BlockFunction[] heightMap = new BlockFunction[16 * 16];
+        int minY = getminY();
+        for (BlockFunction block : getBlocks())
+        {
+            if (block.x < 0 || block.x > 15 || block.z < 0 || block.z > 15)
+            {
+                throw new RuntimeException();
+            }
 
-	            		if(x == block2.x && z == block2.z)
-	            		{
-	            			boolean isSmoothAreaAnchor = false;
-	            			if(block2 instanceof RandomBlockFunction)
-	            			{
-            					for(LocalMaterialData material : ((RandomBlockFunction)block2).blocks)
-		            			{
-            						// TODO: Material should never be null, fix the code in RandomBlockFunction.load() that causes this.
-            						if(material == null)
-            						{
-            							continue;
-            						}
-            						if(material.isSmoothAreaAnchor(start.getSettings().overrideChildSettings && overrideChildSettings ? start.getSettings().smoothStartWood : smoothStartWood, start.getSettings().SpawnUnderWater))
-            						{
-            							isSmoothAreaAnchor = true;
-            							break;
-            						}
-		            			}
-	            			}
+            boolean isSmoothAreaAnchor = false;
+            if (block instanceof RandomBlockFunction)
+            {
+                for (LocalMaterialData material : ((RandomBlockFunction) block).blocks)
+                {
+                    // TODO: Material should never be null, fix the code in RandomBlockFunction.load() that causes this.
+                    if (material != null && material.isSmoothAreaAnchor(smoothStartWood, spawnUnderWater))
+                    {
+                        isSmoothAreaAnchor = true;
+                        break;
+                    }
+                }
+            } else {
+                isSmoothAreaAnchor = block.material.isSmoothAreaAnchor(smoothStartWood, spawnUnderWater);
+            }
 
-	            			if(
-            					isSmoothAreaAnchor ||
-        						(
-    								!(block2 instanceof RandomBlockFunction) &&
-    								block2.material.isSmoothAreaAnchor(start.getSettings().overrideChildSettings && overrideChildSettings ? start.getSettings().smoothStartWood : smoothStartWood, start.getSettings().SpawnUnderWater)
-								)
-        					)
-	            			{
-		            			if(
-		            				(!(start.getSettings().overrideChildSettings && overrideChildSettings ? start.getSettings().smoothStartTop : smoothStartTop) && block2.y == getminY()) ||
-			        				((start.getSettings().overrideChildSettings && overrideChildSettings ? start.getSettings().smoothStartTop : smoothStartTop) && (HeightMap.get(ChunkCoordinate.fromChunkCoords(block2.x, block2.z)) == null || block2.y > HeightMap.get(ChunkCoordinate.fromChunkCoords(block2.x, block2.z)).y))
-		    					)
-		            			{
-		            				HeightMap.put(ChunkCoordinate.fromChunkCoords(x, z), block2);
-		            			}
-	            			}
-	            		}
-	            	}
-	    		}
-	    	}
-    	}
-    	return HeightMap;
+            if (isSmoothAreaAnchor)
+            {
+                int column = block.x + block.z * 16;
+                if (smoothStartTop ? (heightMap[column] == null || block.y > heightMap[column].y) : block.y == minY)
+                {
+                    heightMap[column] = block;
+                }
+            }
+        }
+        return heightMap;
+    }
+
+    /**
+     * Gets a block of a height map, see {@link #getHeightMap(BO3)}.
+     * @param heightMap The height map.
+     * @param x         X position inside the BO3, may be outside 0-15.
+     * @param z         Z position inside the BO3, may be outside 0-15.
+     * @return The block, or null if there is none.
+     */
+    public static BlockFunction getHeightMapBlock(BlockFunction[] heightMap, int x, int z)
+    {
+        if (x < 0 || x > 15 || z < 0 || z > 15)
+        {
+            return null;
+        }
+        return heightMap[x + z * 16];
     }
 
     public BlockFunction[] getBlocks()
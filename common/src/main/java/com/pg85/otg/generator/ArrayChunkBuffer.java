@@ -0,0 +1,55 @@
+package com.pg85.otg.generator;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Y_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.pg85.otg.LocalMaterialData;
+import com.pg85.otg.util.ChunkCoordinate;
+
+import java.util.Arrays;
+
+/**
+ * Chunk buffer that only stores the materials in an array, so that a chunk
+ * can be generated without creating any Minecraft objects. Reused for
+ * several chunks by calling {@link #reset(ChunkCoordinate)}.
+ */
+final class ArrayChunkBuffer implements ChunkBuffer
+{
+    private final LocalMaterialData air;
+    private final LocalMaterialData[] blocks = new LocalMaterialData[CHUNK_X_SIZE * CHUNK_Y_SIZE * CHUNK_Z_SIZE];
+    private ChunkCoordinate chunkCoord;
+
+    ArrayChunkBuffer(LocalMaterialData air)
+    {
+        this.air = air;
+    }
+
+    /**
+     * Fills this buffer with air, so that it can be used for another chunk.
+     * @param chunkCoord The new chunk.
+     */
+    void reset(ChunkCoordinate chunkCoord)
+    {
+        this.chunkCoord = chunkCoord;
+        Arrays.fill(this.blocks, this.air);
+    }
+
+    @Override
+    public ChunkCoordinate getChunkCoordinate()
+    {
+        return this.chunkCoord;
+    }
+
+    @Override
+    public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material)
+    {
+        this.blocks[(blockX * CHUNK_Z_SIZE + blockZ) * CHUNK_Y_SIZE + blockY] = material;
+    }
+
+    @Override
+    public LocalMaterialData getBlock(int blockX, int blockY, int blockZ)
+    {
+        return this.blocks[(blockX * CHUNK_Z_SIZE + blockZ) * CHUNK_Y_SIZE + blockY];
+    }
+}
@@ -15,6 +15,7 @@ import com.pg85.otg.generator.biome.OldBiomeGenerator;
 import com.pg85.otg.generator.biome.OutputType;
 import com.pg85.otg.generator.noise.NoiseGeneratorNewOctaves;
 import com.pg85.otg.generator.noise.NoiseGeneratorPerlinOctaves;
+import com.pg85.otg.generator.noise.NoiseGeneratorPerlinOctavesBatched;
 import com.pg85.otg.generator.terrain.CavesGen;
 import com.pg85.otg.generator.terrain.RavinesGen;
 import com.pg85.otg.generator.terrain.TerrainGenBase;
@@ -22,7 +23,18 @@ import com.pg85.otg.util.ChunkCoordinate;
 import com.pg85.otg.util.helpers.MathHelper;
 import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ChunkProviderOTG
 {
@@ -33,45 +45,45 @@ public class ChunkProviderOTG
     public static final int HEIGHT_BITS = 8;
     public static final int HEIGHT_BITS_PLUS_FOUR = HEIGHT_BITS + 4;
 
+    // Enough columns for a row of 256 chunks on the noise lattice
+    private static final int NOISE_COLUMN_CACHE_SIZE = 256 * 4 * 16;
+
     private final LocalMaterialData air = OTG.toLocalMaterialData(DefaultMaterial.AIR, 0);
 
-    private final Random random;
     private final NoiseGeneratorPerlinOctaves noiseGen1;
     private final NoiseGeneratorPerlinOctaves noiseGen2;
     private final NoiseGeneratorPerlinOctaves noiseGen3;
     private final NoiseGeneratorNewOctaves noiseGen4;
     private final NoiseGeneratorPerlinOctaves noiseGen5;
     private final NoiseGeneratorPerlinOctaves noiseGen6;
-    private double[] rawTerrain;
-    private double[] noise4 = new double[CHUNK_X_SIZE * CHUNK_Z_SIZE];
-
-    private double[] noise3;
-    private double[] noise1;
-    private double[] noise2;
-    private double[] noise5;
-    private double[] noise6;
-    private float[] nearBiomeWeightArray;
-
-    private double riverVol;
-    private double riverHeight;
-    // Always false if improved rivers disabled
-    private boolean riverFound = false;
+    private final float[] nearBiomeWeightArray;
+    // Running sums of nearBiomeWeightArray along z, one row of
+    // maxSmoothDiameter + 1 sums for every x
+    private final double[] nearBiomeWeightRowSums;
 
     private final LocalWorld localWorld;
-    private double volatilityFactor;
-    private double heightFactor;
 
     private final ConfigProvider configProvider;
 
-    private final TerrainGenBase caveGen;
-    private final TerrainGenBase canyonGen;
+    private final TerrainGenBase<?> caveGen;
+    private final TerrainGenBase<?> canyonGen;
+
+    // Every thread generating terrain for this world gets its own working
+    // state, so that generate() can be called concurrently
+    private final ThreadLocal<TerrainGenerationContext> contexts = new ThreadLocal<TerrainGenerationContext>()
+    {
+        @Override
+        protected TerrainGenerationContext initialValue()
+        {
+            return new TerrainGenerationContext();
+        }
+    };
 
-    private int[] biomeArray;
-    private int[] riverArray;
-    // Water level at lower resolution
-    private final byte[] waterLevelRaw = new byte[25];
-    // Water level for each column
-    private final byte[] waterLevel = new byte[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    // Null if CacheTerrainNoise is disabled for this world
+    private final NoiseColumnCache noiseColumnCache;
+
+    // Lazily created, see generateParallel
+    private ExecutorService workerPool;
 
     private final int heightScale;
     private final int heightCap;
@@ -86,19 +98,26 @@ public class ChunkProviderOTG
         this.heightCap = world.getHeightCap();
         this.heightScale = world.getHeightScale();
 
-        this.random = new Random(world.getSeed());
+        WorldConfig worldConfig = configs.getWorldConfig();
+        Random random = new Random(world.getSeed());
 
-        this.noiseGen1 = new NoiseGeneratorPerlinOctaves(this.random, 16);
-        this.noiseGen2 = new NoiseGeneratorPerlinOctaves(this.random, 16);
-        this.noiseGen3 = new NoiseGeneratorPerlinOctaves(this.random, 8);
-        this.noiseGen4 = new NoiseGeneratorNewOctaves(this.random, 4);
-        this.noiseGen5 = new NoiseGeneratorPerlinOctaves(this.random, 10);
-        this.noiseGen6 = new NoiseGeneratorPerlinOctaves(this.random, 16);
+        this.noiseGen1 = createPerlinOctaves(worldConfig, random, 16);
+        this.noiseGen2 = createPerlinOctaves(worldConfig, random, 16);
+        this.noiseGen3 = createPerlinOctaves(worldConfig, random, 8);
+        this.noiseGen4 = new NoiseGeneratorNewOctaves(random, 4);
+        this.noiseGen5 = createPerlinOctaves(worldConfig, random, 10);
+        this.noiseGen6 = createPerlinOctaves(worldConfig, random, 16);
 
-        this.caveGen = new CavesGen(configs.getWorldConfig(), this.localWorld);
-        this.canyonGen = new RavinesGen(configs.getWorldConfig(), this.localWorld);
+        this.caveGen = new CavesGen(worldConfig, this.localWorld);
+        this.canyonGen = new RavinesGen(worldConfig, this.localWorld);
 
-        WorldConfig worldConfig = configs.getWorldConfig();
+        if (worldConfig.cacheTerrainNoise)
+        {
+            int octavesPerColumn = (16 + 16 + 8) * (this.heightCap / 8 + 1) + 16 + (worldConfig.oldTerrainGenerator ? 10 : 0);
+            this.noiseColumnCache = new NoiseColumnCache(NOISE_COLUMN_CACHE_SIZE, octavesPerColumn);
+        } else {
+            this.noiseColumnCache = null;
+        }
 
         // Contains 2d array maxSmoothDiameter*maxSmoothDiameter.
         // Maximum weight is in array center.
@@ -117,33 +136,217 @@ public class ChunkProviderOTG
             }
         }
 
+        this.nearBiomeWeightRowSums = new double[maxSmoothDiameter * (maxSmoothDiameter + 1)];
+        for (int x = 0; x < maxSmoothDiameter; x++)
+        {
+            for (int z = 0; z < maxSmoothDiameter; z++)
+            {
+                this.nearBiomeWeightRowSums[x * (maxSmoothDiameter + 1) + z + 1] = this.nearBiomeWeightRowSums[x * (maxSmoothDiameter + 1) + z]
+                        + this.nearBiomeWeightArray[x + z * maxSmoothDiameter];
+            }
+        }
+
+    }
+
+    private static NoiseGeneratorPerlinOctaves createPerlinOctaves(WorldConfig worldConfig, Random random, int numOctaves)
+    {
+        if (worldConfig.batchedTerrainNoise)
+        {
+            return new NoiseGeneratorPerlinOctavesBatched(random, numOctaves);
+        }
+        return new NoiseGeneratorPerlinOctaves(random, numOctaves);
     }
 
-    BiomeConfig[] biomes = new BiomeConfig[1024];
     public void generate(ChunkBuffer chunkBuffer)
+    {
+        boolean dry = generateBase(chunkBuffer);
+        prepareDefaultStructures(chunkBuffer.getChunkCoordinate(), dry);
+    }
+
+    /**
+     * Generates only the terrain and the biome blocks of a chunk, and returns
+     * the heights of its columns. Caves, ravines and vanilla structures are
+     * skipped and no blocks are handed to Minecraft, which makes this a lot
+     * faster than {@link #generate(ChunkBuffer)}. Used to look up heights in
+     * chunks that haven't been generated yet. Safe to call from multiple
+     * threads at once.
+     *
+     * <p>As caves and ravines are missing, the heights can be higher than in
+     * the generated chunk where a carver reaches the surface.
+     *
+     * @param chunkCoord The chunk.
+     * @return The heights of the chunk.
+     */
+    public SurfaceHeightMap generateHeightMap(ChunkCoordinate chunkCoord)
+    {
+        TerrainGenerationContext context = this.contexts.get();
+        context.reset(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
+        if (context.heightMapBuffer == null)
+        {
+            context.heightMapBuffer = new ArrayChunkBuffer(this.air);
+        }
+        ArrayChunkBuffer chunkBuffer = context.heightMapBuffer;
+        chunkBuffer.reset(chunkCoord);
+
+        generateTerrain(context, chunkBuffer);
+        addBiomeBlocksAndCheckWater(context, chunkBuffer);
+
+        return new SurfaceHeightMap(chunkBuffer, ChunkCoordinate.CHUNK_Y_SIZE - 1);
+    }
+
+    /**
+     * Generates the base terrain for all given chunks, using a worker thread
+     * per available core. The output is identical to calling
+     * {@link #generate(ChunkBuffer)} for each chunk in turn. The vanilla
+     * structures are still prepared on the calling thread, in the order of
+     * the given collection, as Minecraft's structure generators are not
+     * thread safe.
+     *
+     * <p>If the biome generator of the world cannot be queried by several
+     * threads at once, or if the saved biomes of the world are used, all
+     * chunks are generated on the calling thread.
+     *
+     * @param chunkBuffers The chunks to generate.
+     */
+    public void generateParallel(Collection<? extends ChunkBuffer> chunkBuffers)
+    {
+        if (chunkBuffers.size() < 2 || !this.localWorld.getBiomeGenerator().isThreadSafe()
+                || configProvider.getWorldConfig().populateUsingSavedBiomes)
+        {
+            for (ChunkBuffer chunkBuffer : chunkBuffers)
+            {
+                generate(chunkBuffer);
+            }
+            return;
+        }
+
+        ExecutorService pool = getWorkerPool();
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(chunkBuffers.size());
+        for (final ChunkBuffer chunkBuffer : chunkBuffers)
+        {
+            results.add(pool.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return generateBase(chunkBuffer);
+                }
+            }));
+        }
+
+        Iterator<Future<Boolean>> resultIterator = results.iterator();
+        for (ChunkBuffer chunkBuffer : chunkBuffers)
+        {
+            boolean dry;
+            try
+            {
+                dry = resultIterator.next().get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while generating terrain", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new RuntimeException("Error while generating terrain for chunk " + chunkBuffer.getChunkCoordinate(), e.getCause());
+            }
+            prepareDefaultStructures(chunkBuffer.getChunkCoordinate(), dry);
+        }
+    }
+
+    /**
+     * Stops the worker threads used by {@link #generateParallel(Collection)}.
+     * Should be called when the world is unloaded.
+     */
+    public synchronized void shutdown()
+    {
+        if (this.workerPool != null)
+        {
+            this.workerPool.shutdown();
+            this.workerPool = null;
+        }
+    }
+
+    private synchronized ExecutorService getWorkerPool()
+    {
+        if (this.workerPool == null)
+        {
+            final String worldName = this.localWorld.getName();
+            this.workerPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+            {
+                private final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "OTG terrain worker " + worldName + " #" + this.threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return this.workerPool;
+    }
+
+    /**
+     * Generates everything except for the vanilla structures. Safe to call
+     * from multiple threads at once, unless the saved biomes of the world
+     * are used.
+     *
+     * @param chunkBuffer The chunk to generate.
+     * @return Whether the chunk is dry, see
+     *         {@link #addBiomeBlocksAndCheckWater(TerrainGenerationContext, ChunkBuffer)}.
+     */
+    private boolean generateBase(ChunkBuffer chunkBuffer)
     {
         ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
-        int x = chunkCoord.getChunkX();
-        int z = chunkCoord.getChunkZ();
-        this.random.setSeed(x * 341873128712L + z * 132897987541L);
+        TerrainGenerationContext context = this.contexts.get();
+        context.reset(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
 
-        generateTerrain(chunkBuffer);
+        generateTerrain(context, chunkBuffer);
 
-        boolean dry = addBiomeBlocksAndCheckWater(chunkBuffer);
+        boolean dry = addBiomeBlocksAndCheckWater(context, chunkBuffer);
 
-        this.caveGen.generate(chunkBuffer);
-        this.canyonGen.generate(chunkBuffer);
+        if (configProvider.getWorldConfig().populateUsingSavedBiomes)
+        {
+            // The carvers use the biomes of the world, which are the saved
+            // biomes in this mode
+            for (int x = 0; x < CHUNK_X_SIZE; x++)
+            {
+                for (int z = 0; z < CHUNK_Z_SIZE; z++)
+                {
+                    LocalBiome biome = this.localWorld.getBiome(chunkCoord.getBlockX() + x, chunkCoord.getBlockZ() + z);
+                    context.carverBiomes.setBiome(x, z, biome.getBiomeConfig());
+                }
+            }
+        } else {
+            // Biome array now holds the biomes of this chunk
+            for (int x = 0; x < CHUNK_X_SIZE; x++)
+            {
+                for (int z = 0; z < CHUNK_Z_SIZE; z++)
+                {
+                    context.carverBiomes.setBiome(x, z, toBiomeConfig(context, context.biomeArray[x + z * CHUNK_X_SIZE]));
+                }
+            }
+        }
+
+        this.caveGen.generate(chunkBuffer, context.carverBiomes);
+        this.canyonGen.generate(chunkBuffer, context.carverBiomes);
+
+        return dry;
+    }
 
+    private void prepareDefaultStructures(ChunkCoordinate chunkCoord, boolean dry)
+    {
         WorldConfig worldConfig = configProvider.getWorldConfig();
         if (worldConfig.ModeTerrain == WorldConfig.TerrainMode.Normal || worldConfig.ModeTerrain == WorldConfig.TerrainMode.OldGenerator)
         {
-            this.localWorld.prepareDefaultStructures(x, z, dry);
+            this.localWorld.prepareDefaultStructures(chunkCoord.getChunkX(), chunkCoord.getChunkZ(), dry);
         }
-        
-        biomes = new BiomeConfig[1024];
     }
 
-    protected void generateTerrain(ChunkBuffer chunkBuffer)
+    protected void generateTerrain(TerrainGenerationContext context, ChunkBuffer chunkBuffer)
     {
         ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
         int chunkX = chunkCoord.getChunkX();
@@ -159,23 +362,23 @@ public class ChunkProviderOTG
         BiomeGenerator biomeGenerator = this.localWorld.getBiomeGenerator();
         if (worldConfig.improvedRivers)
         {
-            this.riverArray = biomeGenerator.getBiomesUnZoomed(this.riverArray, chunkX * 4 - maxSmoothRadius, chunkZ * 4 - maxSmoothRadius, NOISE_MAX_X + maxSmoothDiameter, NOISE_MAX_Z + maxSmoothDiameter, OutputType.ONLY_RIVERS);
+            context.riverArray = biomeGenerator.getBiomesUnZoomed(context.riverArray, chunkX * 4 - maxSmoothRadius, chunkZ * 4 - maxSmoothRadius, NOISE_MAX_X + maxSmoothDiameter, NOISE_MAX_Z + maxSmoothDiameter, OutputType.ONLY_RIVERS);
         }
 
         if (biomeGenerator.canGenerateUnZoomed())
         {
-            this.biomeArray = biomeGenerator.getBiomesUnZoomed(this.biomeArray, chunkX * 4 - maxSmoothRadius, chunkZ * 4 - maxSmoothRadius, NOISE_MAX_X + maxSmoothDiameter, NOISE_MAX_Z + maxSmoothDiameter, OutputType.DEFAULT_FOR_WORLD);
+            context.biomeArray = biomeGenerator.getBiomesUnZoomed(context.biomeArray, chunkX * 4 - maxSmoothRadius, chunkZ * 4 - maxSmoothRadius, NOISE_MAX_X + maxSmoothDiameter, NOISE_MAX_Z + maxSmoothDiameter, OutputType.DEFAULT_FOR_WORLD);
         } else {
-            this.biomeArray = biomeGenerator.getBiomes(this.biomeArray, chunkX * CHUNK_X_SIZE, chunkZ * CHUNK_Z_SIZE, CHUNK_X_SIZE, CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
+            context.biomeArray = biomeGenerator.getBiomes(context.biomeArray, chunkX * CHUNK_X_SIZE, chunkZ * CHUNK_Z_SIZE, CHUNK_X_SIZE, CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
         }
 
-        generateTerrainNoise(chunkX * four, 0, chunkZ * four, maxYSections, usedYSections);
+        generateTerrainNoise(context, chunkX * four, 0, chunkZ * four, maxYSections, usedYSections);
        
         // Now that the raw terrain is generated, replace raw biome array with
         // fine-tuned one.
         if (biomeGenerator.canGenerateUnZoomed())
         {
-            this.biomeArray = biomeGenerator.getBiomes(this.biomeArray, chunkX * CHUNK_X_SIZE, chunkZ * CHUNK_Z_SIZE, CHUNK_X_SIZE, CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
+            context.biomeArray = biomeGenerator.getBiomes(context.biomeArray, chunkX * CHUNK_X_SIZE, chunkZ * CHUNK_Z_SIZE, CHUNK_X_SIZE, CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
         }
 
         final double oneEight = 0.125D;
@@ -188,10 +391,10 @@ public class ChunkProviderOTG
                 // Water level (fill final array based on smaller,
                 // non-smoothed
                 // array)
-                double waterLevel_x0z0 = this.waterLevelRaw[(x + 0) * NOISE_MAX_X + (z + 0)] & 0xFF;
-                double waterLevel_x0z1 = this.waterLevelRaw[(x + 0) * NOISE_MAX_X + (z + 1)] & 0xFF;
-                final double waterLevel_x1z0 = ((this.waterLevelRaw[(x + 1) * NOISE_MAX_X + (z + 0)] & 0xFF) - waterLevel_x0z0) * oneFourth;
-                final double waterLevel_x1z1 = ((this.waterLevelRaw[(x + 1) * NOISE_MAX_X + (z + 1)] & 0xFF) - waterLevel_x0z1) * oneFourth;
+                double waterLevel_x0z0 = context.waterLevelRaw[(x + 0) * NOISE_MAX_X + (z + 0)] & 0xFF;
+                double waterLevel_x0z1 = context.waterLevelRaw[(x + 0) * NOISE_MAX_X + (z + 1)] & 0xFF;
+                final double waterLevel_x1z0 = ((context.waterLevelRaw[(x + 1) * NOISE_MAX_X + (z + 0)] & 0xFF) - waterLevel_x0z0) * oneFourth;
+                final double waterLevel_x1z1 = ((context.waterLevelRaw[(x + 1) * NOISE_MAX_X + (z + 1)] & 0xFF) - waterLevel_x0z1) * oneFourth;
 
                 for (int piece_x = 0; piece_x < 4; piece_x++)
                 {
@@ -201,7 +404,7 @@ public class ChunkProviderOTG
                     for (int piece_z = 0; piece_z < 4; piece_z++)
                     {
                         // Fill water level array
-                        this.waterLevel[(z * 4 + piece_z) * 16 + (piece_x + x * 4)] = (byte) waterLevelForArray;
+                        context.waterLevel[(z * 4 + piece_z) * 16 + (piece_x + x * 4)] = (byte) waterLevelForArray;
                         waterLevelForArray += d17_1;
                     }
                     waterLevel_x0z0 += waterLevel_x1z0;
@@ -212,15 +415,15 @@ public class ChunkProviderOTG
                 // Terrain noise
                 for (int y = 0; y < oneEightOfHeight; y++)
                 {
-                    double x0z0 = this.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 0))];
-                    double x0z1 = this.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 0))];
-                    double x1z0 = this.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 0))];
-                    double x1z1 = this.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 0))];
+                    double x0z0 = context.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 0))];
+                    double x0z1 = context.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 0))];
+                    double x1z0 = context.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 0))];
+                    double x1z1 = context.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 0))];
 
-                    final double x0z0y1 = (this.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 1))] - x0z0) * oneEight;
-                    final double x0z1y1 = (this.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 1))] - x0z1) * oneEight;
-                    final double x1z0y1 = (this.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 1))] - x1z0) * oneEight;
-                    final double x1z1y1 = (this.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 1))] - x1z1) * oneEight;
+                    final double x0z0y1 = (context.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 1))] - x0z0) * oneEight;
+                    final double x0z1y1 = (context.rawTerrain[(((x + 0) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 1))] - x0z1) * oneEight;
+                    final double x1z0y1 = (context.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 0)) * maxYSections + (y + 1))] - x1z0) * oneEight;
+                    final double x1z1y1 = (context.rawTerrain[(((x + 1) * NOISE_MAX_Z + (z + 1)) * maxYSections + (y + 1))] - x1z1) * oneEight;
 
                     for (int piece_y = 0; piece_y < 8; piece_y++)
                     {
@@ -235,8 +438,8 @@ public class ChunkProviderOTG
                             final double d17 = (d12 - d11) * oneFourth;
                             for (int piece_z = 0; piece_z < 4; piece_z++)
                             {
-                                final BiomeConfig biomeConfig = toBiomeConfig(this.biomeArray[(z * 4 + piece_z) * 16 + (piece_x + x * 4)]);
-                                final int waterLevelMax = this.waterLevel[(z * 4 + piece_z) * 16 + (piece_x + x * 4)] & 0xFF;
+                                final BiomeConfig biomeConfig = toBiomeConfig(context, context.biomeArray[(z * 4 + piece_z) * 16 + (piece_x + x * 4)]);
+                                final int waterLevelMax = context.waterLevel[(z * 4 + piece_z) * 16 + (piece_x + x * 4)] & 0xFF;
                                 LocalMaterialData block = air;
                                 if (y * 8 + piece_y < waterLevelMax && y * 8 + piece_y > biomeConfig.waterLevelMin)
                                 {
@@ -269,20 +472,21 @@ public class ChunkProviderOTG
      * Adds the biome blocks like grass, dirt, sand and sandstone. Also adds
      * bedrock at the bottom of the map.
      * 
+     * @param context     The working state of the current thread.
      * @param chunkBuffer The the chunk to add the blocks to.
      * @return Whether there is a lot of water in this chunk. If yes, no
      *         villages will be placed.
      */
-    protected boolean addBiomeBlocksAndCheckWater(ChunkBuffer chunkBuffer)
+    protected boolean addBiomeBlocksAndCheckWater(TerrainGenerationContext context, ChunkBuffer chunkBuffer)
     {
         ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
 
         int dryBlocksOnSurface = 256;
 
         final double d1 = 0.03125D;
-        this.noise4 = this.noiseGen4.a(this.noise4, chunkCoord.getBlockX(), chunkCoord.getBlockZ(), CHUNK_X_SIZE, CHUNK_Z_SIZE, d1 * 2.0D, d1 * 2.0D, 1.0D);
+        context.noise4 = this.noiseGen4.a(context.noise4, chunkCoord.getBlockX(), chunkCoord.getBlockZ(), CHUNK_X_SIZE, CHUNK_Z_SIZE, d1 * 2.0D, d1 * 2.0D, 1.0D);
 
-        GeneratingChunk generatingChunk = new GeneratingChunk(random, waterLevel, noise4, heightCap);
+        GeneratingChunk generatingChunk = new GeneratingChunk(context.random, context.waterLevel, context.noise4, heightCap);
 
         for (int x = 0; x < CHUNK_X_SIZE; x++)
         {
@@ -291,7 +495,7 @@ public class ChunkProviderOTG
                 // The following code is executed for each column in the chunk
 
                 // Get the current biome config and some properties
-                final BiomeConfig biomeConfig = toBiomeConfig(this.biomeArray[(x + z * CHUNK_X_SIZE)]);
+                final BiomeConfig biomeConfig = toBiomeConfig(context, context.biomeArray[(x + z * CHUNK_X_SIZE)]);
 
                 biomeConfig.surfaceAndGroundControl.spawn(generatingChunk, chunkBuffer, biomeConfig, chunkCoord.getBlockX() + x, chunkCoord.getBlockZ() + z);
 
@@ -308,26 +512,36 @@ public class ChunkProviderOTG
         return dryBlocksOnSurface > 250;
     }
     
-    private void generateTerrainNoise(int xOffset, int yOffset, int zOffset, int maxYSections, int usedYSections)
+    private void generateTerrainNoise(TerrainGenerationContext context, int xOffset, int yOffset, int zOffset, int maxYSections, int usedYSections)
     {
-        if (this.rawTerrain == null || this.rawTerrain.length != NOISE_MAX_X * maxYSections * NOISE_MAX_Z)
+        if (context.rawTerrain == null || context.rawTerrain.length != NOISE_MAX_X * maxYSections * NOISE_MAX_Z)
         {
-            this.rawTerrain = new double[NOISE_MAX_X * maxYSections * NOISE_MAX_Z];
+            context.rawTerrain = new double[NOISE_MAX_X * maxYSections * NOISE_MAX_Z];
         }
 
         WorldConfig worldConfig = configProvider.getWorldConfig();
         final double xzScale = 684.41200000000003D * worldConfig.getFractureHorizontal();
         final double yScale = 684.41200000000003D * worldConfig.getFractureVertical();
 
-        if (worldConfig.oldTerrainGenerator)
+        if (this.noiseColumnCache != null)
         {
-            this.noise5 = this.noiseGen5.Noise2D(this.noise5, xOffset, zOffset, NOISE_MAX_X, NOISE_MAX_Z, 1.121D, 1.121D);
+            fillNoiseFromCache(context, xOffset, yOffset, zOffset, maxYSections, xzScale, yScale, worldConfig.oldTerrainGenerator);
+        } else {
+            if (worldConfig.oldTerrainGenerator)
+            {
+                context.noise5 = this.noiseGen5.Noise2D(context.noise5, xOffset, zOffset, NOISE_MAX_X, NOISE_MAX_Z, 1.121D, 1.121D);
+            }
+            context.noise6 = this.noiseGen6.Noise2D(context.noise6, xOffset, zOffset, NOISE_MAX_X, NOISE_MAX_Z, 200.0D, 200.0D);
+
+            context.noise3 = this.noiseGen3.Noise3D(context.noise3, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale / 80.0D, yScale / 160.0D, xzScale / 80.0D);
+            context.noise1 = this.noiseGen1.Noise3D(context.noise1, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale, yScale, xzScale);
+            context.noise2 = this.noiseGen2.Noise3D(context.noise2, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale, yScale, xzScale);
         }
-        this.noise6 = this.noiseGen6.Noise2D(this.noise6, xOffset, zOffset, NOISE_MAX_X, NOISE_MAX_Z, 200.0D, 200.0D);
 
-        this.noise3 = this.noiseGen3.Noise3D(this.noise3, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale / 80.0D, yScale / 160.0D, xzScale / 80.0D);
-        this.noise1 = this.noiseGen1.Noise3D(this.noise1, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale, yScale, xzScale);
-        this.noise2 = this.noiseGen2.Noise3D(this.noise2, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale, yScale, xzScale);
+        if (!worldConfig.oldTerrainGenerator)
+        {
+            prepareBiomeSmoothing(context, worldConfig.improvedRivers);
+        }
 
         int i3D = 0;
         int i2D = 0;       
@@ -336,11 +550,11 @@ public class ChunkProviderOTG
         {
             for (int z = 0; z < NOISE_MAX_Z; z++)
             {
-                final int biomeId = this.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))];
+                final int biomeId = context.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))];
 
-                BiomeConfig biomeConfig = toBiomeConfig(biomeId);
+                BiomeConfig biomeConfig = toBiomeConfig(context, biomeId);
                             	
-                double noiseHeight = this.noise6[i2D] / 8000.0D;
+                double noiseHeight = context.noise6[i2D] / 8000.0D;
                 if (noiseHeight < 0.0D)
                 {
                     noiseHeight = -noiseHeight * 0.3D;
@@ -370,12 +584,12 @@ public class ChunkProviderOTG
                 {
                     if (worldConfig.improvedRivers)
                     {
-                        this.biomeFactorWithRivers(x, z, usedYSections, noiseHeight);
+                        this.biomeFactorWithRivers(context, x, z, usedYSections, noiseHeight);
                     } else {
-                        this.biomeFactor(x, z, usedYSections, noiseHeight);
+                        this.biomeFactor(context, x, z, usedYSections, noiseHeight);
                     }
                 } else {
-                    this.oldBiomeFactor(x, z, i2D, usedYSections, noiseHeight);
+                    this.oldBiomeFactor(context, x, z, i2D, usedYSections, noiseHeight);
             	}
             
                 i2D++;
@@ -385,11 +599,11 @@ public class ChunkProviderOTG
                     double output;
                     double d8;
 
-                    if (this.riverFound)
+                    if (context.riverFound)
                     {
-                        d8 = (this.riverHeight - y) * 12.0D * 128.0D / this.heightCap / this.riverVol;
+                        d8 = (context.riverHeight - y) * 12.0D * 128.0D / this.heightCap / context.riverVol;
                     } else {
-                        d8 = (this.heightFactor - y) * 12.0D * 128.0D / this.heightCap / this.volatilityFactor;
+                        d8 = (context.heightFactor - y) * 12.0D * 128.0D / this.heightCap / context.volatilityFactor;
                     }
 
                     if (d8 > 0.0D)
@@ -397,10 +611,10 @@ public class ChunkProviderOTG
                         d8 *= 4.0D;
                     }
 
-                    final double vol1 = this.noise1[i3D] / 512.0D * biomeConfig.volatility1;
-                    final double vol2 = this.noise2[i3D] / 512.0D * biomeConfig.volatility2;
+                    final double vol1 = context.noise1[i3D] / 512.0D * biomeConfig.volatility1;
+                    final double vol2 = context.noise2[i3D] / 512.0D * biomeConfig.volatility2;
 
-                    final double noise = (this.noise3[i3D] / 10.0D + 1.0D) / 2.0D;
+                    final double noise = (context.noise3[i3D] / 10.0D + 1.0D) / 2.0D;
                     if (noise < biomeConfig.volatilityWeight1)
                     {
                         output = vol1;
@@ -423,21 +637,86 @@ public class ChunkProviderOTG
                             output = output * (1.0D - d12) + -10.0D * d12;
                         }
                     }
-                    if (this.riverFound)
+                    if (context.riverFound)
                     {
                         output += biomeConfig.riverHeightMatrix[y];
                     } else {
                         output += biomeConfig.heightMatrix[y];
                     }
 
-                    this.rawTerrain[i3D] = output;
+                    context.rawTerrain[i3D] = output;
                     i3D++;
                 }
             }
         }
     }
 
-    private void oldBiomeFactor(int x, int z, int i4, int ySections, double noiseHeight)
+    /**
+     * Fills the noise arrays of the context using the noise column cache,
+     * calculating only the lattice points that are not yet cached. Each
+     * column is calculated relative to its own lattice point, so that it
+     * has the same value for every chunk sharing it.
+     */
+    private void fillNoiseFromCache(TerrainGenerationContext context, int xOffset, int yOffset, int zOffset, int maxYSections, double xzScale, double yScale, boolean oldTerrainGenerator)
+    {
+        if (context.noise1 == null || context.noise1.length != NOISE_MAX_X * maxYSections * NOISE_MAX_Z)
+        {
+            context.noise1 = new double[NOISE_MAX_X * maxYSections * NOISE_MAX_Z];
+            context.noise2 = new double[NOISE_MAX_X * maxYSections * NOISE_MAX_Z];
+            context.noise3 = new double[NOISE_MAX_X * maxYSections * NOISE_MAX_Z];
+        }
+        if (context.noise5 == null || context.noise6 == null)
+        {
+            context.noise5 = new double[NOISE_MAX_X * NOISE_MAX_Z];
+            context.noise6 = new double[NOISE_MAX_X * NOISE_MAX_Z];
+        }
+
+        int i2D = 0;
+        for (int x = 0; x < NOISE_MAX_X; x++)
+        {
+            for (int z = 0; z < NOISE_MAX_Z; z++)
+            {
+                int latticeX = xOffset + x;
+                int latticeZ = zOffset + z;
+                NoiseColumnCache.Column column = this.noiseColumnCache.get(latticeX, latticeZ);
+                if (column == null)
+                {
+                    double noise5 = 0;
+                    if (oldTerrainGenerator)
+                    {
+                        noise5 = this.noiseGen5.Noise2D(null, latticeX, latticeZ, 1, 1, 1.121D, 1.121D)[0];
+                    }
+                    column = new NoiseColumnCache.Column(
+                        this.noiseGen1.Noise3D(null, latticeX, yOffset, latticeZ, 1, maxYSections, 1, xzScale, yScale, xzScale),
+                        this.noiseGen2.Noise3D(null, latticeX, yOffset, latticeZ, 1, maxYSections, 1, xzScale, yScale, xzScale),
+                        this.noiseGen3.Noise3D(null, latticeX, yOffset, latticeZ, 1, maxYSections, 1, xzScale / 80.0D, yScale / 160.0D, xzScale / 80.0D),
+                        noise5,
+                        this.noiseGen6.Noise2D(null, latticeX, latticeZ, 1, 1, 200.0D, 200.0D)[0]
+                    );
+                    this.noiseColumnCache.put(latticeX, latticeZ, column);
+                }
+
+                System.arraycopy(column.noise1, 0, context.noise1, i2D * maxYSections, maxYSections);
+                System.arraycopy(column.noise2, 0, context.noise2, i2D * maxYSections, maxYSections);
+                System.arraycopy(column.noise3, 0, context.noise3, i2D * maxYSections, maxYSections);
+                context.noise5[i2D] = column.noise5;
+                context.noise6[i2D] = column.noise6;
+                i2D++;
+            }
+        }
+    }
+
+    /**
+     * Gets the cache used to share terrain noise between neighbouring
+     * chunks, for statistics.
+     * @return The cache, or null if CacheTerrainNoise is disabled.
+     */
+    public NoiseColumnCache getNoiseColumnCache()
+    {
+        return this.noiseColumnCache;
+    }
+
+    private void oldBiomeFactor(TerrainGenerationContext context, int x, int z, int i4, int ySections, double noiseHeight)
     {
         BiomeGenerator unwrapped = localWorld.getBiomeGenerator().unwrap();
         if (unwrapped instanceof OldBiomeGenerator)
@@ -445,170 +724,380 @@ public class ChunkProviderOTG
             OldBiomeGenerator oldBiomeGenerator = (OldBiomeGenerator) unwrapped;
             int index = z * 48 + 17 + x * 3;
             double product = oldBiomeGenerator.oldTemperature1[index] * oldBiomeGenerator.oldWetness[index];
-            this.volatilityFactor = 1.0 - product;
+            context.volatilityFactor = 1.0 - product;
         } else {
-            final BiomeConfig biomeConfig = toBiomeConfig(this.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
-            this.volatilityFactor = (1.0D - Math.min(1, biomeConfig.biomeTemperature) * biomeConfig.biomeWetness);
+            final BiomeConfig biomeConfig = toBiomeConfig(context, context.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
+            context.volatilityFactor = (1.0D - Math.min(1, biomeConfig.biomeTemperature) * biomeConfig.biomeWetness);
         }
-        this.volatilityFactor *= this.volatilityFactor;
-        this.volatilityFactor = 1.0D - this.volatilityFactor * this.volatilityFactor;
+        context.volatilityFactor *= context.volatilityFactor;
+        context.volatilityFactor = 1.0D - context.volatilityFactor * context.volatilityFactor;
 
-        this.volatilityFactor = (this.noise3[i4] + 256.0D) / 512.0D * this.volatilityFactor;
-        if (this.volatilityFactor > 1.0D)
+        context.volatilityFactor = (context.noise3[i4] + 256.0D) / 512.0D * context.volatilityFactor;
+        if (context.volatilityFactor > 1.0D)
         {
-            this.volatilityFactor = 1.0D;
+            context.volatilityFactor = 1.0D;
         }
-        if (this.volatilityFactor < 0.0D || noiseHeight < 0.0D)
+        if (context.volatilityFactor < 0.0D || noiseHeight < 0.0D)
         {
-            this.volatilityFactor = 0.0D;
+            context.volatilityFactor = 0.0D;
         }
 
-        this.volatilityFactor += 0.5D;
-        this.heightFactor = ySections * (2.0D + noiseHeight) / 4.0D;
+        context.volatilityFactor += 0.5D;
+        context.heightFactor = ySections * (2.0D + noiseHeight) / 4.0D;
     }
 
-    private void biomeFactor(int x, int z, int ySections, double noiseHeight)
+    /**
+     * Prepares the biome smoothing of a chunk: copies the properties of the
+     * biome of each cell in the unzoomed biome window into primitive arrays,
+     * builds the summed-area tables used to detect smoothing areas that
+     * contain only a single biome, and the biome run lengths used to smooth
+     * the other areas.
+     * @param context       The working state of the current thread.
+     * @param improvedRivers Whether the river array must be used.
+     */
+    private void prepareBiomeSmoothing(TerrainGenerationContext context, boolean improvedRivers)
     {
-        float volatilitySum = 0.0F;
-        double heightSum = 0.0F;
-        float biomeWeightSum = 0.0F;
+        final int windowSize = NOISE_MAX_X + this.maxSmoothDiameter;
+        final int[] biomeArray = context.biomeArray;
+        // The biome generator may have returned a regular 16x16 array, in
+        // that case only the cells that are present can be prepared
+        final int cells = Math.min(biomeArray.length, windowSize * windowSize);
 
-        final BiomeConfig centerBiomeConfig = toBiomeConfig(this.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
-        final int lookRadius = centerBiomeConfig.smoothRadius;
+        if (context.cellHeight == null || context.cellHeight.length != windowSize * windowSize)
+        {
+            context.cellHeight = new float[windowSize * windowSize];
+            context.cellVolatility = new float[windowSize * windowSize];
+            context.cellRiverHeight = new float[windowSize * windowSize];
+            context.cellRiverVolatility = new float[windowSize * windowSize];
+            context.biomeChangesXTable = new int[(windowSize + 1) * (windowSize + 1)];
+            context.biomeChangesZTable = new int[(windowSize + 1) * (windowSize + 1)];
+            context.riversTable = new int[(windowSize + 1) * (windowSize + 1)];
+            context.biomeRunLengthZ = new int[windowSize * windowSize];
+        }
 
-        float nextBiomeHeight, biomeWeight;
+        for (int i = 0; i < cells; i++)
+        {
+            BiomeConfig biomeConfig = toBiomeConfig(context, biomeArray[i]);
+            context.cellHeight[i] = biomeConfig.biomeHeight;
+            context.cellVolatility[i] = biomeConfig.biomeVolatility;
+            context.cellRiverHeight[i] = biomeConfig.riverHeight;
+            context.cellRiverVolatility[i] = biomeConfig.riverVolatility;
+        }
 
-        for (int nextX = -lookRadius; nextX <= lookRadius; nextX++)
+        // Cells missing from the biome array are never part of a run
+        final int[] biomeRunLengthZ = context.biomeRunLengthZ;
+        final int[] riverArray = context.riverArray;
+        for (int x = 0; x < windowSize; x++)
         {
-            for (int nextZ = -lookRadius; nextZ <= lookRadius; nextZ++)
+            int runLength = 0;
+            for (int i = x + (windowSize - 1) * windowSize; i >= 0; i -= windowSize)
             {
-                final BiomeConfig nextBiomeConfig = toBiomeConfig(this.biomeArray[(x + nextX + this.maxSmoothRadius + (z + nextZ + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
+                int next = i + windowSize;
+                if (next < cells && biomeArray[i] == biomeArray[next]
+                        && (!improvedRivers || (next < riverArray.length && riverArray[i] == riverArray[next])))
+                {
+                    runLength++;
+                } else {
+                    runLength = 1;
+                }
+                biomeRunLengthZ[i] = runLength;
+            }
+        }
 
-                nextBiomeHeight = nextBiomeConfig.biomeHeight;
+        context.summedAreaTablesValid = cells == windowSize * windowSize && (!improvedRivers || context.riverArray.length >= cells);
+        if (!context.summedAreaTablesValid)
+        {
+            return;
+        }
 
-                biomeWeight = this.nearBiomeWeightArray[(nextX + this.maxSmoothRadius + (nextZ + this.maxSmoothRadius) * this.maxSmoothDiameter)] / (nextBiomeHeight + 2.0F);
-                biomeWeight = Math.abs(biomeWeight);
-                if (nextBiomeHeight > centerBiomeConfig.biomeHeight)
+        final int tableSize = windowSize + 1;
+        for (int z = 0; z < windowSize; z++)
+        {
+            int changesXInRow = 0;
+            int changesZInRow = 0;
+            int riversInRow = 0;
+            for (int x = 0; x < windowSize; x++)
+            {
+                int i = x + z * windowSize;
+                if (x > 0 && biomeArray[i] != biomeArray[i - 1])
                 {
-                    biomeWeight /= 2.0F;
+                    changesXInRow++;
                 }
-                volatilitySum += nextBiomeConfig.biomeVolatility * biomeWeight;
-                heightSum += nextBiomeHeight * biomeWeight;
-                biomeWeightSum += biomeWeight;
+                if (z > 0 && biomeArray[i] != biomeArray[i - windowSize])
+                {
+                    changesZInRow++;
+                }
+                if (improvedRivers && context.riverArray[i] == 1)
+                {
+                    riversInRow++;
+                }
+                int tableIndex = (x + 1) + (z + 1) * tableSize;
+                context.biomeChangesXTable[tableIndex] = context.biomeChangesXTable[tableIndex - tableSize] + changesXInRow;
+                context.biomeChangesZTable[tableIndex] = context.biomeChangesZTable[tableIndex - tableSize] + changesZInRow;
+                context.riversTable[tableIndex] = context.riversTable[tableIndex - tableSize] + riversInRow;
             }
         }
+    }
+
+    /**
+     * Sums a rectangle (inclusive) of a summed-area table over the biome
+     * window.
+     */
+    private int sumArea(int[] table, int minX, int minZ, int maxX, int maxZ)
+    {
+        if (minX > maxX || minZ > maxZ)
+        {
+            return 0;
+        }
+        final int tableSize = NOISE_MAX_X + this.maxSmoothDiameter + 1;
+        return table[(maxX + 1) + (maxZ + 1) * tableSize] - table[minX + (maxZ + 1) * tableSize]
+                - table[(maxX + 1) + minZ * tableSize] + table[minX + minZ * tableSize];
+    }
+
+    /**
+     * Gets whether the smoothing area around the given lattice column
+     * contains only a single biome (and no rivers).
+     */
+    private boolean isSingleBiomeArea(TerrainGenerationContext context, int x, int z, int lookRadius, boolean improvedRivers)
+    {
+        if (!context.summedAreaTablesValid)
+        {
+            return false;
+        }
+        final int minX = x + this.maxSmoothRadius - lookRadius;
+        final int maxX = x + this.maxSmoothRadius + lookRadius;
+        final int minZ = z + this.maxSmoothRadius - lookRadius;
+        final int maxZ = z + this.maxSmoothRadius + lookRadius;
+
+        return sumArea(context.biomeChangesXTable, minX + 1, minZ, maxX, maxZ) == 0
+                && sumArea(context.biomeChangesZTable, minX, minZ + 1, maxX, maxZ) == 0
+                && (!improvedRivers || sumArea(context.riversTable, minX, minZ, maxX, maxZ) == 0);
+    }
+
+    private void biomeFactor(TerrainGenerationContext context, int x, int z, int ySections, double noiseHeight)
+    {
+        final int centerBiomeId = context.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))];
+        final BiomeConfig centerBiomeConfig = toBiomeConfig(context, centerBiomeId);
+        final int lookRadius = centerBiomeConfig.smoothRadius;
+
+        float volatilitySum;
+        double heightSum;
+
+        // The result for an area with a single biome only depends on that
+        // biome, so it is calculated once and then reused
+        boolean singleBiome = isSingleBiomeArea(context, x, z, lookRadius, false);
+        if (singleBiome && context.smoothedBiomes[centerBiomeId] == centerBiomeConfig)
+        {
+            volatilitySum = context.smoothedVolatility[centerBiomeId];
+            heightSum = context.smoothedHeight[centerBiomeId];
+        } else {
+            double volatilityWeightedSum = 0.0D;
+            double heightWeightedSum = 0.0D;
+            double biomeWeightSum = 0.0D;
+
+            final float centerBiomeHeight = centerBiomeConfig.biomeHeight;
+            final int windowSize = NOISE_MAX_X + this.maxSmoothDiameter;
+            final float[] cellHeight = context.cellHeight;
+            final float[] cellVolatility = context.cellVolatility;
+            final int[] biomeRunLengthZ = context.biomeRunLengthZ;
+            float nextBiomeHeight;
+            double biomeWeight;
+
+            // Cells of the same biome next to each other share everything
+            // but their distance weight, so each run of such cells is
+            // weighted at once using the running sums of the distance weights
+            for (int nextX = -lookRadius; nextX <= lookRadius; nextX++)
+            {
+                final int rowSums = (nextX + this.maxSmoothRadius) * (this.maxSmoothDiameter + 1) + this.maxSmoothRadius;
+                int nextZ = -lookRadius;
+                while (nextZ <= lookRadius)
+                {
+                    final int cell = x + nextX + this.maxSmoothRadius + (z + nextZ + this.maxSmoothRadius) * windowSize;
+                    final int runEnd = Math.min(nextZ + biomeRunLengthZ[cell], lookRadius + 1);
 
-        volatilitySum /= biomeWeightSum;
-        heightSum /= biomeWeightSum;
+                    nextBiomeHeight = cellHeight[cell];
 
-        this.waterLevelRaw[x * NOISE_MAX_X + z] = (byte) centerBiomeConfig.waterLevelMax;
+                    biomeWeight = (this.nearBiomeWeightRowSums[rowSums + runEnd] - this.nearBiomeWeightRowSums[rowSums + nextZ]) / (nextBiomeHeight + 2.0F);
+                    biomeWeight = Math.abs(biomeWeight);
+                    if (nextBiomeHeight > centerBiomeHeight)
+                    {
+                        biomeWeight /= 2.0D;
+                    }
+                    volatilityWeightedSum += cellVolatility[cell] * biomeWeight;
+                    heightWeightedSum += nextBiomeHeight * biomeWeight;
+                    biomeWeightSum += biomeWeight;
+
+                    nextZ = runEnd;
+                }
+            }
+
+            volatilitySum = (float) (volatilityWeightedSum / biomeWeightSum);
+            heightSum = heightWeightedSum / biomeWeightSum;
+
+            if (singleBiome)
+            {
+                context.smoothedBiomes[centerBiomeId] = centerBiomeConfig;
+                context.smoothedVolatility[centerBiomeId] = volatilitySum;
+                context.smoothedHeight[centerBiomeId] = heightSum;
+            }
+        }
+
+        context.waterLevelRaw[x * NOISE_MAX_X + z] = (byte) centerBiomeConfig.waterLevelMax;
 
         volatilitySum = volatilitySum * 0.9F + 0.1F;   // Must be != 0
         heightSum = (heightSum * 4.0F - 1.0F) / 8.0F;  // Silly magic numbers
 
-        this.volatilityFactor = volatilitySum;
-        this.heightFactor = ySections * (2.0D + heightSum + noiseHeight * 0.2D) / 4.0D;
+        context.volatilityFactor = volatilitySum;
+        context.heightFactor = ySections * (2.0D + heightSum + noiseHeight * 0.2D) / 4.0D;
     }
 
-    private void biomeFactorWithRivers(int x, int z, int ySections, double noiseHeight)
+    private void biomeFactorWithRivers(TerrainGenerationContext context, int x, int z, int ySections, double noiseHeight)
     {
-        float volatilitySum = 0.0F;
-        float heightSum = 0.0F;
-        float WeightSum = 0.0F;
-
-        float riverVolatilitySum = 0.0F;
-        float riverHeightSum = 0.0F;
-        float riverWeightSum = 0.0F;
-
-        final BiomeConfig biomeConfig = toBiomeConfig(this.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
+        final int centerBiomeId = context.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))];
+        final BiomeConfig biomeConfig = toBiomeConfig(context, centerBiomeId);
 
         final int lookRadius = biomeConfig.smoothRadius;
 
-        this.riverFound = this.riverArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))] == 1;
-
-        final float riverCenterHeight = this.riverFound ? biomeConfig.riverHeight : biomeConfig.biomeHeight;
+        float volatilitySum;
+        float heightSum;
+        float riverVolatilitySum;
+        float riverHeightSum;
 
-        BiomeConfig nextBiomeConfig;
-        float nextBiomeHeight, biomeWeight, nextRiverHeight, riverWeight;
-
-        for (int nextX = -lookRadius; nextX <= lookRadius; nextX++)
+        // The result for an area with a single biome and no rivers only
+        // depends on that biome, so it is calculated once and then reused
+        boolean singleBiome = isSingleBiomeArea(context, x, z, lookRadius, true);
+        if (singleBiome && context.smoothedBiomes[centerBiomeId] == biomeConfig)
         {
-            for (int nextZ = -lookRadius; nextZ <= lookRadius; nextZ++)
+            context.riverFound = false;
+            volatilitySum = context.smoothedVolatility[centerBiomeId];
+            heightSum = (float) context.smoothedHeight[centerBiomeId];
+            riverVolatilitySum = context.smoothedRiverVolatility[centerBiomeId];
+            riverHeightSum = context.smoothedRiverHeight[centerBiomeId];
+        } else {
+            double volatilityWeightedSum = 0.0D;
+            double heightWeightedSum = 0.0D;
+            double weightSum = 0.0D;
+
+            double riverVolatilityWeightedSum = 0.0D;
+            double riverHeightWeightedSum = 0.0D;
+            double riverWeightSum = 0.0D;
+
+            final int windowSize = NOISE_MAX_X + this.maxSmoothDiameter;
+            final float[] cellHeight = context.cellHeight;
+            final float[] cellVolatility = context.cellVolatility;
+            final float[] cellRiverHeight = context.cellRiverHeight;
+            final float[] cellRiverVolatility = context.cellRiverVolatility;
+            final int[] riverArray = context.riverArray;
+            final int[] biomeRunLengthZ = context.biomeRunLengthZ;
+
+            context.riverFound = riverArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * windowSize)] == 1;
+
+            final float centerBiomeHeight = biomeConfig.biomeHeight;
+            final float riverCenterHeight = context.riverFound ? biomeConfig.riverHeight : centerBiomeHeight;
+
+            float nextBiomeHeight, nextRiverHeight;
+            double nearBiomeWeight, biomeWeight, riverWeight;
+
+            // Cells of the same biome and river state next to each other
+            // share everything but their distance weight, so each run of such
+            // cells is weighted at once using the running sums of the
+            // distance weights
+            for (int nextX = -lookRadius; nextX <= lookRadius; nextX++)
             {
-                nextBiomeConfig = toBiomeConfig(this.biomeArray[(x + nextX + this.maxSmoothRadius + (z + nextZ + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
-                nextBiomeHeight = nextBiomeConfig.biomeHeight;
-                biomeWeight = this.nearBiomeWeightArray[(nextX + this.maxSmoothRadius + (nextZ + this.maxSmoothRadius) * this.maxSmoothDiameter)] / (nextBiomeHeight + 2.0F);
-
-                biomeWeight = Math.abs(biomeWeight);
-                if (nextBiomeHeight > biomeConfig.biomeHeight)
+                final int rowSums = (nextX + this.maxSmoothRadius) * (this.maxSmoothDiameter + 1) + this.maxSmoothRadius;
+                int nextZ = -lookRadius;
+                while (nextZ <= lookRadius)
                 {
-                    biomeWeight /= 2.0F;
-                }
-                volatilitySum += nextBiomeConfig.biomeVolatility * biomeWeight;
-                heightSum += nextBiomeHeight * biomeWeight;
-                WeightSum += biomeWeight;
+                    final int cell = x + nextX + this.maxSmoothRadius + (z + nextZ + this.maxSmoothRadius) * windowSize;
+                    final int runEnd = Math.min(nextZ + biomeRunLengthZ[cell], lookRadius + 1);
+                    nearBiomeWeight = this.nearBiomeWeightRowSums[rowSums + runEnd] - this.nearBiomeWeightRowSums[rowSums + nextZ];
 
-                // River part
+                    nextBiomeHeight = cellHeight[cell];
+                    biomeWeight = nearBiomeWeight / (nextBiomeHeight + 2.0F);
 
-                boolean isRiver = false;
-                if (this.riverArray[(x + nextX + this.maxSmoothRadius + (z + nextZ + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))] == 1)
-                {
-                    this.riverFound = true;
-                    isRiver = true;
-                }
+                    biomeWeight = Math.abs(biomeWeight);
+                    if (nextBiomeHeight > centerBiomeHeight)
+                    {
+                        biomeWeight /= 2.0D;
+                    }
+                    volatilityWeightedSum += cellVolatility[cell] * biomeWeight;
+                    heightWeightedSum += nextBiomeHeight * biomeWeight;
+                    weightSum += biomeWeight;
 
-                nextRiverHeight = (isRiver) ? nextBiomeConfig.riverHeight : nextBiomeHeight;
-                riverWeight = this.nearBiomeWeightArray[(nextX + this.maxSmoothRadius + (nextZ + this.maxSmoothRadius) * this.maxSmoothDiameter)] / (nextRiverHeight + 2.0F);
+                    // River part
 
-                riverWeight = Math.abs(riverWeight);
-                if (nextRiverHeight > riverCenterHeight)
-                {
-                    nextRiverHeight = riverCenterHeight;
+                    boolean isRiver = false;
+                    if (riverArray[cell] == 1)
+                    {
+                        context.riverFound = true;
+                        isRiver = true;
+                    }
+
+                    nextRiverHeight = (isRiver) ? cellRiverHeight[cell] : nextBiomeHeight;
+                    riverWeight = nearBiomeWeight / (nextRiverHeight + 2.0F);
+
+                    riverWeight = Math.abs(riverWeight);
+                    if (nextRiverHeight > riverCenterHeight)
+                    {
+                        nextRiverHeight = riverCenterHeight;
+                    }
+                    riverVolatilityWeightedSum += (isRiver ? cellRiverVolatility[cell] : cellVolatility[cell]) * riverWeight;
+                    riverHeightWeightedSum += nextRiverHeight * riverWeight;
+                    riverWeightSum += riverWeight;
+
+                    nextZ = runEnd;
                 }
-                riverVolatilitySum += (isRiver ? nextBiomeConfig.riverVolatility : nextBiomeConfig.biomeVolatility) * riverWeight;
-                riverHeightSum += nextRiverHeight * riverWeight;
-                riverWeightSum += riverWeight;
             }
-        }
 
-        volatilitySum /= WeightSum;
-        heightSum /= WeightSum;
+            volatilitySum = (float) (volatilityWeightedSum / weightSum);
+            heightSum = (float) (heightWeightedSum / weightSum);
+
+            riverVolatilitySum = (float) (riverVolatilityWeightedSum / riverWeightSum);
+            riverHeightSum = (float) (riverHeightWeightedSum / riverWeightSum);
 
-        riverVolatilitySum /= riverWeightSum;
-        riverHeightSum /= riverWeightSum;
+            if (singleBiome)
+            {
+                context.smoothedBiomes[centerBiomeId] = biomeConfig;
+                context.smoothedVolatility[centerBiomeId] = volatilitySum;
+                context.smoothedHeight[centerBiomeId] = heightSum;
+                context.smoothedRiverVolatility[centerBiomeId] = riverVolatilitySum;
+                context.smoothedRiverHeight[centerBiomeId] = riverHeightSum;
+            }
+        }
 
-        int waterLevelSum = this.riverFound ? biomeConfig.riverWaterLevel : biomeConfig.waterLevelMax;
-        this.waterLevelRaw[x * NOISE_MAX_X + z] = (byte) waterLevelSum;
+        int waterLevelSum = context.riverFound ? biomeConfig.riverWaterLevel : biomeConfig.waterLevelMax;
+        context.waterLevelRaw[x * NOISE_MAX_X + z] = (byte) waterLevelSum;
 
         volatilitySum = volatilitySum * 0.9F + 0.1F;   // Must be != 0
         heightSum = (heightSum * 4.0F - 1.0F) / 8.0F;  // Silly magic numbers
 
-        this.volatilityFactor = volatilitySum;
-        this.heightFactor = ySections * (2.0D + heightSum + noiseHeight * 0.2D) / 4.0D;
+        context.volatilityFactor = volatilitySum;
+        context.heightFactor = ySections * (2.0D + heightSum + noiseHeight * 0.2D) / 4.0D;
 
         riverVolatilitySum = riverVolatilitySum * 0.9F + 0.1F; // Must be != 0
         riverHeightSum = (riverHeightSum * 4.0F - 1.0F) / 8.0F;
 
-        this.riverVol = riverVolatilitySum;
-        this.riverHeight = ySections * (2.0D + riverHeightSum + noiseHeight * 0.2D) / 4.0D;
+        context.riverVol = riverVolatilitySum;
+        context.riverHeight = ySections * (2.0D + riverHeightSum + noiseHeight * 0.2D) / 4.0D;
     }
 
     /**
      * Gets the BiomeConfig with the given id.
      * 
-     * @param id The generation id of the biome.
+     * @param context The working state of the current thread.
+     * @param id      The generation id of the biome.
      * @return The BiomeConfig.
      */
-    private BiomeConfig toBiomeConfig(int id)
+    private BiomeConfig toBiomeConfig(TerrainGenerationContext context, int id)
     {
-        BiomeConfig biomeConfig = biomes[id];
+        BiomeConfig biomeConfig = context.biomes[id];
         
         if(biomeConfig == null)
         {
             // For forge make sure all dimensions are queried since the biome we're looking for may be owned by another dimension
             LocalBiome biome = OTG.isForge ? OTG.getBiomeAllWorlds(id) : this.configProvider.getBiomeByIdOrNull(id);
             biomeConfig = biome.getBiomeConfig();
-            biomes[id] = biomeConfig;
+            context.biomes[id] = biomeConfig;
         }
         
         return biomeConfig;
@@ -0,0 +1,135 @@
+package com.pg85.otg.generator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the terrain noise columns calculated for the points of the
+ * noise lattice (one point every four blocks). The lattice points on the edge
+ * of a chunk are shared with the neighbouring chunks, so when chunks are
+ * generated next to each other (like the pregenerator does) those columns
+ * only need to be calculated once.
+ *
+ * <p>Least recently used columns are evicted once the cache is full. All
+ * methods are thread safe.
+ */
+public final class NoiseColumnCache
+{
+    /**
+     * The noise values of a single lattice point.
+     */
+    static final class Column
+    {
+        final double[] noise1;
+        final double[] noise2;
+        final double[] noise3;
+        final double noise5;
+        final double noise6;
+
+        Column(double[] noise1, double[] noise2, double[] noise3, double noise5, double noise6)
+        {
+            this.noise1 = noise1;
+            this.noise2 = noise2;
+            this.noise3 = noise3;
+            this.noise5 = noise5;
+            this.noise6 = noise6;
+        }
+    }
+
+    private final Map<Long, Column> columns;
+    private final int octavesPerColumn;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new cache.
+     * @param maxColumns       Maximum amount of columns kept in memory.
+     * @param octavesPerColumn Amount of octave evaluations needed to
+     *                         calculate one column, used for the statistics.
+     */
+    NoiseColumnCache(final int maxColumns, int octavesPerColumn)
+    {
+        this.octavesPerColumn = octavesPerColumn;
+        this.columns = new LinkedHashMap<Long, Column>(maxColumns, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Column> eldest)
+            {
+                return size() > maxColumns;
+            }
+        };
+    }
+
+    private static long toKey(int latticeX, int latticeZ)
+    {
+        return ((long) latticeX << 32) | (latticeZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the column at the given lattice point.
+     * @param latticeX X position on the noise lattice (block x / 4).
+     * @param latticeZ Z position on the noise lattice (block z / 4).
+     * @return The column, or null if not cached.
+     */
+    synchronized Column get(int latticeX, int latticeZ)
+    {
+        Column column = this.columns.get(toKey(latticeX, latticeZ));
+        if (column == null)
+        {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return column;
+    }
+
+    synchronized void put(int latticeX, int latticeZ, Column column)
+    {
+        this.columns.put(toKey(latticeX, latticeZ), column);
+    }
+
+    public synchronized void clear()
+    {
+        this.columns.clear();
+    }
+
+    public synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * Gets the fraction of lookups that were answered from the cache.
+     * @return The hit rate, from 0 to 1.
+     */
+    public synchronized double getHitRate()
+    {
+        long lookups = this.hits + this.misses;
+        return lookups == 0 ? 0 : (double) this.hits / lookups;
+    }
+
+    /**
+     * Gets how many single-octave noise evaluations were avoided by using
+     * the cache.
+     * @return The amount of saved octave evaluations.
+     */
+    public synchronized long getSavedOctaveEvaluations()
+    {
+        return this.hits * this.octavesPerColumn;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "NoiseColumnCache[columns=" + this.columns.size() + ", hits=" + this.hits + ", misses=" + this.misses
+                + ", hitRate=" + Math.round(getHitRate() * 100) + "%, savedOctaveEvaluations=" + getSavedOctaveEvaluations() + "]";
+    }
+}
@@ -41,25 +41,26 @@ import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ObjectSpawner
 {
 	// OTG+
 
-	public boolean populating;
-    public boolean saving;
-	public boolean saveRequired;
+	// Held while populating, and while the structure cache takes a snapshot
+	// for saving so that it never saves a half-populated chunk
+	public final ReentrantLock populationLock = new ReentrantLock();
+	public volatile boolean saveRequired;
 
 	public int populatingX = 0;
 	public int populatingZ = 0;
 
-	public Object lockingObject = new Object();
-
 	//
 
     private final ConfigProvider configProvider;
     private final Random rand;
     private final LocalWorld world;
+    private final PopulationBuffer populationBuffer = new PopulationBuffer();
 
     public ObjectSpawner(ConfigProvider configProvider, LocalWorld localWorld)
     {
@@ -70,30 +71,53 @@ public class ObjectSpawner
 
     public boolean StructurePlottedAtSpawn = false;
 
+    /**
+     * Gets the buffer of the area being populated, used by the resources
+     * that {@link Resource#usesPopulationBuffer()}.
+     * @return The buffer.
+     */
+    public PopulationBuffer getPopulationBuffer()
+    {
+        return populationBuffer;
+    }
+
+    /**
+     * Spawns a resource, with the population buffer active if the resource
+     * uses it. Resources that don't use it are spawned after the blocks in
+     * the buffer have been written to the world.
+     */
+    private void processResource(Resource resource, boolean villageInChunk, ChunkCoordinate chunkCoord)
+    {
+        if (resource.usesPopulationBuffer())
+        {
+            populationBuffer.begin(world, chunkCoord);
+        } else {
+            populationBuffer.end();
+        }
+        resource.process(world, rand, villageInChunk, chunkCoord);
+    }
+
     public boolean processing = false;
     public void populate(ChunkCoordinate chunkCoord)
     {
     	//OTG.log(LogMarker.INFO, "ObjectSpawner populate X" + chunkCoord.getChunkX() + " Z" + chunkCoord.getChunkZ());
 
-		// Wait for another thread running SaveToDisk, then place a lock.
-		while(true)
-		{
-			//OTG.log(LogMarker.INFO, "Populate waiting on SaveToDisk.");
-
-			synchronized(lockingObject)
-			{
-				if(!saving)
-				{
-					populating = true;
-					break;
-				}
-			}
-		}
-		synchronized(lockingObject)
+		// Wait for the structure cache to finish taking a snapshot for
+		// saving, then place a lock.
+		populationLock.lock();
+		try
 		{
 			saveRequired = true;
+			populateLocked(chunkCoord);
+		} finally {
+			populationLock.unlock();
 		}
 
+		//OTG.log(LogMarker.INFO, "ObjectSpawner DONE populating X" + chunkCoord.getChunkX() + " Z" + chunkCoord.getChunkZ());
+    }
+
+    private void populateLocked(ChunkCoordinate chunkCoord)
+    {
 		if(world.getConfigs().getWorldConfig().IsOTGPlus)
 		{
 			if(!StructurePlottedAtSpawn)
@@ -256,9 +280,10 @@ public class ObjectSpawner
 		        {
 		            if (res instanceof Resource)
 		            {
-		                ((Resource)res).process(world, rand, hasVillage, chunkCoord);
+		                processResource((Resource)res, hasVillage, chunkCoord);
 		            }
 		        }
+		        populationBuffer.end();
 
 		        // Animals
 		        world.placePopulationMobs(biome, rand, chunkCoord);
@@ -367,13 +392,6 @@ public class ObjectSpawner
 			}
 		}
 
-		// Release the lock
-		synchronized(lockingObject)
-		{
-			populating = false;
-		}
-
-		//OTG.log(LogMarker.INFO, "ObjectSpawner DONE populating X" + chunkCoord.getChunkX() + " Z" + chunkCoord.getChunkZ());
     }
 
 	public void processResourcesPhase2(ChunkCoordinate chunkCoord)
@@ -409,9 +427,10 @@ public class ObjectSpawner
 				(res instanceof SurfacePatchGen)
 			)
 			{
-				res.process(world, rand, false, chunkCoord);
+				processResource(res, false, chunkCoord);
 			}
 		}
+		populationBuffer.end();
 	}
 
 	public void processResourcesPhase3(ChunkCoordinate chunkCoord, boolean hasGeneratedAVillage)
@@ -461,7 +480,7 @@ public class ObjectSpawner
 
 		for (Resource res : customObjects)
 		{
-			res.process(world, rand, hasGeneratedAVillage, chunkCoord);
+			processResource(res, hasGeneratedAVillage, chunkCoord);
 		}
 		for (Resource res : miscResources)
 		{
@@ -483,9 +502,10 @@ public class ObjectSpawner
 				(res instanceof FossilGen)
 			)
 			{
-				res.process(world, rand, hasGeneratedAVillage, chunkCoord);
+				processResource(res, hasGeneratedAVillage, chunkCoord);
 			}
 		}
+		populationBuffer.end();
 
 		// don't use world.placePopulationMobs, it bypasses EntityLiving.getCanSpawnHere() :(
 		//if(!worldConfig.improvedMobSpawning)
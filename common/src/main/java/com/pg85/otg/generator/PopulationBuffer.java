@@ -0,0 +1,161 @@
+package com.pg85.otg.generator;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Y_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.pg85.otg.LocalMaterialData;
+import com.pg85.otg.LocalWorld;
+import com.pg85.otg.util.ChunkCoordinate;
+
+import java.util.BitSet;
+
+/**
+ * Array backed copy of the 2x2 chunk area being populated, used by resources
+ * that only read and write single blocks, like ores. Blocks are read from the
+ * world the first time they are used, written blocks are kept in the buffer
+ * until {@link #end()} writes them to the world, chunk by chunk.
+ *
+ * <p>Resources that don't use the buffer must only run after {@link #end()},
+ * so that they see the blocks written through the buffer and so that the
+ * buffer doesn't keep blocks they changed. While the buffer isn't active,
+ * all calls go to the world directly.
+ */
+public final class PopulationBuffer
+{
+    private static final int AREA_SIZE = 2 * CHUNK_X_SIZE;
+    private static final int BLOCKS_PER_CHUNK = CHUNK_X_SIZE * CHUNK_Y_SIZE * CHUNK_Z_SIZE;
+
+    // Index (chunk * 65536) + (y * 256) + (z * 16) + x, where chunk is the
+    // chunk in the 2x2 area, so that the blocks of a chunk are together
+    private final LocalMaterialData[] blocks = new LocalMaterialData[4 * BLOCKS_PER_CHUNK];
+    // The block in blocks is only valid if the value here equals generation
+    private final int[] loaded = new int[4 * BLOCKS_PER_CHUNK];
+    private final BitSet changed = new BitSet(4 * BLOCKS_PER_CHUNK);
+    private int generation = 0;
+
+    private LocalWorld world;
+    private ChunkCoordinate chunkCoord;
+    private int startX;
+    private int startZ;
+
+    private long blocksRead;
+    private long blocksWritten;
+
+    /**
+     * Starts buffering the area populated for the given chunk. Does nothing
+     * if the buffer is already active for that chunk.
+     * @param world      The world.
+     * @param chunkCoord The chunk being populated, the area also contains
+     *                   the chunks at x + 1 and z + 1.
+     */
+    public void begin(LocalWorld world, ChunkCoordinate chunkCoord)
+    {
+        if (this.world == world && chunkCoord.equals(this.chunkCoord))
+        {
+            return;
+        }
+        end();
+
+        this.world = world;
+        this.chunkCoord = chunkCoord;
+        this.startX = chunkCoord.getBlockX();
+        this.startZ = chunkCoord.getBlockZ();
+        // Forget all blocks read for the previous area
+        this.generation++;
+    }
+
+    /**
+     * Writes all changed blocks to the world and stops buffering. Does
+     * nothing if the buffer isn't active.
+     */
+    public void end()
+    {
+        if (this.world == null)
+        {
+            return;
+        }
+
+        for (int index = this.changed.nextSetBit(0); index >= 0; index = this.changed.nextSetBit(index + 1))
+        {
+            int chunk = index / BLOCKS_PER_CHUNK;
+            int x = this.startX + (chunk >> 1) * CHUNK_X_SIZE + (index & 0xF);
+            int z = this.startZ + (chunk & 1) * CHUNK_Z_SIZE + ((index >> 4) & 0xF);
+            int y = (index >> 8) & 0xFF;
+            this.world.setBlock(x, y, z, this.blocks[index], null, false);
+            this.blocksWritten++;
+        }
+        this.changed.clear();
+
+        this.world = null;
+        this.chunkCoord = null;
+    }
+
+    private int getIndex(int x, int y, int z)
+    {
+        int areaX = x - this.startX;
+        int areaZ = z - this.startZ;
+        if (((areaX | areaZ) & ~(AREA_SIZE - 1)) != 0 || (y & ~(CHUNK_Y_SIZE - 1)) != 0)
+        {
+            return -1;
+        }
+        int chunk = (areaX >> 4) << 1 | (areaZ >> 4);
+        return chunk * BLOCKS_PER_CHUNK + (y << 8 | (areaZ & 0xF) << 4 | (areaX & 0xF));
+    }
+
+    /**
+     * Gets a block, like {@link LocalWorld#getMaterial(int, int, int, boolean)}
+     * with allowOutsidePopulatingArea = false.
+     * @param world The world, used if the buffer isn't active or the block
+     *              is outside the buffered area.
+     * @param x     The block x.
+     * @param y     The block y.
+     * @param z     The block z.
+     * @return The block.
+     */
+    public LocalMaterialData getMaterial(LocalWorld world, int x, int y, int z)
+    {
+        int index = this.world == world ? getIndex(x, y, z) : -1;
+        if (index == -1)
+        {
+            return world.getMaterial(x, y, z, false);
+        }
+        if (this.loaded[index] != this.generation)
+        {
+            this.blocks[index] = world.getMaterial(x, y, z, false);
+            this.loaded[index] = this.generation;
+            this.blocksRead++;
+        }
+        return this.blocks[index];
+    }
+
+    /**
+     * Sets a block, like
+     * {@link LocalWorld#setBlock(int, int, int, LocalMaterialData, com.pg85.otg.util.NamedBinaryTag, boolean)}
+     * without metadata and with isOTGPlus = false.
+     * @param world    The world, used if the buffer isn't active or the block
+     *                 is outside the buffered area.
+     * @param x        The block x.
+     * @param y        The block y.
+     * @param z        The block z.
+     * @param material The block.
+     */
+    public void setBlock(LocalWorld world, int x, int y, int z, LocalMaterialData material)
+    {
+        int index = this.world == world ? getIndex(x, y, z) : -1;
+        if (index == -1)
+        {
+            world.setBlock(x, y, z, material, null, false);
+            return;
+        }
+        this.blocks[index] = material;
+        this.loaded[index] = this.generation;
+        this.changed.set(index);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PopulationBuffer[blocksRead=" + this.blocksRead + ", blocksWritten=" + this.blocksWritten + "]";
+    }
+}
@@ -0,0 +1,150 @@
+package com.pg85.otg.generator;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.pg85.otg.LocalMaterialData;
+import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
+
+import java.util.Arrays;
+
+/**
+ * The heights of all columns of a chunk that hasn't been generated yet, see
+ * {@link ChunkProviderOTG#generateHeightMap(com.pg85.otg.util.ChunkCoordinate)}.
+ *
+ * <p>For every column the highest solid or liquid block is stored four
+ * times: with and without liquids and with and without snow counting as
+ * solid. That is enough to answer every height query exactly like a search
+ * from the top of the column would. The highest block that isn't air is
+ * stored as well, so blocks at or above the surface can be looked up too.
+ */
+public final class SurfaceHeightMap
+{
+    private static final int COLUMNS = CHUNK_X_SIZE * CHUNK_Z_SIZE;
+
+    private static final int IGNORE_LIQUID = 1;
+    private static final int IGNORE_SNOW = 2;
+
+    private static final byte SOLID = 1;
+    private static final byte LIQUID = 2;
+
+    // Height of the highest block, -1 if none, index mode * 256 + column
+    private final short[] heights = new short[4 * COLUMNS];
+    // Whether that block is SOLID and/or LIQUID
+    private final byte[] kinds = new byte[4 * COLUMNS];
+    // Height of the highest block that isn't air, -1 if none
+    private final short[] surfaceHeights = new short[COLUMNS];
+    private final LocalMaterialData[] surfaceBlocks = new LocalMaterialData[COLUMNS];
+
+    /**
+     * Heights of a chunk that only contains air, for chunks outside the
+     * world border.
+     */
+    public static final SurfaceHeightMap EMPTY = new SurfaceHeightMap();
+
+    private SurfaceHeightMap()
+    {
+        Arrays.fill(this.heights, (short) -1);
+        Arrays.fill(this.surfaceHeights, (short) -1);
+    }
+
+    /**
+     * Reads the heights from the given chunk.
+     * @param chunkBuffer The generated chunk.
+     * @param maxY        All blocks above this height must be air.
+     */
+    SurfaceHeightMap(ChunkBuffer chunkBuffer, int maxY)
+    {
+        for (int x = 0; x < CHUNK_X_SIZE; x++)
+        {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++)
+            {
+                int column = getColumn(x, z);
+                for (int mode = 0; mode < 4; mode++)
+                {
+                    this.heights[mode * COLUMNS + column] = -1;
+                }
+                this.surfaceHeights[column] = -1;
+
+                int found = 0;
+                for (int y = maxY; y >= 0 && found != 0xF; y--)
+                {
+                    LocalMaterialData material = chunkBuffer.getBlock(x, y, z);
+                    if (this.surfaceBlocks[column] == null && !material.isAir())
+                    {
+                        this.surfaceHeights[column] = (short) y;
+                        this.surfaceBlocks[column] = material;
+                    }
+                    boolean isLiquid = material.isLiquid();
+                    boolean isSolid = material.isSolid();
+                    boolean isSnow = material.isMaterial(DefaultMaterial.SNOW);
+                    if (!isLiquid && !isSolid && !isSnow)
+                    {
+                        continue;
+                    }
+
+                    for (int mode = 0; mode < 4; mode++)
+                    {
+                        boolean modeIsSolid = isSolid || ((mode & IGNORE_SNOW) == 0 && isSnow);
+                        if ((found & (1 << mode)) != 0 || (isLiquid && (mode & IGNORE_LIQUID) != 0) || (!isLiquid && !modeIsSolid))
+                        {
+                            continue;
+                        }
+                        this.heights[mode * COLUMNS + column] = (short) y;
+                        this.kinds[mode * COLUMNS + column] = (byte) ((modeIsSolid ? SOLID : 0) | (isLiquid ? LIQUID : 0));
+                        found |= 1 << mode;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int getColumn(int x, int z)
+    {
+        return x * CHUNK_Z_SIZE + z;
+    }
+
+    /**
+     * Gets the highest block of a column, with the same meaning as
+     * {@link com.pg85.otg.LocalWorld#getHighestBlockYAt(int, int, boolean, boolean, boolean, boolean)}.
+     * @param x Block x in the chunk, from 0 to 15.
+     * @param z Block z in the chunk, from 0 to 15.
+     * @return The height, or -1 if no such block exists.
+     */
+    public int getHighestBlockY(int x, int z, boolean findSolid, boolean findLiquid, boolean ignoreLiquid, boolean ignoreSnow)
+    {
+        int index = ((ignoreLiquid ? IGNORE_LIQUID : 0) | (ignoreSnow ? IGNORE_SNOW : 0)) * COLUMNS + getColumn(x, z);
+        int kind = this.kinds[index];
+        if ((findSolid && (kind & SOLID) != 0) || (findLiquid && (kind & LIQUID) != 0))
+        {
+            return this.heights[index];
+        }
+        // The search stops at the first solid or liquid block, even if it
+        // isn't the kind that was asked for
+        return -1;
+    }
+
+    /**
+     * Gets the height of the highest block of a column that isn't air. All
+     * blocks above it are air.
+     * @param x Block x in the chunk, from 0 to 15.
+     * @param z Block z in the chunk, from 0 to 15.
+     * @return The height, or -1 if the column only contains air.
+     */
+    public int getSurfaceY(int x, int z)
+    {
+        return this.surfaceHeights[getColumn(x, z)];
+    }
+
+    /**
+     * Gets the highest block of a column that isn't air, see
+     * {@link #getSurfaceY(int, int)}.
+     * @param x Block x in the chunk, from 0 to 15.
+     * @param z Block z in the chunk, from 0 to 15.
+     * @return The block, or null if the column only contains air.
+     */
+    public LocalMaterialData getSurfaceBlock(int x, int z)
+    {
+        return this.surfaceBlocks[getColumn(x, z)];
+    }
+}
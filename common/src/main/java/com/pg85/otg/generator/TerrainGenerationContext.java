@@ -0,0 +1,98 @@
+package com.pg85.otg.generator;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.pg85.otg.configuration.BiomeConfig;
+import com.pg85.otg.generator.terrain.CarverBiomeContext;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Holds all mutable working state {@link ChunkProviderOTG} needs while
+ * generating the base terrain of a single chunk. One context is owned by
+ * exactly one thread at a time, so that several chunks of the same world can
+ * be generated at once.
+ */
+final class TerrainGenerationContext
+{
+    final Random random = new Random();
+
+    double[] rawTerrain;
+    double[] noise1;
+    double[] noise2;
+    double[] noise3;
+    double[] noise4 = new double[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    double[] noise5;
+    double[] noise6;
+
+    int[] biomeArray;
+    int[] riverArray;
+
+    // Water level at lower resolution
+    final byte[] waterLevelRaw = new byte[25];
+    // Water level for each column
+    final byte[] waterLevel = new byte[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+
+    // Results of the biome factor calculation for the current noise column
+    double volatilityFactor;
+    double heightFactor;
+    double riverVol;
+    double riverHeight;
+    // Always false if improved rivers disabled
+    boolean riverFound = false;
+
+    // Lookup table of generation id -> BiomeConfig, rebuilt for every chunk
+    final BiomeConfig[] biomes = new BiomeConfig[1024];
+
+    // Biome properties of each cell of the unzoomed biome window, used for
+    // biome smoothing without looking up the BiomeConfig of every neighbour
+    float[] cellHeight;
+    float[] cellVolatility;
+    float[] cellRiverHeight;
+    float[] cellRiverVolatility;
+
+    // Summed-area tables over the unzoomed biome window. They count the
+    // cells that have a different biome than their neighbour on the -x or
+    // -z side, and the cells that contain a river. Used to find out in
+    // constant time whether a smoothing area contains only a single biome.
+    int[] biomeChangesXTable;
+    int[] biomeChangesZTable;
+    int[] riversTable;
+    boolean summedAreaTablesValid;
+
+    // For every cell of the unzoomed biome window, the amount of cells
+    // starting at that cell in the +z direction that have the same biome
+    // (and the same river state if improved rivers are enabled). Used to
+    // smooth areas containing multiple biomes one run at a time.
+    int[] biomeRunLengthZ;
+
+    // Smoothing results for areas containing only a single biome, by
+    // generation id. Only valid if smoothedBiomes[id] is the current
+    // BiomeConfig of that id.
+    final BiomeConfig[] smoothedBiomes = new BiomeConfig[1024];
+    final float[] smoothedVolatility = new float[1024];
+    final double[] smoothedHeight = new double[1024];
+    final float[] smoothedRiverVolatility = new float[1024];
+    final float[] smoothedRiverHeight = new float[1024];
+
+    // Biomes of the chunk, handed to the cave and ravine generators
+    final CarverBiomeContext carverBiomes = new CarverBiomeContext();
+
+    // Blocks of the chunk used for height queries, created when first needed
+    ArrayChunkBuffer heightMapBuffer;
+
+    /**
+     * Prepares this context for a new chunk.
+     *
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     */
+    void reset(int chunkX, int chunkZ)
+    {
+        this.random.setSeed(chunkX * 341873128712L + chunkZ * 132897987541L);
+        this.riverFound = false;
+        Arrays.fill(this.biomes, null);
+    }
+}
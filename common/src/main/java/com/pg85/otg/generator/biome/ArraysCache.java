@@ -4,16 +4,31 @@ import java.util.ArrayList;
 
 public class ArraysCache
 {
+    // Big arrays are thrown away on release when they take up more than this
+    // amount of ints, so that one large request doesn't keep its arrays in
+    // memory forever
+    private static final int MAX_RETAINED_BIG_ARRAY_INTS = 1024 * 1024;
 
     private final int[][] smallArrays = new int[128][];
     private int smallArraysNext = 0;
     private final ArrayList<int[]> bigArrays = new ArrayList<int[]>();
     private int bigArraysNext = 0;
+    private int bigArraysInts = 0;
+
+    // Statistics since the last release
+    private int arraysAllocated = 0;
+    private int arraysReused = 0;
 
     public boolean isFree = true;
 
     public OutputType outputType = OutputType.FULL;
 
+    // Random state of the layer that is currently being evaluated. Kept here
+    // instead of in the layers, so that the layers can be shared by threads.
+    public long scrambledWorldSeed;
+    public long scrambledChunkSeed;
+    public long scrambledGroupSeed;
+
     public ArraysCache()
     {
 
@@ -23,8 +38,28 @@ public class ArraysCache
     {
         smallArraysNext = 0;
         bigArraysNext = 0;
+        arraysAllocated = 0;
+        arraysReused = 0;
+        if (bigArraysInts > MAX_RETAINED_BIG_ARRAY_INTS)
+        {
+            bigArrays.clear();
+            bigArraysInts = 0;
+        }
         isFree = true;
         outputType = OutputType.FULL;
+        scrambledWorldSeed = 0;
+        scrambledChunkSeed = 0;
+        scrambledGroupSeed = 0;
+    }
+
+    int getArraysAllocated()
+    {
+        return arraysAllocated;
+    }
+
+    int getArraysReused()
+    {
+        return arraysReused;
     }
 
     public int[] getArray(int size)
@@ -37,6 +72,9 @@ public class ArraysCache
             {
                 array = new int[256];
                 smallArrays[smallArraysNext] = array;
+                arraysAllocated++;
+            } else {
+                arraysReused++;
             }
             smallArraysNext++;
 
@@ -48,13 +86,19 @@ public class ArraysCache
         {
             array = new int[size];
             bigArrays.add(array);
+            bigArraysInts += size;
+            arraysAllocated++;
         } else
         {
             array = (int[]) bigArrays.get(bigArraysNext);
             if (array.length < size)
             {
+                bigArraysInts += size - array.length;
                 array = new int[size];
                 bigArrays.set(bigArraysNext, array);
+                arraysAllocated++;
+            } else {
+                arraysReused++;
             }
         }
 
@@ -1,79 +1,120 @@
 package com.pg85.otg.generator.biome;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out {@link ArraysCache} instances to the biome generators. Each
+ * thread has its own small pool of caches, so biome generation is never
+ * blocked by other threads and there is no limit on the amount of threads
+ * generating biomes at once. A thread only needs more than one cache if it
+ * generates biomes again while already generating biomes.
+ */
 public class ArraysCacheManager
 {
+    // Free caches kept per thread, any caches released beyond this are
+    // left to the garbage collector
+    private static final int MAX_FREE_CACHES_PER_THREAD = 2;
 
-    private static final ArraysCache[] ARRAYS_CACHES = new ArraysCache[4];
-
-    static
+    private static final ThreadLocal<ArrayDeque<ArraysCache>> FREE_CACHES = new ThreadLocal<ArrayDeque<ArraysCache>>()
     {
-        for (int i = 0; i < ARRAYS_CACHES.length; i++)
-            ARRAYS_CACHES[i] = new ArraysCache();
+        @Override
+        protected ArrayDeque<ArraysCache> initialValue()
+        {
+            return new ArrayDeque<ArraysCache>(MAX_FREE_CACHES_PER_THREAD);
+        }
+    };
 
-    }
+    // Statistics
+    private static final AtomicInteger CACHES_IN_USE = new AtomicInteger();
+    private static final AtomicLong CACHES_CREATED = new AtomicLong();
+    private static final AtomicLong CACHES_REUSED = new AtomicLong();
+    private static final AtomicLong ARRAYS_ALLOCATED = new AtomicLong();
+    private static final AtomicLong ARRAYS_REUSED = new AtomicLong();
 
     public static ArraysCache GetCache()
     {
-        synchronized (ARRAYS_CACHES)
+        ArraysCache cache = FREE_CACHES.get().pollLast();
+        if (cache == null)
         {
-            for (ArraysCache ArraysCache : ARRAYS_CACHES)
-            {
-                if (ArraysCache.isFree)
-                {
-                    ArraysCache.isFree = false;
-                    return ArraysCache;
-                }
-            }
-
+            cache = new ArraysCache();
+            CACHES_CREATED.incrementAndGet();
+        } else {
+            CACHES_REUSED.incrementAndGet();
         }
-        return null; // Exception ??
+        cache.isFree = false;
+        CACHES_IN_USE.incrementAndGet();
+        return cache;
     }
 
+    /**
+     * Returns a cache to the pool of the current thread. Must be called by
+     * the thread that got the cache.
+     * @param cache The cache.
+     */
     public static void ReleaseCache(ArraysCache cache)
     {
-        synchronized (ARRAYS_CACHES)
+        ARRAYS_ALLOCATED.addAndGet(cache.getArraysAllocated());
+        ARRAYS_REUSED.addAndGet(cache.getArraysReused());
+        cache.release();
+        CACHES_IN_USE.decrementAndGet();
+
+        ArrayDeque<ArraysCache> freeCaches = FREE_CACHES.get();
+        if (freeCaches.size() < MAX_FREE_CACHES_PER_THREAD)
         {
-            cache.release();
+            freeCaches.addLast(cache);
         }
     }
 
-    /*
-    @SuppressWarnings({"unchecked"})
-    public static int[] GetArray(int cacheId, int size)
+    /**
+     * Gets the amount of caches currently used by the biome generators.
+     * @return The amount of caches.
+     */
+    public static int getCachesInUse()
     {
-        if (size <= 256)
-        {
-            int[] array = SmallArrays[cacheId][SmallArraysNext[cacheId]];
-            if (array == null)
-            {
-                array = new int[256];
-                SmallArrays[cacheId][SmallArraysNext[cacheId]] = array;
-            }
-            SmallArraysNext[cacheId]++;
+        return CACHES_IN_USE.get();
+    }
 
-            return array;
-        }
-        int[] array;
-        if (BigArraysNext[cacheId] == BigArrays[cacheId].size())
-        {
-            array = new int[size];
-            BigArrays[cacheId].add(array);
-        } else
-        {
-            array = (int[]) BigArrays[cacheId].get(BigArraysNext[cacheId]);
-            if (array.length < size)
-            {
-                array = new int[size];
-                BigArrays[cacheId].set(BigArraysNext[cacheId], array);
-            }
-        }
+    /**
+     * Gets how many caches were created since the server started.
+     * @return The amount of caches.
+     */
+    public static long getCachesCreated()
+    {
+        return CACHES_CREATED.get();
+    }
 
-        BigArraysNext[cacheId]++;
-        return array;
+    /**
+     * Gets how many times a cache was taken from the pool instead of being
+     * created.
+     * @return The amount of reused caches.
+     */
+    public static long getCachesReused()
+    {
+        return CACHES_REUSED.get();
+    }
+
+    /**
+     * Gets how many int arrays were allocated by all caches.
+     * @return The amount of arrays.
+     */
+    public static long getArraysAllocated()
+    {
+        return ARRAYS_ALLOCATED.get();
+    }
+
+    /**
+     * Gets how many times an int array was reused by a cache instead of
+     * being allocated.
+     * @return The amount of reused arrays.
+     */
+    public static long getArraysReused()
+    {
+        return ARRAYS_REUSED.get();
     }
-    */
 
     private ArraysCacheManager()
     {
     }
-}
\ No newline at end of file
+}
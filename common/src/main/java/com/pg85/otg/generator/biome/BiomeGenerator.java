@@ -124,6 +124,19 @@ public abstract class BiomeGenerator
         return false;
     }
 
+    /**
+     * Gets whether {@link #getBiomes(int[], int, int, int, int, OutputType)}
+     * and {@link #getBiomesUnZoomed(int[], int, int, int, int, OutputType)}
+     * may be called by multiple threads at once. Terrain generation only
+     * uses multiple threads if this returns true. By default, this method
+     * returns {@code false}.
+     * @return True if this biome generator is thread safe, false otherwise.
+     */
+    public boolean isThreadSafe()
+    {
+        return false;
+    }
+
     /**
      * Biome generators can be wrapped, for example to cache another biome
      * generator. This method returns the unwrapped biome generator. If this
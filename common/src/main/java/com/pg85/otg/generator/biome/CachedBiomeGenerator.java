@@ -3,11 +3,6 @@ package com.pg85.otg.generator.biome;
 import com.pg85.otg.LocalWorld;
 import com.pg85.otg.util.ChunkCoordinate;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-
 /**
  * Wraps uncached biome generators.
  * @see BiomeModeManager#createCached(Class, LocalWorld)
@@ -15,52 +10,16 @@ import java.util.Map.Entry;
 class CachedBiomeGenerator extends BiomeGenerator
 {
     /**
-     * Caches the biomes of a single chunk.
-     *
+     * Maximum amount of chunks of which the biomes are cached, about 1 KB
+     * per chunk.
      */
-    private static class Block
-    {
-        /**
-         * The array of biome types stored in this BiomeCache.Block.
-         */
-        private int[] biomes = new int[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE];
-        /**
-         * The last time this BiomeCacheBlock was accessed, in milliseconds.
-         */
-        private long lastAccessTime;
-
-        Block(BiomeGenerator generator, ChunkCoordinate chunkCoord)
-        {
-            biomes = generator.getBiomes(biomes, chunkCoord.getBlockX(), chunkCoord.getBlockZ(), ChunkCoordinate.CHUNK_X_SIZE,
-                    ChunkCoordinate.CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
-        }
-
-        /**
-         * Gets the biome type id of the column at the given location.
-         * @param blockX X location of the column, must fall in this cache
-         *               block.
-         * @param blockZ Z location of the column, must fall in this cache
-         *               block.
-         * @return The biome type id.
-         */
-        int getCalculatedBiomeId(int blockX, int blockZ)
-        {
-            return biomes[blockX & 15 | (blockZ & 15) << 4];
-        }
-    }
+    private static final int MAX_CACHED_CHUNKS = 4096;
 
-    /**
-     * The map of cached BiomeCacheBlocks.
-     */
-    private Map<ChunkCoordinate, CachedBiomeGenerator.Block> cacheMap = new HashMap<ChunkCoordinate, Block>();
+    private final ChunkBiomeCache cache = new ChunkBiomeCache(MAX_CACHED_CHUNKS);
     /**
      * The uncached biome generator.
      */
     private final BiomeGenerator generator;
-    /**
-     * The last time this BiomeCache was cleaned, in milliseconds.
-     */
-    private long lastCleanupTime;
 
     private CachedBiomeGenerator(BiomeGenerator generator)
     {
@@ -88,55 +47,34 @@ class CachedBiomeGenerator extends BiomeGenerator
     @Override
     public void cleanupCache()
     {
-        long currentTime = System.currentTimeMillis();
-        long timeSinceLastCleanup = currentTime - this.lastCleanupTime;
-
-        if (timeSinceLastCleanup < 7500L && timeSinceLastCleanup > 0L)
-        {
-            return;
-        }
-
-        this.lastCleanupTime = currentTime;
-
-        for (Iterator<Entry<ChunkCoordinate, CachedBiomeGenerator.Block>> it = cacheMap.entrySet().iterator(); it.hasNext();)
-        {
-            Entry<ChunkCoordinate, CachedBiomeGenerator.Block> entry = it.next();
-            CachedBiomeGenerator.Block block = entry.getValue();
-            long timeSinceLastAccessed = currentTime - block.lastAccessTime;
-
-            if (timeSinceLastAccessed > 30000L || timeSinceLastAccessed < 0L)
-            {
-                it.remove();
-            }
-        }
-
+        // The cache is bounded and evicts chunks by itself
     }
 
     @Override
     public int getBiome(int x, int z)
     {
-        ChunkCoordinate chunkCoord = ChunkCoordinate.fromBlockCoords(x, z);
-        CachedBiomeGenerator.Block cacheBlock = getBiomeCacheBlock(chunkCoord);
-        return cacheBlock.getCalculatedBiomeId(x, z);
+        return getCachedBiomes(x >> 4, z >> 4)[x & 15 | (z & 15) << 4];
     }
 
     /**
-     * Returns a biome cache block at location specified.
-     * @param chunkCoord The chunk to get the cache entry for.
-     * @return The biome cache block.
+     * Gets the cached biomes of a chunk, generating them if needed. The
+     * returned array must not be modified.
+     * @param chunkX X position of the chunk.
+     * @param chunkZ Z position of the chunk.
+     * @return The biomes.
      */
-    private CachedBiomeGenerator.Block getBiomeCacheBlock(ChunkCoordinate chunkCoord)
+    private int[] getCachedBiomes(int chunkX, int chunkZ)
     {
-        CachedBiomeGenerator.Block block = this.cacheMap.get(chunkCoord);
-
+        long key = ChunkCoordinate.toLong(chunkX, chunkZ);
+        ChunkBiomeCache.Block block = this.cache.get(key);
         if (block == null)
         {
-            block = new CachedBiomeGenerator.Block(generator, chunkCoord);
-            this.cacheMap.put(chunkCoord, block);
+            int[] biomes = new int[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE];
+            biomes = generator.getBiomes(biomes, chunkX * ChunkCoordinate.CHUNK_X_SIZE, chunkZ * ChunkCoordinate.CHUNK_Z_SIZE,
+                    ChunkCoordinate.CHUNK_X_SIZE, ChunkCoordinate.CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
+            block = this.cache.put(key, biomes);
         }
-
-        block.lastAccessTime = System.currentTimeMillis();
-        return block;
+        return block.biomes;
     }
 
     @Override
@@ -148,7 +86,7 @@ class CachedBiomeGenerator extends BiomeGenerator
             {
                 biomeArray = new int[xSize * zSize];
             }
-            int[] cachedBiomes = getCachedBiomes(ChunkCoordinate.fromBlockCoords(x, z));
+            int[] cachedBiomes = getCachedBiomes(x >> 4, z >> 4);
             // Avoid leaking references to the cached array - Minecraft likes
             // to change those arrays, corrupting the cache
             System.arraycopy(cachedBiomes, 0, biomeArray, 0, xSize * zSize);
@@ -177,7 +115,7 @@ class CachedBiomeGenerator extends BiomeGenerator
      */
     public int[] getCachedBiomes(ChunkCoordinate chunkCoord)
     {
-        return this.getBiomeCacheBlock(chunkCoord).biomes;
+        return getCachedBiomes(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
     }
 
     @Override
@@ -186,6 +124,47 @@ class CachedBiomeGenerator extends BiomeGenerator
         return true;
     }
 
+    @Override
+    public boolean isThreadSafe()
+    {
+        return generator.isThreadSafe();
+    }
+
+    /**
+     * Gets how many biome lookups were answered from the cache.
+     * @return The amount of hits.
+     */
+    public long getCacheHits()
+    {
+        return this.cache.getHits();
+    }
+
+    /**
+     * Gets how many biome lookups needed the biomes to be generated.
+     * @return The amount of misses.
+     */
+    public long getCacheMisses()
+    {
+        return this.cache.getMisses();
+    }
+
+    /**
+     * Gets how many chunks were removed from the cache to make room for
+     * other chunks.
+     * @return The amount of evictions.
+     */
+    public long getCacheEvictions()
+    {
+        return this.cache.getEvictions();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CachedBiomeGenerator[generator=" + generator.getClass().getSimpleName() + ", chunks=" + this.cache.size()
+                + ", hits=" + getCacheHits() + ", misses=" + getCacheMisses() + ", evictions=" + getCacheEvictions() + "]";
+    }
+
     @Override
     public BiomeGenerator unwrap()
     {
@@ -0,0 +1,229 @@
+package com.pg85.otg.generator.biome;
+
+import com.pg85.otg.util.ChunkCoordinate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Bounded map of chunk position -> biomes of that chunk, used by
+ * {@link CachedBiomeGenerator}.
+ *
+ * <p>Chunks are stored in an open addressing hash table keyed by the packed
+ * chunk position, so lookups don't allocate. Once the cache is full, chunks
+ * are evicted using the clock algorithm: every chunk that was read since the
+ * hand last passed it gets a second chance.
+ *
+ * <p>Lookups don't block each other: they use an optimistic read, and only
+ * fall back to a read lock if a chunk was added at the same time.
+ */
+final class ChunkBiomeCache
+{
+    /**
+     * The biomes of a single chunk.
+     */
+    static final class Block
+    {
+        final long key;
+        final int[] biomes;
+        /**
+         * Whether this block was read since the clock hand last passed it.
+         * Races on this field only make eviction slightly less accurate.
+         */
+        boolean referenced = true;
+
+        Block(long key, int[] biomes)
+        {
+            this.key = key;
+            this.biomes = biomes;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+
+    // Hash table, kept at most half full. Uses linear probing, and backward
+    // shifting on removal so that no tombstones are needed.
+    private final Block[] table;
+    private final int mask;
+
+    // Clock of all blocks in the cache
+    private final Block[] clock;
+    private int clockHand = 0;
+    private int size = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     * @param maxChunks Maximum amount of chunks kept in memory.
+     */
+    ChunkBiomeCache(int maxChunks)
+    {
+        int tableSize = Integer.highestOneBit(Math.max(maxChunks, 1)) << 2;
+        this.table = new Block[tableSize];
+        this.mask = tableSize - 1;
+        this.clock = new Block[maxChunks];
+    }
+
+    private int indexFor(long key)
+    {
+        return ChunkCoordinate.hash(key) & this.mask;
+    }
+
+    private Block find(long key)
+    {
+        Block[] table = this.table;
+        int index = indexFor(key);
+        // Bounded, because an optimistic read may see the table while it is
+        // being changed
+        for (int i = 0; i < table.length; i++)
+        {
+            Block block = table[index];
+            if (block == null || block.key == key)
+            {
+                return block;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the cached biomes of a chunk.
+     * @param key The packed chunk position, see {@link ChunkCoordinate#toLong(int, int)}.
+     * @return The block, or null if not cached.
+     */
+    Block get(long key)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+        Block block = find(key);
+        if (!this.lock.validate(stamp))
+        {
+            stamp = this.lock.readLock();
+            try
+            {
+                block = find(key);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+
+        if (block == null)
+        {
+            this.misses.incrementAndGet();
+        } else {
+            block.referenced = true;
+            this.hits.incrementAndGet();
+        }
+        return block;
+    }
+
+    /**
+     * Adds the biomes of a chunk to the cache, evicting another chunk if the
+     * cache is full. If another thread already added the chunk, the biomes
+     * of that thread are kept.
+     * @param key    The packed chunk position, see {@link ChunkCoordinate#toLong(int, int)}.
+     * @param biomes The biomes of the chunk, must not be modified afterwards.
+     * @return The block that is now in the cache.
+     */
+    Block put(long key, int[] biomes)
+    {
+        long stamp = this.lock.writeLock();
+        try
+        {
+            Block existing = find(key);
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            Block block = new Block(key, biomes);
+            if (this.size < this.clock.length)
+            {
+                this.clock[this.size++] = block;
+            } else {
+                // Advance the hand until a block is found that wasn't
+                // read since the last pass
+                Block victim = this.clock[this.clockHand];
+                while (victim.referenced)
+                {
+                    victim.referenced = false;
+                    this.clockHand = (this.clockHand + 1) % this.clock.length;
+                    victim = this.clock[this.clockHand];
+                }
+                removeFromTable(victim);
+                this.evictions.incrementAndGet();
+                this.clock[this.clockHand] = block;
+                this.clockHand = (this.clockHand + 1) % this.clock.length;
+            }
+
+            int index = indexFor(key);
+            while (this.table[index] != null)
+            {
+                index = (index + 1) & this.mask;
+            }
+            this.table[index] = block;
+            return block;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private void removeFromTable(Block block)
+    {
+        int index = indexFor(block.key);
+        while (this.table[index] != block)
+        {
+            index = (index + 1) & this.mask;
+        }
+        this.table[index] = null;
+
+        // Move later blocks of the same probe sequence into the gap
+        int next = index;
+        while (true)
+        {
+            next = (next + 1) & this.mask;
+            Block moving = this.table[next];
+            if (moving == null)
+            {
+                return;
+            }
+            int home = indexFor(moving.key);
+            boolean homeInGap = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+            if (!homeInGap)
+            {
+                this.table[index] = moving;
+                this.table[next] = null;
+                index = next;
+            }
+        }
+    }
+
+    long getHits()
+    {
+        return this.hits.get();
+    }
+
+    long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    int size()
+    {
+        long stamp = this.lock.readLock();
+        try
+        {
+            return this.size;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+}
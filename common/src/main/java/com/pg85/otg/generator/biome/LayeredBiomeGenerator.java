@@ -48,10 +48,13 @@ public abstract class LayeredBiomeGenerator extends BiomeGenerator
             cache.outputType = defaultOutputType;
         else
             cache.outputType = outputType;
-        int[] arrayOfInt = this.unZoomedLayer.getInts(cache, x, z, x_size, z_size);
-        ArraysCacheManager.ReleaseCache(cache);
-
-        System.arraycopy(arrayOfInt, 0, biomeArray, 0, x_size * z_size);
+        try
+        {
+            int[] arrayOfInt = this.unZoomedLayer.getInts(cache, x, z, x_size, z_size);
+            System.arraycopy(arrayOfInt, 0, biomeArray, 0, x_size * z_size);
+        } finally {
+            ArraysCacheManager.ReleaseCache(cache);
+        }
 
         return biomeArray;
     }
@@ -69,10 +72,13 @@ public abstract class LayeredBiomeGenerator extends BiomeGenerator
             cache.outputType = defaultOutputType;
         else
             cache.outputType = outputType;
-        int[] arrayOfInt = this.biomeLayer.getInts(cache, x, z, x_size, z_size);
-        ArraysCacheManager.ReleaseCache(cache);
-
-        System.arraycopy(arrayOfInt, 0, biomeArray, 0, x_size * z_size);
+        try
+        {
+            int[] arrayOfInt = this.biomeLayer.getInts(cache, x, z, x_size, z_size);
+            System.arraycopy(arrayOfInt, 0, biomeArray, 0, x_size * z_size);
+        } finally {
+            ArraysCacheManager.ReleaseCache(cache);
+        }
 
         return biomeArray;
     }
@@ -83,4 +89,12 @@ public abstract class LayeredBiomeGenerator extends BiomeGenerator
         return true;
     }
 
+    @Override
+    public boolean isThreadSafe()
+    {
+        // Layers keep their random state in the ArraysCache of the current
+        // call, and every thread gets its own ArraysCache
+        return true;
+    }
+
 }
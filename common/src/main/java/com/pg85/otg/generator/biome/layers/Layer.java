@@ -49,20 +49,6 @@ public abstract class Layer
      */
     protected long scrambledWorldSeed;
 
-    /**
-     * This seed is used for general random number generation within the Layers
-     * system. It is based off of both the scrambledWorldSeed and baseSeed.
-     * @see #initWorldGenSeed(long)
-     * @see #initChunkSeed(long, long)
-     */
-    private long scrambledChunkSeed;
-
-    /**
-     * This seed is used for generating random numbers for biome groups
-     * @see #initGroupSeed(long, long)
-     */
-    private long scrambledGroupSeed;
-
     /**
      * The layer to process before this one. getInts() should call
      * child.getInts() before doing any processing -- in most cases.
@@ -172,60 +158,91 @@ public abstract class Layer
         this.scrambledWorldSeed = getScrambledWorldSeed(this.baseSeed, worldSeed);
     }
 
-    protected void initChunkSeed(long x, long z)
+    /**
+     * Initializes the random state for a single cell. All random state lives
+     * in the cache of the current call and not in the layer, so that the
+     * same layer can be used by multiple threads at once.
+     * @param cache The cache of the current getInts call.
+     * @param x     X coordinate of the cell.
+     * @param z     Z coordinate of the cell.
+     */
+    protected void initChunkSeed(ArraysCache cache, long x, long z)
+    {
+        initChunkSeed(cache, this.scrambledWorldSeed, x, z);
+    }
+
+    /**
+     * Same as {@link #initChunkSeed(ArraysCache, long, long)}, but uses the
+     * given scrambled world seed instead of the one of this layer.
+     * @param cache              The cache of the current getInts call.
+     * @param scrambledWorldSeed The scrambled world seed.
+     * @param x                  X coordinate of the cell.
+     * @param z                  Z coordinate of the cell.
+     */
+    protected static void initChunkSeed(ArraysCache cache, long scrambledWorldSeed, long x, long z)
     {
-        this.scrambledChunkSeed = this.scrambledWorldSeed;
-        this.scrambledChunkSeed *= (this.scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledChunkSeed += x;
-        this.scrambledChunkSeed *= (this.scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledChunkSeed += z;
-        this.scrambledChunkSeed *= (this.scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledChunkSeed += x;
-        this.scrambledChunkSeed *= (this.scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledChunkSeed += z;
+        long scrambledChunkSeed = scrambledWorldSeed;
+        scrambledChunkSeed *= (scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledChunkSeed += x;
+        scrambledChunkSeed *= (scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledChunkSeed += z;
+        scrambledChunkSeed *= (scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledChunkSeed += x;
+        scrambledChunkSeed *= (scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledChunkSeed += z;
+        cache.scrambledWorldSeed = scrambledWorldSeed;
+        cache.scrambledChunkSeed = scrambledChunkSeed;
     }
 
-    protected void initGroupSeed(long x, long z)
+    /**
+     * Initializes the random state for biome groups for a single cell, based
+     * on the current chunk seed of the cache.
+     * @param cache The cache of the current getInts call.
+     * @param x     X coordinate of the cell.
+     * @param z     Z coordinate of the cell.
+     */
+    protected static void initGroupSeed(ArraysCache cache, long x, long z)
     {
-        this.scrambledGroupSeed = this.scrambledChunkSeed;
-        this.scrambledGroupSeed *= (this.scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledGroupSeed += x;
-        this.scrambledGroupSeed *= (this.scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledGroupSeed += z;
-        this.scrambledGroupSeed *= (this.scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledGroupSeed += x;
-        this.scrambledGroupSeed *= (this.scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledGroupSeed += z;
+        long scrambledGroupSeed = cache.scrambledChunkSeed;
+        scrambledGroupSeed *= (scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledGroupSeed += x;
+        scrambledGroupSeed *= (scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledGroupSeed += z;
+        scrambledGroupSeed *= (scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledGroupSeed += x;
+        scrambledGroupSeed *= (scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
+        scrambledGroupSeed += z;
+        cache.scrambledGroupSeed = scrambledGroupSeed;
     }
 
-    protected int nextInt(int x)
+    protected static int nextInt(ArraysCache cache, int x)
     {
-        int i = (int) ((this.scrambledChunkSeed >> 24) % x);
+        int i = (int) ((cache.scrambledChunkSeed >> 24) % x);
         if (i < 0)
             i += x;
-        this.scrambledChunkSeed *= (this.scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledChunkSeed += this.scrambledWorldSeed;
+        cache.scrambledChunkSeed *= (cache.scrambledChunkSeed * 6364136223846793005L + 1442695040888963407L);
+        cache.scrambledChunkSeed += cache.scrambledWorldSeed;
         return i;
     }
 
-    protected int nextGroupInt(int x)
+    protected static int nextGroupInt(ArraysCache cache, int x)
     {
-        int i = (int) ((this.scrambledGroupSeed >> 24) % x);
+        int i = (int) ((cache.scrambledGroupSeed >> 24) % x);
         if (i < 0)
             i += x;
-        this.scrambledGroupSeed *= (this.scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
-        this.scrambledGroupSeed += this.scrambledChunkSeed;
+        cache.scrambledGroupSeed *= (cache.scrambledGroupSeed * 6364136223846793005L + 1442695040888963407L);
+        cache.scrambledGroupSeed += cache.scrambledChunkSeed;
         return i;
     }
 
     public abstract int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize);
 
-    protected int getRandomInArray(int... biomes)
+    protected int getRandomInArray(ArraysCache cache, int... biomes)
     {
-        return biomes[this.nextInt(biomes.length)];
+        return biomes[nextInt(cache, biomes.length)];
     }
 
-    protected int getRandomOf4(int a, int b, int c, int d)
+    protected int getRandomOf4(ArraysCache cache, int a, int b, int c, int d)
     {
         return b == c && c == d
                ? b
@@ -247,7 +264,7 @@ public abstract class Layer
                                        ? b
                                        : (c == d && a != b
                                           ? c
-                                          : this.getRandomInArray(new int[]
+                                          : this.getRandomInArray(cache, new int[]
                                           {
                                               a, b, c, d
         }))))))))));
@@ -32,7 +32,7 @@ public class LayerBiomeBeforeGroups extends Layer
         {
             for (int j = 0; j < xSize; j++)
             {
-                initChunkSeed(j + x, i + z);
+                initChunkSeed(cache, j + x, i + z);
                 int currentPiece = childInts[(j + i * xSize)];
 
                 if ((currentPiece & BiomeBits) == 0)    // without biome
@@ -40,13 +40,13 @@ public class LayerBiomeBeforeGroups extends Layer
                     if (this.biomes.length > 0 && (currentPiece & IceBit) == 0) // Normal
                                                                                 // Biome
                     {
-                        LocalBiome biome = this.biomes[nextInt(this.biomes.length)];
+                        LocalBiome biome = this.biomes[nextInt(cache, this.biomes.length)];
                         if (biome != null)
                             currentPiece |= biome.getIds().getGenerationId();
                     } else if (this.ice_biomes.length > 0 && (currentPiece & IceBit) != 0) // Ice
                                                                                            // biome
                     {
-                        LocalBiome biome = this.ice_biomes[nextInt(this.ice_biomes.length)];
+                        LocalBiome biome = this.ice_biomes[nextInt(cache, this.ice_biomes.length)];
                         if (biome != null)
                             currentPiece |= biome.getIds().getGenerationId();
                     }
@@ -41,7 +41,7 @@ public class LayerBiomeBorder extends Layer
         {
             for (int xi = 0; xi < xSize; xi++)
             {
-                initChunkSeed(xi + x, zi + z);
+                initChunkSeed(cache, xi + x, zi + z);
                 int selection = childInts[(xi + 1 + (zi + 1) * (xSize + 2))];
 
                 int biomeId = getBiomeFromLayer(selection);
@@ -32,7 +32,10 @@ public class LayerBiomeGroups extends Layer
         {
             for (int j = 0; j < x_size; j++)
             {
-                initGroupSeed(j + x, i + z);
+                // This layer never had a chunk seed of its own, so group
+                // seeds have always been derived from a chunk seed of 0
+                arraysCache.scrambledChunkSeed = 0;
+                initGroupSeed(arraysCache, j + x, i + z);
                 int currentPiece = childInts[(j + i * x_size)];
 
                 if ((currentPiece & LandBit) != 0 && (currentPiece & BiomeGroupBits) == 0)    // land without biome group
@@ -40,7 +43,7 @@ public class LayerBiomeGroups extends Layer
                 	// TODO: even with rarity 1 this always spawns the biome
 
                     SortedMap<Integer, BiomeGroup> possibleGroups = biomeGroupManager.getGroupDepthMap(depth);
-                    int newGroupRarity = nextGroupInt(BiomeGroupManager.getMaxRarityFromPossibles(possibleGroups)*entropy);
+                    int newGroupRarity = nextGroupInt(arraysCache, BiomeGroupManager.getMaxRarityFromPossibles(possibleGroups)*entropy);
                         //>>	Spawn the biome based on the rarity spectrum
                         for (Entry<Integer, BiomeGroup> group : possibleGroups.entrySet())
                         {
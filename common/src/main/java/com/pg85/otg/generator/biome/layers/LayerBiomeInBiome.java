@@ -71,8 +71,7 @@ public class LayerBiomeInBiome extends Layer
                 {
                     // Make the scrambled world seed unique for each isle
                     // (each island used to have its own layer)
-                    this.scrambledWorldSeed = isle.scrambledWorldSeed;
-                    initChunkSeed(xi + x, zi + z);
+                    initChunkSeed(cache, isle.scrambledWorldSeed, xi + x, zi + z);
                     boolean alreadySpawned = false;
                     if (isle.inOcean)
                     {
@@ -81,7 +80,7 @@ public class LayerBiomeInBiome extends Layer
                         int swCheck = childInts[(xi + 0 + (zi + 2) * xSize0)] & LandBit;
                         int seCheck = childInts[(xi + 2 + (zi + 2) * xSize0)] & LandBit;
 
-                        if (((selection & LandBit) == 0) && (nwCheck == 0) && (neCheck == 0) && (swCheck == 0) && (seCheck == 0) && nextInt(isle.chance) == 0)
+                        if (((selection & LandBit) == 0) && (nwCheck == 0) && (neCheck == 0) && (swCheck == 0) && (seCheck == 0) && nextInt(cache, isle.chance) == 0)
                         {
                             selection = (selection & IceBit) | (selection & RiverBits) | LandBit | isle.biomeId | IslandBit;
                             alreadySpawned = true;
@@ -94,7 +93,7 @@ public class LayerBiomeInBiome extends Layer
                         int swCheck = childInts[(xi + 0 + (zi + 2) * xSize0)] & BiomeBits;
                         int seCheck = childInts[(xi + 2 + (zi + 2) * xSize0)] & BiomeBits;
 
-                        if (isle.canSpawnIn[(selection & BiomeBits)] && isle.canSpawnIn[nwCheck] && isle.canSpawnIn[neCheck] && isle.canSpawnIn[swCheck] && isle.canSpawnIn[seCheck] && nextInt(isle.chance) == 0)
+                        if (isle.canSpawnIn[(selection & BiomeBits)] && isle.canSpawnIn[nwCheck] && isle.canSpawnIn[neCheck] && isle.canSpawnIn[swCheck] && isle.canSpawnIn[seCheck] && nextInt(cache, isle.chance) == 0)
                             selection = (selection & LandBit) | (selection & IceBit) | (selection & RiverBits) | isle.biomeId | IslandBit;
                     }
                 }
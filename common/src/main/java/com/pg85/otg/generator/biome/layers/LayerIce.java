@@ -30,8 +30,8 @@ public class LayerIce extends Layer
         {
             for (int xi = 0; xi < xSize; xi++)
             {
-                initChunkSeed(z + zi, x + xi);      // reversed
-                thisInts[(xi + zi * xSize)] = (nextInt(rarity) == 0 ? (childInts[(xi + zi * xSize)] | IceBit) : childInts[(xi + zi * xSize)]);
+                initChunkSeed(cache, z + zi, x + xi);      // reversed
+                thisInts[(xi + zi * xSize)] = (nextInt(cache, rarity) == 0 ? (childInts[(xi + zi * xSize)] | IceBit) : childInts[(xi + zi * xSize)]);
             }
         }
         return thisInts;
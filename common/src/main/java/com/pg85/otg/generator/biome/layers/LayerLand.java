@@ -24,8 +24,8 @@ public class LayerLand extends Layer
         {
             for (int xi = 0; xi < xSize; xi++)
             {
-                initChunkSeed(x + xi, z + zi);
-                if (nextInt(rarity) == 0)
+                initChunkSeed(cache, x + xi, z + zi);
+                if (nextInt(cache, rarity) == 0)
                     thisInts[(xi + zi * xSize)] = childInts[(xi + zi * xSize)] | LandBit;
                 else
                     thisInts[(xi + zi * xSize)] = childInts[(xi + zi * xSize)];
@@ -30,19 +30,19 @@ public class LayerLandRandom extends Layer
                 int swCheck = childInts[(xi + 0 + (zi + 2) * xSize0)] & LandBit;
                 int seCheck = childInts[(xi + 2 + (zi + 2) * xSize0)] & LandBit;
                 int centerCheck = childInts[(xi + 1 + (zi + 1) * xSize0)] & LandBit;
-                initChunkSeed(xi + x, zi + z);
-                initGroupSeed(xi + x, zi + z);
+                initChunkSeed(cache, xi + x, zi + z);
+                initGroupSeed(cache, xi + x, zi + z);
                 thisInts[(xi + zi * xSize)] = childInts[(xi + 1 + (zi + 1) * xSize0)] | LandBit;
 
                 //>>	Chances to reset LandBit
                 if ((centerCheck == 0) && ((nwCheck != 0) || (neCheck != 0) || (swCheck != 0) || (seCheck != 0)))
                 {
-                    if (nextInt(3) != 0)
+                    if (nextInt(cache, 3) != 0)
                         thisInts[(xi + zi * xSize)] ^= LandBit;
 
                 } else if ((centerCheck > 0) && ((nwCheck == 0) || (neCheck == 0) || (swCheck == 0) || (seCheck == 0)))
                 {
-                    if (nextInt(5) == 0)
+                    if (nextInt(cache, 5) == 0)
                         thisInts[(xi + zi * xSize)] ^= LandBit;
 
                 } else if (centerCheck == 0)
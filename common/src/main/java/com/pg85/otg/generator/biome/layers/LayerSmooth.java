@@ -35,9 +35,9 @@ public class LayerSmooth extends Layer
 
                 if (westCheck == eastCheck && northCheck == southCheck)
                 {
-                    this.initChunkSeed((long) (xi + x), (long) (zi + z));
+                    initChunkSeed(cache, (long) (xi + x), (long) (zi + z));
 
-                    if (this.nextInt(2) == 0)
+                    if (nextInt(cache, 2) == 0)
                         centerCheck = westCheck;
                     else
                         centerCheck = northCheck;
@@ -31,6 +31,11 @@ public class NoiseGeneratorPerlin
         }
     }
 
+    int[] getPermutations()
+    {
+        return permutations;
+    }
+
     public final double lerp(double d, double d1, double d2)
     {
         return d1 + d * (d2 - d1);
@@ -7,8 +7,8 @@ import java.util.Random;
 public class NoiseGeneratorPerlinOctaves
 {
 
-    private NoiseGeneratorPerlin[] noiseArray;
-    private int numOctaves;
+    protected final NoiseGeneratorPerlin[] noiseArray;
+    protected final int numOctaves;
 
     public NoiseGeneratorPerlinOctaves(Random random, int numOctaves)
     {
@@ -0,0 +1,252 @@
+package com.pg85.otg.generator.noise;
+
+import com.pg85.otg.util.helpers.MathHelper;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Drop-in replacement for {@link NoiseGeneratorPerlinOctaves} that produces
+ * exactly the same values, but evaluates the octaves in batches.
+ *
+ * <p>The permutation tables and offsets of all octaves are copied into flat
+ * arrays, and the floor, fade and lattice index of every sample coordinate
+ * are calculated once per octave and axis instead of once per sample. The
+ * inner loops only read from those primitive arrays, which lets HotSpot
+ * unroll them. Every sample still goes through the exact same floating point
+ * operations, in the same order, as in {@link NoiseGeneratorPerlin}.
+ */
+public class NoiseGeneratorPerlinOctavesBatched extends NoiseGeneratorPerlinOctaves
+{
+    private static final int PERMUTATIONS_SIZE = 512;
+
+    // Permutations of all octaves, octave n starts at n * PERMUTATIONS_SIZE
+    private final int[] permutations;
+    private final double[] xCoords;
+    private final double[] yCoords;
+    private final double[] zCoords;
+
+    public NoiseGeneratorPerlinOctavesBatched(Random random, int numOctaves)
+    {
+        super(random, numOctaves);
+
+        this.permutations = new int[numOctaves * PERMUTATIONS_SIZE];
+        this.xCoords = new double[numOctaves];
+        this.yCoords = new double[numOctaves];
+        this.zCoords = new double[numOctaves];
+        for (int octave = 0; octave < numOctaves; octave++)
+        {
+            NoiseGeneratorPerlin noiseGenerator = this.noiseArray[octave];
+            System.arraycopy(noiseGenerator.getPermutations(), 0, this.permutations, octave * PERMUTATIONS_SIZE, PERMUTATIONS_SIZE);
+            this.xCoords[octave] = noiseGenerator.xCoord;
+            this.yCoords[octave] = noiseGenerator.yCoord;
+            this.zCoords[octave] = noiseGenerator.zCoord;
+        }
+    }
+
+    private static double lerp(double d, double d1, double d2)
+    {
+        return d1 + d * (d2 - d1);
+    }
+
+    private static double fade(double d)
+    {
+        return d * d * d * (d * (d * 6D - 15D) + 10D);
+    }
+
+    private static double grad2D(int i, double d, double d1)
+    {
+        int j = i & 0xf;
+        double d2 = (double) (1 - ((j & 8) >> 3)) * d;
+        double d3 = j >= 4 ? j != 12 && j != 14 ? d1 : d : 0.0D;
+        return ((j & 1) != 0 ? -d2 : d2) + ((j & 2) != 0 ? -d3 : d3);
+    }
+
+    private static double grad(int i, double d, double d1, double d2)
+    {
+        int j = i & 0xf;
+        double d3 = j >= 8 ? d1 : d;
+        double d4 = j >= 4 ? j != 12 && j != 14 ? d2 : d : d1;
+        return ((j & 1) != 0 ? -d3 : d3) + ((j & 2) != 0 ? -d4 : d4);
+    }
+
+    /**
+     * Calculates, for one axis of one octave, the lattice cell, the position
+     * inside the cell and the faded position for every sample.
+     */
+    private static void fillAxis(double offset, double scale, double coord, int size, int[] cells, double[] positions, double[] fades)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            double position = offset + (double) i * scale + coord;
+            int cell = (int) position;
+            if (position < (double) cell)
+            {
+                cell--;
+            }
+            cells[i] = cell & 0xff;
+            position -= cell;
+            positions[i] = position;
+            fades[i] = fade(position);
+        }
+    }
+
+    /**
+     * Applies the same offset wrapping as
+     * {@link NoiseGeneratorPerlinOctaves#Noise3D(double[], int, int, int, int, int, int, double, double, double)}.
+     */
+    private static double wrapOffset(double offset)
+    {
+        long floor = MathHelper.floor_double_long(offset);
+        offset -= (double) floor;
+        floor %= 16777216L;
+        offset += (double) floor;
+        return offset;
+    }
+
+    @Override
+    public double[] Noise3D(double[] doubleArray, int xOffset, int yOffset, int zOffset, int xSize, int ySize, int zSize, double xScale, double yScale, double zScale)
+    {
+        if (doubleArray == null)
+        {
+            doubleArray = new double[xSize * ySize * zSize];
+        } else {
+            Arrays.fill(doubleArray, 0.0D);
+        }
+
+        int[] xCells = new int[xSize];
+        double[] xPositions = new double[xSize];
+        double[] xFades = new double[xSize];
+        int[] yCells = new int[ySize];
+        double[] yPositions = new double[ySize];
+        double[] yFades = new double[ySize];
+        int[] zCells = new int[zSize];
+        double[] zPositions = new double[zSize];
+        double[] zFades = new double[zSize];
+
+        final int[] p = this.permutations;
+        double d3 = 1.0D;
+
+        for (int octave = 0; octave < this.numOctaves; ++octave)
+        {
+            double d4 = wrapOffset((double) xOffset * d3 * xScale);
+            double d5 = (double) yOffset * d3 * yScale;
+            double d6 = wrapOffset((double) zOffset * d3 * zScale);
+
+            fillAxis(d4, xScale * d3, this.xCoords[octave], xSize, xCells, xPositions, xFades);
+            fillAxis(d5, yScale * d3, this.yCoords[octave], ySize, yCells, yPositions, yFades);
+            fillAxis(d6, zScale * d3, this.zCoords[octave], zSize, zCells, zPositions, zFades);
+
+            final int base = octave * PERMUTATIONS_SIZE;
+            final double d7 = 1.0D / d3;
+            int i1 = 0;
+
+            for (int i5 = 0; i5 < xSize; i5++)
+            {
+                final int i6 = base + xCells[i5];
+                final double d20 = xPositions[i5];
+                final double d22 = xFades[i5];
+                final int pX = p[i6];
+                final int pX1 = p[i6 + 1];
+
+                for (int j6 = 0; j6 < zSize; j6++)
+                {
+                    final int l6 = zCells[j6];
+                    final double d24 = zPositions[j6];
+                    final double d25 = zFades[j6];
+
+                    int i2 = -1;
+                    double d13 = 0.0D;
+                    double d15 = 0.0D;
+                    double d16 = 0.0D;
+                    double d18 = 0.0D;
+                    for (int i7 = 0; i7 < ySize; i7++)
+                    {
+                        final int k7 = yCells[i7];
+                        final double d26 = yPositions[i7];
+                        if (i7 == 0 || k7 != i2)
+                        {
+                            i2 = k7;
+                            int j2 = base + pX + k7;
+                            int k2 = base + p[j2] + l6;
+                            int l2 = base + p[j2 + 1] + l6;
+                            int i3 = base + pX1 + k7;
+                            int k3 = base + p[i3] + l6;
+                            int l3 = base + p[i3 + 1] + l6;
+                            d13 = lerp(d22, grad(p[k2], d20, d26, d24), grad(p[k3], d20 - 1.0D, d26, d24));
+                            d15 = lerp(d22, grad(p[l2], d20, d26 - 1.0D, d24), grad(p[l3], d20 - 1.0D, d26 - 1.0D, d24));
+                            d16 = lerp(d22, grad(p[k2 + 1], d20, d26, d24 - 1.0D), grad(p[k3 + 1], d20 - 1.0D, d26, d24 - 1.0D));
+                            d18 = lerp(d22, grad(p[l2 + 1], d20, d26 - 1.0D, d24 - 1.0D), grad(p[l3 + 1], d20 - 1.0D, d26 - 1.0D, d24 - 1.0D));
+                        }
+                        final double d27 = yFades[i7];
+                        double d28 = lerp(d27, d13, d15);
+                        double d29 = lerp(d27, d16, d18);
+                        double d30 = lerp(d25, d28, d29);
+                        doubleArray[i1++] += d30 * d7;
+                    }
+                }
+            }
+            d3 /= 2.0D;
+        }
+
+        return doubleArray;
+    }
+
+    @Override
+    public double[] Noise2D(double[] doubleArray, int xOffset, int zOffset, int xSize, int zSize, double xScale, double zScale)
+    {
+        if (doubleArray == null)
+        {
+            doubleArray = new double[xSize * zSize];
+        } else {
+            Arrays.fill(doubleArray, 0.0D);
+        }
+
+        int[] xCells = new int[xSize];
+        double[] xPositions = new double[xSize];
+        double[] xFades = new double[xSize];
+        int[] zCells = new int[zSize];
+        double[] zPositions = new double[zSize];
+        double[] zFades = new double[zSize];
+
+        final int[] p = this.permutations;
+        double d3 = 1.0D;
+
+        for (int octave = 0; octave < this.numOctaves; ++octave)
+        {
+            double d4 = wrapOffset((double) xOffset * d3 * xScale);
+            double d6 = wrapOffset((double) zOffset * d3 * zScale);
+
+            fillAxis(d4, xScale * d3, this.xCoords[octave], xSize, xCells, xPositions, xFades);
+            fillAxis(d6, zScale * d3, this.zCoords[octave], zSize, zCells, zPositions, zFades);
+
+            final int base = octave * PERMUTATIONS_SIZE;
+            final double d12 = 1.0D / d3;
+            int j3 = 0;
+
+            for (int i4 = 0; i4 < xSize; i4++)
+            {
+                final int k4 = base + xCells[i4];
+                final double d14 = xPositions[i4];
+                final double d17 = xFades[i4];
+                final int l = base + p[k4];
+                final int k1 = base + p[k4 + 1];
+
+                for (int l4 = 0; l4 < zSize; l4++)
+                {
+                    final int l5 = zCells[l4];
+                    final double d19 = zPositions[l4];
+                    int j1 = base + p[l] + l5;
+                    int l1 = base + p[k1] + l5;
+                    double d9 = lerp(d17, grad2D(p[j1], d14, d19), grad(p[l1], d14 - 1.0D, 0.0D, d19));
+                    double d11 = lerp(d17, grad(p[j1 + 1], d14, 0.0D, d19 - 1.0D), grad(p[l1 + 1], d14 - 1.0D, 0.0D, d19 - 1.0D));
+                    double d23 = lerp(zFades[l4], d9, d11);
+                    doubleArray[j3++] += d23 * d12;
+                }
+            }
+            d3 /= 2.0D;
+        }
+
+        return doubleArray;
+    }
+}
@@ -4,6 +4,7 @@ import com.pg85.otg.LocalWorld;
 import com.pg85.otg.OTG;
 import com.pg85.otg.configuration.BiomeConfig;
 import com.pg85.otg.exception.InvalidConfigException;
+import com.pg85.otg.generator.PopulationBuffer;
 import com.pg85.otg.util.MaterialSet;
 import com.pg85.otg.util.helpers.MathHelper;
 import com.pg85.otg.util.helpers.RandomHelper;
@@ -57,6 +58,12 @@ public class OreGen extends Resource
         return 10;
     }
 
+    @Override
+    public boolean usesPopulationBuffer()
+    {
+        return true;
+    }
+
     @Override
     public int hashCode()
     {
@@ -78,6 +85,7 @@ public class OreGen extends Resource
     @Override
     public void spawn(LocalWorld world, Random rand, boolean villageInChunk, int x, int z)
     {
+        PopulationBuffer buffer = world.getObjectSpawner().getPopulationBuffer();
         int y = RandomHelper.numberInRange(rand, minAltitude, maxAltitude);
 
         float f = rand.nextFloat() * (float) Math.PI;
@@ -123,9 +131,9 @@ public class OreGen extends Resource
                             {
                                 double d15 = (i5 + 0.5D - d9) / (d11 / 2.0D);     
                                 
-                                if ((d13 * d13 + d14 * d14 + d15 * d15 < 1.0D) && sourceBlocks.contains(world.getMaterial(i3, i4, i5, false)))
+                                if ((d13 * d13 + d14 * d14 + d15 * d15 < 1.0D) && sourceBlocks.contains(buffer.getMaterial(world, i3, i4, i5)))
                                 {
-                                    world.setBlock(i3, i4, i5, material, null, false);
+                                    buffer.setBlock(world, i3, i4, i5, material);
                                 }
                             }
                         }
@@ -106,6 +106,18 @@ public abstract class Resource extends ConfigFunction<BiomeConfig> implements Co
         return 0;
     }
 
+    /**
+     * Gets whether this resource only reads and writes single blocks, through
+     * the {@link com.pg85.otg.generator.PopulationBuffer} of the world. These
+     * resources are spawned with the buffer active, other resources are
+     * spawned directly in the world.
+     * @return True if this resource uses the population buffer.
+     */
+    public boolean usesPopulationBuffer()
+    {
+        return false;
+    }
+
     @Override
     public int hashCode()
     {
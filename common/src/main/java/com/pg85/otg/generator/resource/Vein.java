@@ -2,6 +2,7 @@ package com.pg85.otg.generator.resource;
 
 import com.pg85.otg.LocalMaterialData;
 import com.pg85.otg.LocalWorld;
+import com.pg85.otg.generator.PopulationBuffer;
 import com.pg85.otg.util.ChunkCoordinate;
 import com.pg85.otg.util.MaterialSet;
 import com.pg85.otg.util.helpers.MathHelper;
@@ -71,6 +72,7 @@ class Vein
         int maxSize = gen.oreSize;
         LocalMaterialData material = gen.material;
         MaterialSet sourceBlocks = gen.sourceBlocks;
+        PopulationBuffer buffer = world.getObjectSpawner().getPopulationBuffer();
 
         float f = rand.nextFloat() * 3.141593F;
 
@@ -114,9 +116,9 @@ class Vein
                             for (int i5 = m; i5 <= i2; i5++)
                             {
                                 double d15 = (i5 + 0.5D - d9) / (d11 / 2.0D);
-                                if ((d13 * d13 + d14 * d14 + d15 * d15 < 1.0D) && sourceBlocks.contains(world.getMaterial(i3, i4, i5, false)))
+                                if ((d13 * d13 + d14 * d14 + d15 * d15 < 1.0D) && sourceBlocks.contains(buffer.getMaterial(world, i3, i4, i5)))
                                 {
-                                    world.setBlock(i3, i4, i5, material, null, false);
+                                    buffer.setBlock(world, i3, i4, i5, material);
                                 }
                             }
                         }
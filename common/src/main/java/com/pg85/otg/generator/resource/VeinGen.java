@@ -73,6 +73,12 @@ public class VeinGen extends Resource
         return 9;
     }
 
+    @Override
+    public boolean usesPopulationBuffer()
+    {
+        return true;
+    }
+
     /**
      * Returns the vein that starts in the chunk.
      * @param world  The world to spawn in.
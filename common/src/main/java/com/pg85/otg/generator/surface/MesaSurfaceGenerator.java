@@ -12,8 +12,9 @@ import com.pg85.otg.util.helpers.MathHelper;
 import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MesaSurfaceGenerator implements SurfaceGenerator
 {
@@ -46,11 +47,11 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
         return null;
     }
 
-    private LocalMaterialData[] blockDataValuesArray;
+    private volatile LocalMaterialData[] blockDataValuesArray;
     private boolean isForestMesa;
     private boolean isBryceMesa;
-    private NoiseGeneratorNewOctaves noiseGenBryce1;
-    private NoiseGeneratorNewOctaves noiseGenBryce2;
+    private volatile NoiseGeneratorNewOctaves noiseGenBryce1;
+    private volatile NoiseGeneratorNewOctaves noiseGenBryce2;
     private NoiseGeneratorNewOctaves noiseGenBlockData;
 
     private final LocalMaterialData hardenedClay;
@@ -86,10 +87,30 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
         return this.blockDataValuesArray[(j + l + 64) % 64];
     }
 
-    private void initializeSmallByteArray(Random random)
+    private synchronized void initializeBryceNoise(long seed)
     {
-        this.blockDataValuesArray = new LocalMaterialData[64];
-        Arrays.fill(this.blockDataValuesArray, this.hardenedClay);
+        if (this.noiseGenBryce1 == null || this.noiseGenBryce2 == null)
+        {
+            Random newRandom = new Random(seed);
+
+            NoiseGeneratorNewOctaves noiseGenBryce1 = new NoiseGeneratorNewOctaves(newRandom, 4);
+            this.noiseGenBryce2 = new NoiseGeneratorNewOctaves(newRandom, 1);
+            this.noiseGenBryce1 = noiseGenBryce1;
+        }
+    }
+
+    private synchronized void initializeSmallByteArray(Random random)
+    {
+        if (this.blockDataValuesArray != null)
+        {
+            // Already initialized by another thread
+            return;
+        }
+
+        // Only publish the array once it is completely filled, other
+        // threads may be reading it without a lock
+        LocalMaterialData[] blockDataValuesArray = new LocalMaterialData[64];
+        Arrays.fill(blockDataValuesArray, this.hardenedClay);
 
         this.noiseGenBlockData = new NoiseGeneratorNewOctaves(random, 1);
 
@@ -100,7 +121,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
             j += random.nextInt(5) + 1;
             if (j < 64)
             {
-                this.blockDataValuesArray[j] = this.orangeStainedClay;
+                blockDataValuesArray[j] = this.orangeStainedClay;
             }
         }
 
@@ -118,7 +139,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
 
             for (j1 = 0; i1 + j1 < 64 && j1 < l; ++j1)
             {
-                this.blockDataValuesArray[i1 + j1] = this.yellowStainedClay;
+                blockDataValuesArray[i1 + j1] = this.yellowStainedClay;
             }
         }
 
@@ -133,7 +154,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
 
             for (k1 = 0; j1 + k1 < 64 && k1 < i1; ++k1)
             {
-                this.blockDataValuesArray[j1 + k1] = this.brownStainedClay;
+                blockDataValuesArray[j1 + k1] = this.brownStainedClay;
             }
         }
 
@@ -146,7 +167,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
 
             for (int l1 = 0; k1 + l1 < 64 && l1 < j1; ++l1)
             {
-                this.blockDataValuesArray[k1 + l1] = this.redStainedClay;
+                blockDataValuesArray[k1 + l1] = this.redStainedClay;
             }
         }
 
@@ -161,26 +182,28 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
 
             for (int i2 = 0; j1 + i2 < 64 && i2 < b0; ++i2)
             {
-                this.blockDataValuesArray[j1 + i2] = this.whiteStainedClay;
+                blockDataValuesArray[j1 + i2] = this.whiteStainedClay;
                 if (j1 + i2 > 1 && random.nextBoolean())
                 {
-                    this.blockDataValuesArray[j1 + i2 - 1] = this.silverStainedClay;
+                    blockDataValuesArray[j1 + i2 - 1] = this.silverStainedClay;
                 }
 
                 if (j1 + i2 < 63 && random.nextBoolean())
                 {
-                    this.blockDataValuesArray[j1 + i2 + 1] = this.silverStainedClay;
+                    blockDataValuesArray[j1 + i2 + 1] = this.silverStainedClay;
                 }
             }
         }
+        this.blockDataValuesArray = blockDataValuesArray;
     }
 
-    HashMap<ChunkCoordinate, Double> bryceHeightPerColumn = new HashMap<ChunkCoordinate, Double>();
-    HashMap<ChunkCoordinate, Integer> generatingChunkWaterLevelPerColumn = new HashMap<ChunkCoordinate, Integer>();
-    HashMap<ChunkCoordinate, Double> noisePerColumn = new HashMap<ChunkCoordinate, Double>();    
-    HashMap<ChunkCoordinate, Integer> noisePlusRandomFactorPerColumn = new HashMap<ChunkCoordinate, Integer>();
-    HashMap<ChunkCoordinate, Boolean> cosNoiseIsLargerThanZeroPerColumn = new HashMap<ChunkCoordinate, Boolean>();
-    HashMap<ChunkCoordinate, Integer> maxHeightPerColumn = new HashMap<ChunkCoordinate, Integer>();
+    // Concurrent maps, as terrain may be generated by several threads at once
+    Map<ChunkCoordinate, Double> bryceHeightPerColumn = new ConcurrentHashMap<ChunkCoordinate, Double>();
+    Map<ChunkCoordinate, Integer> generatingChunkWaterLevelPerColumn = new ConcurrentHashMap<ChunkCoordinate, Integer>();
+    Map<ChunkCoordinate, Double> noisePerColumn = new ConcurrentHashMap<ChunkCoordinate, Double>();    
+    Map<ChunkCoordinate, Integer> noisePlusRandomFactorPerColumn = new ConcurrentHashMap<ChunkCoordinate, Integer>();
+    Map<ChunkCoordinate, Boolean> cosNoiseIsLargerThanZeroPerColumn = new ConcurrentHashMap<ChunkCoordinate, Boolean>();
+    Map<ChunkCoordinate, Integer> maxHeightPerColumn = new ConcurrentHashMap<ChunkCoordinate, Integer>();
     
     @Override
     public LocalMaterialData getCustomBlockData(LocalWorld world, BiomeConfig biomeConfig, int xInWorld, int yInWorld, int zInWorld)
@@ -380,10 +403,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
 	        {
 	            if (this.noiseGenBryce1 == null || this.noiseGenBryce2 == null)
 	            {
-	                Random newRandom = new Random(generatingChunk.getSeed());
-
-	                this.noiseGenBryce1 = new NoiseGeneratorNewOctaves(newRandom, 4);
-	                this.noiseGenBryce2 = new NoiseGeneratorNewOctaves(newRandom, 1);
+	                initializeBryceNoise(generatingChunk.getSeed());
 	            }
 
 	            int k = (xInWorld & -16) + (zInWorld & 15);
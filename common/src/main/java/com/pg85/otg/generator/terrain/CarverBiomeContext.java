@@ -0,0 +1,51 @@
+package com.pg85.otg.generator.terrain;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.pg85.otg.LocalMaterialData;
+import com.pg85.otg.configuration.BiomeConfig;
+import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
+
+/**
+ * The biome of every column of the chunk that is being carved, with the
+ * biome materials the carvers need. Filled in by the terrain generator from
+ * the biomes it already calculated for the chunk, so that carvers don't have
+ * to look up the biome of every column in the world. Only if the saved
+ * biomes are used for population, the biomes are looked up in the world.
+ *
+ * <p>Materials are compared by {@link LocalMaterialData#hashCode()}, which
+ * is unique for every block id and block data combination.
+ */
+public final class CarverBiomeContext
+{
+    private static final int COLUMNS = CHUNK_X_SIZE * CHUNK_Z_SIZE;
+
+    final int[] stoneBlockHash = new int[COLUMNS];
+    final int[] groundBlockHash = new int[COLUMNS];
+    final int[] surfaceBlockHash = new int[COLUMNS];
+    // surfaceBlock.toDefaultMaterial(), used to find the surface of a column
+    final DefaultMaterial[] surfaceMaterial = new DefaultMaterial[COLUMNS];
+    final LocalMaterialData[] surfaceBlock = new LocalMaterialData[COLUMNS];
+
+    static int getColumn(int x, int z)
+    {
+        return x + z * CHUNK_X_SIZE;
+    }
+
+    /**
+     * Sets the biome of a column.
+     * @param x           Block x in the chunk, from 0 to 15.
+     * @param z           Block z in the chunk, from 0 to 15.
+     * @param biomeConfig The biome of the column.
+     */
+    public void setBiome(int x, int z, BiomeConfig biomeConfig)
+    {
+        int column = getColumn(x, z);
+        this.stoneBlockHash[column] = biomeConfig.stoneBlock.hashCode();
+        this.groundBlockHash[column] = biomeConfig.groundBlock.hashCode();
+        this.surfaceBlockHash[column] = biomeConfig.surfaceBlock.hashCode();
+        this.surfaceMaterial[column] = biomeConfig.surfaceBlock.toDefaultMaterial();
+        this.surfaceBlock[column] = biomeConfig.surfaceBlock;
+    }
+}
@@ -1,9 +1,7 @@
 package com.pg85.otg.generator.terrain;
 
-import com.pg85.otg.LocalBiome;
 import com.pg85.otg.LocalMaterialData;
 import com.pg85.otg.LocalWorld;
-import com.pg85.otg.configuration.BiomeConfig;
 import com.pg85.otg.configuration.WorldConfig;
 import com.pg85.otg.generator.ChunkBuffer;
 import com.pg85.otg.util.ChunkCoordinate;
@@ -11,9 +9,11 @@ import com.pg85.otg.util.helpers.MathHelper;
 import com.pg85.otg.util.helpers.RandomHelper;
 import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
-public class CavesGen extends TerrainGenBase
+public class CavesGen extends TerrainGenBase<List<CavesGen.CaveNode>>
 {
     private WorldConfig worldSettings;
 
@@ -23,17 +23,92 @@ public class CavesGen extends TerrainGenBase
         this.worldSettings = wrk;
     }
 
-    protected void generateLargeCaveNode(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z)
+    /**
+     * A single tunnel of a cave system, with the position of every step of
+     * the tunnel. A tunnel can split into two new tunnels at its end.
+     */
+    protected static class CaveNode
     {
-        generateCaveNode(seed, generatingChunkBuffer, x, y, z, 1.0F + this.random.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
+        final int startAngle;
+        final int maxAngle;
+        final float paramFloat1;
+        final double paramDouble4;
+        final boolean isLargeCave;
+
+        // Position after every step, starting at startAngle
+        final double[] x;
+        final double[] y;
+        final double[] z;
+        // Steps that are skipped at random
+        final boolean[] skipped;
+        int steps = 0;
+
+        CaveNode branch1;
+        CaveNode branch2;
+
+        // Area that this node and its branches can carve in
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+
+        CaveNode(int startAngle, int maxAngle, float paramFloat1, double paramDouble4, boolean isLargeCave)
+        {
+            this.startAngle = startAngle;
+            this.maxAngle = maxAngle;
+            this.paramFloat1 = paramFloat1;
+            this.paramDouble4 = paramDouble4;
+            this.isLargeCave = isLargeCave;
+            int maxSteps = Math.max(maxAngle - startAngle, 0);
+            this.x = new double[maxSteps];
+            this.y = new double[maxSteps];
+            this.z = new double[maxSteps];
+            this.skipped = new boolean[maxSteps];
+        }
+
+        void addStep(double x, double y, double z, boolean skipped)
+        {
+            this.x[steps] = x;
+            this.y[steps] = y;
+            this.z[steps] = z;
+            this.skipped[steps] = skipped;
+            steps++;
+
+            // The radius is never larger than 1.5 + paramFloat1
+            double radius = 1.5D + paramFloat1 + 2.0D;
+            minX = Math.min(minX, x - radius);
+            maxX = Math.max(maxX, x + radius);
+            minZ = Math.min(minZ, z - radius);
+            maxZ = Math.max(maxZ, z + radius);
+        }
+
+        void addBranch(CaveNode branch)
+        {
+            minX = Math.min(minX, branch.minX);
+            maxX = Math.max(maxX, branch.maxX);
+            minZ = Math.min(minZ, branch.minZ);
+            maxZ = Math.max(maxZ, branch.maxZ);
+        }
+
+        boolean canCarveIn(ChunkCoordinate chunk)
+        {
+            return maxX >= chunk.getBlockX() && minX <= chunk.getBlockX() + ChunkCoordinate.CHUNK_X_SIZE
+                    && maxZ >= chunk.getBlockZ() && minZ <= chunk.getBlockZ() + ChunkCoordinate.CHUNK_Z_SIZE;
+        }
     }
 
-    protected void generateCaveNode(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z, float paramFloat1, float paramFloat2, float paramFloat3, int angle, int maxAngle, double paramDouble4)
+    protected CaveNode createLargeCaveNode(Random random, long seed, double x, double y, double z)
     {
-        ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
-        double real_x = generatingChunk.getBlockXCenter();
-        double real_z = generatingChunk.getBlockZCenter();
+        return createCaveNode(seed, x, y, z, 1.0F + random.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
+    }
 
+    /**
+     * Simulates a cave tunnel and its branches. Consumes random numbers
+     * exactly like the tunnel would while carving, but records every step
+     * instead of carving, so that the tunnel can be carved into any chunk.
+     */
+    protected CaveNode createCaveNode(long seed, double x, double y, double z, float paramFloat1, float paramFloat2, float paramFloat3, int angle, int maxAngle, double paramDouble4)
+    {
         float f1 = 0.0F;
         float f2 = 0.0F;
 
@@ -55,11 +130,10 @@ public class CavesGen extends TerrainGenBase
         int j = localRandom.nextInt(maxAngle / 2) + maxAngle / 4;
         int k = localRandom.nextInt(6) == 0 ? 1 : 0;
 
+        CaveNode node = new CaveNode(angle, maxAngle, paramFloat1, paramDouble4, isLargeCave);
+
         for (; angle < maxAngle; angle++)
         {
-            double d3 = 1.5D + MathHelper.sin(angle * 3.141593F / maxAngle) * paramFloat1 * 1.0F;
-            double d4 = d3 * paramDouble4;
-
             float f3 = MathHelper.cos(paramFloat3);
             float f4 = MathHelper.sin(paramFloat3);
             x += MathHelper.cos(paramFloat2) * f3;
@@ -82,15 +156,46 @@ public class CavesGen extends TerrainGenBase
 
             if ((!isLargeCave) && (angle == j) && (paramFloat1 > 1.0F) && (maxAngle > 0))
             {
-                generateCaveNode(localRandom.nextLong(), generatingChunkBuffer, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F, paramFloat2 - 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
-                generateCaveNode(localRandom.nextLong(), generatingChunkBuffer, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F, paramFloat2 + 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
-                return;
+                node.branch1 = createCaveNode(localRandom.nextLong(), x, y, z, localRandom.nextFloat() * 0.5F + 0.5F, paramFloat2 - 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
+                node.branch2 = createCaveNode(localRandom.nextLong(), x, y, z, localRandom.nextFloat() * 0.5F + 0.5F, paramFloat2 + 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
+                node.addBranch(node.branch1);
+                node.addBranch(node.branch2);
+                break;
             }
-            if ((!isLargeCave) && (localRandom.nextInt(4) == 0))
+
+            node.addStep(x, y, z, (!isLargeCave) && (localRandom.nextInt(4) == 0));
+        }
+        return node;
+    }
+
+    protected void generateCaveNode(CaveNode node, ChunkBuffer generatingChunkBuffer, CarverBiomeContext biomes)
+    {
+        ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+        if (!node.canCarveIn(generatingChunk))
+        {
+            return;
+        }
+
+        double real_x = generatingChunk.getBlockXCenter();
+        double real_z = generatingChunk.getBlockZCenter();
+
+        int maxAngle = node.maxAngle;
+        float paramFloat1 = node.paramFloat1;
+
+        for (int step = 0; step < node.steps; step++)
+        {
+            if (node.skipped[step])
             {
                 continue;
             }
 
+            int angle = node.startAngle + step;
+            double x = node.x[step];
+            double y = node.y[step];
+            double z = node.z[step];
+            double d3 = 1.5D + MathHelper.sin(angle * 3.141593F / maxAngle) * paramFloat1 * 1.0F;
+            double d4 = d3 * node.paramDouble4;
+
             // Check if distance to working point (x and z) too larger than working radius (maybe ??)
             double d5 = x - real_x;
             double d6 = z - real_z;
@@ -180,7 +285,7 @@ public class CavesGen extends TerrainGenBase
                 double d9 = (local_x + generatingChunk.getBlockX() + 0.5D - x) / d3;
                 for (int local_z = i3; local_z < i4; local_z++)
                 {
-                    LocalBiome biome = this.world.getBiome(local_x + generatingChunk.getBlockX(), local_z + generatingChunk.getBlockZ());
+                    int column = CarverBiomeContext.getColumn(local_x, local_z);
                     double d10 = (local_z + generatingChunk.getBlockZ() + 0.5D - z) / d3;
 
                     boolean surfaceBlockFound = false;
@@ -192,24 +297,23 @@ public class CavesGen extends TerrainGenBase
                             if ((d11 > -0.7D) && (d9 * d9 + d11 * d11 + d10 * d10 < 1.0D))
                             {
                                 LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, currentDepth, local_z);
-                                LocalMaterialData materialAbove = generatingChunkBuffer.getBlock(local_x, currentDepth + 1, local_z);
-                                if (!surfaceBlockFound && material.isMaterial(biome.getBiomeConfig().surfaceBlock.toDefaultMaterial()))
+                                int materialId = material.getBlockId();
+                                if (!surfaceBlockFound && materialId == biomes.surfaceMaterial[column].id)
                                 {
                                 	surfaceBlockFound = true;
                                 }
-                                if (this.isSuitableBlock(material, materialAbove, biome))
+                                if (this.isSuitableBlock(material, materialId, generatingChunkBuffer, local_x, currentDepth, local_z, biomes, column))
                                 {
                                     generatingChunkBuffer.setBlock(local_x, currentDepth, local_z, air);
-                                    LocalMaterialData block = generatingChunkBuffer.getBlock(local_x, currentDepth - 1, local_z);
-                                    
+
                                     // If grass was just deleted, try to move it down
-                                    if (
-                                		surfaceBlockFound && 
-                                		!block.isLiquid() &&
-                                		!block.isMaterial(DefaultMaterial.BEDROCK)
-                            		)
+                                    if (surfaceBlockFound)
                                     {
-                                        generatingChunkBuffer.setBlock(local_x, currentDepth - 1, local_z, biome.getBiomeConfig().surfaceBlock);
+                                        LocalMaterialData block = generatingChunkBuffer.getBlock(local_x, currentDepth - 1, local_z);
+                                        if (!block.isLiquid() && block.getBlockId() != DefaultMaterial.BEDROCK.id)
+                                        {
+                                            generatingChunkBuffer.setBlock(local_x, currentDepth - 1, local_z, biomes.surfaceBlock[column]);
+                                        }
                                     }
                                 }
                             }
@@ -217,48 +321,67 @@ public class CavesGen extends TerrainGenBase
                     }
                 }
             }
-            if (isLargeCave)
+            if (node.isLargeCave)
             {
-                break;
+                return;
             }
         }
+
+        if (node.branch1 != null)
+        {
+            generateCaveNode(node.branch1, generatingChunkBuffer, biomes);
+            generateCaveNode(node.branch2, generatingChunkBuffer, biomes);
+        }
     }
 
-    protected boolean isSuitableBlock(LocalMaterialData material, LocalMaterialData materialAbove, LocalBiome biome)
-    {    	
-        BiomeConfig biomeConfig = biome.getBiomeConfig();
-        if (material.equals(biomeConfig.stoneBlock))
+    /**
+     * Gets whether caves can carve through the given block.
+     * @param material    The block.
+     * @param materialId  Block id of the block.
+     * @param chunkBuffer The chunk of the block, used to check the block
+     *                    above falling blocks.
+     * @param x           Block x in the chunk.
+     * @param y           Block y.
+     * @param z           Block z in the chunk.
+     * @param biomes      The biomes of the chunk.
+     * @param column      Column of the block in the biomes.
+     * @return Whether the block can be replaced by air.
+     */
+    protected boolean isSuitableBlock(LocalMaterialData material, int materialId, ChunkBuffer chunkBuffer, int x, int y, int z, CarverBiomeContext biomes, int column)
+    {
+        int materialHash = material.hashCode();
+        if (materialHash == biomes.stoneBlockHash[column])
         {
             return true;
         }
         if (material.canFall())
         {
-            return !materialAbove.isLiquid();
+            return !chunkBuffer.getBlock(x, y + 1, z).isLiquid();
         }
-        if (material.equals(biomeConfig.groundBlock))
+        if (materialHash == biomes.groundBlockHash[column])
         {
             return true;
         }
-        if (material.equals(biomeConfig.surfaceBlock))
+        if (materialHash == biomes.surfaceBlockHash[column])
         {
             return true;
         }
 
         // Few hardcoded cases
-        if (material.isMaterial(DefaultMaterial.HARD_CLAY))
+        if (materialId == DefaultMaterial.HARD_CLAY.id)
         {
             return true;
         }
-        if (material.isMaterial(DefaultMaterial.SANDSTONE))
+        if (materialId == DefaultMaterial.SANDSTONE.id)
         {
             return true;
         }
-        if (material.isMaterial(DefaultMaterial.RED_SANDSTONE))
+        if (materialId == DefaultMaterial.RED_SANDSTONE.id)
         {
             return true;
         }
 
-        if (material.isMaterial(DefaultMaterial.SNOW))
+        if (materialId == DefaultMaterial.SNOW.id)
         {
             return true;
         }
@@ -267,21 +390,27 @@ public class CavesGen extends TerrainGenBase
     }
 
     @Override
-    protected void generateChunk(ChunkCoordinate chunkCoord, ChunkBuffer generatingChunkBuffer)
+    protected List<CaveNode> createCarvers(Random random, ChunkCoordinate chunkCoord)
     {
-        int i = this.random.nextInt(this.random.nextInt(this.random.nextInt(this.worldSettings.caveFrequency) + 1) + 1);
+        int i = random.nextInt(random.nextInt(random.nextInt(this.worldSettings.caveFrequency) + 1) + 1);
         if (this.worldSettings.evenCaveDistribution)
         {
             i = this.worldSettings.caveFrequency;
         }
-        if (this.random.nextInt(100) >= this.worldSettings.caveRarity)
+        if (random.nextInt(100) >= this.worldSettings.caveRarity)
         {
             i = 0;
         }
+        if (i == 0)
+        {
+            return null;
+        }
+
+        List<CaveNode> caveNodes = new ArrayList<CaveNode>();
 
         for (int j = 0; j < i; j++)
         {
-            double x = chunkCoord.getBlockX() + this.random.nextInt(ChunkCoordinate.CHUNK_X_SIZE);
+            double x = chunkCoord.getBlockX() + random.nextInt(ChunkCoordinate.CHUNK_X_SIZE);
 
             double y;
 
@@ -289,33 +418,42 @@ public class CavesGen extends TerrainGenBase
             {
                 y = RandomHelper.numberInRange(random, this.worldSettings.caveMinAltitude, this.worldSettings.caveMaxAltitude);
             } else {
-                y = this.random.nextInt(this.random.nextInt(this.worldSettings.caveMaxAltitude - this.worldSettings.caveMinAltitude + 1) + 1) + this.worldSettings.caveMinAltitude;
+                y = random.nextInt(random.nextInt(this.worldSettings.caveMaxAltitude - this.worldSettings.caveMinAltitude + 1) + 1) + this.worldSettings.caveMinAltitude;
             }
 
-            double z = chunkCoord.getBlockZ() + this.random.nextInt(ChunkCoordinate.CHUNK_Z_SIZE);
+            double z = chunkCoord.getBlockZ() + random.nextInt(ChunkCoordinate.CHUNK_Z_SIZE);
 
             int count = this.worldSettings.caveSystemFrequency;
             boolean largeCaveSpawned = false;
-            if (this.random.nextInt(100) <= this.worldSettings.individualCaveRarity)
+            if (random.nextInt(100) <= this.worldSettings.individualCaveRarity)
             {
-                generateLargeCaveNode(this.random.nextLong(), generatingChunkBuffer, x, y, z);
+                caveNodes.add(createLargeCaveNode(random, random.nextLong(), x, y, z));
                 largeCaveSpawned = true;
             }
 
-            if ((largeCaveSpawned) || (this.random.nextInt(100) <= this.worldSettings.caveSystemPocketChance - 1))
+            if ((largeCaveSpawned) || (random.nextInt(100) <= this.worldSettings.caveSystemPocketChance - 1))
             {
                 count += RandomHelper.numberInRange(random, this.worldSettings.caveSystemPocketMinSize, this.worldSettings.caveSystemPocketMaxSize);
             }
             while (count > 0)
             {
                 count--;
-                float f1 = this.random.nextFloat() * 3.141593F * 2.0F;
-                float f2 = (this.random.nextFloat() - 0.5F) * 2.0F / 8.0F;
-                float f3 = this.random.nextFloat() * 2.0F + this.random.nextFloat();
+                float f1 = random.nextFloat() * 3.141593F * 2.0F;
+                float f2 = (random.nextFloat() - 0.5F) * 2.0F / 8.0F;
+                float f3 = random.nextFloat() * 2.0F + random.nextFloat();
 
-                generateCaveNode(this.random.nextLong(), generatingChunkBuffer, x, y, z, f3, f1, f2, 0, 0, 1.0D);
+                caveNodes.add(createCaveNode(random.nextLong(), x, y, z, f3, f1, f2, 0, 0, 1.0D));
             }
         }
+        return caveNodes;
     }
 
+    @Override
+    protected void carve(List<CaveNode> caveNodes, ChunkBuffer generatingChunkBuffer, CarverBiomeContext biomes)
+    {
+        for (CaveNode caveNode : caveNodes)
+        {
+            generateCaveNode(caveNode, generatingChunkBuffer, biomes);
+        }
+    }
 }
@@ -1,8 +1,6 @@
 package com.pg85.otg.generator.terrain;
 
-import com.pg85.otg.LocalBiome;
 import com.pg85.otg.LocalWorld;
-import com.pg85.otg.configuration.BiomeConfig;
 import com.pg85.otg.configuration.WorldConfig;
 import com.pg85.otg.generator.ChunkBuffer;
 import com.pg85.otg.util.ChunkCoordinate;
@@ -12,9 +10,8 @@ import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
 import java.util.Random;
 
-public class RavinesGen extends TerrainGenBase
+public class RavinesGen extends TerrainGenBase<RavinesGen.Ravine>
 {
-    private float[] a = new float[1024];
     private WorldConfig worldSettings;
 
     public RavinesGen(WorldConfig wrk, LocalWorld world)
@@ -23,19 +20,82 @@ public class RavinesGen extends TerrainGenBase
         this.worldSettings = wrk;
     }
 
-    protected void placeBlocks(long paramLong, ChunkBuffer generatingChunkBuffer, double paramDouble1, double paramDouble2, double paramDouble3, float paramFloat1, float paramFloat2, float paramFloat3, int size, double paramDouble4)
+    /**
+     * A ravine, with the position and size of every step of the ravine.
+     */
+    protected static class Ravine
     {
-        Random localRandom = new Random(paramLong);
+        final int size;
+        final float paramFloat1;
+        // Width multiplier for every y level
+        final float[] a;
 
-        ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
-        double d1 = generatingChunk.getBlockXCenter();
-        double d2 = generatingChunk.getBlockZCenter();
+        // Position and size after every step
+        final double[] x;
+        final double[] y;
+        final double[] z;
+        final double[] d3;
+        final double[] d4;
+        // Steps that are skipped at random
+        final boolean[] skipped;
+        int steps = 0;
+
+        // Area that this ravine can carve in
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+
+        Ravine(int size, float paramFloat1, float[] a)
+        {
+            this.size = size;
+            this.paramFloat1 = paramFloat1;
+            this.a = a;
+            int maxSteps = Math.max(size, 0);
+            this.x = new double[maxSteps];
+            this.y = new double[maxSteps];
+            this.z = new double[maxSteps];
+            this.d3 = new double[maxSteps];
+            this.d4 = new double[maxSteps];
+            this.skipped = new boolean[maxSteps];
+        }
+
+        void addStep(double x, double y, double z, double d3, double d4, boolean skipped)
+        {
+            this.x[steps] = x;
+            this.y[steps] = y;
+            this.z[steps] = z;
+            this.d3[steps] = d3;
+            this.d4[steps] = d4;
+            this.skipped[steps] = skipped;
+            steps++;
+
+            minX = Math.min(minX, x - d3 - 2.0D);
+            maxX = Math.max(maxX, x + d3 + 2.0D);
+            minZ = Math.min(minZ, z - d3 - 2.0D);
+            maxZ = Math.max(maxZ, z + d3 + 2.0D);
+        }
+
+        boolean canCarveIn(ChunkCoordinate chunk)
+        {
+            return maxX >= chunk.getBlockX() && minX <= chunk.getBlockX() + ChunkCoordinate.CHUNK_X_SIZE
+                    && maxZ >= chunk.getBlockZ() && minZ <= chunk.getBlockZ() + ChunkCoordinate.CHUNK_Z_SIZE;
+        }
+    }
+
+    /**
+     * Simulates a ravine. Consumes random numbers exactly like the ravine
+     * would while carving, but records every step instead of carving, so
+     * that the ravine can be carved into any chunk.
+     */
+    protected Ravine createRavine(long paramLong, double paramDouble1, double paramDouble2, double paramDouble3, float paramFloat1, float paramFloat2, float paramFloat3, int size, double paramDouble4)
+    {
+        Random localRandom = new Random(paramLong);
+        float[] a = new float[1024];
 
         float f1 = 0.0F;
         float f2 = 0.0F;
 
-        int i = 0;
-
         float f3 = 1.0F;
         for (int j = 0; ; j++)
         {
@@ -47,9 +107,11 @@ public class RavinesGen extends TerrainGenBase
             {
                 f3 = 1.0F + localRandom.nextFloat() * localRandom.nextFloat() * 1.0F;
             }
-            this.a[j] = (f3 * f3);
+            a[j] = (f3 * f3);
         }
 
+        Ravine ravine = new Ravine(size, paramFloat1, a);
+
         for (int stepCount = 0; stepCount < size; stepCount++)
         {
             double d3 = 1.5D + MathHelper.sin(stepCount * 3.141593F / size) * paramFloat1 * 1.0F;
@@ -74,10 +136,38 @@ public class RavinesGen extends TerrainGenBase
             f2 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 2.0F;
             f1 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 4.0F;
 
-            if ((i == 0) && (localRandom.nextInt(4) == 0))
+            ravine.addStep(paramDouble1, paramDouble2, paramDouble3, d3, d4, localRandom.nextInt(4) == 0);
+        }
+        return ravine;
+    }
+
+    protected void placeBlocks(Ravine ravine, ChunkBuffer generatingChunkBuffer, CarverBiomeContext biomes)
+    {
+        ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+        if (!ravine.canCarveIn(generatingChunk))
+        {
+            return;
+        }
+
+        double d1 = generatingChunk.getBlockXCenter();
+        double d2 = generatingChunk.getBlockZCenter();
+
+        float[] a = ravine.a;
+        int size = ravine.size;
+        float paramFloat1 = ravine.paramFloat1;
+
+        for (int stepCount = 0; stepCount < ravine.steps; stepCount++)
+        {
+            if (ravine.skipped[stepCount])
             {
                 continue;
             }
+            double paramDouble1 = ravine.x[stepCount];
+            double paramDouble2 = ravine.y[stepCount];
+            double paramDouble3 = ravine.z[stepCount];
+            double d3 = ravine.d3[stepCount];
+            double d4 = ravine.d4[stepCount];
+
             double d5 = paramDouble1 - d1;
             double d6 = paramDouble3 - d2;
             double d7 = size - stepCount;
@@ -164,8 +254,9 @@ public class RavinesGen extends TerrainGenBase
                 double d9 = (localX + generatingChunk.getBlockX() + 0.5D - paramDouble1) / d3;
                 for (int localZ = i2; localZ < i3; localZ++)
                 {
-                    LocalBiome biome = world.getBiome(localZ + generatingChunk.getBlockX(), localX + generatingChunk.getBlockZ());
-                    BiomeConfig biomeConfig = biome.getBiomeConfig();
+                    // The biome has always been looked up with x and z
+                    // swapped, keep doing so to not change existing worlds
+                    int column = CarverBiomeContext.getColumn(localZ, localX);
                     double d10 = (localZ + generatingChunk.getBlockZ() + 0.5D - paramDouble3) / d3;
                     boolean surfaceBlockFound = false;
                     if (d9 * d9 + d10 * d10 < 1.0D)
@@ -174,11 +265,11 @@ public class RavinesGen extends TerrainGenBase
                         for (int currentDepth = minDepth; currentDepth >= maxDepth; currentDepth--)
                         {
                             double d11 = ((currentDepth - 1) + 0.5D - paramDouble2) / d4;
-                            if ((d9 * d9 + d10 * d10) * this.a[currentDepth - 1] + d11 * d11 / 6.0D < 1.0D)
+                            if ((d9 * d9 + d10 * d10) * a[currentDepth - 1] + d11 * d11 / 6.0D < 1.0D)
                             {
                                 DefaultMaterial material = generatingChunkBuffer.getBlock(localX, currentDepth, localZ).toDefaultMaterial();
                                 
-                                if (!surfaceBlockFound && material == biomeConfig.surfaceBlock.toDefaultMaterial())
+                                if (!surfaceBlockFound && material == biomes.surfaceMaterial[column])
                                 {
                                 	surfaceBlockFound = true;
                                 }
@@ -206,42 +297,39 @@ public class RavinesGen extends TerrainGenBase
                     				)
                                 )
                                 {
-                                    generatingChunkBuffer.setBlock(localX, currentDepth - 1, localZ, biomeConfig.surfaceBlock);
+                                    generatingChunkBuffer.setBlock(localX, currentDepth - 1, localZ, biomes.surfaceBlock[column]);
                                 }
                             }
                         }
                     }
                 }
             }
-            if (i != 0)
-            {
-                break;
-            }
         }
     }
 
     @Override
-    protected void generateChunk(ChunkCoordinate currentChunk, ChunkBuffer generatingChunkBuffer)
+    protected Ravine createCarvers(Random random, ChunkCoordinate currentChunk)
     {
-        if (this.random.nextInt(100) >= this.worldSettings.ravineRarity)
+        if (random.nextInt(100) >= this.worldSettings.ravineRarity)
         {
-            return;
+            return null;
         }
-        double d1 = currentChunk.getBlockX() + this.random.nextInt(ChunkCoordinate.CHUNK_X_SIZE);
+        double d1 = currentChunk.getBlockX() + random.nextInt(ChunkCoordinate.CHUNK_X_SIZE);
         double d2 = RandomHelper.numberInRange(random, this.worldSettings.ravineMinAltitude, this.worldSettings.ravineMaxAltitude);
-        double d3 = currentChunk.getBlockZ() + this.random.nextInt(ChunkCoordinate.CHUNK_Z_SIZE);
+        double d3 = currentChunk.getBlockZ() + random.nextInt(ChunkCoordinate.CHUNK_Z_SIZE);
 
-        int i = 1;
+        float f1 = random.nextFloat() * 3.141593F * 2.0F;
+        float f2 = (random.nextFloat() - 0.5F) * 2.0F / 8.0F;
+        float f3 = (random.nextFloat() * 2.0F + random.nextFloat()) * 2.0F;
 
-        for (int j = 0; j < i; j++)
-        {
-            float f1 = this.random.nextFloat() * 3.141593F * 2.0F;
-            float f2 = (this.random.nextFloat() - 0.5F) * 2.0F / 8.0F;
-            float f3 = (this.random.nextFloat() * 2.0F + this.random.nextFloat()) * 2.0F;
+        int size = RandomHelper.numberInRange(random, this.worldSettings.ravineMinLength, this.worldSettings.ravineMaxLength);
 
-            int size = RandomHelper.numberInRange(random, this.worldSettings.ravineMinLength, this.worldSettings.ravineMaxLength);
+        return createRavine(random.nextLong(), d1, d2, d3, f3, f1, f2, size, this.worldSettings.ravineDepth);
+    }
 
-            placeBlocks(this.random.nextLong(), generatingChunkBuffer, d1, d2, d3, f3, f1, f2, size, this.worldSettings.ravineDepth);
-        }
+    @Override
+    protected void carve(Ravine ravine, ChunkBuffer generatingChunkBuffer, CarverBiomeContext biomes)
+    {
+        placeBlocks(ravine, generatingChunkBuffer, biomes);
     }
 }
\ No newline at end of file
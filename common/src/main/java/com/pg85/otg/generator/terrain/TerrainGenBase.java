@@ -7,30 +7,68 @@ import com.pg85.otg.generator.ChunkBuffer;
 import com.pg85.otg.util.ChunkCoordinate;
 import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
-public abstract class TerrainGenBase
+/**
+ * Base class for carvers that can carve into a chunk from up to
+ * {@link #checkAreaSize} chunks away, like caves and ravines.
+ *
+ * <p>The carvers starting in a chunk don't depend on the chunk being carved,
+ * so they are created once per chunk and cached, instead of being created
+ * again for every chunk in range. Only the parts of a carver that cross the
+ * chunk being generated are then carved.
+ *
+ * @param <T> Type holding the carvers that start in a single chunk.
+ */
+public abstract class TerrainGenBase<T>
 {
+    // Amount of chunks of which the carvers are cached. Must be well above
+    // (checkAreaSize * 2 + 1)^2, so that the neighbourhood of the next
+    // chunk is still in the cache.
+    private static final int MAX_CACHED_CHUNKS = 2048;
+    // Marks chunks without carvers in the cache
+    private static final Object NO_CARVERS = new Object();
+
     // Hardcoded materials that cannot be changed for now
     protected final LocalMaterialData air = OTG.toLocalMaterialData(DefaultMaterial.AIR, 0);
     protected final LocalMaterialData lava = OTG.toLocalMaterialData(DefaultMaterial.STATIONARY_LAVA, 0);
 
     protected int checkAreaSize = 8;
-    protected Random random = new Random();
     protected LocalWorld world;
     private final long worldLong1;
     private final long worldLong2;
 
+    private final Map<Long, Object> carverCache = new LinkedHashMap<Long, Object>(MAX_CACHED_CHUNKS, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Object> eldest)
+        {
+            return size() > MAX_CACHED_CHUNKS;
+        }
+    };
+
     public TerrainGenBase(LocalWorld world)
     {
         this.world = world;
-        this.random.setSeed(this.world.getSeed());
-        worldLong1 = this.random.nextLong();
-        worldLong2 = this.random.nextLong();
+        Random random = new Random(this.world.getSeed());
+        worldLong1 = random.nextLong();
+        worldLong2 = random.nextLong();
     }
 
-    public void generate(ChunkBuffer chunkBuffer)
+    /**
+     * Carves the given chunk. Safe to call from multiple threads at once, as
+     * long as each thread uses its own chunk buffer.
+     *
+     * @param chunkBuffer The chunk to carve.
+     * @param biomes      The biomes of the chunk.
+     */
+    public void generate(ChunkBuffer chunkBuffer, CarverBiomeContext biomes)
     {
+        Random random = new Random();
         int i = this.checkAreaSize;
         ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
         int chunkX = chunkCoord.getChunkX();
@@ -39,21 +77,64 @@ public abstract class TerrainGenBase
         for (int x = chunkX - i; x <= chunkX + i; x++)
             for (int z = chunkZ - i; z <= chunkZ + i; z++)
             {
-                long l3 = x * worldLong1;
-                long l4 = z * worldLong2;
-                this.random.setSeed(l3 ^ l4 ^ this.world.getSeed());
-                generateChunk(ChunkCoordinate.fromChunkCoords(x, z), chunkBuffer);
+                T carvers = getCarvers(random, x, z);
+                if (carvers != null)
+                {
+                    carve(carvers, chunkBuffer, biomes);
+                }
+            }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getCarvers(Random random, int chunkX, int chunkZ)
+    {
+        Long key = ChunkCoordinate.toLong(chunkX, chunkZ);
+        Object carvers;
+        synchronized (this.carverCache)
+        {
+            carvers = this.carverCache.get(key);
+        }
+
+        if (carvers == null)
+        {
+            long l3 = chunkX * worldLong1;
+            long l4 = chunkZ * worldLong2;
+            random.setSeed(l3 ^ l4 ^ this.world.getSeed());
+            carvers = createCarvers(random, ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+            if (carvers == null)
+            {
+                carvers = NO_CARVERS;
+            }
+            synchronized (this.carverCache)
+            {
+                this.carverCache.put(key, carvers);
             }
+        }
+
+        return carvers == NO_CARVERS ? null : (T) carvers;
     }
 
     /**
-     * Generates the structure for the given chunk. The terrain generator
-     * calls this method for all chunks not more than {@link #checkAreaSize}
-     * chunks away on either axis from the generatingChunk.
+     * Creates the carvers that start in the given chunk. The carvers must
+     * not depend on the chunk that is being generated, and must not be
+     * modified afterwards, as they are shared by all chunks in range.
+     *
+     * @param random     Random seeded for the chunk.
+     * @param chunkCoord The chunk.
+     * @return The carvers, or null if no carvers start in this chunk.
+     */
+    protected abstract T createCarvers(Random random, ChunkCoordinate chunkCoord);
+
+    /**
+     * Carves the parts of the given carvers that are inside the chunk that
+     * is being generated.
      *
-     * @param currentChunk          The chunk we're searching.
+     * @param carvers               Carvers of a chunk not more than
+     *                              {@link #checkAreaSize} chunks away on
+     *                              either axis from the generating chunk.
      * @param generatingChunkBuffer The chunk that is currently being
      *                              generated.
+     * @param biomes                The biomes of the generating chunk.
      */
-    protected abstract void generateChunk(ChunkCoordinate currentChunk, ChunkBuffer generatingChunkBuffer);
+    protected abstract void carve(T carvers, ChunkBuffer generatingChunkBuffer, CarverBiomeContext biomes);
 }
@@ -48,10 +48,65 @@ public class ChunkCoordinate
         return chunkZ;
     }
 
+    /**
+     * Packs the given chunk position into a single long, see
+     * {@link #toLong()}.
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @return The packed position.
+     */
+    public static long toLong(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the chunk x of a position packed by {@link #toLong(int, int)}.
+     * @param packed The packed position.
+     * @return The x position of the chunk.
+     */
+    public static int getChunkX(long packed)
+    {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Gets the chunk z of a position packed by {@link #toLong(int, int)}.
+     * @param packed The packed position.
+     * @return The z position of the chunk.
+     */
+    public static int getChunkZ(long packed)
+    {
+        return (int) packed;
+    }
+
+    /**
+     * Mixes the bits of a packed chunk position, so that nearby chunks end up
+     * in different buckets of a hash table.
+     * @param packed The packed position.
+     * @return The hash.
+     */
+    public static int hash(long packed)
+    {
+        long hash = packed * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Gets the position of this chunk packed into a single long, which can
+     * be used as a map key without allocating objects.
+     * @return The packed position.
+     * @see ChunkMap
+     */
+    public long toLong()
+    {
+        return toLong(chunkX, chunkZ);
+    }
+
     @Override
     public int hashCode()
     {
-        return (chunkX >> 13) ^ chunkZ;
+        return hash(toLong());
     }
 
     @Override
@@ -138,6 +193,16 @@ public class ChunkCoordinate
         return new ChunkCoordinate(chunkX, chunkZ);
     }
 
+    /**
+     * Gets the coordinates of a chunk packed by {@link #toLong(int, int)}.
+     * @param packed The packed position.
+     * @return The coordinates.
+     */
+    public static ChunkCoordinate fromLong(long packed)
+    {
+        return new ChunkCoordinate(getChunkX(packed), getChunkZ(packed));
+    }
+
     @Override
     public String toString()
     {
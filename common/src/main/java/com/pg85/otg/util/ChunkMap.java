@@ -0,0 +1,223 @@
+package com.pg85.otg.util;
+
+import java.util.Arrays;
+
+/**
+ * Map of chunk position -> value, keyed by the packed chunk position (see
+ * {@link ChunkCoordinate#toLong()}). Unlike a
+ * {@code HashMap<ChunkCoordinate, V>} it doesn't need a
+ * {@link ChunkCoordinate} or an entry object per lookup or mapping.
+ *
+ * <p>Uses open addressing with linear probing. Null values are not
+ * allowed. Like {@code HashMap}, this class is not thread safe.
+ *
+ * @param <V> Type of the values.
+ */
+public class ChunkMap<V>
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+
+    public ChunkMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new map.
+     * @param expectedSize Amount of mappings that can be added before the
+     *                     map needs to grow.
+     */
+    public ChunkMap(int expectedSize)
+    {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private static int tableSizeFor(int expectedSize)
+    {
+        // Keep the table at most half full
+        int tableSize = Integer.highestOneBit(Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2 - 1) << 1;
+        return Math.max(tableSize, DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int tableSize)
+    {
+        this.keys = new long[tableSize];
+        this.values = new Object[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    private int indexOf(long key)
+    {
+        int index = ChunkCoordinate.hash(key) & this.mask;
+        while (this.values[index] != null)
+        {
+            if (this.keys[index] == key)
+            {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public boolean containsKey(int chunkX, int chunkZ)
+    {
+        return indexOf(ChunkCoordinate.toLong(chunkX, chunkZ)) != -1;
+    }
+
+    public boolean containsKey(ChunkCoordinate chunkCoord)
+    {
+        return indexOf(chunkCoord.toLong()) != -1;
+    }
+
+    public V get(int chunkX, int chunkZ)
+    {
+        return get(ChunkCoordinate.toLong(chunkX, chunkZ));
+    }
+
+    public V get(ChunkCoordinate chunkCoord)
+    {
+        return get(chunkCoord.toLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private V get(long key)
+    {
+        int index = indexOf(key);
+        return index == -1 ? null : (V) this.values[index];
+    }
+
+    public V put(int chunkX, int chunkZ, V value)
+    {
+        return put(ChunkCoordinate.toLong(chunkX, chunkZ), value);
+    }
+
+    public V put(ChunkCoordinate chunkCoord, V value)
+    {
+        return put(chunkCoord.toLong(), value);
+    }
+
+    /**
+     * Maps the chunk to the given value.
+     * @param key   The packed chunk position.
+     * @param value The value, may not be null.
+     * @return The previous value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    private V put(long key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Null values are not allowed");
+        }
+
+        int index = ChunkCoordinate.hash(key) & this.mask;
+        while (this.values[index] != null)
+        {
+            if (this.keys[index] == key)
+            {
+                V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+        if (this.size * 2 > this.keys.length)
+        {
+            grow();
+        }
+        return null;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                int index = ChunkCoordinate.hash(oldKeys[i]) & this.mask;
+                while (this.values[index] != null)
+                {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    public V remove(int chunkX, int chunkZ)
+    {
+        return remove(ChunkCoordinate.toLong(chunkX, chunkZ));
+    }
+
+    public V remove(ChunkCoordinate chunkCoord)
+    {
+        return remove(chunkCoord.toLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private V remove(long key)
+    {
+        int index = indexOf(key);
+        if (index == -1)
+        {
+            return null;
+        }
+        V previous = (V) this.values[index];
+        this.values[index] = null;
+        this.size--;
+
+        // Move later entries of the same probe sequence into the gap, so
+        // that lookups don't stop early
+        int next = index;
+        while (true)
+        {
+            next = (next + 1) & this.mask;
+            if (this.values[next] == null)
+            {
+                return previous;
+            }
+            int home = ChunkCoordinate.hash(this.keys[next]) & this.mask;
+            boolean homeInGap = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+            if (!homeInGap)
+            {
+                this.keys[index] = this.keys[next];
+                this.values[index] = this.values[next];
+                this.values[next] = null;
+                index = next;
+            }
+        }
+    }
+
+    public void clear()
+    {
+        if (this.size > 0)
+        {
+            Arrays.fill(this.values, null);
+            this.size = 0;
+        }
+    }
+}
@@ -39,7 +39,14 @@ public class MaterialSet
     private boolean allSolidMaterials = false;
     private boolean allNonSolidMaterials = false;
 
-    private int[] materialIntSet = new int[0];
+    // Bit sets of the hashCodes of all entries. Entries without block data
+    // have a hashCode below OTG.SUPPORTED_BLOCK_IDS and entries with block
+    // data one above it, so both get their own bit set, each starting at
+    // the lowest hashCode it contains.
+    private long[] blockIdBits = new long[0];
+    private int blockIdBitsOffset = 0;
+    private long[] blockDataBits = new long[0];
+    private int blockDataBitsOffset = 0;
     private Set<MaterialSetEntry> materials = new LinkedHashSet<MaterialSetEntry>();
     private boolean intSetUpToDate = true;
 
@@ -146,8 +153,8 @@ public class MaterialSet
     }
 
     /**
-     * Updates the int (hashCode) set, so that is is up to date again with the
-     * material set.
+     * Updates the int (hashCode) sets, so that they are up to date again with
+     * the material set.
      */
     private void updateIntSet()
     {
@@ -157,19 +164,50 @@ public class MaterialSet
             return;
         }
 
-        // Update the int set
-        materialIntSet = new int[materials.size()];
+        // Sort the hashCodes, so that the lowest and highest of both sets
+        // are known
+        int[] materialIntSet = new int[materials.size()];
         int i = 0;
         for (MaterialSetEntry entry : materials)
         {
             materialIntSet[i] = entry.hashCode();
             i++;
         }
-        // Sort int set so that we can use Arrays.binarySearch
         Arrays.sort(materialIntSet);
+
+        int split = 0;
+        while (split < materialIntSet.length && materialIntSet[split] < OTG.SUPPORTED_BLOCK_IDS)
+        {
+            split++;
+        }
+        blockIdBitsOffset = split == 0 ? 0 : materialIntSet[0] & ~63;
+        blockIdBits = toBitSet(materialIntSet, 0, split, blockIdBitsOffset);
+        blockDataBitsOffset = split == materialIntSet.length ? 0 : materialIntSet[split] & ~63;
+        blockDataBits = toBitSet(materialIntSet, split, materialIntSet.length, blockDataBitsOffset);
         intSetUpToDate = true;
     }
 
+    private static long[] toBitSet(int[] sortedValues, int start, int end, int offset)
+    {
+        if (start == end)
+        {
+            return new long[0];
+        }
+        long[] bits = new long[((sortedValues[end - 1] - offset) >> 6) + 1];
+        for (int i = start; i < end; i++)
+        {
+            int bit = sortedValues[i] - offset;
+            bits[bit >> 6] |= 1L << bit;
+        }
+        return bits;
+    }
+
+    private static boolean isInBitSet(long[] bits, int offset, int value)
+    {
+        int bit = value - offset;
+        return bit >= 0 && (bit >> 6) < bits.length && (bits[bit >> 6] & (1L << bit)) != 0;
+    }
+
     /**
      * Gets whether the specified material is in this collection. Returns
      * false if the material is null.
@@ -200,11 +238,11 @@ public class MaterialSet
         updateIntSet();
 
         // Check if the material is included
-        if (Arrays.binarySearch(materialIntSet, material.hashCodeWithoutBlockData()) >= 0)
+        if (isInBitSet(blockIdBits, blockIdBitsOffset, material.hashCodeWithoutBlockData()))
         {
             return true;
         }
-        if (Arrays.binarySearch(materialIntSet, material.hashCode()) >= 0)
+        if (isInBitSet(blockDataBits, blockDataBitsOffset, material.hashCode()))
         {
             return true;
         }
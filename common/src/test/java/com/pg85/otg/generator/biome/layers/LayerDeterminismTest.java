@@ -0,0 +1,370 @@
+package com.pg85.otg.generator.biome.layers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.pg85.otg.BiomeIds;
+import com.pg85.otg.LocalBiome;
+import com.pg85.otg.LocalWorld;
+import com.pg85.otg.configuration.BiomeConfig;
+import com.pg85.otg.configuration.BiomeGroup;
+import com.pg85.otg.configuration.BiomeGroupManager;
+import com.pg85.otg.configuration.ConfigFile;
+import com.pg85.otg.configuration.ConfigProvider;
+import com.pg85.otg.configuration.WorldConfig;
+import com.pg85.otg.generator.biome.ArraysCache;
+import com.pg85.otg.generator.biome.ArraysCacheManager;
+
+/**
+ * Checks that the biome layers still generate the same biomes as before the
+ * random state was moved into the {@link ArraysCache}. The expected values
+ * were generated with the layers from before that change.
+ */
+public class LayerDeterminismTest
+{
+    private static final long[] SEEDS = { 0L, 1234567890L, -8311200000000L };
+    private static final long[] EXPECTED = { -4981198442929775248L, 5938741135781656617L, -8143385919230054956L };
+
+    // Areas as x, z, xSize, zSize
+    private static final int[][] AREAS = {
+        { 0, 0, 16, 16 },
+        { -48, 112, 16, 16 },
+        { 1000, -3000, 64, 32 },
+        { -20000, -20000, 5, 7 },
+        { 4096, 8192, 128, 128 }
+    };
+
+    private static final int THREADS = 4;
+    private static final int CONCURRENT_AREA_SIZE = 512;
+
+    @Test
+    public void testMatchesOldLayers()
+    {
+        for (int i = 0; i < SEEDS.length; i++)
+        {
+            assertEquals("Seed " + SEEDS[i], EXPECTED[i], getChecksum(createLayers(SEEDS[i])));
+        }
+    }
+
+    @Test
+    public void testConcurrentGeneration() throws Exception
+    {
+        final Layer layer = createLayers(SEEDS[1]);
+
+        // Every thread gets its own area, so that the threads never agree on
+        // the chunk seed of the layers
+        final int[][] areas = new int[THREADS * 32][];
+        int[][] expected = new int[areas.length][];
+        for (int i = 0; i < areas.length; i++)
+        {
+            areas[i] = new int[] { (i - THREADS) * 3000 + 17, i * -2500 + 5, CONCURRENT_AREA_SIZE, CONCURRENT_AREA_SIZE };
+            expected[i] = getInts(layer, areas[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+            for (int i = 0; i < areas.length; i++)
+            {
+                final int[] area = areas[i];
+                results.add(executor.submit(new Callable<int[]>()
+                {
+                    @Override
+                    public int[] call() throws Exception
+                    {
+                        start.await();
+                        return getInts(layer, area);
+                    }
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < areas.length; i++)
+            {
+                assertArrayEquals("Area " + Arrays.toString(areas[i]), expected[i], results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int[] getInts(Layer layer, int[] area)
+    {
+        ArraysCache cache = ArraysCacheManager.GetCache();
+        try
+        {
+            return Arrays.copyOf(layer.getInts(cache, area[0], area[1], area[2], area[3]), area[2] * area[3]);
+        } finally {
+            ArraysCacheManager.ReleaseCache(cache);
+        }
+    }
+
+    private static long getChecksum(Layer layer)
+    {
+        long checksum = 0;
+        for (int[] area : AREAS)
+        {
+            for (int value : getInts(layer, area))
+            {
+                checksum = checksum * 31 + value;
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Creates the layers of the normal biome mode, with biome groups, isles,
+     * borders and rivers.
+     * @param worldSeed Seed of the world.
+     * @return The zoomed layer.
+     */
+    private static Layer createLayers(long worldSeed)
+    {
+        WorldConfig worldConfig = allocate(WorldConfig.class);
+        worldConfig.GenerationDepth = 10;
+        worldConfig.BiomeRarityScale = 100;
+        worldConfig.LandRarity = 60;
+        worldConfig.LandSize = 0;
+        worldConfig.LandFuzzy = 5;
+        worldConfig.FrozenOcean = true;
+        worldConfig.FreezeAllColdGroupBiomes = true;
+        worldConfig.FrozenOceanTemperature = 0.15;
+        worldConfig.riverRarity = 4;
+        worldConfig.riverSize = 0;
+        worldConfig.randomRivers = true;
+        worldConfig.riversEnabled = true;
+        worldConfig.IsleBiomes = new ArrayList<String>(Arrays.asList("MushroomIsland", "Ice Plains Spikes"));
+        worldConfig.BorderBiomes = new ArrayList<String>(Arrays.asList("Beach", "Extreme Hills Edge"));
+
+        Map<String, LocalBiome> biomesByName = new HashMap<String, LocalBiome>();
+        LocalBiome[] biomes = new LocalBiome[64];
+        addBiome(biomes, biomesByName, createBiome(0, "Ocean", 0.5f, 5, 100, ""));
+        addBiome(biomes, biomesByName, createBiome(1, "Plains", 0.8f, 6, 100, "River"));
+        addBiome(biomes, biomesByName, createBiome(2, "Desert", 2.0f, 6, 100, ""));
+        addBiome(biomes, biomesByName, createBiome(3, "Extreme Hills", 0.2f, 6, 80, "River"));
+        addBiome(biomes, biomesByName, createBiome(4, "Forest", 0.7f, 6, 100, "River"));
+        addBiome(biomes, biomesByName, createBiome(5, "Taiga", 0.05f, 5, 100, "FrozenRiver"));
+        addBiome(biomes, biomesByName, createBiome(6, "Swampland", 0.8f, 7, 70, "River"));
+        addBiome(biomes, biomesByName, createBiome(7, "River", 0.5f, 8, 100, ""));
+        addBiome(biomes, biomesByName, createBiome(10, "FrozenOcean", 0.0f, 5, 100, ""));
+        addBiome(biomes, biomesByName, createBiome(11, "FrozenRiver", 0.0f, 8, 100, ""));
+        addBiome(biomes, biomesByName, createBiome(12, "Ice Plains", 0.0f, 5, 100, "FrozenRiver"));
+        addBiome(biomes, biomesByName, createBiome(16, "Beach", 0.8f, 8, 100, ""));
+        addBiome(biomes, biomesByName, createBiome(20, "Extreme Hills Edge", 0.2f, 8, 100, "River"));
+        addBiome(biomes, biomesByName, createBiome(21, "Jungle", 0.95f, 7, 60, "River"));
+
+        LocalBiome mushroomIsland = createBiome(14, "MushroomIsland", 0.9f, 6, 100, "");
+        mushroomIsland.getBiomeConfig().biomeSizeWhenIsle = 6;
+        mushroomIsland.getBiomeConfig().biomeRarityWhenIsle = 97;
+        mushroomIsland.getBiomeConfig().isleInBiome = Arrays.asList("Ocean");
+        addBiome(biomes, biomesByName, mushroomIsland);
+
+        LocalBiome iceSpikes = createBiome(40, "Ice Plains Spikes", 0.0f, 8, 100, "FrozenRiver");
+        iceSpikes.getBiomeConfig().biomeSizeWhenIsle = 8;
+        iceSpikes.getBiomeConfig().biomeRarityWhenIsle = 90;
+        iceSpikes.getBiomeConfig().isleInBiome = Arrays.asList("Ice Plains", "Taiga");
+        addBiome(biomes, biomesByName, iceSpikes);
+
+        biomesByName.get("Beach").getBiomeConfig().biomeSizeWhenBorder = 8;
+        biomesByName.get("Beach").getBiomeConfig().biomeIsBorder = Arrays.asList("Ocean");
+        biomesByName.get("Beach").getBiomeConfig().notBorderNear = Collections.<String> emptyList();
+        biomesByName.get("Extreme Hills Edge").getBiomeConfig().biomeSizeWhenBorder = 8;
+        biomesByName.get("Extreme Hills Edge").getBiomeConfig().biomeIsBorder = Arrays.asList("Extreme Hills");
+        biomesByName.get("Extreme Hills Edge").getBiomeConfig().notBorderNear = Arrays.asList("Ocean");
+
+        LocalWorld world = createWorld(worldSeed, createConfigs(worldConfig, biomes), biomes, biomesByName);
+
+        worldConfig.biomeGroupManager = new BiomeGroupManager();
+        worldConfig.biomeGroupManager.registerGroup(new BiomeGroup(worldConfig, "NormalBiomes", 2, 98,
+                Arrays.asList("Plains", "Forest", "Extreme Hills", "Swampland")));
+        worldConfig.biomeGroupManager.registerGroup(new BiomeGroup(worldConfig, "IceBiomes", 2, 40,
+                Arrays.asList("Ice Plains", "Taiga")));
+        worldConfig.biomeGroupManager.registerGroup(new BiomeGroup(worldConfig, "HotBiomes", 2, 50,
+                Arrays.asList("Desert")));
+        worldConfig.biomeGroupManager.registerGroup(new BiomeGroup(worldConfig, "JungleBiomes", 3, 25,
+                Arrays.asList("Jungle")));
+        worldConfig.biomeGroupManager.processBiomeData(world);
+
+        return LayerFactory.createNormal(world)[1];
+    }
+
+    private static void addBiome(LocalBiome[] biomes, Map<String, LocalBiome> biomesByName, LocalBiome biome)
+    {
+        biomes[biome.getIds().getGenerationId()] = biome;
+        biomesByName.put(biome.getName(), biome);
+    }
+
+    private static LocalBiome createBiome(int id, String name, float temperature, int size, int rarity, String riverBiome)
+    {
+        BiomeConfig biomeConfig = allocate(BiomeConfig.class);
+        setConfigName(biomeConfig, name);
+        biomeConfig.biomeTemperature = temperature;
+        biomeConfig.biomeSize = size;
+        biomeConfig.biomeSizeWhenIsle = -1;
+        biomeConfig.biomeSizeWhenBorder = -1;
+        biomeConfig.biomeRarity = rarity;
+        biomeConfig.riverBiome = riverBiome;
+        biomeConfig.notBorderNear = Collections.<String> emptyList();
+        return new TestBiome(id, biomeConfig);
+    }
+
+    private static ConfigProvider createConfigs(final WorldConfig worldConfig, final LocalBiome[] biomes)
+    {
+        return createProxy(ConfigProvider.class, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                String name = method.getName();
+                if (name.equals("getWorldConfig"))
+                {
+                    return worldConfig;
+                }
+                if (name.equals("getBiomeArray"))
+                {
+                    return biomes;
+                }
+                if (name.equals("getBiomeByIdOrNull"))
+                {
+                    int id = (Integer) args[0];
+                    return id >= 0 && id < biomes.length ? biomes[id] : null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static LocalWorld createWorld(final long seed, final ConfigProvider configs, final LocalBiome[] biomes,
+            final Map<String, LocalBiome> biomesByName)
+    {
+        return createProxy(LocalWorld.class, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                String name = method.getName();
+                if (name.equals("getSeed"))
+                {
+                    return seed;
+                }
+                if (name.equals("getConfigs"))
+                {
+                    return configs;
+                }
+                if (name.equals("getMaxBiomesCount"))
+                {
+                    return biomes.length;
+                }
+                if (name.equals("getBiomeByIdOrNull"))
+                {
+                    return configs.getBiomeByIdOrNull((Integer) args[0]);
+                }
+                if (name.equals("getBiomeByNameOrNull"))
+                {
+                    return biomesByName.get(args[0]);
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static <T> T createProxy(Class<T> type, InvocationHandler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Creates an instance without calling its constructor. The config
+     * constructors read the config files, which needs a running engine, so
+     * the tests only set the fields used by the layers.
+     * @param type Type of the instance.
+     * @return The instance.
+     */
+    private static <T> T allocate(Class<T> type)
+    {
+        try
+        {
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return type.cast(unsafe.getClass().getMethod("allocateInstance", Class.class).invoke(unsafe, type));
+        } catch (Exception e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void setConfigName(ConfigFile config, String name)
+    {
+        try
+        {
+            Field field = ConfigFile.class.getDeclaredField("configName");
+            field.setAccessible(true);
+            field.set(config, name);
+        } catch (Exception e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static class TestBiome implements LocalBiome
+    {
+        private final BiomeIds ids;
+        private final BiomeConfig biomeConfig;
+
+        TestBiome(int id, BiomeConfig biomeConfig)
+        {
+            this.ids = new BiomeIds(id);
+            this.biomeConfig = biomeConfig;
+        }
+
+        @Override
+        public boolean isCustom()
+        {
+            return true;
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.biomeConfig.getName();
+        }
+
+        @Override
+        public BiomeIds getIds()
+        {
+            return this.ids;
+        }
+
+        @Override
+        public float getTemperatureAt(int x, int y, int z)
+        {
+            return this.biomeConfig.biomeTemperature;
+        }
+
+        @Override
+        public BiomeConfig getBiomeConfig()
+        {
+            return this.biomeConfig;
+        }
+    }
+}
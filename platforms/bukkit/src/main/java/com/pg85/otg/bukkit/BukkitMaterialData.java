@@ -14,6 +14,9 @@ import net.minecraft.server.v1_12_R1.IBlockData;
  */
 public final class BukkitMaterialData implements LocalMaterialData
 {
+    // Shared instances by combined block id, filled when first requested.
+    // Instances are immutable, so they can be handed out to every caller.
+    private static final BukkitMaterialData[] MATERIALS_BY_ID = new BukkitMaterialData[4096 << 4];
 
     /**
      * Gets a {@code BukkitMaterialData} of the given id and data.
@@ -23,7 +26,18 @@ public final class BukkitMaterialData implements LocalMaterialData
      */
     public static BukkitMaterialData ofIds(int id, int data)
     {
-        return new BukkitMaterialData(id, data);
+        if (id < 0 || id >= MATERIALS_BY_ID.length >> 4 || data < 0 || data > 15)
+        {
+            return new BukkitMaterialData(id, data);
+        }
+        int combinedBlockId = id << 4 | data;
+        BukkitMaterialData material = MATERIALS_BY_ID[combinedBlockId];
+        if (material == null)
+        {
+            material = new BukkitMaterialData(id, data);
+            MATERIALS_BY_ID[combinedBlockId] = material;
+        }
+        return material;
     }
 
     /**
@@ -56,7 +70,7 @@ public final class BukkitMaterialData implements LocalMaterialData
     public static BukkitMaterialData ofMinecraftBlockData(IBlockData blockData)
     {
         Block block = blockData.getBlock();
-        return new BukkitMaterialData(Block.getId(block), block.toLegacyData(blockData));
+        return ofIds(Block.getId(block), block.toLegacyData(blockData));
     }
 
     /**
@@ -8,6 +8,7 @@ import com.pg85.otg.bukkit.generator.OTGWorldChunkManager;
 import com.pg85.otg.bukkit.generator.OTGWorldProvider;
 import com.pg85.otg.bukkit.generator.structures.*;
 import com.pg85.otg.bukkit.util.NBTHelper;
+import com.pg85.otg.bukkit.util.PaletteHelper;
 import com.pg85.otg.configuration.*;
 import com.pg85.otg.configuration.BiomeConfigFinder.BiomeConfigStub;
 import com.pg85.otg.configuration.standard.PluginStandardValues;
@@ -371,49 +372,106 @@ public class BukkitWorld implements LocalWorld
 
         // Replace the blocks
         for(int i = 0; i < 4; i++) {
-            replaceBlocks(cache[i], 0, 0, 16);
+            replaceBlocks(cache[i]);
         }
     }
 
-    private void replaceBlocks(Chunk rawChunk, int startXInChunk, int startZInChunk, int size)
+    private void replaceBlocks(Chunk rawChunk)
     {
-        int endXInChunk = startXInChunk + size;
-        int endZInChunk = startZInChunk + size;
         int worldStartX = rawChunk.locX * 16;
         int worldStartZ = rawChunk.locZ * 16;
 
-        ChunkSection[] sectionsArray = rawChunk.getSections();
+        // Look up the biome of every column only once, instead of once per section
+        ChunkReplacedBlocks replacedBlocks = new ChunkReplacedBlocks();
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                LocalBiome biome = this.getBiome(worldStartX + x, worldStartZ + z);
+                if (biome != null)
+                {
+                    replacedBlocks.setColumn(x, z, biome.getBiomeConfig().replacedBlocks);
+                }
+            }
+        }
+        if (!replacedBlocks.hasReplaceSettings())
+        {
+            return;
+        }
 
-        for (ChunkSection section : sectionsArray)
+        for (ChunkSection section : rawChunk.getSections())
         {
-            if (section == null)
-                continue;
+            if (section != null)
+            {
+                replaceBlocks(section, replacedBlocks);
+            }
+        }
+    }
 
-            for (int sectionX = startXInChunk; sectionX < endXInChunk; sectionX++)
+    private void replaceBlocks(ChunkSection section, ChunkReplacedBlocks replacedBlocks)
+    {
+        int minY = section.getYPosition();
+        int maxY = minY + 15;
+
+        // Blocks in this section that may have to be replaced, or null if
+        // every block has to be checked
+        List<IBlockData> candidates = null;
+        // Check the palette of the section first, most sections don't
+        // contain any block that is replaced
+        List<IBlockData> paletteStates = PaletteHelper.getPaletteStates(section);
+        if (paletteStates != null)
+        {
+            candidates = new ArrayList<IBlockData>();
+            boolean paletteChanged = false;
+            for (int i = 0; i < paletteStates.size(); i++)
             {
-                for (int sectionZ = startZInChunk; sectionZ < endZInChunk; sectionZ++)
+                IBlockData state = paletteStates.get(i);
+                int blockId = Block.getId(state.getBlock());
+                if (!replacedBlocks.isReplaced(blockId, minY, maxY))
+                {
+                    continue;
+                }
+
+                // If every block of this kind in the section is replaced by
+                // the same block, just change the palette entry
+                BukkitMaterialData replaceTo = (BukkitMaterialData) replacedBlocks.getUniformReplacement(blockId, minY, maxY);
+                if (replaceTo != null && !paletteStates.contains(replaceTo.internalBlock()) && PaletteHelper.setPaletteState(section, i, replaceTo.internalBlock()))
                 {
-                    LocalBiome biome = this.getBiome(worldStartX + sectionX, worldStartZ + sectionZ);
-                    if (biome != null && biome.getBiomeConfig().replacedBlocks.hasReplaceSettings())
+                    paletteStates.set(i, replaceTo.internalBlock());
+                    paletteChanged = true;
+                    continue;
+                }
+
+                candidates.add(state);
+            }
+
+            if (paletteChanged)
+            {
+                section.recalcBlockCounts();
+            }
+            if (candidates.isEmpty())
+            {
+                return;
+            }
+        }
+
+        for (int sectionX = 0; sectionX < 16; sectionX++)
+        {
+            for (int sectionZ = 0; sectionZ < 16; sectionZ++)
+            {
+                for (int sectionY = 0; sectionY < 16; sectionY++)
+                {
+                    IBlockData block = section.getType(sectionX, sectionY, sectionZ);
+                    if (candidates != null && !candidates.contains(block))
+                    {
+                        continue;
+                    }
+
+                    int blockId = Block.getId(block.getBlock());
+                    BukkitMaterialData replaceTo = (BukkitMaterialData) replacedBlocks.getReplacement(sectionX, sectionZ, blockId, minY + sectionY);
+                    if (replaceTo != null)
                     {
-                        LocalMaterialData[][] replaceArray = biome.getBiomeConfig().replacedBlocks.compiledInstructions;
-                        for (int sectionY = 0; sectionY < 16; sectionY++)
-                        {
-                            IBlockData block = section.getType(sectionX, sectionY, sectionZ);
-                            int blockId = Block.getId(block.getBlock());
-                            if (replaceArray[blockId] == null)
-                                continue;
-
-                            int y = section.getYPosition() + sectionY;
-                            if (y >= replaceArray[blockId].length)
-                                break;
-
-                            BukkitMaterialData replaceTo = (BukkitMaterialData) replaceArray[blockId][y];
-                            if (replaceTo == null || replaceTo.getBlockId() == blockId)
-                                continue;
-
-                            section.setType(sectionX, sectionY, sectionZ, replaceTo.internalBlock());
-                        }
+                        section.setType(sectionX, sectionY, sectionZ, replaceTo.internalBlock());
                     }
                 }
             }
@@ -0,0 +1,133 @@
+package com.pg85.otg.bukkit.util;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.logging.LogMarker;
+import net.minecraft.server.v1_12_R1.ChunkSection;
+import net.minecraft.server.v1_12_R1.DataPalette;
+import net.minecraft.server.v1_12_R1.DataPaletteBlock;
+import net.minecraft.server.v1_12_R1.DataPaletteGlobal;
+import net.minecraft.server.v1_12_R1.DataPaletteLinear;
+import net.minecraft.server.v1_12_R1.IBlockData;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives access to the block palettes of chunk sections, which Minecraft
+ * doesn't expose. The fields are looked up by type, as their names are
+ * obfuscated.
+ */
+public final class PaletteHelper
+{
+    private static final Field PALETTE_FIELD;
+    private static final Field LINEAR_PALETTE_STATES_FIELD;
+
+    static
+    {
+        Field paletteField = null;
+        Field linearPaletteStatesField = null;
+        try
+        {
+            paletteField = getInstanceFieldOfType(DataPaletteBlock.class, DataPalette.class);
+            linearPaletteStatesField = getInstanceFieldOfType(DataPaletteLinear.class, IBlockData[].class);
+        } catch (Exception e)
+        {
+            OTG.log(LogMarker.WARN, "Could not access block palettes, ReplacedBlocks will be slower");
+            OTG.printStackTrace(LogMarker.WARN, e);
+            paletteField = null;
+            linearPaletteStatesField = null;
+        }
+        PALETTE_FIELD = paletteField;
+        LINEAR_PALETTE_STATES_FIELD = linearPaletteStatesField;
+    }
+
+    private PaletteHelper()
+    {
+        // No instances
+    }
+
+    private static Field getInstanceFieldOfType(Class<?> searchClass, Class<?> fieldType) throws NoSuchFieldException
+    {
+        for (Field field : searchClass.getDeclaredFields())
+        {
+            if (field.getType().equals(fieldType) && !Modifier.isStatic(field.getModifiers()))
+            {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        throw new NoSuchFieldException("No field of type " + fieldType + " in " + searchClass);
+    }
+
+    private static DataPalette getPalette(ChunkSection section) throws IllegalAccessException
+    {
+        return (DataPalette) PALETTE_FIELD.get(section.getBlocks());
+    }
+
+    /**
+     * Gets all blocks in the palette of a section, in palette order.
+     * @param section The section.
+     * @return The blocks, or null if the section uses the global palette.
+     */
+    public static List<IBlockData> getPaletteStates(ChunkSection section)
+    {
+        if (PALETTE_FIELD == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            DataPalette palette = getPalette(section);
+            if (palette instanceof DataPaletteGlobal)
+            {
+                return null;
+            }
+            List<IBlockData> states = new ArrayList<IBlockData>();
+            for (IBlockData state = palette.a(0); state != null; state = palette.a(states.size()))
+            {
+                states.add(state);
+            }
+            return states;
+        } catch (IllegalAccessException e)
+        {
+            // Cannot happen, the field was made accessible
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Replaces a block in the palette of a section, which replaces all blocks
+     * using that palette entry at once. Only supported for the linear palette
+     * used by sections with few different blocks. Block counts of the section
+     * are not updated.
+     * @param section The section.
+     * @param index   Index in the palette.
+     * @param state   The new block, must not be in the palette yet.
+     * @return True if the palette entry was replaced, false otherwise.
+     */
+    public static boolean setPaletteState(ChunkSection section, int index, IBlockData state)
+    {
+        if (PALETTE_FIELD == null || LINEAR_PALETTE_STATES_FIELD == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            DataPalette palette = getPalette(section);
+            if (!(palette instanceof DataPaletteLinear))
+            {
+                return false;
+            }
+            ((IBlockData[]) LINEAR_PALETTE_STATES_FIELD.get(palette))[index] = state;
+            return true;
+        } catch (IllegalAccessException e)
+        {
+            // Cannot happen, the field was made accessible
+            throw new AssertionError(e);
+        }
+    }
+}
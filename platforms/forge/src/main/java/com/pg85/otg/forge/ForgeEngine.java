@@ -14,6 +14,8 @@ import com.pg85.otg.OTGEngine;
 import com.pg85.otg.configuration.standard.PluginStandardValues;
 import com.pg85.otg.exception.InvalidConfigException;
 import com.pg85.otg.forge.generator.OTGBiome;
+import com.pg85.otg.forge.generator.OTGChunkGenerator;
+import com.pg85.otg.generator.biome.ArraysCacheManager;
 import com.pg85.otg.logging.LogMarker;
 import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
@@ -38,6 +40,39 @@ public class ForgeEngine extends OTGEngine
     	}
     }
 
+    public void onUnload(World world)
+    {
+    	onSave(world);
+    	// Structure data is written in the background, make sure it is on disk before the world is gone
+    	ForgeWorld forgeWorld = (ForgeWorld) getWorld(world);
+    	if(forgeWorld != null)
+    	{
+    		forgeWorld.getStructureCache().AwaitSaves();
+    		logStats(forgeWorld);
+    		if(forgeWorld.getChunkGenerator() != null)
+    		{
+    			forgeWorld.getChunkGenerator().shutdown();
+    		}
+    	}
+    }
+
+    private void logStats(ForgeWorld forgeWorld)
+    {
+    	OTGChunkGenerator chunkGenerator = forgeWorld.getChunkGenerator();
+    	if(chunkGenerator != null)
+    	{
+    		if(chunkGenerator.getNoiseColumnCache() != null)
+    		{
+    			OTG.log(LogMarker.DEBUG, "Terrain noise cache for world " + forgeWorld.getName() + ": " + chunkGenerator.getNoiseColumnCache());
+    		}
+    		OTG.log(LogMarker.DEBUG, "Unloaded chunk cache for world " + forgeWorld.getName() + ": " + chunkGenerator.getUnloadedChunkCacheStats());
+    	}
+    	OTG.log(LogMarker.DEBUG, "Structure data for world " + forgeWorld.getName() + ": " + forgeWorld.getStructureCache().getSaveStats());
+    	OTG.log(LogMarker.DEBUG, "Population buffer for world " + forgeWorld.getName() + ": " + forgeWorld.getObjectSpawner().getPopulationBuffer());
+    	OTG.log(LogMarker.DEBUG, "Biome layer caches: " + ArraysCacheManager.getCachesInUse() + " in use, " + ArraysCacheManager.getCachesCreated() + " created, "
+    			+ ArraysCacheManager.getCachesReused() + " reused, " + ArraysCacheManager.getArraysAllocated() + " arrays allocated, " + ArraysCacheManager.getArraysReused() + " arrays reused");
+    }
+
     public void ProcessPregeneratorTick()
     {
     	for(LocalWorld world : getAllWorlds())
@@ -212,9 +212,34 @@ public class ForgeMaterialData implements LocalMaterialData
      */
     public static ForgeMaterialData ofMinecraftBlockState(IBlockState blockData)
     {
-        return new ForgeMaterialData(blockData);
+        if (blockData == null)
+        {
+            return new ForgeMaterialData(null);
+        }
+        int stateId = Block.BLOCK_STATE_IDS.get(blockData);
+        if (stateId < 0 || stateId >= MATERIALS_BY_STATE_ID.length)
+        {
+            return new ForgeMaterialData(blockData);
+        }
+        ForgeMaterialData material = MATERIALS_BY_STATE_ID[stateId];
+        if (material == null || material.blockData != blockData)
+        {
+            material = new ForgeMaterialData(blockData);
+            // Only share the state that is stored in chunks, other states
+            // with the same id (like the connections of fences) are not equal
+            if (Block.BLOCK_STATE_IDS.getByValue(stateId) == blockData)
+            {
+                MATERIALS_BY_STATE_ID[stateId] = material;
+            }
+        }
+        return material;
     }
 
+    // Shared instances by block state id, filled when first requested. The
+    // block state is compared by identity, so that an instance is never
+    // returned for another block after the block ids have been remapped.
+    private static final ForgeMaterialData[] MATERIALS_BY_STATE_ID = new ForgeMaterialData[4096 << 4];
+
     private final IBlockState blockData;
 
     private ForgeMaterialData(IBlockState blockData)
@@ -21,6 +21,7 @@ import com.pg85.otg.generator.SpawnableObject;
 import com.pg85.otg.generator.biome.BiomeGenerator;
 import com.pg85.otg.logging.LogMarker;
 import com.pg85.otg.util.ChunkCoordinate;
+import com.pg85.otg.util.ChunkMap;
 import com.pg85.otg.util.NamedBinaryTag;
 import com.pg85.otg.util.helpers.StringHelper;
 import com.pg85.otg.util.minecraftTypes.DefaultBiome;
@@ -56,6 +57,9 @@ import net.minecraft.world.WorldServer;
 import net.minecraft.world.WorldSettings;
 import net.minecraft.world.WorldType;
 import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.BlockStatePaletteLinear;
+import net.minecraft.world.chunk.BlockStatePaletteRegistry;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.gen.ChunkProviderServer;
@@ -467,59 +471,117 @@ public class ForgeWorld implements LocalWorld
             return;
         }
 
-    	replaceBlocks(this.getChunk(chunkCoord.getBlockX() + 16, chunkCoord.getBlockZ() + 16, false), 0, 0, 16);
-    	replaceBlocks(this.getChunk(chunkCoord.getBlockX(), chunkCoord.getBlockZ() + 16, false), 0, 0, 16);
-    	replaceBlocks(this.getChunk(chunkCoord.getBlockX() + 16, chunkCoord.getBlockZ(), false), 0, 0, 16);
-    	replaceBlocks(this.getChunk(chunkCoord.getBlockX(), chunkCoord.getBlockZ(), false), 0, 0, 16);
+    	replaceBlocks(this.getChunk(chunkCoord.getBlockX() + 16, chunkCoord.getBlockZ() + 16, false));
+    	replaceBlocks(this.getChunk(chunkCoord.getBlockX(), chunkCoord.getBlockZ() + 16, false));
+    	replaceBlocks(this.getChunk(chunkCoord.getBlockX() + 16, chunkCoord.getBlockZ(), false));
+    	replaceBlocks(this.getChunk(chunkCoord.getBlockX(), chunkCoord.getBlockZ(), false));
     }
 
-    private void replaceBlocks(Chunk rawChunk, int startXInChunk, int startZInChunk, int size)
+    private void replaceBlocks(Chunk rawChunk)
     {
-        int endXInChunk = startXInChunk + size;
-        int endZInChunk = startZInChunk + size;
         int worldStartX = rawChunk.x * 16;
         int worldStartZ = rawChunk.z * 16;
 
-        ExtendedBlockStorage[] sectionsArray = rawChunk.getBlockStorageArray();
+        // Look up the biome of every column only once, instead of once per section
+        ChunkReplacedBlocks replacedBlocks = new ChunkReplacedBlocks();
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                LocalBiome biome = this.getBiome(worldStartX + x, worldStartZ + z);
+                if (biome != null)
+                {
+                    replacedBlocks.setColumn(x, z, biome.getBiomeConfig().replacedBlocks);
+                }
+            }
+        }
+        if (!replacedBlocks.hasReplaceSettings())
+        {
+            return;
+        }
 
-        for (ExtendedBlockStorage section : sectionsArray)
+        for (ExtendedBlockStorage section : rawChunk.getBlockStorageArray())
         {
-            if (section == null)
+            if (section != null)
             {
-                continue;
+                replaceBlocks(section, replacedBlocks);
             }
+        }
+    }
 
-            for (int sectionX = startXInChunk; sectionX < endXInChunk; sectionX++)
+    private void replaceBlocks(ExtendedBlockStorage section, ChunkReplacedBlocks replacedBlocks)
+    {
+        int minY = section.getYLocation();
+        int maxY = minY + 15;
+        BlockStateContainer data = section.getData();
+
+        // Blocks in this section that may have to be replaced, or null if
+        // every block has to be checked
+        List<IBlockState> candidates = null;
+        if (!(data.palette instanceof BlockStatePaletteRegistry))
+        {
+            // Check the palette of the section first, most sections don't
+            // contain any block that is replaced
+            List<IBlockState> paletteStates = new ArrayList<IBlockState>();
+            for (IBlockState state = data.palette.getBlockState(0); state != null; state = data.palette.getBlockState(paletteStates.size()))
             {
-                for (int sectionZ = startZInChunk; sectionZ < endZInChunk; sectionZ++)
+                paletteStates.add(state);
+            }
+
+            candidates = new ArrayList<IBlockState>();
+            boolean paletteChanged = false;
+            for (int i = 0; i < paletteStates.size(); i++)
+            {
+                IBlockState state = paletteStates.get(i);
+                int blockId = Block.getIdFromBlock(state.getBlock());
+                if (!replacedBlocks.isReplaced(blockId, minY, maxY))
+                {
+                    continue;
+                }
+
+                // If every block of this kind in the section is replaced by
+                // the same block, just change the palette entry. Only done
+                // for the linear palette, the other palettes can't hold the
+                // same state twice.
+                ForgeMaterialData replaceTo = (ForgeMaterialData) replacedBlocks.getUniformReplacement(blockId, minY, maxY);
+                if (replaceTo != null && data.palette instanceof BlockStatePaletteLinear && !paletteStates.contains(replaceTo.internalBlock()))
                 {
-                    LocalBiome biome = this.getBiome(worldStartX + sectionX, worldStartZ + sectionZ);
-                    if (biome != null && biome.getBiomeConfig().replacedBlocks.hasReplaceSettings())
+                    ((BlockStatePaletteLinear) data.palette).states[i] = replaceTo.internalBlock();
+                    paletteStates.set(i, replaceTo.internalBlock());
+                    paletteChanged = true;
+                    continue;
+                }
+
+                candidates.add(state);
+            }
+
+            if (paletteChanged)
+            {
+                section.recalculateRefCounts();
+            }
+            if (candidates.isEmpty())
+            {
+                return;
+            }
+        }
+
+        for (int sectionX = 0; sectionX < 16; sectionX++)
+        {
+            for (int sectionZ = 0; sectionZ < 16; sectionZ++)
+            {
+                for (int sectionY = 0; sectionY < 16; sectionY++)
+                {
+                    IBlockState block = data.get(sectionX, sectionY, sectionZ);
+                    if (candidates != null && !candidates.contains(block))
                     {
-                        LocalMaterialData[][] replaceArray = biome.getBiomeConfig().replacedBlocks.compiledInstructions;
-                        for (int sectionY = 0; sectionY < 16; sectionY++)
-                        {
-                            IBlockState block = section.getData().get(sectionX, sectionY, sectionZ);
-                            int blockId = Block.getIdFromBlock(block.getBlock());
-                            if (replaceArray[blockId] == null)
-                            {
-                                continue;
-                            }
-
-                            int y = section.getYLocation() + sectionY;
-                            if (y >= replaceArray[blockId].length)
-                            {
-                                break;
-                            }
-
-                            ForgeMaterialData replaceTo = (ForgeMaterialData) replaceArray[blockId][y];
-                            if (replaceTo == null || replaceTo.getBlockId() == blockId)
-                            {
-                                continue;
-                            }
-
-                            section.set(sectionX, sectionY, sectionZ, replaceTo.internalBlock());
-                        }
+                        continue;
+                    }
+
+                    int blockId = Block.getIdFromBlock(block.getBlock());
+                    ForgeMaterialData replaceTo = (ForgeMaterialData) replacedBlocks.getReplacement(sectionX, sectionZ, blockId, minY + sectionY);
+                    if (replaceTo != null)
+                    {
+                        section.set(sectionX, sectionY, sectionZ, replaceTo.internalBlock());
                     }
                 }
             }
@@ -556,7 +618,7 @@ public class ForgeWorld implements LocalWorld
     // returns any loaded chunk outside the populated area
     // throws an exception if any unloaded chunk outside the populated area is requested or if a loaded chunk could not be queried.
 
-    public Map<ChunkCoordinate,Chunk> chunkCacheOTGPlus = new HashMap<ChunkCoordinate, Chunk>();
+    public ChunkMap<Chunk> chunkCacheOTGPlus = new ChunkMap<Chunk>();
     public Chunk lastUsedChunk;
     public int lastUsedChunkX;
     public int lastUsedChunkZ;
@@ -570,7 +632,7 @@ public class ForgeWorld implements LocalWorld
         	return lastUsedChunk;
         }
 
-        Chunk chunk = chunkCacheOTGPlus.get(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+        Chunk chunk = chunkCacheOTGPlus.get(chunkX, chunkZ);
         if(chunk != null)
         {
         	lastUsedChunk = chunk;
@@ -613,7 +675,7 @@ public class ForgeWorld implements LocalWorld
 					lastUsedChunk = loadedChunk;
 		        	lastUsedChunkX = chunkX;
 		        	lastUsedChunkZ = chunkZ;
-					chunkCacheOTGPlus.put(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ), loadedChunk);
+					chunkCacheOTGPlus.put(chunkX, chunkZ, loadedChunk);
 				}
 
 				if(!allowSpawningOutsideBounds || loadedChunk != null)
@@ -632,7 +694,7 @@ public class ForgeWorld implements LocalWorld
 		        	throw new RuntimeException();
 		        }
 
-		        chunkCacheOTGPlus.put(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ), spawnedChunk);
+		        chunkCacheOTGPlus.put(chunkX, chunkZ, spawnedChunk);
 				lastUsedChunk = spawnedChunk;
 		    	lastUsedChunkX = chunkX;
 		    	lastUsedChunkZ = chunkZ;
@@ -672,7 +734,7 @@ public class ForgeWorld implements LocalWorld
         	throw new RuntimeException();
         }
 
-        chunkCacheOTGPlus.put(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ), spawnedChunk);
+        chunkCacheOTGPlus.put(chunkX, chunkZ, spawnedChunk);
 		lastUsedChunk = spawnedChunk;
     	lastUsedChunkX = chunkX;
     	lastUsedChunkZ = chunkZ;
@@ -5,23 +5,21 @@ import java.io.IOException;
 
 import com.pg85.otg.LocalWorld;
 import com.pg85.otg.OTG;
+import com.pg85.otg.configuration.ConfigSyncPayload;
 import com.pg85.otg.configuration.ConfigToNetworkSender;
-import com.pg85.otg.configuration.standard.PluginStandardValues;
 import com.pg85.otg.forge.ForgeEngine;
 import com.pg85.otg.forge.dimensions.DimensionData;
 import com.pg85.otg.forge.dimensions.OTGDimensionInfo;
 import com.pg85.otg.forge.dimensions.OTGDimensionManager;
-import com.pg85.otg.forge.network.DimensionSyncPacket;
+import com.pg85.otg.forge.network.ConfigSyncServer;
 import com.pg85.otg.forge.network.PacketDispatcher;
 import com.pg85.otg.forge.network.ParticlesPacket;
 import com.pg85.otg.logging.LogMarker;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufOutputStream;
-import io.netty.buffer.Unpooled;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent;
 
 public class PlayerTracker
@@ -29,10 +27,11 @@ public class PlayerTracker
     @SubscribeEvent
     public void onConnectionCreated(FMLNetworkEvent.ServerConnectionFromClientEvent event)
     {
-		ByteBuf nettyBuffer = createWorldAndBiomeConfigsPacket();
-		if(nettyBuffer != null)
+		ConfigSyncPayload payload = createWorldAndBiomeConfigsPayload();
+		if(payload != null)
 		{
-			PacketDispatcher.sendTo(new DimensionSyncPacket(nettyBuffer), event.getManager());
+			// Sent right away, the client needs the configs before the worlds are sent
+			ConfigSyncServer.sendToConnection(payload, event.getManager());
 	    	// Reset particles in case the player just switched worlds.
 	    	PacketDispatcher.sendTo(new ParticlesPacket(), event.getManager());
 		} else {
@@ -40,34 +39,37 @@ public class PlayerTracker
 		}
     }
 
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerLoggedInEvent event)
+    {
+    	if(event.player instanceof EntityPlayerMP)
+    	{
+    		ConfigSyncServer.onPlayerLoggedIn((EntityPlayerMP)event.player);
+    	}
+    }
+
     // Used when creating / deleting dimensions
     public static void SendAllWorldAndBiomeConfigsToAllPlayers(MinecraftServer server)
     {
-		ByteBuf nettyBuffer = createWorldAndBiomeConfigsPacket();
-		if(nettyBuffer != null)
+		ConfigSyncPayload payload = createWorldAndBiomeConfigsPayload();
+		if(payload != null)
 		{
-	    	for(EntityPlayerMP player : server.getPlayerList().getPlayers())
-	    	{
-	        	PacketDispatcher.sendTo(new DimensionSyncPacket(nettyBuffer), (EntityPlayerMP) player);
-	    	}
+	    	ConfigSyncServer.send(payload, server.getPlayerList().getPlayers());
 		}
     }
 
-    private static ByteBuf createWorldAndBiomeConfigsPacket()
+    private static ConfigSyncPayload createWorldAndBiomeConfigsPayload()
     {
         // Make sure worlds are sent in the correct order.
 
 		OTGDimensionInfo otgDimData = OTGDimensionManager.GetOrderedDimensionData();
 
-        // Serialize it
-        ByteBuf nettyBuffer = Unpooled.buffer();
-        //PacketBuffer mojangBuffer = new PacketBuffer(nettyBuffer);
-        DataOutput stream = new ByteBufOutputStream(nettyBuffer);
+        // Serialize it, biome configs are only sent to clients that don't have them cached.
+        ConfigSyncPayload payload = new ConfigSyncPayload();
+        DataOutput stream = payload.getStream();
 
         try
         {
-        	stream.writeInt(PluginStandardValues.ProtocolVersion);
-        	stream.writeInt(0); // 0 == Normal packet
         	stream.writeInt(otgDimData.orderedDimensions.size() + 1); // Number of worlds in this packet
 
     		// Send worldconfig and biomeconfigs for each world.
@@ -77,7 +79,6 @@ public class PlayerTracker
 			if(localWorld == null)
 			{
 				// This is not an OTG world.
-				((ByteBufOutputStream)stream).close();
 				return null;
 			}
 
@@ -85,7 +86,7 @@ public class PlayerTracker
 	        try
 	        {
 	        	stream.writeInt(0);
-	            ConfigToNetworkSender.writeConfigsToStream(localWorld.getConfigs(), stream, false);
+	            ConfigToNetworkSender.writeConfigsToPayload(localWorld.getConfigs(), payload, false);
 	        }
 	        catch (IOException e)
 	        {
@@ -106,7 +107,7 @@ public class PlayerTracker
     		        try
     		        {
     		        	stream.writeInt(dimData.dimensionId);
-    		            ConfigToNetworkSender.writeConfigsToStream(localWorld.getConfigs(), stream, false); // TODO: localWorld is null after /otg dim -c
+    		            ConfigToNetworkSender.writeConfigsToPayload(localWorld.getConfigs(), payload, false); // TODO: localWorld is null after /otg dim -c
     		        }
     		        catch (IOException e)
     		        {
@@ -120,6 +121,6 @@ public class PlayerTracker
 			e1.printStackTrace();
 		}
 
-        return nettyBuffer;
+        return payload;
     }
 }
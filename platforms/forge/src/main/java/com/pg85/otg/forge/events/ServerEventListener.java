@@ -10,7 +10,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
-import java.util.Stack;
 
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityCreature;
@@ -31,6 +30,10 @@ import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.storage.DerivedWorldInfo;
 import net.minecraftforge.event.ForgeEventFactory;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.terraingen.PopulateChunkEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.event.FMLInterModComms;
 import net.minecraftforge.fml.common.event.FMLInterModComms.IMCMessage;
@@ -62,15 +65,62 @@ import com.pg85.otg.util.ChunkCoordinate;
 
 public class ServerEventListener
 {
-    /** The 17x17 area around the player where mobs and particles can spawn */
-    private HashMap<ChunkCoordinate, Boolean> eligibleChunksForSpawning = new HashMap<ChunkCoordinate, Boolean>();
+    /** The spawners, players and OTG mobs of each world that OTG spawns mobs in */
+    private HashMap<World, SpawnerScheduler> spawnerSchedulers = new HashMap<World, SpawnerScheduler>();
 
     int currentTimeInSeconds = 0;
     int lastSpawnedTimeInSeconds = 0;
 
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event)
+    {
+    	SpawnerScheduler scheduler = this.spawnerSchedulers.get(event.getWorld());
+    	if(scheduler != null)
+    	{
+    		scheduler.onChunkLoad(event.getChunk().x, event.getChunk().z);
+    	}
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event)
+    {
+    	SpawnerScheduler scheduler = this.spawnerSchedulers.get(event.getWorld());
+    	if(scheduler != null)
+    	{
+    		scheduler.onChunkUnload(event.getChunk().x, event.getChunk().z);
+    	}
+    }
+
+    @SubscribeEvent
+    public void onChunkPopulated(PopulateChunkEvent.Post event)
+    {
+    	SpawnerScheduler scheduler = this.spawnerSchedulers.get(event.getWorld());
+    	if(scheduler != null)
+    	{
+    		scheduler.onChunkPopulated(event.getChunkX(), event.getChunkZ());
+    	}
+    }
+
+    @SubscribeEvent
+    public void onEntityJoinWorld(EntityJoinWorldEvent event)
+    {
+    	SpawnerScheduler scheduler = this.spawnerSchedulers.get(event.getWorld());
+    	if(scheduler != null)
+    	{
+    		scheduler.onEntityJoin(event.getEntity());
+    	}
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event)
+    {
+    	this.spawnerSchedulers.remove(event.getWorld());
+    }
+
     /**
-     * adds all chunks within the spawn radius of the players to eligibleChunksForSpawning. pars: the world,
-     * hostileCreatures, passiveCreatures. returns number of eligible chunks.
+     * Despawns OTG mobs that have no player near them, spawns mobs for the
+     * spawners near players that have to spawn now and sends the particles
+     * near each player to that player.
      */
     public void findChunksForSpawning(ForgeWorld world, boolean spawnHostileMobs, boolean spawnPeacefulMobs)
     {
@@ -81,447 +131,310 @@ public class ServerEventListener
             return;
         } else {
 
-            this.eligibleChunksForSpawning.clear();
-            for (int i = 0; i < worldServer.playerEntities.size(); ++i)
+            SpawnerScheduler scheduler = this.spawnerSchedulers.get(worldServer);
+            if (scheduler == null)
             {
-                EntityPlayer entityplayer = (EntityPlayer)worldServer.playerEntities.get(i);
-                int playerPosChunkX = MathHelper.floor(entityplayer.posX / 16.0D);
-                int playerPosChunkZ = MathHelper.floor(entityplayer.posZ / 16.0D);
-                byte radius = 8;
-
-                for (int l = -radius; l <= radius; ++l)
-                {
-                    for (int i1 = -radius; i1 <= radius; ++i1)
-                    {
-                        boolean flag3 = l == -radius || l == radius || i1 == -radius || i1 == radius;
-                        ChunkCoordinate chunkcoordintpair = ChunkCoordinate.fromChunkCoords(l + playerPosChunkX, i1 + playerPosChunkZ);
-
-                        if (!flag3) // If this chunk is not on the edge of the search area (?)
-                        {
-                            this.eligibleChunksForSpawning.put(chunkcoordintpair, Boolean.valueOf(false));
-                        }
-                    }
-                }
+            	scheduler = new SpawnerScheduler(worldServer);
+            	this.spawnerSchedulers.put(worldServer, scheduler);
             }
+            scheduler.beginUpdate(world, currentTimeInSeconds);
 
-    		Stack<Object[]> playerCoords = new Stack<Object[]>();
-    		for (int a = 0; a < worldServer.playerEntities.size(); ++a)
-    		{
-    			EntityPlayer player = (EntityPlayer)worldServer.playerEntities.get(a);
-    			playerCoords.add(new Object[] { player.posX, player.posY, player.posZ, player });
-    		}
-
-			double maxDistToClosestPlayer = 33.0d;
-			double maxDistToClosestPlayerSq = maxDistToClosestPlayer * maxDistToClosestPlayer;
-
-	        for (int x = 0; x < worldServer.loadedEntityList.size(); x++)
-	        {
-	        	Entity entity = ((Entity)worldServer.loadedEntityList.get(x));
-	            NBTTagCompound entityData = entity.getEntityData();
-
-	            if(entityData.hasKey("OTG"))
-	            {
-	            	// Don't de-spawn if there is a player near the entity
-        			boolean playerInRange = false;
-        			for (int a = 0; a < playerCoords.size(); ++a)
-                    {
-        		        float f = (float)((Double)playerCoords.get(a)[0] - entity.posX);
-        		        float f1 = (float)((Double)playerCoords.get(a)[1] - entity.posY);
-        		        float f2 = (float)((Double)playerCoords.get(a)[2] - entity.posZ);
-        		        double distance = f * f + f1 * f1 + f2 * f2;
-
-                    	if(distance < maxDistToClosestPlayerSq)
-                    	{
-                    		playerInRange = true;
-                    		break;
-                    	}
-                    }
-        			if(playerInRange)
-        			{
-        				continue;
-        			}
-
-	            	int despawnTimer = entityData.getInteger("OTGDT"); // OTG Despawn Timer
-	            	if(despawnTimer <= 1)
-	            	{
-	            		// Time's up, despawn
-	            		entity.setDead();
-
-	            	} else {
-	            		entityData.setInteger("OTGDT", despawnTimer - 1); // OTG Despawn Timer
-	            	}
-	            }
-	        }
+            // Despawn OTG mobs that have no player near them
+            scheduler.despawnEntities();
 
             Random random = new Random();
 
             // OTG mob spawning
-    		Stack<SpawnerFunction> spawnerDataSortedByDistance = new Stack<SpawnerFunction>();
-    		Stack<Object[]> spawnerDatasWithDistance = new Stack<Object[]>();
-
-            for (ChunkCoordinate chunkcoordintpair1 : this.eligibleChunksForSpawning.keySet())
-            {
-                if (!this.eligibleChunksForSpawning.get(chunkcoordintpair1))
-                {
-                	ArrayList<SpawnerFunction> spawnerDataForOTG = world.GetWorldSession().GetSpawnersForChunk(ChunkCoordinate.fromChunkCoords(chunkcoordintpair1.getChunkX(), chunkcoordintpair1.getChunkZ()));
-
-                	if(spawnerDataForOTG != null && spawnerDataForOTG.size() > 0)
-                	{
-                		for(SpawnerFunction spawnerData : spawnerDataForOTG)
-                		{
-                			double distToClosestPlayer = maxDistToClosestPlayerSq;
-
-                			for (int a = 0; a < playerCoords.size(); ++a)
-                            {
-                		        float f = (float)((Double)playerCoords.get(a)[0] - spawnerData.x);
-                		        float f1 = (float)((Double)playerCoords.get(a)[1] - spawnerData.y);
-                		        float f2 = (float)((Double)playerCoords.get(a)[2] - spawnerData.z);
-                		        double distance = f * f + f1 * f1 + f2 * f2;
-
-                            	if(distance < distToClosestPlayer)
-                            	{
-                            		distToClosestPlayer = distance;
-                            	}
-                            }
-
-                            if(distToClosestPlayer > 0 && distToClosestPlayer < maxDistToClosestPlayerSq)
-                            {
-		                    	if(spawnerDatasWithDistance.size() == 0)
-		                    	{
-		                    		spawnerDatasWithDistance.add(new Object[] { distToClosestPlayer, spawnerData });
-		                    	} else {
-    		                    	for(int r = 0; r < spawnerDatasWithDistance.size(); r++)
-    		                    	{
-    		                    		if(distToClosestPlayer < (Double)spawnerDatasWithDistance.get(r)[0])
-    		                    		{
-    		                    			spawnerDatasWithDistance.add(r, new Object[] { distToClosestPlayer, spawnerData });
-    		                    			break;
-    		                    		}
-    		                    		else if(r == spawnerDatasWithDistance.size() - 1)
-    		                    		{
-    		                    			spawnerDatasWithDistance.add(new Object[] { distToClosestPlayer, spawnerData });
-    		                    			break;
-    		                    		}
-    		                    	}
-		                    	}
-                            }
-                		}
-                	}
-                }
-            }
-
-            for(Object[] spawnerDataWithDistance : spawnerDatasWithDistance)
-            {
-            	spawnerDataSortedByDistance.add((SpawnerFunction)spawnerDataWithDistance[1]);
-            }
+            List<SpawnerFunction> spawnerDataSortedByDistance = scheduler.getSpawnersToSpawn(currentTimeInSeconds);
 
     		for(SpawnerFunction spawnerData : spawnerDataSortedByDistance)
         	{
 				String mobTypeName = spawnerData.mobName;
 				int groupSize = spawnerData.groupSize;
-				int interval = spawnerData.interval;
 
 				int spawnChance = spawnerData.spawnChance;
 				int max = spawnerData.maxCount;
 				int despawnTime = spawnerData.despawnTime;
 				int rngRoll = random.nextInt(100);
 
-				if((currentTimeInSeconds - spawnerData.intervalOffset) % interval == 0 || spawnerData.firstSpawn)// && spawnChance > rngRoll)
-				{
-					if(spawnerData.firstSpawn)
-					{
-						spawnerData.intervalOffset = currentTimeInSeconds;
-					}
-					spawnerData.firstSpawn = false;
+                Class entityClass = MobSpawnGroupHelper.toMinecraftClass(mobTypeName);
+                if(entityClass == null)
+                {
+                	OTG.log(LogMarker.INFO, "Could not find entity: " + mobTypeName);
+                	continue;
+                }
+
+                Entity entityliving = null;
+                NBTTagCompound nbttagcompound = null;
 
-                    Class entityClass = MobSpawnGroupHelper.toMinecraftClass(mobTypeName);
-                    if(entityClass == null)
+                if(spawnerData.getMetaData() == null)
+                {
+                    try
                     {
-                    	OTG.log(LogMarker.INFO, "Could not find entity: " + mobTypeName);
-                    	continue;
+                        entityliving = (Entity) entityClass.getConstructor(new Class[] {World.class}).newInstance(new Object[] { worldServer });
                     }
-
-                    Entity entityliving = null;
-                    NBTTagCompound nbttagcompound = null;
-
-                    if(spawnerData.getMetaData() == null)
+                    catch (Exception exception)
                     {
-                        try
-                        {
-                            entityliving = (Entity) entityClass.getConstructor(new Class[] {World.class}).newInstance(new Object[] { worldServer });
-                        }
-                        catch (Exception exception)
-                        {
-                            exception.printStackTrace();
-                            continue;
-                        }
-                    } else {
-                        nbttagcompound = new NBTTagCompound();
-
-                        try
-                        {
-                            NBTBase nbtbase = JsonToNBT.getTagFromJson(spawnerData.getMetaData());
+                        exception.printStackTrace();
+                        continue;
+                    }
+                } else {
+                    nbttagcompound = new NBTTagCompound();
 
-                            if (!(nbtbase instanceof NBTTagCompound))
-                            {
-                            	throw new RuntimeException(); // Not a valid tag
-                            }
+                    try
+                    {
+                        NBTBase nbtbase = JsonToNBT.getTagFromJson(spawnerData.getMetaData());
 
-                            nbttagcompound = (NBTTagCompound)nbtbase;
-                        }
-                        catch (NBTException nbtexception)
+                        if (!(nbtbase instanceof NBTTagCompound))
                         {
-                        	OTG.log(LogMarker.INFO, "Invalid NBT tag for mob in SpawnerFunction: " + spawnerData.getMetaData() + ". Skipping mob.");
-                        	continue;
+                        	throw new RuntimeException(); // Not a valid tag
                         }
 
-                        nbttagcompound.setString("id", spawnerData.mobName);
-                        entityliving = EntityList.createEntityFromNBT(nbttagcompound, worldServer);
+                        nbttagcompound = (NBTTagCompound)nbtbase;
                     }
-
-                    if(entityliving == null)
+                    catch (NBTException nbtexception)
                     {
-                    	throw new RuntimeException();
+                    	OTG.log(LogMarker.INFO, "Invalid NBT tag for mob in SpawnerFunction: " + spawnerData.getMetaData() + ". Skipping mob.");
+                    	continue;
                     }
 
-			        int worldMobCount = 0;
-			        int mobCountRadius = 32;
-			        for (int x = 0; x < worldServer.loadedEntityList.size(); x++)
-			        {
-			        	Entity entity = ((Entity)worldServer.loadedEntityList.get(x));
-			            if (entity.getClass() == entityClass && entity.getEntityData().hasKey("OTG"))
-			            {
-			            	if(
-		            			entity.posX >= spawnerData.x - mobCountRadius &&
-		            			entity.posX <= spawnerData.x + mobCountRadius &&
-            					entity.posY >= spawnerData.y - mobCountRadius &&
-								entity.posY <= spawnerData.y + mobCountRadius &&
-		            			entity.posZ >= spawnerData.z - mobCountRadius &&
-		            			entity.posZ <= spawnerData.z + mobCountRadius
-	            			)
-			            	{
-				            	worldMobCount++;
-			            	}
-			            }
-			        }
-
-			        if(worldMobCount >= max)
-					{
-			        	continue;
-					}
+                    nbttagcompound.setString("id", spawnerData.mobName);
+                    entityliving = EntityList.createEntityFromNBT(nbttagcompound, worldServer);
+                }
 
-                    int j1 = spawnerData.x;
-                    int k1 = spawnerData.y;
-                    int l1 = spawnerData.z;
+                if(entityliving == null)
+                {
+                	throw new RuntimeException();
+                }
 
-                    float x = (float)j1 + 0.5F;
-                    float y = (float)k1;
-                    float z = (float)l1 + 0.5F;
+		        int mobCountRadius = 32;
+		        int worldMobCount = scheduler.countEntities(entityClass, spawnerData.x, spawnerData.y, spawnerData.z, mobCountRadius);
 
-					float yaw = spawnerData.yaw;
-					float pitch = spawnerData.pitch;
+		        if(worldMobCount >= max)
+				{
+		        	continue;
+				}
 
-					entityliving.getEntityData().setBoolean("OTG", true);
+                int j1 = spawnerData.x;
+                int k1 = spawnerData.y;
+                int l1 = spawnerData.z;
 
-                    if(despawnTime > 0)
-                    {
-                    	entityliving.getEntityData().setInteger("OTGDT", despawnTime - 1); // OTG Despawn time
-                    }
+                float x = (float)j1 + 0.5F;
+                float y = (float)k1;
+                float z = (float)l1 + 0.5F;
 
-                    if(entityliving instanceof EntityLiving)
-                    {
-						double velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0;
-						double velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
-						double velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
+				float yaw = spawnerData.yaw;
+				float pitch = spawnerData.pitch;
+
+				entityliving.getEntityData().setBoolean("OTG", true);
+
+                if(despawnTime > 0)
+                {
+                	entityliving.getEntityData().setInteger("OTGDT", despawnTime - 1); // OTG Despawn time
+                }
 
-                        entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
-                        entityliving.addVelocity(velocityX, velocityY, velocityZ);
+                if(entityliving instanceof EntityLiving)
+                {
+					double velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0;
+					double velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
+					double velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
 
-                        Result canSpawn = ForgeEventFactory.canEntitySpawn((EntityLiving) entityliving, worldServer, x, y, z);
+                    entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
+                    entityliving.addVelocity(velocityX, velocityY, velocityZ);
 
-                        boolean entityCanSpawnHere = false;
+                    Result canSpawn = ForgeEventFactory.canEntitySpawn((EntityLiving) entityliving, worldServer, x, y, z);
 
-                        if(canSpawn == Result.DEFAULT)
-                        {
-                            int ia = MathHelper.floor(entityliving.posX);
-                            int ja = MathHelper.floor(entityliving.getEntityBoundingBox().minY);
-                            int ka = MathHelper.floor(entityliving.posZ);
+                    boolean entityCanSpawnHere = false;
 
-                        	boolean b1 = entityliving.world.checkNoEntityCollision(entityliving.getEntityBoundingBox());
-                        	boolean b2 = entityliving.world.getCollisionBoxes(entityliving, entityliving.getEntityBoundingBox()).isEmpty();
-                        	boolean b3 = !entityliving.world.containsAnyLiquid(entityliving.getEntityBoundingBox());
+                    if(canSpawn == Result.DEFAULT)
+                    {
+                        int ia = MathHelper.floor(entityliving.posX);
+                        int ja = MathHelper.floor(entityliving.getEntityBoundingBox().minY);
+                        int ka = MathHelper.floor(entityliving.posZ);
 
-                        	boolean b5 = entityliving instanceof EntityCreature ? ((EntityCreature)entityliving).getBlockPathWeight(new BlockPos(ia, ja, ka)) >= 0.0F : true;
+                    	boolean b1 = entityliving.world.checkNoEntityCollision(entityliving.getEntityBoundingBox());
+                    	boolean b2 = entityliving.world.getCollisionBoxes(entityliving, entityliving.getEntityBoundingBox()).isEmpty();
+                    	boolean b3 = !entityliving.world.containsAnyLiquid(entityliving.getEntityBoundingBox());
 
-                        	entityCanSpawnHere = b1 && b2 && b3 && b5;
-                        }
+                    	boolean b5 = entityliving instanceof EntityCreature ? ((EntityCreature)entityliving).getBlockPathWeight(new BlockPos(ia, ja, ka)) >= 0.0F : true;
 
-                        if (canSpawn == Result.ALLOW || (canSpawn == Result.DEFAULT && entityCanSpawnHere))
-                        {
-                        	for(int r = 0; r < groupSize; r++)
-                        	{
-	        					if(worldMobCount >= max)
-        						{
-	        						break;
-        						}
-
-                    			rngRoll = random.nextInt(100);
-                    			if(spawnChance <= rngRoll)
+                    	entityCanSpawnHere = b1 && b2 && b3 && b5;
+                    }
+
+                    if (canSpawn == Result.ALLOW || (canSpawn == Result.DEFAULT && entityCanSpawnHere))
+                    {
+                    	for(int r = 0; r < groupSize; r++)
+                    	{
+        					if(worldMobCount >= max)
+    						{
+        						break;
+    						}
+
+                			rngRoll = random.nextInt(100);
+                			if(spawnChance <= rngRoll)
+                			{
+                				continue;
+                			}
+
+                    		if(r != 0)
+                    		{
+                    			if(spawnerData.getMetaData() == null)
                     			{
-                    				continue;
-                    			}
-
-                        		if(r != 0)
-                        		{
-                        			if(spawnerData.getMetaData() == null)
-                        			{
-                                        try
-                                        {
-                                        	entityliving = (EntityLiving) entityClass.getConstructor(new Class[] {World.class}).newInstance(new Object[] { worldServer });
-                                        }
-                                        catch (Exception exception)
-                                        {
-                                            exception.printStackTrace();
-                                            break;
-                                        }
-                        			} else {
-                                    	entityliving = EntityList.createEntityFromNBT(nbttagcompound, worldServer);
+                                    try
+                                    {
+                                    	entityliving = (EntityLiving) entityClass.getConstructor(new Class[] {World.class}).newInstance(new Object[] { worldServer });
+                                    }
+                                    catch (Exception exception)
+                                    {
+                                        exception.printStackTrace();
+                                        break;
                                     }
+                    			} else {
+                                	entityliving = EntityList.createEntityFromNBT(nbttagcompound, worldServer);
+                                }
 
-                                    velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0;
-	        						velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
-	        						velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
+                                velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0;
+        						velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
+        						velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
 
-                                    entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
-                                    entityliving.addVelocity(velocityX, velocityY, velocityZ);
-                                    entityliving.getEntityData().setBoolean("OTG", true);
-                                    entityliving.getEntityData().setInteger("OTGDT", despawnTime); // OTG Despawn time
-                        		}
+                                entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
+                                entityliving.addVelocity(velocityX, velocityY, velocityZ);
+                                entityliving.getEntityData().setBoolean("OTG", true);
+                                entityliving.getEntityData().setInteger("OTGDT", despawnTime); // OTG Despawn time
+                    		}
 
-                                if (spawnerData.getMetaData() == null)
-                                {
-                                	((EntityLiving) entityliving).onInitialSpawn(worldServer.getDifficultyForLocation(new BlockPos(x, y, z)),(IEntityLivingData)null);
-                                }
-                                worldServer.spawnEntity(entityliving);
+                            if (spawnerData.getMetaData() == null)
+                            {
+                            	((EntityLiving) entityliving).onInitialSpawn(worldServer.getDifficultyForLocation(new BlockPos(x, y, z)),(IEntityLivingData)null);
+                            }
+                            worldServer.spawnEntity(entityliving);
+
+                            if (nbttagcompound != null)
+                            {
+                                Entity entity2 = entityliving;
 
-                                if (nbttagcompound != null)
+                                for (NBTTagCompound nbttagcompound1 = nbttagcompound; entity2 != null && nbttagcompound1.hasKey("Riding", 10); nbttagcompound1 = nbttagcompound1.getCompoundTag("Riding"))
                                 {
-                                    Entity entity2 = entityliving;
+                                    Entity entity = EntityList.createEntityFromNBT(nbttagcompound1.getCompoundTag("Riding"), worldServer);
 
-                                    for (NBTTagCompound nbttagcompound1 = nbttagcompound; entity2 != null && nbttagcompound1.hasKey("Riding", 10); nbttagcompound1 = nbttagcompound1.getCompoundTag("Riding"))
+                                    if (entity != null)
                                     {
-                                        Entity entity = EntityList.createEntityFromNBT(nbttagcompound1.getCompoundTag("Riding"), worldServer);
-
-                                        if (entity != null)
-                                        {
-                                            entity.setLocationAndAngles(x, y, z, entity.rotationYaw, entity.rotationPitch);
-                                            worldServer.spawnEntity(entity);
-                                            entity2.startRiding(entity);
-                                        }
-
-                                        entity2 = entity;
+                                        entity.setLocationAndAngles(x, y, z, entity.rotationYaw, entity.rotationPitch);
+                                        worldServer.spawnEntity(entity);
+                                        entity2.startRiding(entity);
                                     }
+
+                                    entity2 = entity;
                                 }
+                            }
 
-								worldMobCount++;
-                        	}
-                        }
-                    } else {
+							worldMobCount++;
+                    	}
+                    }
+                } else {
 
-						double velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0.1;
-						double velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
-						double velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
+					double velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0.1;
+					double velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
+					double velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
 
-                        entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
-                        if(!(entityliving instanceof EntityHanging))
-                        {
-                        	entityliving.addVelocity(velocityX, velocityY, velocityZ);
-                        }
+                    entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
+                    if(!(entityliving instanceof EntityHanging))
+                    {
+                    	entityliving.addVelocity(velocityX, velocityY, velocityZ);
+                    }
 
-                        boolean entityCanSpawnHere = false;
+                    boolean entityCanSpawnHere = false;
 
-                        int ia = MathHelper.floor(((Entity)entityliving).posX);
-                        int ja = MathHelper.floor(((Entity)entityliving).getEntityBoundingBox().minY);
-                        int ka = MathHelper.floor(((Entity)entityliving).posZ);
+                    int ia = MathHelper.floor(((Entity)entityliving).posX);
+                    int ja = MathHelper.floor(((Entity)entityliving).getEntityBoundingBox().minY);
+                    int ka = MathHelper.floor(((Entity)entityliving).posZ);
 
-                    	boolean b1 = entityliving.world.checkNoEntityCollision(entityliving.getEntityBoundingBox());
-                    	boolean b2 = entityliving.world.getCollisionBoxes(entityliving, entityliving.getEntityBoundingBox()).isEmpty();
-                    	boolean b3 = !entityliving.world.containsAnyLiquid(entityliving.getEntityBoundingBox());
+                	boolean b1 = entityliving.world.checkNoEntityCollision(entityliving.getEntityBoundingBox());
+                	boolean b2 = entityliving.world.getCollisionBoxes(entityliving, entityliving.getEntityBoundingBox()).isEmpty();
+                	boolean b3 = !entityliving.world.containsAnyLiquid(entityliving.getEntityBoundingBox());
 
-                    	boolean b5 = entityliving instanceof EntityLiving ? ((EntityCreature)entityliving).getBlockPathWeight(new BlockPos(ia, ja, ka)) >= 0.0F : true;
+                	boolean b5 = entityliving instanceof EntityLiving ? ((EntityCreature)entityliving).getBlockPathWeight(new BlockPos(ia, ja, ka)) >= 0.0F : true;
 
-                    	entityCanSpawnHere = b1 && b2 && b3 && b5;
+                	entityCanSpawnHere = b1 && b2 && b3 && b5;
 
-                        if (entityCanSpawnHere)
-                        {
-                        	for(int r = 0; r < groupSize; r++)
-                        	{
-	        					if(worldMobCount >= max)
-        						{
-	        						break;
-        						}
-
-                    			rngRoll = random.nextInt(100);
-                    			if(spawnChance <= rngRoll)
+                    if (entityCanSpawnHere)
+                    {
+                    	for(int r = 0; r < groupSize; r++)
+                    	{
+        					if(worldMobCount >= max)
+    						{
+        						break;
+    						}
+
+                			rngRoll = random.nextInt(100);
+                			if(spawnChance <= rngRoll)
+                			{
+                				continue;
+                			}
+
+                    		if(r != 0)
+                    		{
+                    			if(spawnerData.getMetaData() == null)
                     			{
-                    				continue;
-                    			}
-
-                        		if(r != 0)
-                        		{
-                        			if(spawnerData.getMetaData() == null)
-                        			{
-                                        try
-                                        {
-                                        	entityliving = (Entity) entityClass.getConstructor(new Class[] {World.class}).newInstance(new Object[] { worldServer });
-                                        }
-                                        catch (Exception exception)
-                                        {
-                                            exception.printStackTrace();
-                                            break;
-                                        }
-                        			} else {
-                                    	entityliving = EntityList.createEntityFromNBT(nbttagcompound, worldServer);
+                                    try
+                                    {
+                                    	entityliving = (Entity) entityClass.getConstructor(new Class[] {World.class}).newInstance(new Object[] { worldServer });
+                                    }
+                                    catch (Exception exception)
+                                    {
+                                        exception.printStackTrace();
+                                        break;
                                     }
+                    			} else {
+                                	entityliving = EntityList.createEntityFromNBT(nbttagcompound, worldServer);
+                                }
 
-	        						velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
-	        						velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0.1;
-	        						velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
+        						velocityX = spawnerData.velocityXSet ? spawnerData.velocityX : Math.random() * 0.2 - 0.1;
+        						velocityY = spawnerData.velocityYSet ? spawnerData.velocityY : 0.1;
+        						velocityZ = spawnerData.velocityZSet ? spawnerData.velocityZ : Math.random() * 0.2 - 0.1;
 
-                                    entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
-                                    entityliving.addVelocity(velocityX, velocityY, velocityZ);
-                                    entityliving.getEntityData().setBoolean("OTG", true);
-                                    entityliving.getEntityData().setInteger("OTGDT", despawnTime); // OTG Despawn time
-                        		}
+                                entityliving.setLocationAndAngles((double)x, (double)y, (double)z, yaw, pitch);
+                                entityliving.addVelocity(velocityX, velocityY, velocityZ);
+                                entityliving.getEntityData().setBoolean("OTG", true);
+                                entityliving.getEntityData().setInteger("OTGDT", despawnTime); // OTG Despawn time
+                    		}
 
-                                worldServer.spawnEntity(entityliving);
+                            worldServer.spawnEntity(entityliving);
 
-								worldMobCount++;
-                        	}
-                        }
+							worldMobCount++;
+                    	}
                     }
                 }
             }
 
-			for (int a = 0; a < playerCoords.size(); ++a)
+			double maxDistToClosestPlayer = SpawnerScheduler.MAX_PLAYER_DISTANCE;
+			double maxDistToClosestPlayerSq = maxDistToClosestPlayer * maxDistToClosestPlayer;
+
+			for (int a = 0; a < worldServer.playerEntities.size(); ++a)
             {
-				EntityPlayer player = (EntityPlayer)playerCoords.get(a)[3];
+				EntityPlayer player = (EntityPlayer)worldServer.playerEntities.get(a);
 				ArrayList<ParticleFunction> particleDataForOTGPerPlayer = new ArrayList<ParticleFunction>();
 
-                for (ChunkCoordinate chunkcoordintpair1 : this.eligibleChunksForSpawning.keySet())
+				// Only the chunks within range of the player can have particles close enough to the player
+				int minChunkX = MathHelper.floor((player.posX - maxDistToClosestPlayer) / 16.0D);
+				int maxChunkX = MathHelper.floor((player.posX + maxDistToClosestPlayer) / 16.0D);
+				int minChunkZ = MathHelper.floor((player.posZ - maxDistToClosestPlayer) / 16.0D);
+				int maxChunkZ = MathHelper.floor((player.posZ + maxDistToClosestPlayer) / 16.0D);
+
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
                 {
-                    if (!this.eligibleChunksForSpawning.get(chunkcoordintpair1))
+                    for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
                     {
-                    	ChunkCoordinate chunkCoord = ChunkCoordinate.fromChunkCoords(chunkcoordintpair1.getChunkX(), chunkcoordintpair1.getChunkZ());
+                    	ChunkCoordinate chunkCoord = ChunkCoordinate.fromChunkCoords(chunkX, chunkZ);
                     	ArrayList<ParticleFunction> particleDataForOTG = world.GetWorldSession().GetParticlesForChunk(chunkCoord);
 
                     	if(particleDataForOTG != null && particleDataForOTG.size() > 0)
                     	{
                     		for(ParticleFunction particleData : particleDataForOTG)
                     		{
-                		        float f = (float)((Double)playerCoords.get(a)[0] - particleData.x);
-                		        float f1 = (float)((Double)playerCoords.get(a)[1] - particleData.y);
-                		        float f2 = (float)((Double)playerCoords.get(a)[2] - particleData.z);
+                		        float f = (float)(player.posX - particleData.x);
+                		        float f1 = (float)(player.posY - particleData.y);
+                		        float f2 = (float)(player.posZ - particleData.z);
                 		        double distance = f * f + f1 * f1 + f2 * f2;
 
                                 if(distance > 0 && distance < maxDistToClosestPlayerSq)
@@ -582,6 +495,12 @@ public class ServerEventListener
 					PacketDispatcher.sendTo(new ParticlesPacket(nettyBuffer), (EntityPlayerMP) player);
         		}
         	}
+
+			scheduler.endUpdate();
+			if(currentTimeInSeconds % 60 == 0)
+			{
+				OTG.log(LogMarker.DEBUG, "Spawners for world " + world.getName() + ": " + scheduler.getStats());
+			}
         }
     }
 
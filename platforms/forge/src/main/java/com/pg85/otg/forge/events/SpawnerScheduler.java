@@ -0,0 +1,460 @@
+package com.pg85.otg.forge.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+
+import com.pg85.otg.customobjects.bo3.SpawnerFunction;
+import com.pg85.otg.forge.ForgeWorld;
+import com.pg85.otg.util.ChunkCoordinate;
+
+/**
+ * Keeps track of the OTG spawners in the loaded chunks of a world, and of the
+ * players and the entities spawned by OTG, so that finding the spawners that
+ * have to spawn doesn't need to look at every chunk around every player and
+ * at every loaded entity each second.
+ *
+ * <p>Spawners are queued by the second in which they next have to spawn.
+ * The spawners of a chunk are (re)read when it is loaded or populated and
+ * dropped when it is unloaded. Players and OTG entities are sorted into a grid
+ * at the start of each update, so that range checks only look at nearby cells.
+ */
+final class SpawnerScheduler
+{
+    /** Spawners spawn and OTG entities don't despawn within this distance of a player */
+    static final double MAX_PLAYER_DISTANCE = 33.0d;
+    private static final double MAX_PLAYER_DISTANCE_SQ = MAX_PLAYER_DISTANCE * MAX_PLAYER_DISTANCE;
+
+    // Cells of 64x64 blocks, larger than the ranges used, so that a range
+    // check never needs more than 2x2 cells
+    private static final int CELL_SHIFT = 6;
+
+    private final WorldServer worldServer;
+
+    private final Map<ChunkCoordinate, ArrayList<ScheduledSpawner>> spawnersPerChunk = new HashMap<ChunkCoordinate, ArrayList<ScheduledSpawner>>();
+    private final PriorityQueue<ScheduledSpawner> queue = new PriorityQueue<ScheduledSpawner>();
+    // Chunks that were loaded or populated since the last update
+    private final Set<ChunkCoordinate> pendingChunks = new HashSet<ChunkCoordinate>();
+
+    private final Set<Entity> otgEntities = new HashSet<Entity>();
+    private final Map<Long, ArrayList<Entity>> entityGrid = new HashMap<Long, ArrayList<Entity>>();
+    private final Map<Long, ArrayList<EntityPlayer>> playerGrid = new HashMap<Long, ArrayList<EntityPlayer>>();
+
+    private long updateStartNanos;
+    private long lastUpdateNanos;
+    private long maxUpdateNanos;
+    private long totalUpdateNanos;
+    private int updates;
+    private int lastDueSpawners;
+    private int lastSpawnersInRange;
+    private int lastDespawned;
+
+    /**
+     * Creates a scheduler for the given world, starting with the chunks and
+     * entities that are already loaded.
+     * @param worldServer The world.
+     */
+    SpawnerScheduler(WorldServer worldServer)
+    {
+        this.worldServer = worldServer;
+        for (Chunk chunk : worldServer.getChunkProvider().getLoadedChunks())
+        {
+            this.pendingChunks.add(ChunkCoordinate.fromChunkCoords(chunk.x, chunk.z));
+        }
+        for (Entity entity : worldServer.loadedEntityList)
+        {
+            onEntityJoin(entity);
+        }
+    }
+
+    void onChunkLoad(int chunkX, int chunkZ)
+    {
+        this.pendingChunks.add(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+    }
+
+    void onChunkUnload(int chunkX, int chunkZ)
+    {
+        ChunkCoordinate chunkCoord = ChunkCoordinate.fromChunkCoords(chunkX, chunkZ);
+        this.pendingChunks.remove(chunkCoord);
+        ArrayList<ScheduledSpawner> spawners = this.spawnersPerChunk.remove(chunkCoord);
+        if (spawners != null)
+        {
+            for (ScheduledSpawner spawner : spawners)
+            {
+                spawner.removed = true;
+            }
+        }
+    }
+
+    void onChunkPopulated(int chunkX, int chunkZ)
+    {
+        // Population spawns structures in the 2x2 chunks starting at the populated chunk
+        for (int x = 0; x <= 1; x++)
+        {
+            for (int z = 0; z <= 1; z++)
+            {
+                this.pendingChunks.add(ChunkCoordinate.fromChunkCoords(chunkX + x, chunkZ + z));
+            }
+        }
+    }
+
+    void onEntityJoin(Entity entity)
+    {
+        if (entity.getEntityData().hasKey("OTG") && this.otgEntities.add(entity))
+        {
+            addToGrid(this.entityGrid, entity);
+        }
+    }
+
+    /**
+     * Starts an update. Sorts the players and the OTG entities into the grid
+     * and reads the spawners of the chunks loaded or populated since the last
+     * update.
+     * @param world                The world.
+     * @param currentTimeInSeconds The current time.
+     */
+    void beginUpdate(ForgeWorld world, int currentTimeInSeconds)
+    {
+        this.updateStartNanos = System.nanoTime();
+
+        this.playerGrid.clear();
+        for (EntityPlayer player : this.worldServer.playerEntities)
+        {
+            addToGrid(this.playerGrid, player);
+        }
+
+        this.entityGrid.clear();
+        for (Iterator<Entity> it = this.otgEntities.iterator(); it.hasNext(); )
+        {
+            Entity entity = it.next();
+            // Entities in unloaded chunks aren't marked as dead, but are removed from the world
+            if (entity.isDead || entity.world != this.worldServer || this.worldServer.getEntityFromUuid(entity.getUniqueID()) != entity)
+            {
+                it.remove();
+            } else {
+                addToGrid(this.entityGrid, entity);
+            }
+        }
+
+        for (ChunkCoordinate chunkCoord : this.pendingChunks)
+        {
+            if (this.worldServer.getChunkProvider().getLoadedChunk(chunkCoord.getChunkX(), chunkCoord.getChunkZ()) != null)
+            {
+                updateSpawners(world, chunkCoord, currentTimeInSeconds);
+            }
+        }
+        this.pendingChunks.clear();
+    }
+
+    private void updateSpawners(ForgeWorld world, ChunkCoordinate chunkCoord, int currentTimeInSeconds)
+    {
+        List<SpawnerFunction> spawnersInChunk = world.GetWorldSession().GetSpawnersForChunk(chunkCoord);
+        ArrayList<ScheduledSpawner> oldSpawners = this.spawnersPerChunk.remove(chunkCoord);
+        ArrayList<ScheduledSpawner> spawners = new ArrayList<ScheduledSpawner>();
+        if (oldSpawners != null)
+        {
+            for (ScheduledSpawner spawner : oldSpawners)
+            {
+                if (spawnersInChunk != null && spawnersInChunk.contains(spawner.spawner))
+                {
+                    spawners.add(spawner);
+                } else {
+                    spawner.removed = true;
+                }
+            }
+        }
+        if (spawnersInChunk != null)
+        {
+            for (SpawnerFunction spawnerData : spawnersInChunk)
+            {
+                if (!isScheduled(spawners, spawnerData))
+                {
+                    ScheduledSpawner spawner = new ScheduledSpawner(spawnerData, getNextSpawnTime(spawnerData, currentTimeInSeconds));
+                    spawners.add(spawner);
+                    this.queue.add(spawner);
+                }
+            }
+        }
+        if (!spawners.isEmpty())
+        {
+            this.spawnersPerChunk.put(chunkCoord, spawners);
+        }
+    }
+
+    private static boolean isScheduled(List<ScheduledSpawner> spawners, SpawnerFunction spawnerData)
+    {
+        for (ScheduledSpawner spawner : spawners)
+        {
+            if (spawner.spawner == spawnerData)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the first second from the given second on in which the spawner
+     * has to spawn. Spawners that haven't spawned yet spawn as soon as a
+     * player is in range, so they are checked every second.
+     */
+    private static int getNextSpawnTime(SpawnerFunction spawnerData, int fromTimeInSeconds)
+    {
+        if (spawnerData.firstSpawn)
+        {
+            return fromTimeInSeconds;
+        }
+        int interval = Math.max(1, spawnerData.interval);
+        int timeSinceDue = Math.floorMod(fromTimeInSeconds - spawnerData.intervalOffset, interval);
+        return timeSinceDue == 0 ? fromTimeInSeconds : fromTimeInSeconds + interval - timeSinceDue;
+    }
+
+    /**
+     * Despawns the OTG entities that have no player in range and whose
+     * despawn timer has run out, and counts down the timer of the others.
+     */
+    void despawnEntities()
+    {
+        int despawned = 0;
+        for (Entity entity : this.otgEntities)
+        {
+            // Don't de-spawn if there is a player near the entity
+            if (entity.isDead || getDistanceSqToClosestPlayer(entity.posX, entity.posY, entity.posZ) < MAX_PLAYER_DISTANCE_SQ)
+            {
+                continue;
+            }
+
+            NBTTagCompound entityData = entity.getEntityData();
+            int despawnTimer = entityData.getInteger("OTGDT"); // OTG Despawn Timer
+            if (despawnTimer <= 1)
+            {
+                // Time's up, despawn
+                entity.setDead();
+                despawned++;
+            } else {
+                entityData.setInteger("OTGDT", despawnTimer - 1); // OTG Despawn Timer
+            }
+        }
+        this.lastDespawned = despawned;
+    }
+
+    /**
+     * Gets the spawners that have to spawn now and have a player in range,
+     * closest to a player first, and schedules their next spawn.
+     * @param currentTimeInSeconds The current time.
+     * @return The spawners.
+     */
+    List<SpawnerFunction> getSpawnersToSpawn(int currentTimeInSeconds)
+    {
+        ArrayList<ScheduledSpawner> dueSpawners = new ArrayList<ScheduledSpawner>();
+        ArrayList<ScheduledSpawner> spawnersInRange = new ArrayList<ScheduledSpawner>();
+        while (!this.queue.isEmpty() && this.queue.peek().spawnTime <= currentTimeInSeconds)
+        {
+            ScheduledSpawner spawner = this.queue.poll();
+            if (spawner.removed)
+            {
+                continue;
+            }
+            dueSpawners.add(spawner);
+
+            // A spawn time may have been skipped while the server was lagging,
+            // only spawn if this is a spawn time
+            SpawnerFunction spawnerData = spawner.spawner;
+            if (getNextSpawnTime(spawnerData, currentTimeInSeconds) == currentTimeInSeconds)
+            {
+                double distance = getDistanceSqToClosestPlayer(spawnerData.x, spawnerData.y, spawnerData.z);
+                if (distance > 0 && distance < MAX_PLAYER_DISTANCE_SQ)
+                {
+                    spawner.distanceSq = distance;
+                    spawnersInRange.add(spawner);
+                }
+            }
+        }
+
+        // Stable, so spawners at the same distance keep the order they were polled in
+        Collections.sort(spawnersInRange, new Comparator<ScheduledSpawner>()
+        {
+            @Override
+            public int compare(ScheduledSpawner spawner1, ScheduledSpawner spawner2)
+            {
+                return Double.compare(spawner1.distanceSq, spawner2.distanceSq);
+            }
+        });
+
+        ArrayList<SpawnerFunction> spawnersToSpawn = new ArrayList<SpawnerFunction>(spawnersInRange.size());
+        for (ScheduledSpawner spawner : spawnersInRange)
+        {
+            if (spawner.spawner.firstSpawn)
+            {
+                spawner.spawner.intervalOffset = currentTimeInSeconds;
+            }
+            spawner.spawner.firstSpawn = false;
+            spawnersToSpawn.add(spawner.spawner);
+        }
+
+        for (ScheduledSpawner spawner : dueSpawners)
+        {
+            if (spawner.removed)
+            {
+                continue;
+            }
+            spawner.spawnTime = getNextSpawnTime(spawner.spawner, currentTimeInSeconds + 1);
+            this.queue.add(spawner);
+        }
+
+        this.lastDueSpawners = dueSpawners.size();
+        this.lastSpawnersInRange = spawnersInRange.size();
+        return spawnersToSpawn;
+    }
+
+    /**
+     * Counts the OTG entities of the given class in a cube around a block.
+     * @param entityClass The class of the entities.
+     * @param x           The block x.
+     * @param y           The block y.
+     * @param z           The block z.
+     * @param radius      Half the size of the cube.
+     * @return The amount of entities.
+     */
+    int countEntities(Class<?> entityClass, int x, int y, int z, int radius)
+    {
+        int count = 0;
+        for (int cellX = (x - radius) >> CELL_SHIFT; cellX <= (x + radius) >> CELL_SHIFT; cellX++)
+        {
+            for (int cellZ = (z - radius) >> CELL_SHIFT; cellZ <= (z + radius) >> CELL_SHIFT; cellZ++)
+            {
+                ArrayList<Entity> entities = this.entityGrid.get(ChunkCoordinate.toLong(cellX, cellZ));
+                if (entities == null)
+                {
+                    continue;
+                }
+                for (Entity entity : entities)
+                {
+                    if (
+                        entity.getClass() == entityClass && !entity.isDead &&
+                        entity.posX >= x - radius && entity.posX <= x + radius &&
+                        entity.posY >= y - radius && entity.posY <= y + radius &&
+                        entity.posZ >= z - radius && entity.posZ <= z + radius
+                    )
+                    {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the squared distance to the closest player, if it is closer than
+     * {@link #MAX_PLAYER_DISTANCE}.
+     * @return The squared distance, or the square of MAX_PLAYER_DISTANCE if
+     * no player is closer.
+     */
+    private double getDistanceSqToClosestPlayer(double x, double y, double z)
+    {
+        double closest = MAX_PLAYER_DISTANCE_SQ;
+        int minCellX = MathHelper.floor(x - MAX_PLAYER_DISTANCE) >> CELL_SHIFT;
+        int maxCellX = MathHelper.floor(x + MAX_PLAYER_DISTANCE) >> CELL_SHIFT;
+        int minCellZ = MathHelper.floor(z - MAX_PLAYER_DISTANCE) >> CELL_SHIFT;
+        int maxCellZ = MathHelper.floor(z + MAX_PLAYER_DISTANCE) >> CELL_SHIFT;
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+        {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+            {
+                ArrayList<EntityPlayer> players = this.playerGrid.get(ChunkCoordinate.toLong(cellX, cellZ));
+                if (players == null)
+                {
+                    continue;
+                }
+                for (EntityPlayer player : players)
+                {
+                    double dx = player.posX - x;
+                    double dy = player.posY - y;
+                    double dz = player.posZ - z;
+                    double distance = dx * dx + dy * dy + dz * dz;
+                    if (distance < closest)
+                    {
+                        closest = distance;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    private static <T extends Entity> void addToGrid(Map<Long, ArrayList<T>> grid, T entity)
+    {
+        long cell = ChunkCoordinate.toLong(MathHelper.floor(entity.posX) >> CELL_SHIFT, MathHelper.floor(entity.posZ) >> CELL_SHIFT);
+        ArrayList<T> entities = grid.get(cell);
+        if (entities == null)
+        {
+            entities = new ArrayList<T>();
+            grid.put(cell, entities);
+        }
+        entities.add(entity);
+    }
+
+    /**
+     * Ends an update, must be called after {@link #beginUpdate(ForgeWorld, int)}
+     * when all spawning is done.
+     */
+    void endUpdate()
+    {
+        this.lastUpdateNanos = System.nanoTime() - this.updateStartNanos;
+        this.maxUpdateNanos = Math.max(this.maxUpdateNanos, this.lastUpdateNanos);
+        this.totalUpdateNanos += this.lastUpdateNanos;
+        this.updates++;
+    }
+
+    /**
+     * Gets statistics of the spawners, entities and update times.
+     * @return The statistics.
+     */
+    String getStats()
+    {
+        return "SpawnerScheduler[spawnerChunks=" + this.spawnersPerChunk.size() + ", queuedSpawners=" + this.queue.size()
+                + ", otgEntities=" + this.otgEntities.size() + ", lastDueSpawners=" + this.lastDueSpawners
+                + ", lastSpawnersInRange=" + this.lastSpawnersInRange + ", lastDespawned=" + this.lastDespawned
+                + ", lastUpdateMicros=" + this.lastUpdateNanos / 1000 + ", avgUpdateMicros=" + (this.updates == 0 ? 0 : this.totalUpdateNanos / this.updates / 1000)
+                + ", maxUpdateMicros=" + this.maxUpdateNanos / 1000 + "]";
+    }
+
+    /**
+     * A spawner in a loaded chunk and the second in which it next has to spawn.
+     */
+    private static final class ScheduledSpawner implements Comparable<ScheduledSpawner>
+    {
+        final SpawnerFunction spawner;
+        int spawnTime;
+        // Set when the chunk is unloaded or the spawner is gone, removed from the queue when polled
+        boolean removed;
+        double distanceSq;
+
+        ScheduledSpawner(SpawnerFunction spawner, int spawnTime)
+        {
+            this.spawner = spawner;
+            this.spawnTime = spawnTime;
+        }
+
+        @Override
+        public int compareTo(ScheduledSpawner other)
+        {
+            return this.spawnTime < other.spawnTime ? -1 : (this.spawnTime == other.spawnTime ? 0 : 1);
+        }
+    }
+}
@@ -14,7 +14,7 @@ public class UnloadServerHandler
 	{
 		if(!event.getWorld().isRemote)
 		{
-			((ForgeEngine)OTG.getEngine()).onSave(event.getWorld());
+			((ForgeEngine)OTG.getEngine()).onUnload(event.getWorld());
 			if(OTG.getPluginConfig().DeveloperMode)
 			{
 	    		OTG.log(LogMarker.INFO, "Unloading BO2's/BO3's");
@@ -2,6 +2,7 @@ package com.pg85.otg.forge.events;
 
 import com.pg85.otg.LocalWorld;
 import com.pg85.otg.OTG;
+import com.pg85.otg.configuration.io.AsyncFileSettingsWriter;
 import com.pg85.otg.forge.ForgeEngine;
 import com.pg85.otg.forge.ForgeWorld;
 import com.pg85.otg.forge.ForgeWorldSession;
@@ -89,6 +90,8 @@ public class WorldListener
 		        		if(mcWorld.provider.getDimension() == 0)
 		        		{
 		        			((ForgeWorldSession)forgeWorld.GetWorldSession()).getPregenerator().shutDown();
+		        			// Configs are written in the background, make sure they are on disk before the server stops
+		        			AsyncFileSettingsWriter.awaitWrites();
 		        			
 		        			// Unregister any currently unloaded custom dimensions	        			
 		        			for(ForgeWorld unloadedWorld : ((ForgeEngine)OTG.getEngine()).getUnloadedWorlds())
@@ -46,6 +46,16 @@ class ForgeChunkBuffer implements ChunkBuffer
         return ForgeMaterialData.ofMinecraftBlockState(blockState);
     }
 
+    /**
+     * Gets the blocks of this chunk buffer.
+     *
+     * @return The blocks.
+     */
+    ChunkPrimer getChunkPrimer()
+    {
+        return this.chunkPrimer;
+    }
+
     /**
      * Creates a Minecraft chunk of the data of this chunk buffer.
      *
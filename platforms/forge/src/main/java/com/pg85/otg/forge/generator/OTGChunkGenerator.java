@@ -4,9 +4,12 @@ import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
 import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import com.pg85.otg.LocalBiome;
@@ -19,8 +22,11 @@ import com.pg85.otg.customobjects.bo3.ModDataFunction;
 import com.pg85.otg.forge.ForgeMaterialData;
 import com.pg85.otg.forge.ForgeWorld;
 import com.pg85.otg.forge.OTGPlugin;
+import com.pg85.otg.forge.generator.UnloadedChunkCache.CachedChunk;
 import com.pg85.otg.generator.ChunkProviderOTG;
+import com.pg85.otg.generator.NoiseColumnCache;
 import com.pg85.otg.generator.ObjectSpawner;
+import com.pg85.otg.generator.SurfaceHeightMap;
 import com.pg85.otg.generator.biome.OutputType;
 import com.pg85.otg.logging.LogMarker;
 import com.pg85.otg.util.ChunkCoordinate;
@@ -28,8 +34,8 @@ import com.pg85.otg.util.minecraftTypes.DefaultMaterial;
 
 import net.minecraft.block.BlockGravel;
 import net.minecraft.block.BlockSand;
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.EnumCreatureType;
+import net.minecraft.init.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
@@ -44,10 +50,36 @@ public class OTGChunkGenerator implements IChunkGenerator
 
 	public ArrayList<Object[]> PopulatedChunks;
 
-    int lastx2 = 0;
-    int lastz2 = 0;
-    int chunkCacheSize = 256;
-    LinkedHashMap<ChunkCoordinate, Object[]> chunkCache = new LinkedHashMap<ChunkCoordinate, Object[]>();
+    // Chunks generated to look up blocks before Minecraft asked for them,
+    // bounded to 256 chunks and 5% of the maximum heap size
+    private final UnloadedChunkCache chunkCache = new UnloadedChunkCache(256, Runtime.getRuntime().maxMemory() / 20);
+    // Columns returned by getBlockColumnInUnloadedChunk, which are usually
+    // requested several times in a row. A column is only used while the
+    // chunk it was read from is still in the cache of unloaded chunks.
+    private static final int BLOCK_COLUMN_CACHE_SIZE = 64;
+    private final LinkedHashMap<Long, CachedColumn> blockColumnCache = new LinkedHashMap<Long, CachedColumn>(BLOCK_COLUMN_CACHE_SIZE, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedColumn> eldest)
+        {
+            return size() > BLOCK_COLUMN_CACHE_SIZE;
+        }
+    };
+    // Heights of chunks that haven't been generated yet, only used if
+    // FastHeightQueries is enabled
+    private static final int HEIGHT_MAP_CACHE_SIZE = 1024;
+    private final LinkedHashMap<Long, SurfaceHeightMap> heightMapCache = new LinkedHashMap<Long, SurfaceHeightMap>(HEIGHT_MAP_CACHE_SIZE, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SurfaceHeightMap> eldest)
+        {
+            return size() > HEIGHT_MAP_CACHE_SIZE;
+        }
+    };
 
 	//
 
@@ -252,17 +284,6 @@ public class OTGChunkGenerator implements IChunkGenerator
         	}
         }
 
-        Runtime runtime = Runtime.getRuntime();
-		long maxMemory = runtime.maxMemory();
-		long allocatedMemory = runtime.totalMemory();
-		long freeMemory = runtime.freeMemory();
-
-        if((!world.GetWorldSession().getPreGeneratorIsRunning() && chunkCache.entrySet().size() > chunkCacheSize) || (freeMemory + (maxMemory - allocatedMemory) <= (maxMemory * 0.25)))
-        {
-	        	OTG.log(LogMarker.DEBUG, "Clearing ChunkProvider cache");
-	        	chunkCache.clear();
-        }
-
 		world.ClearChunkCache();
     }
 
@@ -412,86 +433,141 @@ public class OTGChunkGenerator implements IChunkGenerator
 
     // OTG+
 
-    public BlockFunction[] getBlockColumnInUnloadedChunk(int x, int z)
+    /**
+     * Gets the chunk at the given block coordinates from the cache of
+     * unloaded chunks, generating it if needed.
+     */
+    private CachedChunk getUnloadedChunk(int x, int z)
     {
-    	lastx2 = x;
-    	lastz2 = z;
-
     	ChunkCoordinate chunkCoord = ChunkCoordinate.fromBlockCoords(x, z);
     	int chunkX = chunkCoord.getChunkX();
     	int chunkZ = chunkCoord.getChunkZ();
 
-    	Object[] chunkCacheEntry = chunkCache.get(chunkCoord);
-
-    	Chunk chunk = null;
-    	LinkedHashMap<ChunkCoordinate, BlockFunction[]> blockColumnCache = null;
-    	BlockFunction[] cachedColumn = null;
-    	if(chunkCacheEntry != null)
-    	{
-    		chunk = (Chunk)chunkCacheEntry[0];
-    		blockColumnCache = (LinkedHashMap<ChunkCoordinate, BlockFunction[]>)chunkCacheEntry[1];
-    		cachedColumn = blockColumnCache.get(ChunkCoordinate.fromChunkCoords(x,z));
-    	}
-    	if(cachedColumn != null)
-    	{
-    		return cachedColumn;
-    	}
-
+    	CachedChunk chunk = this.chunkCache.get(chunkX, chunkZ);
     	if(chunk == null)
     	{
-        	chunk = new Chunk(this.worldHandle, chunkX, chunkZ);
-
         	if(world.IsInsideWorldBorder(chunkCoord, true))
             {
 	    		ForgeChunkBuffer chunkBuffer = new ForgeChunkBuffer(chunkCoord);
 	    		this.generator.generate(chunkBuffer);
 
-	    		chunk = chunkBuffer.toChunk(this.worldHandle);
+	    		chunk = CachedChunk.of(chunkBuffer.getChunkPrimer());
+            } else {
+            	chunk = CachedChunk.empty();
             }
-        	blockColumnCache = new LinkedHashMap<ChunkCoordinate, BlockFunction[]>();
-        	chunkCache.put(ChunkCoordinate.fromChunkCoords(chunkX,chunkZ), new Object[] { chunk, blockColumnCache });
+        	this.chunkCache.put(chunkX, chunkZ, chunk);
+    	}
+    	return chunk;
+    }
+
+    /**
+     * Gets the heights of the chunk at the given block coordinates, without
+     * generating the whole chunk.
+     */
+    private SurfaceHeightMap getUnloadedHeightMap(int x, int z)
+    {
+    	ChunkCoordinate chunkCoord = ChunkCoordinate.fromBlockCoords(x, z);
+    	Long chunkKey = ChunkCoordinate.toLong(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
+
+    	SurfaceHeightMap heightMap = this.heightMapCache.get(chunkKey);
+    	if(heightMap == null)
+    	{
+    		if(world.IsInsideWorldBorder(chunkCoord, true))
+    		{
+    			heightMap = this.generator.generateHeightMap(chunkCoord);
+    		} else {
+    			heightMap = SurfaceHeightMap.EMPTY;
+    		}
+    		this.heightMapCache.put(chunkKey, heightMap);
+    	}
+    	return heightMap;
+    }
+
+    /**
+     * A column returned by {@link OTGChunkGenerator#getBlockColumnInUnloadedChunk(int, int)},
+     * with the chunk it was read from.
+     */
+    private static final class CachedColumn
+    {
+    	private final CachedChunk chunk;
+    	private final BlockFunction[] blocks;
+
+    	private CachedColumn(CachedChunk chunk, BlockFunction[] blocks)
+    	{
+    		this.chunk = chunk;
+    		this.blocks = blocks;
+    	}
+    }
+
+    public BlockFunction[] getBlockColumnInUnloadedChunk(int x, int z)
+    {
+    	CachedChunk chunk = getUnloadedChunk(x, z);
+
+    	Long columnKey = ChunkCoordinate.toLong(x, z);
+    	CachedColumn cachedColumn = this.blockColumnCache.get(columnKey);
+    	if(cachedColumn != null && cachedColumn.chunk == chunk)
+    	{
+    		return cachedColumn.blocks;
     	}
 
 		// Get internal coordinates for block in chunk
-    	int blockX = x &= 0xF;
-    	int blockZ = z &= 0xF;
+    	int blockX = x & 0xF;
+    	int blockZ = z & 0xF;
 
         BlockFunction[] blocksInColumn = new BlockFunction[256];
         for(int y = 0; y < 256; y++)
         {
         	BlockFunction block = new BlockFunction();
-        	block.x = x;
+        	block.x = blockX;
         	block.y = y;
-        	block.z = z;
-        	IBlockState blockInChunk = chunk.getBlockState(new BlockPos(blockX, y, blockZ));
-        	if(blockInChunk != null)
-        	{
-        		block.material = ForgeMaterialData.ofMinecraftBlockState(blockInChunk);
-	        	blocksInColumn[y] = block;
-        	} else {
-        		break;
-        	}
+        	block.z = blockZ;
+        	block.material = ForgeMaterialData.ofMinecraftBlockState(chunk.getBlockState(blockX, y, blockZ));
+        	blocksInColumn[y] = block;
         }
-        blockColumnCache.put(ChunkCoordinate.fromChunkCoords(lastx2,lastz2), blocksInColumn);
+        this.blockColumnCache.put(columnKey, new CachedColumn(chunk, blocksInColumn));
 
         return blocksInColumn;
     }
 
     public LocalMaterialData getMaterialInUnloadedChunk(int x, int y, int z)
     {
-    	BlockFunction[] blockColumn = getBlockColumnInUnloadedChunk(x,z);
-        return blockColumn[y].material;
+    	// Blocks at or above the surface are known from the heights, the
+    	// whole chunk is only generated for blocks below the surface
+    	if(this.world.getConfigs().getWorldConfig().fastHeightQueries && !this.chunkCache.contains(x >> 4, z >> 4))
+    	{
+    		SurfaceHeightMap heightMap = getUnloadedHeightMap(x, z);
+    		int surfaceY = heightMap.getSurfaceY(x & 0xF, z & 0xF);
+    		if(y > surfaceY)
+    		{
+    			return ForgeMaterialData.ofMinecraftBlock(Blocks.AIR);
+    		}
+    		if(y == surfaceY)
+    		{
+    			return heightMap.getSurfaceBlock(x & 0xF, z & 0xF);
+    		}
+    	}
+
+    	CachedChunk chunk = getUnloadedChunk(x, z);
+        return ForgeMaterialData.ofMinecraftBlockState(chunk.getBlockState(x & 0xF, y, z & 0xF));
     }
 
     public int getHighestBlockYInUnloadedChunk(int x, int z, boolean findSolid, boolean findLiquid, boolean ignoreLiquid, boolean ignoreSnow)
     {
+    	if(this.world.getConfigs().getWorldConfig().fastHeightQueries)
+    	{
+    		return getUnloadedHeightMap(x, z).getHighestBlockY(x & 0xF, z & 0xF, findSolid, findLiquid, ignoreLiquid, ignoreSnow);
+    	}
+
     	int height = -1;
 
-    	BlockFunction[] blockColumn = getBlockColumnInUnloadedChunk(x,z);
+    	CachedChunk chunk = getUnloadedChunk(x, z);
+    	int blockX = x & 0xF;
+    	int blockZ = z & 0xF;
 
-        for(int y = 255; y > -1; y--)
+    	// Everything above the height of the column is air
+        for(int y = chunk.getHeight(blockX, blockZ) - 1; y > -1; y--)
         {
-        	ForgeMaterialData material = (ForgeMaterialData) blockColumn[y].material;
+        	ForgeMaterialData material = ForgeMaterialData.ofMinecraftBlockState(chunk.getBlockState(blockX, y, blockZ));
         	boolean isLiquid = material.isLiquid();
         	boolean isSolid = material.isSolid() || (!ignoreSnow && material.toDefaultMaterial().equals(DefaultMaterial.SNOW));
         	if(!(isLiquid && ignoreLiquid))
@@ -509,6 +585,74 @@ public class OTGChunkGenerator implements IChunkGenerator
     	return height;
     }
 
+    /**
+     * Generates the base terrain of the given chunks on several threads and
+     * adds them to the cache of unloaded chunks, so that they are taken from
+     * the cache when Minecraft asks for them. Used by the pre-generator.
+     * Chunks that are already cached or outside the world border are skipped.
+     * @param chunkCoords The chunks.
+     */
+    public void prefetchChunks(Collection<ChunkCoordinate> chunkCoords)
+    {
+    	List<ForgeChunkBuffer> chunkBuffers = new ArrayList<ForgeChunkBuffer>(chunkCoords.size());
+    	for(ChunkCoordinate chunkCoord : chunkCoords)
+    	{
+    		if(!this.chunkCache.contains(chunkCoord.getChunkX(), chunkCoord.getChunkZ()) && world.IsInsideWorldBorder(chunkCoord, false))
+    		{
+    			chunkBuffers.add(new ForgeChunkBuffer(chunkCoord));
+    		}
+    	}
+
+    	this.generator.generateParallel(chunkBuffers);
+
+    	for(ForgeChunkBuffer chunkBuffer : chunkBuffers)
+    	{
+    		ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
+    		this.chunkCache.put(chunkCoord.getChunkX(), chunkCoord.getChunkZ(), CachedChunk.of(chunkBuffer.getChunkPrimer()));
+    	}
+    }
+
+    /**
+     * Gets whether the given chunk has been generated and is waiting in the
+     * cache of unloaded chunks, see {@link #prefetchChunks(Collection)}.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @return True if the chunk is cached.
+     */
+    public boolean isPrefetched(int chunkX, int chunkZ)
+    {
+    	return this.chunkCache.contains(chunkX, chunkZ);
+    }
+
+    /**
+     * Stops the worker threads used by {@link #prefetchChunks(Collection)}.
+     * Called when the world is unloaded.
+     */
+    public void shutdown()
+    {
+    	this.generator.shutdown();
+    }
+
+    /**
+     * Gets the cache used to share terrain noise between neighbouring
+     * chunks, for statistics.
+     * @return The cache, or null if CacheTerrainNoise is disabled.
+     */
+    public NoiseColumnCache getNoiseColumnCache()
+    {
+    	return this.generator.getNoiseColumnCache();
+    }
+
+    /**
+     * Gets statistics of the cache of chunks generated before Minecraft asked
+     * for them.
+     * @return The statistics, including the hit rate.
+     */
+    public String getUnloadedChunkCacheStats()
+    {
+    	return this.chunkCache.toString();
+    }
+
     boolean firstRun = true; // The first run is used by MC to check for suitable locations for the spawn location. For some reason the spawn location must be on grass.
     ArrayList<LocalMaterialData> originalBlocks = new ArrayList<LocalMaterialData>(); // Don't need to store coords, will place the blocks back in the same order we got them so coords can be inferred
     ChunkCoordinate spawnChunk;
@@ -553,14 +697,23 @@ public class OTGChunkGenerator implements IChunkGenerator
     ForgeChunkBuffer chunkBuffer;
     public Chunk getBlocks(int chunkX, int chunkZ, boolean provideChunk)
     {
-    	Object[] chunkCacheEntry = chunkCache.get(ChunkCoordinate.fromChunkCoords(chunkX,chunkZ));
+    	CachedChunk cachedChunk = this.chunkCache.remove(chunkX, chunkZ);
     	Chunk chunk = null;
-    	if(chunkCacheEntry != null)
+
+    	if(cachedChunk != null)
     	{
-    		chunk = (Chunk)chunkCacheEntry[0];
+    		// The columns of this chunk are never used again, don't keep
+    		// the chunk in memory for them
+    		for(Iterator<CachedColumn> it = this.blockColumnCache.values().iterator(); it.hasNext();)
+    		{
+    			if(it.next().chunk == cachedChunk)
+    			{
+    				it.remove();
+    			}
+    		}
     	}
 
-    	if(chunk == null)
+    	if(cachedChunk == null)
     	{
     		chunk = new Chunk(this.worldHandle, chunkX, chunkZ);
 
@@ -599,6 +752,7 @@ public class OTGChunkGenerator implements IChunkGenerator
 		        chunkBuffer = null;
 	        }
     	} else {
+    		chunk = new Chunk(this.worldHandle, cachedChunk.toChunkPrimer(), chunkX, chunkZ);
         	if(world.IsInsideWorldBorder(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ), false))
 	        {
 		        fillBiomeArray(chunk);
@@ -607,7 +761,6 @@ public class OTGChunkGenerator implements IChunkGenerator
 		        	chunk.generateSkylightMap(); // Normally chunks lit in the ObjectSpawner after finishing their population step, TerrainTest skips the population step though so light blocks here.
 		        }
 	        }
-        	chunkCache.remove(ChunkCoordinate.fromChunkCoords(chunkX,chunkZ));
     	}
 
     	return chunk;
@@ -7,6 +7,8 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.storage.RegionFileCache;
@@ -55,6 +57,9 @@ public class Pregenerator
 
 	int maxSpawnPerTick;
 
+	// Amount of chunks of a row whose base terrain is generated at once, see PrefetchChunks
+	private static final int PREFETCH_CHUNKS = 32;
+
 	// In-game UI
 	public String pregenerationWorld = "";
 	public String preGeneratorProgressStatus = "";
@@ -197,6 +202,7 @@ public class Pregenerator
 							iRight = i;
 		    				spawned++;
 
+							PrefetchChunks(currentX, currentZ, 0, 1, bottom - i + 1);
 							PreGenerateChunk(currentX, currentZ);
 
 			    			if(spawnedThisTick >= maxSpawnPerTick)
@@ -235,6 +241,7 @@ public class Pregenerator
 							iLeft = i;
 							spawned++;
 
+							PrefetchChunks(currentX, currentZ, 0, 1, bottom - i + 1);
 							PreGenerateChunk(currentX, currentZ);
 
 			    			if(spawnedThisTick >= maxSpawnPerTick)
@@ -273,6 +280,7 @@ public class Pregenerator
 							iBottom = i;
 							spawned++;
 
+							PrefetchChunks(currentX, currentZ, 1, 0, right - i + 1);
 							PreGenerateChunk(currentX, currentZ);
 
 			    			if(spawnedThisTick >= maxSpawnPerTick)
@@ -311,6 +319,7 @@ public class Pregenerator
 							iTop = i;
 							spawned++;
 
+							PrefetchChunks(currentX, currentZ, 1, 0, right - i + 1);
 							PreGenerateChunk(currentX, currentZ);
 
 			    			if(spawnedThisTick >= maxSpawnPerTick)
@@ -361,6 +370,48 @@ public class Pregenerator
 		}
 	}
 
+	/**
+	 * Generates the base terrain of the next chunks of a row on several threads
+	 * if the chunk at the given position still needs to be generated, so
+	 * that Minecraft finds them in the cache of the chunk generator.
+	 */
+	void PrefetchChunks(int chunkX, int chunkZ, int stepX, int stepZ, int remainingInRow)
+	{
+		OTGChunkGenerator generator = world.getChunkGenerator();
+		if(!NeedsGenerating(generator, chunkX, chunkZ))
+		{
+			return;
+		}
+
+		Set<ChunkCoordinate> chunks = new LinkedHashSet<ChunkCoordinate>();
+		for(int i = 0; i < Math.min(remainingInRow, PREFETCH_CHUNKS); i++)
+		{
+			int x = chunkX + stepX * i;
+			int z = chunkZ + stepZ * i;
+			// PreGenerateChunk also provides the chunks at x + 1 and z + 1
+			for(int offsetX = 0; offsetX <= 1; offsetX++)
+			{
+				for(int offsetZ = 0; offsetZ <= 1; offsetZ++)
+				{
+					if(NeedsGenerating(generator, x + offsetX, z + offsetZ))
+					{
+						chunks.add(ChunkCoordinate.fromChunkCoords(x + offsetX, z + offsetZ));
+					}
+				}
+			}
+		}
+		generator.prefetchChunks(chunks);
+	}
+
+	private boolean NeedsGenerating(OTGChunkGenerator generator, int chunkX, int chunkZ)
+	{
+		ChunkProviderServer chunkProvider = (ChunkProviderServer) world.getWorld().getChunkProvider();
+		return
+			!generator.isPrefetched(chunkX, chunkZ) &&
+			!chunkProvider.chunkExists(chunkX, chunkZ) &&
+			!RegionFileCache.createOrLoadRegionFile(((WorldServer)world.getWorld()).getChunkSaveLocation(), chunkX, chunkZ).chunkExists(chunkX & 0x1F, chunkZ & 0x1F);
+	}
+
 	void PreGenerateChunk(int currentX, int currentZ)
 	{
 		UpdateProgressMessage(true);
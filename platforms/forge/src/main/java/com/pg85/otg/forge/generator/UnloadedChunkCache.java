@@ -0,0 +1,274 @@
+package com.pg85.otg.forge.generator;
+
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.pg85.otg.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.pg85.otg.util.ChunkCoordinate;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * Cache of chunks that were generated before Minecraft asked for them, so
+ * that blocks could be looked up in them (used by BO3 smoothing areas). When
+ * Minecraft later asks for the chunk, it is taken from this cache instead of
+ * being generated again.
+ *
+ * <p>Chunks are stored as the block state ids of every column, up to the
+ * highest non-air block in the chunk, which is a lot smaller than a
+ * {@code Chunk}. The cache is bounded by both an amount of chunks and an
+ * amount of memory, the least recently used chunks are evicted first.
+ */
+final class UnloadedChunkCache
+{
+    private static final int COLUMNS = CHUNK_X_SIZE * CHUNK_Z_SIZE;
+    // Rough size of a cached chunk without its block array
+    private static final int CHUNK_OVERHEAD_BYTES = 128 + COLUMNS * 2;
+
+    /**
+     * The blocks of a single chunk.
+     */
+    static final class CachedChunk
+    {
+        // Height of the columns, all blocks at or above this height are air
+        private final int height;
+        // Block state ids of all columns, index (x * 16 + z) * height + y
+        private final char[] blockStates;
+        // Height of the highest non-air block + 1 of every column
+        private final short[] heightMap;
+
+        private CachedChunk(int height, char[] blockStates, short[] heightMap)
+        {
+            this.height = height;
+            this.blockStates = blockStates;
+            this.heightMap = heightMap;
+        }
+
+        /**
+         * Copies the blocks of the given chunk.
+         * @param chunkPrimer The blocks of the chunk.
+         * @return The cached chunk.
+         */
+        static CachedChunk of(ChunkPrimer chunkPrimer)
+        {
+            short[] heightMap = new short[COLUMNS];
+            int height = 0;
+            for (int x = 0; x < CHUNK_X_SIZE; x++)
+            {
+                for (int z = 0; z < CHUNK_Z_SIZE; z++)
+                {
+                    int columnHeight = 256;
+                    while (columnHeight > 0 && chunkPrimer.getBlockState(x, columnHeight - 1, z).getMaterial() == Material.AIR)
+                    {
+                        columnHeight--;
+                    }
+                    heightMap[x * CHUNK_Z_SIZE + z] = (short) columnHeight;
+                    height = Math.max(height, columnHeight);
+                }
+            }
+
+            char[] blockStates = new char[COLUMNS * height];
+            for (int x = 0; x < CHUNK_X_SIZE; x++)
+            {
+                for (int z = 0; z < CHUNK_Z_SIZE; z++)
+                {
+                    int start = (x * CHUNK_Z_SIZE + z) * height;
+                    for (int y = 0; y < height; y++)
+                    {
+                        blockStates[start + y] = (char) Block.BLOCK_STATE_IDS.get(chunkPrimer.getBlockState(x, y, z));
+                    }
+                }
+            }
+            return new CachedChunk(height, blockStates, heightMap);
+        }
+
+        /**
+         * Creates an empty chunk, used for chunks outside the world border.
+         * @return The cached chunk.
+         */
+        static CachedChunk empty()
+        {
+            return new CachedChunk(0, new char[0], new short[COLUMNS]);
+        }
+
+        /**
+         * Gets a block in this chunk.
+         * @param x Block x in the chunk, from 0 to 15.
+         * @param y Block y, from 0 to 255.
+         * @param z Block z in the chunk, from 0 to 15.
+         * @return The block.
+         */
+        IBlockState getBlockState(int x, int y, int z)
+        {
+            if (y < 0 || y >= this.height)
+            {
+                return Blocks.AIR.getDefaultState();
+            }
+            IBlockState blockState = Block.BLOCK_STATE_IDS.getByValue(this.blockStates[(x * CHUNK_Z_SIZE + z) * this.height + y]);
+            return blockState == null ? Blocks.AIR.getDefaultState() : blockState;
+        }
+
+        /**
+         * Gets the height of the highest non-air block + 1 in a column.
+         * @param x Block x in the chunk, from 0 to 15.
+         * @param z Block z in the chunk, from 0 to 15.
+         * @return The height, 0 if the column only contains air.
+         */
+        int getHeight(int x, int z)
+        {
+            return this.heightMap[x * CHUNK_Z_SIZE + z];
+        }
+
+        /**
+         * Copies the blocks of this chunk into a new chunk primer.
+         * @return The chunk primer.
+         */
+        ChunkPrimer toChunkPrimer()
+        {
+            ChunkPrimer chunkPrimer = new ChunkPrimer();
+            for (int x = 0; x < CHUNK_X_SIZE; x++)
+            {
+                for (int z = 0; z < CHUNK_Z_SIZE; z++)
+                {
+                    for (int y = 0; y < this.heightMap[x * CHUNK_Z_SIZE + z]; y++)
+                    {
+                        chunkPrimer.setBlockState(x, y, z, getBlockState(x, y, z));
+                    }
+                }
+            }
+            return chunkPrimer;
+        }
+
+        long getSizeInBytes()
+        {
+            return CHUNK_OVERHEAD_BYTES + this.blockStates.length * 2L;
+        }
+    }
+
+    private final int maxChunks;
+    private final long maxBytes;
+    private long bytes = 0;
+
+    private final LinkedHashMap<Long, CachedChunk> chunks = new LinkedHashMap<Long, CachedChunk>(16, 0.75f, true);
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a new cache.
+     * @param maxChunks Maximum amount of chunks in the cache.
+     * @param maxBytes  Maximum amount of memory used by the cached chunks.
+     */
+    UnloadedChunkCache(int maxChunks, long maxBytes)
+    {
+        this.maxChunks = maxChunks;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets a chunk from the cache.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @return The chunk, or null if not cached.
+     */
+    CachedChunk get(int chunkX, int chunkZ)
+    {
+        CachedChunk chunk = this.chunks.get(ChunkCoordinate.toLong(chunkX, chunkZ));
+        if (chunk == null)
+        {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return chunk;
+    }
+
+    /**
+     * Gets whether a chunk is in the cache. Doesn't count as a lookup for
+     * the hit rate.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @return True if the chunk is cached.
+     */
+    boolean contains(int chunkX, int chunkZ)
+    {
+        return this.chunks.containsKey(ChunkCoordinate.toLong(chunkX, chunkZ));
+    }
+
+    /**
+     * Adds a chunk to the cache, evicting the least recently used chunks if
+     * the cache is full.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @param chunk  The chunk.
+     */
+    void put(int chunkX, int chunkZ, CachedChunk chunk)
+    {
+        CachedChunk previous = this.chunks.put(ChunkCoordinate.toLong(chunkX, chunkZ), chunk);
+        if (previous != null)
+        {
+            this.bytes -= previous.getSizeInBytes();
+        }
+        this.bytes += chunk.getSizeInBytes();
+
+        // Evict until within budget, but always keep the chunk just added
+        Iterator<CachedChunk> iterator = this.chunks.values().iterator();
+        while ((this.chunks.size() > this.maxChunks || this.bytes > this.maxBytes) && this.chunks.size() > 1)
+        {
+            CachedChunk eldest = iterator.next();
+            iterator.remove();
+            this.bytes -= eldest.getSizeInBytes();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Removes a chunk from the cache. Counts as a lookup for the hit rate.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @return The chunk, or null if it wasn't cached.
+     */
+    CachedChunk remove(int chunkX, int chunkZ)
+    {
+        CachedChunk chunk = this.chunks.remove(ChunkCoordinate.toLong(chunkX, chunkZ));
+        if (chunk != null)
+        {
+            this.bytes -= chunk.getSizeInBytes();
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return chunk;
+    }
+
+    long getHits()
+    {
+        return this.hits;
+    }
+
+    long getMisses()
+    {
+        return this.misses;
+    }
+
+    long getEvictions()
+    {
+        return this.evictions;
+    }
+
+    @Override
+    public String toString()
+    {
+        long requests = this.hits + this.misses;
+        return "UnloadedChunkCache[chunks=" + this.chunks.size() + "/" + this.maxChunks + ", bytes=" + this.bytes + "/" + this.maxBytes
+                + ", hits=" + this.hits + ", misses=" + this.misses + ", hitRate=" + (requests == 0 ? 0 : this.hits * 100 / requests) + "%"
+                + ", evictions=" + this.evictions + "]";
+    }
+}
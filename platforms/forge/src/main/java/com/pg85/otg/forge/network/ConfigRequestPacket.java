@@ -0,0 +1,100 @@
+package com.pg85.otg.forge.network;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.configuration.standard.PluginStandardValues;
+import com.pg85.otg.logging.LogMarker;
+
+/**
+ * Sent by the client to ask for the biome configs of a config manifest that
+ * it doesn't have cached, see {@link ConfigSyncServer}.
+ */
+public class ConfigRequestPacket implements IMessage
+{
+	// Size of a hash written by writeUTF, 40 hexadecimal digits and the length
+	private static final int HASH_SIZE = 42;
+
+	int syncId;
+	List<String> hashes = new ArrayList<String>();
+
+	public ConfigRequestPacket() { }
+
+	public ConfigRequestPacket(int syncId, List<String> hashes)
+	{
+		this.syncId = syncId;
+		this.hashes = hashes;
+	}
+
+	@Override
+	public void fromBytes(ByteBuf data)
+	{
+		DataInputStream stream = new DataInputStream(new ByteBufInputStream(data));
+		try
+		{
+			int clientProtocolVersion = stream.readInt();
+			if (clientProtocolVersion != PluginStandardValues.ProtocolVersion)
+			{
+				// Wrong version!
+				throw new RuntimeException("Client is using a different version of OTG than server!");
+			}
+			this.syncId = stream.readInt();
+			int count = stream.readInt();
+			if (count < 0 || count > data.readableBytes() / HASH_SIZE)
+			{
+				throw new IOException("Invalid number of biome configs requested: " + count);
+			}
+			while (count-- > 0)
+			{
+				this.hashes.add(stream.readUTF());
+			}
+		}
+		catch (IOException e)
+		{
+			this.hashes.clear();
+			OTG.printStackTrace(LogMarker.FATAL, e);
+		}
+	}
+
+	@Override
+	public void toBytes(ByteBuf data)
+	{
+		ByteBufOutputStream stream = new ByteBufOutputStream(data);
+		try
+		{
+			stream.writeInt(PluginStandardValues.ProtocolVersion);
+			stream.writeInt(this.syncId);
+			stream.writeInt(this.hashes.size());
+			for (String hash : this.hashes)
+			{
+				stream.writeUTF(hash);
+			}
+		}
+		catch (IOException e)
+		{
+			OTG.printStackTrace(LogMarker.FATAL, e);
+		}
+	}
+
+	public static class Handler extends AbstractServerMessageHandler<ConfigRequestPacket>
+	{
+		@Override
+		public IMessage handleServerMessage(EntityPlayer player, ConfigRequestPacket message, MessageContext ctx)
+		{
+			// The player hasn't logged in yet, so reply on the connection.
+			// The number of hashes is checked against the manifest sent over this connection.
+			ConfigSyncServer.sendContents(message.syncId, message.hashes, ctx.getServerHandler().netManager);
+			return null;
+		}
+	}
+}
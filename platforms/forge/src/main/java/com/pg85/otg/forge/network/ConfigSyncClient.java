@@ -0,0 +1,154 @@
+package com.pg85.otg.forge.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.configuration.ConfigSyncCache;
+import com.pg85.otg.configuration.ConfigSyncPayload;
+import com.pg85.otg.forge.ForgeEngine;
+import com.pg85.otg.logging.LogMarker;
+
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Receives the configs sent by {@link ConfigSyncServer}. Biome configs are
+ * looked up in a {@link ConfigSyncCache} on disk, only the missing ones are
+ * requested from the server. Once all biome configs are known the worlds are
+ * registered like before.
+ */
+@SideOnly(Side.CLIENT)
+final class ConfigSyncClient
+{
+	private static ConfigSyncCache cache;
+
+	// Parts of the manifest or contents being received
+	private static int partsSyncId;
+	private static byte partsKind;
+	private static byte[][] parts;
+	private static int partsReceived;
+
+	// Manifest waiting for biome configs from the server
+	private static int manifestSyncId;
+	private static byte[] manifest;
+	private static long manifestStartTime;
+	private static long manifestBytes;
+
+	/**
+	 * Handles a part of a manifest or contents.
+	 * @param stream The packet, after the packet type.
+	 * @throws IOException If the packet is invalid.
+	 */
+	static synchronized void receivePart(DataInputStream stream) throws IOException
+	{
+		int syncId = stream.readInt();
+		byte kind = stream.readByte();
+		int part = stream.readInt();
+		int partCount = stream.readInt();
+		byte[] bytes = new byte[stream.readInt()];
+		stream.readFully(bytes);
+
+		if(part == 0)
+		{
+			partsSyncId = syncId;
+			partsKind = kind;
+			parts = new byte[partCount][];
+			partsReceived = 0;
+			if(kind == ConfigSyncServer.KIND_MANIFEST)
+			{
+				manifestStartTime = System.nanoTime();
+				manifestBytes = 0;
+			}
+		}
+		else if(parts == null || syncId != partsSyncId || kind != partsKind || partCount != parts.length)
+		{
+			OTG.log(LogMarker.ERROR, "Received config part " + part + " of " + syncId + " out of order, ignoring it.");
+			return;
+		}
+		parts[part] = bytes;
+		partsReceived++;
+		manifestBytes += bytes.length;
+		if(partsReceived < parts.length)
+		{
+			return;
+		}
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		for(byte[] received : parts)
+		{
+			compressed.write(received);
+		}
+		parts = null;
+		byte[] data = ConfigSyncPayload.decompress(compressed.toByteArray());
+
+		if(kind == ConfigSyncServer.KIND_MANIFEST)
+		{
+			manifestSyncId = syncId;
+			manifest = data;
+			registerWorlds(true);
+		}
+		else if(manifest != null && syncId == manifestSyncId)
+		{
+			for(Map.Entry<String, byte[]> content : ConfigSyncPayload.readContents(data).entrySet())
+			{
+				getCache().put(content.getKey(), content.getValue());
+			}
+			registerWorlds(false);
+		}
+	}
+
+	private static void registerWorlds(boolean canRequest) throws IOException
+	{
+		ConfigSyncCache cache = getCache();
+		Map<String, byte[]> contents = new HashMap<String, byte[]>();
+		List<String> missing = new ArrayList<String>();
+		for(String hash : ConfigSyncPayload.getReferences(manifest))
+		{
+			byte[] content = cache.get(hash);
+			if(content != null)
+			{
+				contents.put(hash, content);
+			} else {
+				missing.add(hash);
+			}
+		}
+
+		if(!missing.isEmpty())
+		{
+			if(canRequest)
+			{
+				// Usually answered before the login handshake has finished
+				OTG.log(LogMarker.DEBUG, "Requesting " + missing.size() + " biome config(s) that aren't cached.");
+				PacketDispatcher.sendToServer(new ConfigRequestPacket(manifestSyncId, missing));
+			} else {
+				// Configs were changed on the server, wait for the new manifest
+				OTG.log(LogMarker.WARN, "Server did not send " + missing.size() + " biome config(s), waiting for new configs.");
+			}
+			return;
+		}
+
+		byte[] resolved = ConfigSyncPayload.resolve(manifest, contents);
+		manifest = null;
+		((ForgeEngine)OTG.getEngine()).getWorldLoader().registerClientWorld(new DataInputStream(new ByteArrayInputStream(resolved)));
+
+		OTG.log(LogMarker.DEBUG, "Received configs in " + ((System.nanoTime() - manifestStartTime) / 1000000) + " ms, "
+				+ manifestBytes + " bytes received for " + resolved.length + " bytes of configs.");
+	}
+
+	private static ConfigSyncCache getCache()
+	{
+		if(cache == null)
+		{
+			cache = new ConfigSyncCache(new File(OTG.getEngine().getTCDataFolder(), "ConfigCache"));
+		}
+		return cache;
+	}
+}
@@ -0,0 +1,351 @@
+package com.pg85.otg.forge.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.pg85.otg.OTG;
+import com.pg85.otg.configuration.ConfigSyncPayload;
+import com.pg85.otg.configuration.standard.PluginStandardValues;
+import com.pg85.otg.logging.LogMarker;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.NetworkManager;
+
+/**
+ * Sends world and biome configs to clients as a {@link ConfigSyncPayload}.
+ * The manifest is deflate compressed and sent in parts of at most
+ * {@link #PART_SIZE} bytes.
+ *
+ * <p>The manifest only contains the hashes of the biome configs. The client
+ * looks them up in its cache and asks for the missing ones with a
+ * {@link ConfigRequestPacket}, those are sent on a background thread. The
+ * manifest is sent as soon as a client connects, so that the request is
+ * usually answered before the login has finished.
+ */
+public final class ConfigSyncServer
+{
+	static final int PACKET_TYPE = 2; // 0 == Normal packet, 1 == Particles packet, 2 == Config sync part
+	static final byte KIND_MANIFEST = 0;
+	static final byte KIND_CONTENTS = 1;
+
+	private static final int PART_SIZE = 32 * 1024;
+	private static final int MAX_COMPRESSED_MANIFESTS = 8;
+
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "OTG config sync");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static int syncId;
+	// Manifest hash => compressed manifest, so that manifests are only compressed again when the configs changed
+	private static final Map<String, byte[]> compressedManifests = new LinkedHashMap<String, byte[]>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest)
+		{
+			return size() > MAX_COMPRESSED_MANIFESTS;
+		}
+	};
+	// Last manifest sent over each connection
+	private static final Map<NetworkManager, SentManifest> sentManifests = new WeakHashMap<NetworkManager, SentManifest>();
+
+	// Connections that haven't logged in yet
+	private static final Map<NetworkManager, LoginStats> logins = new WeakHashMap<NetworkManager, LoginStats>();
+	private static int totalLogins;
+	private static long totalLoginBytes;
+
+	/**
+	 * Sends configs to a client that just connected. Called on the network
+	 * thread, the manifest is sent right away. The time until the player has
+	 * logged in and the number of bytes sent are logged by
+	 * {@link #onPlayerLoggedIn(EntityPlayerMP)}.
+	 * @param payload The configs, the manifest must not have been finished.
+	 * @param manager The connection.
+	 */
+	public static void sendToConnection(ConfigSyncPayload payload, NetworkManager manager)
+	{
+		synchronized(logins)
+		{
+			logins.put(manager, new LoginStats(payload.getUncompressedSize()));
+		}
+		byte[] manifest = getManifest(payload);
+		if(manifest != null)
+		{
+			sendManifest(manifest, compressManifest(manifest), payload.getContents(), manager);
+		}
+	}
+
+	/**
+	 * Sends configs to the given players on a background thread, so that the
+	 * manifest isn't compressed on the server thread.
+	 * @param payload The configs, the manifest must not have been finished.
+	 * @param players The players.
+	 */
+	public static void send(ConfigSyncPayload payload, Collection<EntityPlayerMP> players)
+	{
+		final byte[] manifest = getManifest(payload);
+		if(manifest == null)
+		{
+			return;
+		}
+		final Map<String, byte[]> contents = payload.getContents();
+		final List<NetworkManager> managers = new ArrayList<NetworkManager>(players.size());
+		for(EntityPlayerMP player : players)
+		{
+			managers.add(player.connection.netManager);
+		}
+		executor.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				byte[] compressed = compressManifest(manifest);
+				for(NetworkManager manager : managers)
+				{
+					sendManifest(manifest, compressed, contents, manager);
+				}
+			}
+		});
+	}
+
+	private static byte[] getManifest(ConfigSyncPayload payload)
+	{
+		try
+		{
+			return payload.getManifest();
+		}
+		catch (IOException e)
+		{
+			OTG.printStackTrace(LogMarker.FATAL, e);
+			return null;
+		}
+	}
+
+	private static byte[] compressManifest(byte[] manifest)
+	{
+		String hash = ConfigSyncPayload.getHash(manifest);
+		synchronized(compressedManifests)
+		{
+			byte[] compressed = compressedManifests.get(hash);
+			if(compressed != null)
+			{
+				return compressed;
+			}
+		}
+		byte[] compressed = ConfigSyncPayload.compress(manifest);
+		synchronized(compressedManifests)
+		{
+			compressedManifests.put(hash, compressed);
+		}
+		return compressed;
+	}
+
+	private static void sendManifest(byte[] manifest, byte[] compressed, Map<String, byte[]> contents, NetworkManager manager)
+	{
+		Set<String> references;
+		try
+		{
+			references = ConfigSyncPayload.getReferences(manifest);
+		}
+		catch (IOException e)
+		{
+			OTG.printStackTrace(LogMarker.FATAL, e);
+			return;
+		}
+
+		List<byte[]> parts;
+		synchronized(ConfigSyncServer.class)
+		{
+			syncId++;
+			parts = createParts(syncId, KIND_MANIFEST, compressed);
+			// The contents map is shared by all connections that received this payload
+			sentManifests.put(manager, new SentManifest(syncId, references, references.isEmpty() ? null : contents));
+		}
+		OTG.log(LogMarker.DEBUG, "Sending config manifest (" + getSize(parts) + " bytes, " + references.size() + " biome configs as hashes)");
+		sendParts(parts, manager);
+	}
+
+	/**
+	 * Sends the biome configs a client asked for. Only one request per
+	 * manifest is answered, and only for biome configs that were sent as a
+	 * hash in that manifest.
+	 * @param syncId  The manifest the client received.
+	 * @param hashes  The hashes of the biome configs.
+	 * @param manager The connection.
+	 */
+	static void sendContents(final int syncId, final List<String> hashes, final NetworkManager manager)
+	{
+		final Map<String, byte[]> requested = new LinkedHashMap<String, byte[]>();
+		synchronized(ConfigSyncServer.class)
+		{
+			SentManifest sent = sentManifests.get(manager);
+			if(sent == null || sent.syncId != syncId || sent.contents == null || hashes.size() > sent.references.size())
+			{
+				// Old manifest, already answered or invalid
+				OTG.log(LogMarker.DEBUG, "Ignoring request for " + hashes.size() + " biome config(s) of manifest " + syncId);
+				return;
+			}
+			for(String hash : hashes)
+			{
+				byte[] content = sent.contents.get(hash);
+				if(content != null && sent.references.contains(hash))
+				{
+					requested.put(hash, content);
+				}
+			}
+			sent.contents = null;
+		}
+		OTG.log(LogMarker.DEBUG, "Sending " + requested.size() + " biome config(s) the client didn't have cached");
+
+		executor.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					List<byte[]> parts = createParts(syncId, KIND_CONTENTS, ConfigSyncPayload.compress(ConfigSyncPayload.writeContents(requested)));
+					sendParts(parts, manager);
+				}
+				catch (IOException e)
+				{
+					OTG.printStackTrace(LogMarker.FATAL, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Logs the join latency and the number of config bytes sent for a player
+	 * that just logged in.
+	 * @param player The player.
+	 */
+	public static void onPlayerLoggedIn(EntityPlayerMP player)
+	{
+		LoginStats stats;
+		long averageBytes;
+		synchronized(logins)
+		{
+			stats = logins.remove(player.connection.netManager);
+			if(stats == null)
+			{
+				return;
+			}
+			totalLogins++;
+			totalLoginBytes += stats.bytesSent;
+			averageBytes = totalLoginBytes / totalLogins;
+		}
+		long joinMillis = (System.nanoTime() - stats.connectTime) / 1000000;
+		OTG.log(LogMarker.INFO, "Sent " + stats.bytesSent + " bytes of configs (" + stats.uncompressedSize + " bytes uncompressed) to " + player.getName()
+				+ ", joined after " + joinMillis + " ms. Average " + averageBytes + " bytes per login.");
+	}
+
+	private static List<byte[]> createParts(int syncId, byte kind, byte[] compressed)
+	{
+		int partCount = Math.max(1, (compressed.length + PART_SIZE - 1) / PART_SIZE);
+		List<byte[]> parts = new ArrayList<byte[]>(partCount);
+		for(int part = 0; part < partCount; part++)
+		{
+			int offset = part * PART_SIZE;
+			int length = Math.min(PART_SIZE, compressed.length - offset);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(length + 25);
+			DataOutputStream stream = new DataOutputStream(bytes);
+			try
+			{
+				stream.writeInt(PluginStandardValues.ProtocolVersion);
+				stream.writeInt(PACKET_TYPE);
+				stream.writeInt(syncId);
+				stream.writeByte(kind);
+				stream.writeInt(part);
+				stream.writeInt(partCount);
+				stream.writeInt(length);
+				stream.write(compressed, offset, length);
+			}
+			catch (IOException e)
+			{
+				// Cannot happen for a ByteArrayOutputStream
+				throw new RuntimeException(e);
+			}
+			parts.add(bytes.toByteArray());
+		}
+		return parts;
+	}
+
+	private static void sendParts(List<byte[]> parts, NetworkManager manager)
+	{
+		if(!manager.isChannelOpen())
+		{
+			return;
+		}
+		for(byte[] part : parts)
+		{
+			PacketDispatcher.sendTo(new DimensionSyncPacket(Unpooled.wrappedBuffer(part)), manager);
+		}
+		synchronized(logins)
+		{
+			LoginStats stats = logins.get(manager);
+			if(stats != null)
+			{
+				stats.bytesSent += getSize(parts);
+			}
+		}
+	}
+
+	private static long getSize(List<byte[]> parts)
+	{
+		long size = 0;
+		for(byte[] part : parts)
+		{
+			size += part.length;
+		}
+		return size;
+	}
+
+	private static final class SentManifest
+	{
+		final int syncId;
+		final Set<String> references;
+		// Set to null once a request for this manifest was answered
+		Map<String, byte[]> contents;
+
+		SentManifest(int syncId, Set<String> references, Map<String, byte[]> contents)
+		{
+			this.syncId = syncId;
+			this.references = references;
+			this.contents = contents;
+		}
+	}
+
+	private static final class LoginStats
+	{
+		final long connectTime = System.nanoTime();
+		final int uncompressedSize;
+		long bytesSent;
+
+		LoginStats(int uncompressedSize)
+		{
+			this.uncompressedSize = uncompressedSize;
+		}
+	}
+}
@@ -58,6 +58,10 @@ public class DimensionSyncPacket implements IMessage
 				if(packetType == 0)
 				{
 					((ForgeEngine)OTG.getEngine()).getWorldLoader().registerClientWorld(message.wrappedStream);
+				}
+				else if(packetType == ConfigSyncServer.PACKET_TYPE)
+				{
+					ConfigSyncClient.receivePart(message.wrappedStream);
 				} else {
 					throw new RuntimeException();
 				}
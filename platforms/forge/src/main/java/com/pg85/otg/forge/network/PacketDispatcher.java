@@ -35,6 +35,7 @@ public class PacketDispatcher
 	{
 		PacketDispatcher.registerMessage(DimensionSyncPacket.Handler.class, DimensionSyncPacket.class, Side.CLIENT);
 		PacketDispatcher.registerMessage(ParticlesPacket.Handler.class, ParticlesPacket.class, Side.CLIENT);
+		PacketDispatcher.registerMessage(ConfigRequestPacket.Handler.class, ConfigRequestPacket.class, Side.SERVER);
 	}
 	
 	private static final void registerMessage(Class handlerClass, Class messageClass, Side side)